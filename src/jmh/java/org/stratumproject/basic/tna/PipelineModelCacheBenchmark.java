@@ -0,0 +1,81 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna;
+
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.p4runtime.model.P4InfoParser;
+import org.onosproject.p4runtime.model.P4InfoParserException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to get the pipeline model of a pipeconf at startup, parsing the
+ * P4Info as on a cold start, or loading it from the pipeline model cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PipelineModelCacheBenchmark {
+
+    private static final URL P4INFO = PipelineModelCacheBenchmark.class.getResource(
+            "/p4c-out/basic/bmv2/p4info.txt");
+    private static final URL BMV2_JSON = PipelineModelCacheBenchmark.class.getResource(
+            "/p4c-out/basic/bmv2/bmv2.json");
+
+    private Path directory;
+    private PipelineModelCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("basic-tna-model-cache");
+        cache = new PipelineModelCache(directory, "benchmark");
+        // Warm the cache, as after the first start.
+        cache.load(List.of(BMV2_JSON, P4INFO), PipelineModelCacheBenchmark::parse);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * P4Info parsed, as without the cache.
+     */
+    @Benchmark
+    public PiPipelineModel coldParse() {
+        return parse();
+    }
+
+    /**
+     * Model loaded from the cache, including hashing the artifacts.
+     */
+    @Benchmark
+    public PiPipelineModel cacheHit() {
+        return cache.load(List.of(BMV2_JSON, P4INFO), PipelineModelCacheBenchmark::parse);
+    }
+
+    private static PiPipelineModel parse() {
+        try {
+            return P4InfoParser.parse(P4INFO);
+        } catch (P4InfoParserException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
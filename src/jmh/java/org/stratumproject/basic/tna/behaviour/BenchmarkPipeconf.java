@@ -0,0 +1,133 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.driver.Behaviour;
+import org.onosproject.net.driver.DefaultDriverData;
+import org.onosproject.net.driver.Driver;
+import org.onosproject.net.driver.DriverData;
+import org.onosproject.net.driver.DriverHandler;
+import org.onosproject.net.pi.model.DefaultPiPipeconf;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipeconfId;
+import org.onosproject.net.pi.service.PiPipeconfService;
+import org.onosproject.p4runtime.model.P4InfoParser;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsManager;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsService;
+import org.stratumproject.basic.tna.ports.PortInventoryService;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+/**
+ * Pipeconf and driver handler shared by the benchmarks, built from the
+ * bmv2 P4Info bundled with the pipeconf.
+ */
+public final class BenchmarkPipeconf {
+
+    public static final DeviceId DEVICE_ID = DeviceId.deviceId("device:bmv2:11");
+    public static final int PORTS = 32;
+
+    private static final String P4INFO = "/p4c-out/basic/bmv2/p4info.txt";
+
+    private BenchmarkPipeconf() {
+    }
+
+    /**
+     * Returns a pipeconf with the bmv2 pipeline model.
+     *
+     * @return pipeconf
+     * @throws Exception if the P4Info cannot be parsed
+     */
+    public static PiPipeconf pipeconf() throws Exception {
+        return DefaultPiPipeconf.builder()
+                .withId(new PiPipeconfId("org.stratumproject.basic.benchmark"))
+                .withPipelineModel(P4InfoParser.parse(BenchmarkPipeconf.class.getResource(P4INFO)))
+                .build();
+    }
+
+    /**
+     * Returns the capabilities of {@link #pipeconf()}.
+     *
+     * @return capabilities
+     * @throws Exception if the P4Info cannot be parsed
+     */
+    public static BasicCapabilities capabilities() throws Exception {
+        return new BasicCapabilities(pipeconf());
+    }
+
+    /**
+     * Returns an interpreter bound to a driver handler whose port inventory
+     * is already warm, as it is on a running controller.
+     *
+     * @return interpreter
+     * @throws Exception if the P4Info cannot be parsed
+     */
+    public static BasicInterpreter interpreter() throws Exception {
+        final PiPipeconf pipeconf = pipeconf();
+        final PiPipeconfService pipeconfService = createNiceMock(PiPipeconfService.class);
+        expect(pipeconfService.getPipeconf(DEVICE_ID)).andReturn(Optional.of(pipeconf)).anyTimes();
+        replay(pipeconfService);
+        final Map<Class<?>, Object> services = Map.of(
+                PiPipeconfService.class, pipeconfService,
+                PortInventoryService.class, new WarmPortInventory(),
+                PipeconfMetricsService.class, new PipeconfMetricsManager());
+        final DriverData data = new DefaultDriverData(null, DEVICE_ID);
+        final BasicInterpreter interpreter = new BasicInterpreter();
+        interpreter.setHandler(new DriverHandler() {
+            @Override
+            public Driver driver() {
+                return null;
+            }
+
+            @Override
+            public DriverData data() {
+                return data;
+            }
+
+            @Override
+            public <T extends Behaviour> T behaviour(Class<T> behaviourClass) {
+                return null;
+            }
+
+            @Override
+            public <T> T get(Class<T> serviceClass) {
+                return serviceClass.cast(services.get(serviceClass));
+            }
+        });
+        return interpreter;
+    }
+
+    private static final class WarmPortInventory implements PortInventoryService {
+
+        private final ConnectPoint[] namedPorts = new ConnectPoint[PORTS + 1];
+        private final Set<PortNumber> floodPorts;
+
+        private WarmPortInventory() {
+            final PortNumber[] ports = new PortNumber[PORTS];
+            for (int i = 1; i <= PORTS; i++) {
+                ports[i - 1] = PortNumber.portNumber(i, String.valueOf(i));
+                namedPorts[i] = new ConnectPoint(DEVICE_ID, ports[i - 1]);
+            }
+            floodPorts = Set.of(ports);
+        }
+
+        @Override
+        public Set<PortNumber> floodPorts(DeviceId deviceId, PortNumber cpuPort) {
+            return floodPorts;
+        }
+
+        @Override
+        public ConnectPoint namedConnectPoint(ConnectPoint connectPoint) {
+            return namedPorts[(int) connectPoint.port().toLong()];
+        }
+    }
+}
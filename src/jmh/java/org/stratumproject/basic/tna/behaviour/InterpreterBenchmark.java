@@ -0,0 +1,170 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onlab.packet.Data;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.UDP;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.packet.DefaultOutboundPacket;
+import org.onosproject.net.packet.InboundPacket;
+import org.onosproject.net.packet.OutboundPacket;
+import org.onosproject.net.pi.runtime.PiAction;
+import org.onosproject.net.pi.runtime.PiPacketMetadata;
+import org.onosproject.net.pi.runtime.PiPacketOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.onlab.util.ImmutableByteSequence.copyFrom;
+import static org.onosproject.net.pi.model.PiPacketOperationType.PACKET_IN;
+import static org.stratumproject.basic.tna.behaviour.BenchmarkPipeconf.DEVICE_ID;
+import static org.stratumproject.basic.tna.behaviour.BenchmarkPipeconf.PORTS;
+
+/**
+ * Throughput of the packet I/O and treatment mapping paths of the
+ * interpreter. Run with the gc profiler to get the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InterpreterBenchmark {
+
+    // Ethernet, IPv4 and UDP headers.
+    private static final int HEADERS_SIZE = 42;
+
+    /**
+     * Packets of the given size, received from or sent to the device ports.
+     */
+    @State(Scope.Thread)
+    public static class Packets {
+
+        @Param({"64", "512", "1500"})
+        public int packetSize;
+
+        BasicInterpreter interpreter;
+        PiPacketOperation[] packetIns;
+        OutboundPacket[] packetOuts;
+        OutboundPacket flood;
+        int next;
+
+        @Setup
+        public void setup() throws Exception {
+            interpreter = BenchmarkPipeconf.interpreter();
+            final byte[] frame = udpFrame(packetSize);
+            packetIns = new PiPacketOperation[PORTS];
+            packetOuts = new OutboundPacket[PORTS];
+            for (int i = 0; i < PORTS; i++) {
+                final long port = i + 1;
+                packetIns[i] = PiPacketOperation.builder()
+                        .withType(PACKET_IN)
+                        .withData(copyFrom(frame))
+                        .withMetadata(PiPacketMetadata.builder()
+                                .withId(P4InfoConstants.INGRESS_PORT)
+                                .withValue(copyFrom(port).fit(P4InfoConstants.INGRESS_PORT_BITWIDTH))
+                                .build())
+                        .build();
+                packetOuts[i] = outbound(PortNumber.portNumber(port), frame);
+            }
+            flood = outbound(PortNumber.FLOOD, frame);
+        }
+
+        int nextPort() {
+            next = (next + 1) % PORTS;
+            return next;
+        }
+
+        private static OutboundPacket outbound(PortNumber port, byte[] frame) {
+            return new DefaultOutboundPacket(
+                    DEVICE_ID, DefaultTrafficTreatment.builder().setOutput(port).build(),
+                    ByteBuffer.wrap(frame));
+        }
+
+        private static byte[] udpFrame(int size) {
+            final UDP udp = new UDP();
+            udp.setSourcePort(5000);
+            udp.setDestinationPort(6000);
+            udp.setPayload(new Data(new byte[Math.max(0, size - HEADERS_SIZE)]));
+            final IPv4 ipv4 = new IPv4();
+            ipv4.setSourceAddress(Ip4Address.valueOf("10.0.0.1").toInt());
+            ipv4.setDestinationAddress(Ip4Address.valueOf("10.0.0.2").toInt());
+            ipv4.setProtocol(IPv4.PROTOCOL_UDP);
+            ipv4.setTtl((byte) 64);
+            ipv4.setPayload(udp);
+            final Ethernet eth = new Ethernet();
+            eth.setSourceMACAddress(MacAddress.valueOf("00:00:00:00:00:01"));
+            eth.setDestinationMACAddress(MacAddress.valueOf("00:00:00:00:00:02"));
+            eth.setEtherType(Ethernet.TYPE_IPV4);
+            eth.setPayload(ipv4);
+            return eth.serialize();
+        }
+    }
+
+    /**
+     * Treatments supported by table0.
+     */
+    @State(Scope.Thread)
+    public static class Treatments {
+
+        BasicInterpreter interpreter;
+        TrafficTreatment drop;
+        TrafficTreatment setOutput;
+
+        @Setup
+        public void setup() throws Exception {
+            interpreter = new BasicInterpreter(BenchmarkPipeconf.capabilities());
+            drop = DefaultTrafficTreatment.builder().wipeDeferred().build();
+            setOutput = DefaultTrafficTreatment.builder().setOutput(PortNumber.portNumber(1)).build();
+        }
+    }
+
+    /**
+     * Packet-in mapping, including the parsing of the frame, as done for
+     * every packet-in.
+     */
+    @Benchmark
+    public InboundPacket mapInboundPacket(Packets packets) throws Exception {
+        return packets.interpreter.mapInboundPacket(packets.packetIns[packets.nextPort()], DEVICE_ID);
+    }
+
+    /**
+     * Packet-out to a single port.
+     */
+    @Benchmark
+    public Collection<PiPacketOperation> mapOutboundPacket(Packets packets) throws Exception {
+        return packets.interpreter.mapOutboundPacket(packets.packetOuts[packets.nextPort()]);
+    }
+
+    /**
+     * Packet-out flooded to all the ports of the device.
+     */
+    @Benchmark
+    public Collection<PiPacketOperation> mapOutboundPacketFlood(Packets packets) throws Exception {
+        return packets.interpreter.mapOutboundPacket(packets.flood);
+    }
+
+    @Benchmark
+    public PiAction mapTreatmentDrop(Treatments treatments) throws Exception {
+        return treatments.interpreter.mapTreatment(
+                treatments.drop, P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0);
+    }
+
+    @Benchmark
+    public PiAction mapTreatmentSetOutput(Treatments treatments) throws Exception {
+        return treatments.interpreter.mapTreatment(
+                treatments.setOutput, P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0);
+    }
+}
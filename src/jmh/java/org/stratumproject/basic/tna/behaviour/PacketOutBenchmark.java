@@ -0,0 +1,90 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onlab.packet.Data;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.MacAddress;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.packet.DefaultOutboundPacket;
+import org.onosproject.net.packet.OutboundPacket;
+import org.onosproject.net.pi.runtime.PiPacketMetadata;
+import org.onosproject.net.pi.runtime.PiPacketOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static org.stratumproject.basic.tna.behaviour.BenchmarkPipeconf.DEVICE_ID;
+import static org.stratumproject.basic.tna.behaviour.BenchmarkPipeconf.PORTS;
+import static org.stratumproject.basic.tna.behaviour.PacketOutMetadata.NO_MCAST_GROUP;
+
+/**
+ * Throughput of the packet-out path of the interpreter, in packets per
+ * second, cycling over the ports of a 32 ports device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PacketOutBenchmark {
+
+    private BasicInterpreter interpreter;
+    private OutboundPacket[] packets;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        interpreter = BenchmarkPipeconf.interpreter();
+        Ethernet frame = new Ethernet();
+        frame.setSourceMACAddress(MacAddress.valueOf("00:00:00:00:00:01"))
+                .setDestinationMACAddress(MacAddress.BROADCAST)
+                .setEtherType(Ethernet.TYPE_ARP)
+                .setPad(true)
+                .setPayload(new Data(new byte[28]));
+        byte[] bytes = frame.serialize();
+        packets = new OutboundPacket[PORTS];
+        for (int i = 0; i < PORTS; i++) {
+            packets[i] = new DefaultOutboundPacket(
+                    DEVICE_ID,
+                    DefaultTrafficTreatment.builder().setOutput(PortNumber.portNumber(i + 1)).build(),
+                    ByteBuffer.wrap(bytes));
+        }
+    }
+
+    private int nextPort() {
+        next = (next + 1) % PORTS;
+        return next;
+    }
+
+    /**
+     * Metadata built for each packet, as before the cache was introduced.
+     */
+    @Benchmark
+    public Collection<PiPacketMetadata> metadataBuiltPerPacket() throws Exception {
+        return PacketOutMetadata.build(nextPort() + 1, false, NO_MCAST_GROUP);
+    }
+
+    /**
+     * Metadata looked up among the prebuilt ones.
+     */
+    @Benchmark
+    public Collection<PiPacketMetadata> metadataPrebuilt() throws Exception {
+        return PacketOutMetadata.unicast(nextPort() + 1, false);
+    }
+
+    /**
+     * Whole packet-out mapping.
+     */
+    @Benchmark
+    public Collection<PiPacketOperation> mapOutboundPacket() throws Exception {
+        return interpreter.mapOutboundPacket(packets[nextPort()]);
+    }
+}
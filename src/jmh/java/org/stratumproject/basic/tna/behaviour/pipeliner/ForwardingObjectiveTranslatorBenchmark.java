@@ -0,0 +1,128 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.Ip4Prefix;
+import org.onlab.packet.TpPort;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.flowobjective.DefaultForwardingObjective;
+import org.onosproject.net.flowobjective.ForwardingObjective;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stratumproject.basic.tna.behaviour.BenchmarkPipeconf;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.stratumproject.basic.tna.behaviour.BenchmarkPipeconf.DEVICE_ID;
+
+/**
+ * Throughput of the translation of forwarding objectives, cycling over
+ * objectives that differ by their selector. Run with the gc profiler to get
+ * the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ForwardingObjectiveTranslatorBenchmark {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "benchmark");
+    private static final int OBJECTIVES = 1024;
+    private static final int PRIORITY = 100;
+
+    /**
+     * Kind of objectives translated.
+     */
+    public enum Kind {
+        /** IPv4 5-tuple match, set output. */
+        ACL_5TUPLE,
+        /** Ethernet type match, copy to CPU. */
+        COPY_TO_CPU,
+        /** IPv4 destination match, drop. */
+        DROP,
+        /** IPv4 destination match, set output. */
+        SET_OUTPUT
+    }
+
+    @Param
+    public Kind kind;
+
+    // Translation cache size, 0 measures the translation itself.
+    @Param({"0", "4096"})
+    public long cacheSize;
+
+    private ForwardingObjectiveTranslator translator;
+    private ForwardingObjective[] objectives;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        translator = ForwardingObjectiveTranslator.builder(DEVICE_ID, BenchmarkPipeconf.capabilities())
+                .cacheSize(cacheSize)
+                .build();
+        objectives = new ForwardingObjective[OBJECTIVES];
+        for (int i = 0; i < OBJECTIVES; i++) {
+            objectives[i] = objective(kind, i);
+        }
+    }
+
+    @Benchmark
+    public ObjectiveTranslation translate() {
+        next = (next + 1) % OBJECTIVES;
+        return translator.translate(objectives[next]);
+    }
+
+    private static ForwardingObjective objective(Kind kind, int i) {
+        final TrafficSelector.Builder selector = DefaultTrafficSelector.builder();
+        final TrafficTreatment treatment;
+        switch (kind) {
+            case ACL_5TUPLE:
+                selector.matchEthType(Ethernet.TYPE_IPV4)
+                        .matchIPSrc(Ip4Prefix.valueOf(0x0a000000 + i, 32))
+                        .matchIPDst(Ip4Prefix.valueOf(0x0b000000 + i, 32))
+                        .matchIPProtocol(IPv4.PROTOCOL_UDP)
+                        .matchUdpSrc(TpPort.tpPort(1024 + i))
+                        .matchUdpDst(TpPort.tpPort(53));
+                treatment = DefaultTrafficTreatment.builder()
+                        .setOutput(PortNumber.portNumber(1 + i % BenchmarkPipeconf.PORTS)).build();
+                break;
+            case COPY_TO_CPU:
+                selector.matchEthType((short) i);
+                treatment = DefaultTrafficTreatment.builder().punt().build();
+                break;
+            case DROP:
+                selector.matchEthType(Ethernet.TYPE_IPV4)
+                        .matchIPDst(Ip4Prefix.valueOf(0x0b000000 + i, 32));
+                treatment = DefaultTrafficTreatment.builder().wipeDeferred().build();
+                break;
+            case SET_OUTPUT:
+            default:
+                selector.matchEthType(Ethernet.TYPE_IPV4)
+                        .matchIPDst(Ip4Prefix.valueOf(0x0b000000 + i, 32));
+                treatment = DefaultTrafficTreatment.builder()
+                        .setOutput(PortNumber.portNumber(1 + i % BenchmarkPipeconf.PORTS)).build();
+                break;
+        }
+        return DefaultForwardingObjective.builder()
+                .withSelector(selector.build())
+                .withTreatment(treatment)
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent()
+                .add();
+    }
+}
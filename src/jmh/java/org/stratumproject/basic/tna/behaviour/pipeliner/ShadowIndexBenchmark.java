@@ -0,0 +1,89 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.Ip4Prefix;
+import org.onlab.packet.TpPort;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.stratumproject.basic.tna.behaviour.BenchmarkPipeconf.DEVICE_ID;
+
+/**
+ * Latency of the coverage queries of the shadowed rule index, over a table0
+ * filled with 5-tuple ACL entries, cycling over flow rules that are not
+ * covered, the worst case.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShadowIndexBenchmark {
+
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "benchmark");
+    private static final int QUERIES = 1024;
+    private static final int PRIORITY = 100;
+
+    // Entries installed in table0.
+    @Param({"10000", "50000"})
+    public int entries;
+
+    private ShadowIndex index;
+    private FlowRule[] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        index = new ShadowIndex();
+        for (int i = 0; i < entries; i++) {
+            index.add(aclRule(i, PRIORITY + 1));
+        }
+        queries = new FlowRule[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            // Same fields as the entries, different source ports.
+            queries[i] = aclRule(entries + i, PRIORITY);
+        }
+    }
+
+    @Benchmark
+    public Optional<ShadowIndex.Coverage> coverage() {
+        next = (next + 1) % QUERIES;
+        return index.coverage(queries[next]);
+    }
+
+    private static FlowRule aclRule(int i, int priority) {
+        return DefaultFlowRule.builder()
+                .forDevice(DEVICE_ID)
+                .forTable(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchEthType(Ethernet.TYPE_IPV4)
+                                      .matchIPSrc(Ip4Prefix.valueOf(0x0a000000 + i % 256, 32))
+                                      .matchIPDst(Ip4Prefix.valueOf(0x0b000000 + i / 256, 32))
+                                      .matchIPProtocol(IPv4.PROTOCOL_UDP)
+                                      .matchUdpSrc(TpPort.tpPort(1024 + i % 60000))
+                                      .matchUdpDst(TpPort.tpPort(53))
+                                      .build())
+                .withTreatment(DefaultTrafficTreatment.builder().drop().build())
+                .withPriority(priority)
+                .fromApp(APP_ID)
+                .makePermanent()
+                .build();
+    }
+}
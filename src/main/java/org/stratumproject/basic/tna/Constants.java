@@ -19,6 +19,13 @@ public final class Constants {
     public static final long PORT_CPU = 0xFFFFFFFDL;
     public static final long PORT_CPU_BMV2 = 255;
 
+    // Annotation of the ports of TNA devices with their data plane port
+    // (PortId_t), e.g., set with the port annotations network config.
+    public static final String DATA_PLANE_PORT = "dataPlanePort";
+
+    // Multicast group replicating flooded packet-outs to all ports.
+    public static final int FLOOD_MCAST_GROUP_ID = 0xFFFF;
+
     // hide default constructor
     private Constants() {
     }
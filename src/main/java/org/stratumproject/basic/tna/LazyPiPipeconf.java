@@ -0,0 +1,154 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.onosproject.net.driver.Behaviour;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipeconfId;
+import org.onosproject.net.pi.model.PiPipelineModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Pipeconf whose pipeline model is loaded the first time it is requested,
+ * e.g., when a device using this pipeconf connects. All other properties are
+ * available right away.
+ * <p>
+ * The fingerprint of {@link org.onosproject.net.pi.model.DefaultPiPipeconf}
+ * includes the hash of the pipeline model, here the checksum of the P4Info
+ * stands in for it, so that the model is not needed at registration. Hence,
+ * the two differ, and devices are pushed the pipeline once more after
+ * switching between eager and lazy pipeconfs.
+ */
+final class LazyPiPipeconf implements PiPipeconf {
+
+    private final PiPipeconfId id;
+    private final Map<Class<? extends Behaviour>, Class<? extends Behaviour>> behaviours;
+    private final Map<ExtensionType, URL> extensions;
+    private final Supplier<PiPipelineModel> pipelineModel;
+    private final long fingerprint;
+
+    /**
+     * Creates a new lazy pipeconf.
+     *
+     * @param id          pipeconf ID
+     * @param behaviours  behaviour implementations
+     * @param extensions  pipeconf extensions
+     * @param modelLoader loader of the pipeline model, invoked at most once
+     */
+    LazyPiPipeconf(PiPipeconfId id,
+                   Map<Class<? extends Behaviour>, Class<? extends Behaviour>> behaviours,
+                   Map<ExtensionType, URL> extensions,
+                   Supplier<PiPipelineModel> modelLoader) {
+        this.id = checkNotNull(id);
+        this.behaviours = ImmutableMap.copyOf(behaviours);
+        this.extensions = ImmutableMap.copyOf(extensions);
+        this.pipelineModel = Suppliers.memoize(checkNotNull(modelLoader)::get);
+        this.fingerprint = fingerprint(this.extensions);
+    }
+
+    @Override
+    public PiPipeconfId id() {
+        return id;
+    }
+
+    @Override
+    public PiPipelineModel pipelineModel() {
+        return pipelineModel.get();
+    }
+
+    @Override
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public Collection<Class<? extends Behaviour>> behaviours() {
+        return behaviours.keySet();
+    }
+
+    @Override
+    public Optional<Class<? extends Behaviour>> implementation(Class<? extends Behaviour> behaviour) {
+        return Optional.ofNullable(behaviours.get(behaviour));
+    }
+
+    @Override
+    public boolean hasBehaviour(Class<? extends Behaviour> behaviourClass) {
+        return behaviours.containsKey(behaviourClass);
+    }
+
+    @Override
+    public Optional<InputStream> extension(ExtensionType type) {
+        final URL url = extensions.get(type);
+        if (url == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(url.openStream());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("fingerprint", fingerprint)
+                .toString();
+    }
+
+    /* Laid out as the one of DefaultPiPipeconf, the CRC32 of the P4Info
+       in place of the model hash, followed by the hash of the CRC32 of each
+       extension in the order of ExtensionType */
+    private static long fingerprint(Map<ExtensionType, URL> extensions) {
+        final List<Integer> hashes = new ArrayList<>();
+        int p4InfoCrc = 0;
+        for (ExtensionType type : ExtensionType.values()) {
+            final URL url = extensions.get(type);
+            if (url == null) {
+                continue;
+            }
+            final int crc = crc32(url);
+            if (type == ExtensionType.P4_INFO_TEXT) {
+                p4InfoCrc = crc;
+            }
+            hashes.add(crc);
+        }
+        return ByteBuffer.allocate(Long.BYTES)
+                .putInt(p4InfoCrc)
+                .putInt(hashes.hashCode())
+                .getLong(0);
+    }
+
+    private static int crc32(URL url) {
+        final Hasher hasher = Hashing.crc32().newHasher();
+        try (InputStream in = url.openStream();
+             OutputStream out = Funnels.asOutputStream(hasher)) {
+            ByteStreams.copy(in, out);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return hasher.hash().asInt();
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna;
+
+/**
+ * Name/Value constants for properties.
+ */
+public final class OsgiPropertyConstants {
+
+    private OsgiPropertyConstants() {
+    }
+
+    public static final String OBJECTIVE_BATCH_SIZE = "objectiveBatchSize";
+    public static final int OBJECTIVE_BATCH_SIZE_DEFAULT = 1;
+
+    public static final String OBJECTIVE_BATCH_LINGER_MS = "objectiveBatchLingerMs";
+    public static final int OBJECTIVE_BATCH_LINGER_MS_DEFAULT = 5;
+
+    public static final String OBJECTIVE_IN_FLIGHT_WINDOW = "objectiveInFlightWindow";
+    public static final int OBJECTIVE_IN_FLIGHT_WINDOW_DEFAULT = 64;
+
+    public static final String OBJECTIVE_LANE_QUEUE_SIZE = "objectiveLaneQueueSize";
+    public static final int OBJECTIVE_LANE_QUEUE_SIZE_DEFAULT = 10000;
+
+    public static final String LAZY_PIPELINE_MODEL = "lazyPipelineModel";
+    public static final boolean LAZY_PIPELINE_MODEL_DEFAULT = false;
+
+    public static final String PIPELINE_MODEL_CACHE = "pipelineModelCache";
+    public static final boolean PIPELINE_MODEL_CACHE_DEFAULT = true;
+
+    public static final String SHARED_PIPELINE_BINARIES = "sharedPipelineBinaries";
+    public static final boolean SHARED_PIPELINE_BINARIES_DEFAULT = true;
+
+    public static final String TERNARY_RULE_AGGREGATION = "ternaryRuleAggregation";
+    public static final boolean TERNARY_RULE_AGGREGATION_DEFAULT = false;
+
+    public static final String SHADOWED_RULE_DETECTION = "shadowedRuleDetection";
+    public static final boolean SHADOWED_RULE_DETECTION_DEFAULT = false;
+
+    public static final String SKIP_SHADOWED_RULES = "skipShadowedRules";
+    public static final boolean SKIP_SHADOWED_RULES_DEFAULT = false;
+
+    public static final String FLOW_STATS_POLL_INTERVAL_SEC = "flowStatsPollIntervalSec";
+    public static final int FLOW_STATS_POLL_INTERVAL_SEC_DEFAULT = 0;
+
+    public static final String EGRESS_FLOW_STATS = "egressFlowStats";
+    public static final boolean EGRESS_FLOW_STATS_DEFAULT = false;
+
+    public static final String PORT_STATS_POLL_INTERVAL_SEC = "portStatsPollIntervalSec";
+    public static final int PORT_STATS_POLL_INTERVAL_SEC_DEFAULT = 0;
+
+    public static final String PORT_STATS_CELLS_PER_REQUEST = "portStatsCellsPerRequest";
+    public static final int PORT_STATS_CELLS_PER_REQUEST_DEFAULT = 0;
+
+    public static final String CLONE_TO_CPU_SAMPLE_RATE = "cloneToCpuSampleRate";
+    public static final int CLONE_TO_CPU_SAMPLE_RATE_DEFAULT = 1024;
+}
@@ -3,9 +3,14 @@
 
 package org.stratumproject.basic.tna;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.CoreService;
 import org.onosproject.net.behaviour.Pipeliner;
+import org.onosproject.net.device.PortStatisticsDiscovery;
+import org.onosproject.net.driver.Behaviour;
+import org.onosproject.net.flow.FlowRuleProgrammable;
 import org.onosproject.net.pi.model.DefaultPiPipeconf;
 import org.onosproject.net.pi.model.PiPipeconf;
 import org.onosproject.net.pi.model.PiPipeconf.ExtensionType;
@@ -23,18 +28,33 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.onosproject.p4runtime.model.P4InfoParser;
 import org.onosproject.p4runtime.model.P4InfoParserException;
 import org.slf4j.Logger;
+import org.stratumproject.basic.tna.behaviour.BasicCounterReader;
+import org.stratumproject.basic.tna.behaviour.BasicDirectCounterReader;
+import org.stratumproject.basic.tna.behaviour.BasicFlowRuleProgrammable;
 import org.stratumproject.basic.tna.behaviour.BasicInterpreter;
+import org.stratumproject.basic.tna.behaviour.BasicPortStatisticsDiscovery;
+import org.stratumproject.basic.tna.behaviour.CounterReader;
+import org.stratumproject.basic.tna.behaviour.DirectCounterReader;
 import org.stratumproject.basic.tna.behaviour.pipeliner.BasicPipeliner;
 
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
+import static org.onlab.util.Tools.groupedThreads;
 import static org.osgi.framework.wiring.BundleWiring.LISTRESOURCES_RECURSE;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -62,11 +82,30 @@ public class PipeconfLoader {
     @Reference(cardinality = ReferenceCardinality.MANDATORY)
     private ComponentConfigService compCfgService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    private PipeconfSettings settings;
+
     private Collection<PiPipeconf> pipeconfs;
+    private PipelineModelCache modelCache;
+    private PipelineBinaryStore binaryStore;
 
     private static final String P4INFO_TXT = "p4info.txt";
     private static final String TOFINO_PIPELINE_CONFIG = "pipeline_config.pb.bin";
     private static final String BMV2_PIPELINE_CONFIG = "bmv2.json";
+    // <karaf.data>/basic-tna/pipeline-models
+    private static final String MODEL_CACHE_PATH = "basic-tna" + SEP + "pipeline-models";
+    // <karaf.data>/basic-tna/pipeline-binaries
+    private static final String BINARY_STORE_PATH = "basic-tna" + SEP + "pipeline-binaries";
+
+    private static final Map<Class<? extends Behaviour>, Class<? extends Behaviour>> BEHAVIOURS =
+            ImmutableMap.<Class<? extends Behaviour>, Class<? extends Behaviour>>builder()
+                    .put(PiPipelineInterpreter.class, BasicInterpreter.class)
+                    .put(Pipeliner.class, BasicPipeliner.class)
+                    .put(DirectCounterReader.class, BasicDirectCounterReader.class)
+                    .put(FlowRuleProgrammable.class, BasicFlowRuleProgrammable.class)
+                    .put(CounterReader.class, BasicCounterReader.class)
+                    .put(PortStatisticsDiscovery.class, BasicPortStatisticsDiscovery.class)
+                    .build();
 
 
     @Activate
@@ -78,6 +117,10 @@ public class PipeconfLoader {
         compCfgService.preSetProperty(
                 "org.onosproject.net.meter.impl.MeterManager",
                 "userDefinedIndex", "true");
+        modelCache = settings.pipelineModelCache() ? new PipelineModelCache(
+                dataPath(MODEL_CACHE_PATH), coreService.version().toString()) : null;
+        binaryStore = settings.sharedPipelineBinaries()
+                ? new PipelineBinaryStore(dataPath(BINARY_STORE_PATH)) : null;
         // Registers all pipeconf at component activation.
         pipeconfs = buildAllPipeconfs();
         pipeconfs.forEach(pipeconfService::register);
@@ -90,11 +133,15 @@ public class PipeconfLoader {
                 .map(PiPipeconf::id)
                 .forEach(pipeconfService::unregister);
         pipeconfs = null;
+        if (binaryStore != null) {
+            binaryStore.clear();
+            binaryStore = null;
+        }
         log.info("Stopped");
     }
 
     private Collection<PiPipeconf> buildAllPipeconfs() {
-        return FrameworkUtil
+        final List<String> paths = FrameworkUtil
                 .getBundle(this.getClass())
                 .adapt(BundleWiring.class)
                 // List all resource files in /p4c-out
@@ -102,13 +149,35 @@ public class PipeconfLoader {
                 .stream()
                 // Filter only directories
                 .filter(name -> name.endsWith(SEP))
-                // Derive profile, target, and platform and build pipeconf.
-                .map(this::buildPipeconfFromPath)
-                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
+        if (paths.isEmpty()) {
+            return List.of();
+        }
+
+        final boolean lazy = settings.lazyPipelineModel();
+        // Profiles are independent, parse their P4Info in parallel.
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(paths.size(), Runtime.getRuntime().availableProcessors()),
+                groupedThreads("basic-tna/pipeconf-loader", "parser-%d", log));
+        try {
+            // Derive profile, target, and platform and build pipeconf.
+            return paths.stream()
+                    .map(path -> CompletableFuture.supplyAsync(
+                            () -> buildPipeconfFromPath(path, lazy), executor))
+                    .collect(Collectors.toList())
+                    .stream()
+                    .map(CompletableFuture::join)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
     }
 
-    private PiPipeconf buildPipeconfFromPath(String path) {
+    private PiPipeconf buildPipeconfFromPath(String path, boolean lazy) {
         String[] pieces = path.split(SEP);
         // We expect a path of 3 elements, e.g.
         // p4c-out/<profile>/<platform>
@@ -118,21 +187,36 @@ public class PipeconfLoader {
         }
         String profile = pieces[1];
         String platform = pieces[2];
-        final DefaultPiPipeconf.Builder builder;
+        final Map<ExtensionType, URL> extensions;
         try {
-            builder = buildPipeconf(profile, platform);
+            extensions = extensions(profile, platform);
         } catch (FileNotFoundException e) {
             log.warn("Got error when building the pipeconf with profile {} and platform {}: {}",
                     profile, platform, e.getMessage());
             return null;
         }
 
-        builder.addBehaviour(PiPipelineInterpreter.class, BasicInterpreter.class)
-                .addBehaviour(Pipeliner.class, BasicPipeliner.class);
-        return builder.build();
+        final PiPipeconfId pipeconfId = new PiPipeconfId(format(
+                "%s.%s.%s", BASE_PIPECONF_ID, profile, platform));
+        final PiPipeconf pipeconf;
+        if (lazy) {
+            pipeconf = new LazyPiPipeconf(pipeconfId, BEHAVIOURS, extensions, () -> {
+                log.info("Loading pipeline model of {}", pipeconfId);
+                return loadPipelineModel(extensions);
+            });
+        } else {
+            final DefaultPiPipeconf.Builder builder = DefaultPiPipeconf.builder()
+                    .withId(pipeconfId)
+                    .withPipelineModel(loadPipelineModel(extensions));
+            extensions.forEach(builder::addExtension);
+            BEHAVIOURS.forEach(builder::addBehaviour);
+            pipeconf = builder.build();
+        }
+        final PipelineBinaryStore store = binaryStore;
+        return store == null ? pipeconf : new SharedBinaryPiPipeconf(pipeconf, extensions, store);
     }
 
-    private DefaultPiPipeconf.Builder buildPipeconf(String profile, String platform)
+    private Map<ExtensionType, URL> extensions(String profile, String platform)
             throws FileNotFoundException {
 
         final String pipelineConfig;
@@ -153,12 +237,8 @@ public class PipeconfLoader {
         checkFileExists(pipelineConfigUrl, pipelineConfig);
         checkFileExists(p4InfoUrl, P4INFO_TXT);
 
-        return DefaultPiPipeconf.builder()
-                .withId(new PiPipeconfId(format(
-                        "%s.%s.%s", BASE_PIPECONF_ID, profile, platform)))
-                .withPipelineModel(parseP4Info(p4InfoUrl))
-                .addExtension(extensionType, pipelineConfigUrl)
-                .addExtension(ExtensionType.P4_INFO_TEXT, p4InfoUrl);
+        return ImmutableMap.of(extensionType, pipelineConfigUrl,
+                               ExtensionType.P4_INFO_TEXT, p4InfoUrl);
     }
 
     private void checkFileExists(URL url, String name)
@@ -168,6 +248,19 @@ public class PipeconfLoader {
         }
     }
 
+    private PiPipelineModel loadPipelineModel(Map<ExtensionType, URL> extensions) {
+        final URL p4InfoUrl = extensions.get(ExtensionType.P4_INFO_TEXT);
+        final PipelineModelCache cache = modelCache;
+        if (cache == null) {
+            return parseP4Info(p4InfoUrl);
+        }
+        return cache.load(extensions.values(), () -> parseP4Info(p4InfoUrl));
+    }
+
+    private static Path dataPath(String path) {
+        return Paths.get(System.getProperty("karaf.data", System.getProperty("java.io.tmpdir")), path);
+    }
+
     private PiPipelineModel parseP4Info(URL p4InfoUrl) {
         try {
             return P4InfoParser.parse(p4InfoUrl);
@@ -0,0 +1,358 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna;
+
+import org.onosproject.cfg.ComponentConfigService;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.slf4j.Logger;
+
+import java.util.Dictionary;
+
+import static org.onlab.util.Tools.getIntegerProperty;
+import static org.onlab.util.Tools.isPropertyEnabled;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.CLONE_TO_CPU_SAMPLE_RATE;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.CLONE_TO_CPU_SAMPLE_RATE_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.EGRESS_FLOW_STATS;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.EGRESS_FLOW_STATS_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.FLOW_STATS_POLL_INTERVAL_SEC;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.FLOW_STATS_POLL_INTERVAL_SEC_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.LAZY_PIPELINE_MODEL;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.LAZY_PIPELINE_MODEL_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_BATCH_LINGER_MS;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_BATCH_LINGER_MS_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_BATCH_SIZE;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_BATCH_SIZE_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_IN_FLIGHT_WINDOW;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_IN_FLIGHT_WINDOW_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_LANE_QUEUE_SIZE;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_LANE_QUEUE_SIZE_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.PIPELINE_MODEL_CACHE;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.PIPELINE_MODEL_CACHE_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.PORT_STATS_CELLS_PER_REQUEST;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.PORT_STATS_CELLS_PER_REQUEST_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.PORT_STATS_POLL_INTERVAL_SEC;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.PORT_STATS_POLL_INTERVAL_SEC_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.SHADOWED_RULE_DETECTION;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.SHADOWED_RULE_DETECTION_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.SHARED_PIPELINE_BINARIES;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.SHARED_PIPELINE_BINARIES_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.SKIP_SHADOWED_RULES;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.SKIP_SHADOWED_RULES_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.TERNARY_RULE_AGGREGATION;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.TERNARY_RULE_AGGREGATION_DEFAULT;
+
+/**
+ * Component exposing the runtime-tunable settings of the basic-tna pipeconf
+ * behaviours. Behaviours are not OSGi components, so they look up this
+ * component through the service directory and read the current values.
+ */
+@Component(immediate = true, service = PipeconfSettings.class,
+        property = {
+                OBJECTIVE_BATCH_SIZE + ":Integer=" + OBJECTIVE_BATCH_SIZE_DEFAULT,
+                OBJECTIVE_BATCH_LINGER_MS + ":Integer=" + OBJECTIVE_BATCH_LINGER_MS_DEFAULT,
+                OBJECTIVE_IN_FLIGHT_WINDOW + ":Integer=" + OBJECTIVE_IN_FLIGHT_WINDOW_DEFAULT,
+                OBJECTIVE_LANE_QUEUE_SIZE + ":Integer=" + OBJECTIVE_LANE_QUEUE_SIZE_DEFAULT,
+                LAZY_PIPELINE_MODEL + ":Boolean=" + LAZY_PIPELINE_MODEL_DEFAULT,
+                PIPELINE_MODEL_CACHE + ":Boolean=" + PIPELINE_MODEL_CACHE_DEFAULT,
+                SHARED_PIPELINE_BINARIES + ":Boolean=" + SHARED_PIPELINE_BINARIES_DEFAULT,
+                TERNARY_RULE_AGGREGATION + ":Boolean=" + TERNARY_RULE_AGGREGATION_DEFAULT,
+                SHADOWED_RULE_DETECTION + ":Boolean=" + SHADOWED_RULE_DETECTION_DEFAULT,
+                SKIP_SHADOWED_RULES + ":Boolean=" + SKIP_SHADOWED_RULES_DEFAULT,
+                FLOW_STATS_POLL_INTERVAL_SEC + ":Integer=" + FLOW_STATS_POLL_INTERVAL_SEC_DEFAULT,
+                EGRESS_FLOW_STATS + ":Boolean=" + EGRESS_FLOW_STATS_DEFAULT,
+                PORT_STATS_POLL_INTERVAL_SEC + ":Integer=" + PORT_STATS_POLL_INTERVAL_SEC_DEFAULT,
+                PORT_STATS_CELLS_PER_REQUEST + ":Integer=" + PORT_STATS_CELLS_PER_REQUEST_DEFAULT,
+                CLONE_TO_CPU_SAMPLE_RATE + ":Integer=" + CLONE_TO_CPU_SAMPLE_RATE_DEFAULT,
+        })
+public class PipeconfSettings {
+
+    private static Logger log = getLogger(PipeconfSettings.class);
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    private ComponentConfigService compCfgService;
+
+    /** Maximum number of objectives merged into a single flow rule batch; 1 disables batching. */
+    private volatile int objectiveBatchSize = OBJECTIVE_BATCH_SIZE_DEFAULT;
+
+    /** Maximum time (ms) an objective waits for its batch to fill up. */
+    private volatile int objectiveBatchLingerMs = OBJECTIVE_BATCH_LINGER_MS_DEFAULT;
+
+    /** Maximum number of unacknowledged flow rule writes per device, applied when the pipeliner is initialized. */
+    private volatile int objectiveInFlightWindow = OBJECTIVE_IN_FLIGHT_WINDOW_DEFAULT;
+
+    /** Maximum number of objectives queued per device before new ones are rejected, applied when the pipeliner is initialized. */
+    private volatile int objectiveLaneQueueSize = OBJECTIVE_LANE_QUEUE_SIZE_DEFAULT;
+
+    /** Parse the pipeline model of a pipeconf only when first requested by a device, applied when the app is activated. */
+    private volatile boolean lazyPipelineModel = LAZY_PIPELINE_MODEL_DEFAULT;
+
+    /** Keep parsed pipeline models on disk and reuse them across restarts, applied when the app is activated. */
+    private volatile boolean pipelineModelCache = PIPELINE_MODEL_CACHE_DEFAULT;
+
+    /** Serve pipeline binaries from shared memory-mapped files, applied when the app is activated. */
+    private volatile boolean sharedPipelineBinaries = SHARED_PIPELINE_BINARIES_DEFAULT;
+
+    /** Merge compatible table0 entries differing in IPv4 prefixes or L4 ports. */
+    private volatile boolean ternaryRuleAggregation = TERNARY_RULE_AGGREGATION_DEFAULT;
+
+    /** Warn about table0 entries covered by installed ones, applied when the pipeliner is initialized. */
+    private volatile boolean shadowedRuleDetection = SHADOWED_RULE_DETECTION_DEFAULT;
+
+    /** Do not install table0 entries covered by installed ones, until these are removed. */
+    private volatile boolean skipShadowedRules = SKIP_SHADOWED_RULES_DEFAULT;
+
+    /** Interval (s) between bulk reads of the table0 direct counters; 0 disables them. */
+    private volatile int flowStatsPollIntervalSec = FLOW_STATS_POLL_INTERVAL_SEC_DEFAULT;
+
+    /** Count table0 output entries again at egress, when the pipeline has the egress flow stats table. */
+    private volatile boolean egressFlowStats = EGRESS_FLOW_STATS_DEFAULT;
+
+    /** Interval (s) between bulk reads of the port counters; 0 disables them. */
+    private volatile int portStatsPollIntervalSec = PORT_STATS_POLL_INTERVAL_SEC_DEFAULT;
+
+    /** Maximum number of port counter cells per read request; 0 reads all cells with one wildcard request. */
+    private volatile int portStatsCellsPerRequest = PORT_STATS_CELLS_PER_REQUEST_DEFAULT;
+
+    /** One in how many packets of the table0 sampled entries are cloned to the controller. */
+    private volatile int cloneToCpuSampleRate = CLONE_TO_CPU_SAMPLE_RATE_DEFAULT;
+
+    @Activate
+    protected void activate(ComponentContext context) {
+        compCfgService.registerProperties(getClass());
+        modified(context);
+        log.info("Started");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        compCfgService.unregisterProperties(getClass(), false);
+        log.info("Stopped");
+    }
+
+    @Modified
+    protected void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+        final Dictionary<?, ?> properties = context.getProperties();
+        objectiveBatchSize = Math.max(1, getIntegerProperty(
+                properties, OBJECTIVE_BATCH_SIZE, OBJECTIVE_BATCH_SIZE_DEFAULT));
+        objectiveBatchLingerMs = Math.max(0, getIntegerProperty(
+                properties, OBJECTIVE_BATCH_LINGER_MS, OBJECTIVE_BATCH_LINGER_MS_DEFAULT));
+        objectiveInFlightWindow = Math.max(1, getIntegerProperty(
+                properties, OBJECTIVE_IN_FLIGHT_WINDOW, OBJECTIVE_IN_FLIGHT_WINDOW_DEFAULT));
+        objectiveLaneQueueSize = Math.max(1, getIntegerProperty(
+                properties, OBJECTIVE_LANE_QUEUE_SIZE, OBJECTIVE_LANE_QUEUE_SIZE_DEFAULT));
+        lazyPipelineModel = isPropertyEnabled(
+                properties, LAZY_PIPELINE_MODEL, LAZY_PIPELINE_MODEL_DEFAULT);
+        pipelineModelCache = isPropertyEnabled(
+                properties, PIPELINE_MODEL_CACHE, PIPELINE_MODEL_CACHE_DEFAULT);
+        sharedPipelineBinaries = isPropertyEnabled(
+                properties, SHARED_PIPELINE_BINARIES, SHARED_PIPELINE_BINARIES_DEFAULT);
+        ternaryRuleAggregation = isPropertyEnabled(
+                properties, TERNARY_RULE_AGGREGATION, TERNARY_RULE_AGGREGATION_DEFAULT);
+        shadowedRuleDetection = isPropertyEnabled(
+                properties, SHADOWED_RULE_DETECTION, SHADOWED_RULE_DETECTION_DEFAULT);
+        skipShadowedRules = isPropertyEnabled(
+                properties, SKIP_SHADOWED_RULES, SKIP_SHADOWED_RULES_DEFAULT);
+        flowStatsPollIntervalSec = Math.max(0, getIntegerProperty(
+                properties, FLOW_STATS_POLL_INTERVAL_SEC, FLOW_STATS_POLL_INTERVAL_SEC_DEFAULT));
+        egressFlowStats = isPropertyEnabled(
+                properties, EGRESS_FLOW_STATS, EGRESS_FLOW_STATS_DEFAULT);
+        portStatsPollIntervalSec = Math.max(0, getIntegerProperty(
+                properties, PORT_STATS_POLL_INTERVAL_SEC, PORT_STATS_POLL_INTERVAL_SEC_DEFAULT));
+        portStatsCellsPerRequest = Math.max(0, getIntegerProperty(
+                properties, PORT_STATS_CELLS_PER_REQUEST, PORT_STATS_CELLS_PER_REQUEST_DEFAULT));
+        cloneToCpuSampleRate = Math.max(1, getIntegerProperty(
+                properties, CLONE_TO_CPU_SAMPLE_RATE, CLONE_TO_CPU_SAMPLE_RATE_DEFAULT));
+        log.info("Settings: {}={}, {}={}, {}={}, {}={}, {}={}, {}={}, {}={}, {}={}, "
+                         + "{}={}, {}={}, {}={}, {}={}, {}={}, {}={}, {}={}",
+                 OBJECTIVE_BATCH_SIZE, objectiveBatchSize,
+                 OBJECTIVE_BATCH_LINGER_MS, objectiveBatchLingerMs,
+                 OBJECTIVE_IN_FLIGHT_WINDOW, objectiveInFlightWindow,
+                 OBJECTIVE_LANE_QUEUE_SIZE, objectiveLaneQueueSize,
+                 LAZY_PIPELINE_MODEL, lazyPipelineModel,
+                 PIPELINE_MODEL_CACHE, pipelineModelCache,
+                 SHARED_PIPELINE_BINARIES, sharedPipelineBinaries,
+                 TERNARY_RULE_AGGREGATION, ternaryRuleAggregation,
+                 SHADOWED_RULE_DETECTION, shadowedRuleDetection,
+                 SKIP_SHADOWED_RULES, skipShadowedRules,
+                 FLOW_STATS_POLL_INTERVAL_SEC, flowStatsPollIntervalSec,
+                 EGRESS_FLOW_STATS, egressFlowStats,
+                 PORT_STATS_POLL_INTERVAL_SEC, portStatsPollIntervalSec,
+                 PORT_STATS_CELLS_PER_REQUEST, portStatsCellsPerRequest,
+                 CLONE_TO_CPU_SAMPLE_RATE, cloneToCpuSampleRate);
+    }
+
+    /**
+     * Returns the maximum number of objectives merged into a single flow rule
+     * batch. A value of 1 means batching is disabled.
+     *
+     * @return batch size
+     */
+    public int objectiveBatchSize() {
+        return objectiveBatchSize;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds an objective waits for its
+     * batch to fill up before being submitted anyway.
+     *
+     * @return linger time in milliseconds
+     */
+    public int objectiveBatchLingerMs() {
+        return objectiveBatchLingerMs;
+    }
+
+    /**
+     * Returns the maximum number of flow rule writes per device that can be
+     * waiting for an acknowledgement from the device.
+     *
+     * @return in-flight window size
+     */
+    public int objectiveInFlightWindow() {
+        return objectiveInFlightWindow;
+    }
+
+    /**
+     * Returns the maximum number of objectives that can be queued for
+     * translation on the lane of a device, also the maximum number of
+     * batches of a device waiting for a slot in the in-flight window.
+     *
+     * @return lane queue size
+     */
+    public int objectiveLaneQueueSize() {
+        return objectiveLaneQueueSize;
+    }
+
+    /**
+     * Returns true if the pipeline model of pipeconfs should be parsed only
+     * when first requested by a device, instead of at app activation.
+     *
+     * @return true if pipeline models are loaded lazily
+     */
+    public boolean lazyPipelineModel() {
+        return lazyPipelineModel;
+    }
+
+    /**
+     * Returns true if parsed pipeline models should be stored on disk and
+     * reused across restarts.
+     *
+     * @return true if the pipeline model cache is enabled
+     */
+    public boolean pipelineModelCache() {
+        return pipelineModelCache;
+    }
+
+    /**
+     * Returns true if pipeline binaries should be served from read-only
+     * memory-mapped files shared by all devices, instead of being read from
+     * the app bundle every time they are pushed to a device.
+     *
+     * @return true if pipeline binaries are shared
+     */
+    public boolean sharedPipelineBinaries() {
+        return sharedPipelineBinaries;
+    }
+
+    /**
+     * Returns true if table0 entries with the same action and priority,
+     * differing only in adjacent IPv4 prefixes or L4 ports, should be merged
+     * in fewer ternary entries. Applies to the objectives added after the
+     * setting is enabled.
+     *
+     * @return true if ternary rule aggregation is enabled
+     */
+    public boolean ternaryRuleAggregation() {
+        return ternaryRuleAggregation;
+    }
+
+    /**
+     * Returns true if table0 entries should be checked against the entries
+     * installed on the device, warning about the ones fully covered by an
+     * entry of higher priority, or duplicating one of the same priority and
+     * action.
+     *
+     * @return true if shadowed rules are detected
+     */
+    public boolean shadowedRuleDetection() {
+        return shadowedRuleDetection;
+    }
+
+    /**
+     * Returns true if table0 entries found shadowed or duplicate should not
+     * be installed, until the entry covering them is removed. Requires
+     * {@link #shadowedRuleDetection()}.
+     *
+     * @return true if shadowed rules are skipped
+     */
+    public boolean skipShadowedRules() {
+        return skipShadowedRules;
+    }
+
+    /**
+     * Returns the interval in seconds between two bulk reads of the table0
+     * direct counters of each device. A value of 0 means the counters are
+     * left to the per-entry reads of the P4Runtime driver.
+     *
+     * @return polling interval in seconds
+     */
+    public int flowStatsPollIntervalSec() {
+        return flowStatsPollIntervalSec;
+    }
+
+    /**
+     * Returns true if table0 entries forwarding to a port should also be
+     * counted at egress, with an entry of the egress flow stats table derived
+     * from the same objective. Has no effect if the pipeline does not have
+     * that table.
+     *
+     * @return true if egress flow stats are enabled
+     */
+    public boolean egressFlowStats() {
+        return egressFlowStats;
+    }
+
+    /**
+     * Returns the interval in seconds between two bulk reads of the port
+     * counters of each device. A value of 0 means port statistics are left
+     * to the device driver, e.g., gNMI.
+     *
+     * @return polling interval in seconds
+     */
+    public int portStatsPollIntervalSec() {
+        return portStatsPollIntervalSec;
+    }
+
+    /**
+     * Returns the maximum number of port counter cells read with a single
+     * request. A value of 0 means all cells of the port counters are read
+     * with one wildcard request.
+     *
+     * @return counter cells per request
+     */
+    public int portStatsCellsPerRequest() {
+        return portStatsCellsPerRequest;
+    }
+
+    /**
+     * Returns the sampling rate of the table0 entries that forward packets
+     * and clone them to the controller: one in this many packets is cloned,
+     * on average. Applies to the objectives translated after the change,
+     * entries already written keep their rate.
+     *
+     * @return sampling rate, 1 to clone every packet
+     */
+    public int cloneToCpuSampleRate() {
+        return cloneToCpuSampleRate;
+    }
+}
@@ -0,0 +1,190 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Store of the binaries attached to pipeconfs, e.g., the pipeline config
+ * pushed to devices. Each binary is copied once to a file named after its
+ * SHA-256 and memory-mapped read-only. A mapping is shared by all pipeconfs
+ * with an identical binary and by all devices they are pushed to, so that
+ * binaries are not read into the heap for every device.
+ */
+final class PipelineBinaryStore {
+
+    private static final Logger log = getLogger(PipelineBinaryStore.class);
+
+    private static final String ENTRY_SUFFIX = ".bin";
+
+    private final Path directory;
+    // Resource URL (as string, URL.equals resolves host names) -> checksum
+    private final ConcurrentMap<String, String> checksums = Maps.newConcurrentMap();
+    // Checksum -> read-only mapping of the binary
+    private final ConcurrentMap<String, ByteBuffer> buffers = Maps.newConcurrentMap();
+
+    /**
+     * Creates a new store keeping binaries in the given directory.
+     *
+     * @param directory store directory, created if missing
+     */
+    PipelineBinaryStore(Path directory) {
+        this.directory = checkNotNull(directory);
+    }
+
+    /**
+     * Returns a read-only view of the binary at the given URL. Views share
+     * the same memory-mapped content, each has its own position and limit.
+     *
+     * @param url binary resource
+     * @return read-only buffer
+     * @throws IOException if the binary cannot be copied or mapped
+     */
+    ByteBuffer buffer(URL url) throws IOException {
+        try {
+            final String checksum = checksums.computeIfAbsent(url.toString(), u -> copy(url));
+            return buffers.computeIfAbsent(checksum, this::map).asReadOnlyBuffer();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the number of distinct binaries currently mapped.
+     *
+     * @return mapped binaries
+     */
+    int size() {
+        return buffers.size();
+    }
+
+    /**
+     * Releases all mappings. Files are kept, to be reused after a restart.
+     */
+    void clear() {
+        checksums.clear();
+        buffers.clear();
+    }
+
+    // Copies the binary to the store while computing its checksum, returns
+    // the checksum. Binaries already in the store are not overwritten.
+    private String copy(URL url) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, "binary", ".tmp");
+            final String checksum;
+            try (InputStream in = url.openStream();
+                 HashingOutputStream out = new HashingOutputStream(
+                         Hashing.sha256(), Files.newOutputStream(tmp))) {
+                ByteStreams.copy(in, out);
+                out.flush();
+                checksum = out.hash().toString();
+            }
+            final Path entry = directory.resolve(checksum + ENTRY_SUFFIX);
+            if (Files.isRegularFile(entry) && Files.size(entry) == Files.size(tmp)) {
+                // Identical binary, stored by another pipeconf or before a restart.
+                deleteQuietly(tmp);
+            } else {
+                // Moved in place, so that no one maps a partial entry.
+                Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            log.debug("Stored {} as {}", url, entry);
+            return checksum;
+        } catch (IOException e) {
+            if (tmp != null) {
+                deleteQuietly(tmp);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ByteBuffer map(String checksum) {
+        final Path entry = directory.resolve(checksum + ENTRY_SUFFIX);
+        // The mapping stays valid after the channel is closed.
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Unable to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns an input stream reading the given buffer, from its position to
+     * its limit.
+     *
+     * @param buffer buffer, consumed by the stream
+     * @return input stream
+     */
+    static InputStream inputStream(ByteBuffer buffer) {
+        return new BufferInputStream(buffer);
+    }
+
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            final int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
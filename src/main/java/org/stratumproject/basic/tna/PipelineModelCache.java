@@ -0,0 +1,167 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna;
+
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.net.pi.model.PiMeterModel;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.net.pi.model.PiRegisterId;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.stratumproject.basic.tna.behaviour.BasicUtils.KRYO;
+
+/**
+ * On-disk cache of parsed pipeline models. Entries are keyed by a SHA-256
+ * of the pipeconf artifacts (P4Info and pipeline config) and of the
+ * controller version, so that an entry is used only for the exact artifacts
+ * and model classes it was built from. Any error reading or writing an entry
+ * falls back to parsing the P4Info.
+ */
+final class PipelineModelCache {
+
+    private static final Logger log = getLogger(PipelineModelCache.class);
+
+    private static final String ENTRY_SUFFIX = ".kryo";
+
+    // Implementations of the pipeline model built by P4InfoParser, they are
+    // not public, hence registered by name.
+    private static final List<String> MODEL_CLASSES = List.of(
+            "org.onosproject.p4runtime.model.P4PipelineModel",
+            "org.onosproject.p4runtime.model.P4TableModel",
+            "org.onosproject.p4runtime.model.P4ActionModel",
+            "org.onosproject.p4runtime.model.P4ActionParamModel",
+            "org.onosproject.p4runtime.model.P4ActionProfileModel",
+            "org.onosproject.p4runtime.model.P4CounterModel",
+            "org.onosproject.p4runtime.model.P4MatchFieldModel",
+            "org.onosproject.p4runtime.model.P4MeterModel",
+            "org.onosproject.p4runtime.model.P4PacketMetadataModel",
+            "org.onosproject.p4runtime.model.P4PacketOperationModel",
+            "org.onosproject.p4runtime.model.P4RegisterModel");
+
+    private static final KryoNamespace MODEL_KRYO = modelKryo();
+
+    private final Path directory;
+    private final String version;
+
+    /**
+     * Creates a new cache storing entries in the given directory.
+     *
+     * @param directory cache directory, created if missing
+     * @param version   version of the controller, part of the entry key
+     */
+    PipelineModelCache(Path directory, String version) {
+        this.directory = checkNotNull(directory);
+        this.version = checkNotNull(version);
+    }
+
+    /**
+     * Returns the pipeline model of the given artifacts, from the cache if
+     * present, otherwise from the given parser, storing the result.
+     *
+     * @param artifacts pipeconf artifacts the model depends on, e.g., P4Info
+     *                  and pipeline config
+     * @param parser    parser of the P4Info
+     * @return pipeline model
+     */
+    PiPipelineModel load(Collection<URL> artifacts, Supplier<PiPipelineModel> parser) {
+        final String key;
+        try {
+            key = key(artifacts);
+        } catch (IOException e) {
+            log.warn("Unable to compute cache key of {}: {}", artifacts, e.getMessage());
+            return parser.get();
+        }
+        final Path entry = directory.resolve(key + ENTRY_SUFFIX);
+        if (Files.isRegularFile(entry)) {
+            try {
+                final PiPipelineModel model = MODEL_KRYO.deserialize(Files.readAllBytes(entry));
+                log.debug("Loaded pipeline model of {} from {}", artifacts, entry);
+                return model;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Discarding unreadable pipeline model cache entry {}: {}", entry, e.getMessage());
+                deleteQuietly(entry);
+            }
+        }
+        final PiPipelineModel model = parser.get();
+        store(entry, model);
+        return model;
+    }
+
+    private void store(Path entry, PiPipelineModel model) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            // Written aside and moved in place, so that concurrent readers
+            // never see a partial entry.
+            tmp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+            Files.write(tmp, MODEL_KRYO.serialize(model));
+            Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to store pipeline model cache entry {}: {}", entry, e.getMessage());
+            if (tmp != null) {
+                deleteQuietly(tmp);
+            }
+        }
+    }
+
+    private String key(Collection<URL> artifacts) throws IOException {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        for (URL artifact : artifacts) {
+            hash(hasher, artifact);
+        }
+        hasher.putString(version, UTF_8);
+        return hasher.hash().toString();
+    }
+
+    private static void hash(Hasher hasher, URL url) throws IOException {
+        try (InputStream in = url.openStream();
+             OutputStream out = Funnels.asOutputStream(hasher)) {
+            ByteStreams.copy(in, out);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Unable to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static KryoNamespace modelKryo() {
+        final KryoNamespace.Builder builder = new KryoNamespace.Builder()
+                .register(KRYO)
+                .register(PiRegisterId.class, PiMeterModel.Unit.class);
+        for (String className : MODEL_CLASSES) {
+            try {
+                builder.register(Class.forName(className, false, PipelineModelCache.class.getClassLoader()));
+            } catch (ClassNotFoundException e) {
+                log.debug("Pipeline model class {} not found", className);
+            }
+        }
+        // Model classes of future versions may have fields of types not
+        // registered here.
+        return builder.setRegistrationRequired(false)
+                .build("BasicTnaPipelineModel");
+    }
+}
@@ -0,0 +1,118 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.driver.Behaviour;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipeconfId;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Pipeconf serving its extensions from a {@link PipelineBinaryStore}, so that
+ * pushing the pipeline to many devices, e.g., when they reconnect after a
+ * failover, reads one shared read-only mapping instead of the app bundle.
+ * Everything else, including the fingerprint, is the one of the wrapped
+ * pipeconf.
+ */
+final class SharedBinaryPiPipeconf implements PiPipeconf {
+
+    private static final Logger log = getLogger(SharedBinaryPiPipeconf.class);
+
+    private final PiPipeconf pipeconf;
+    private final Map<ExtensionType, URL> extensions;
+    private final PipelineBinaryStore store;
+
+    /**
+     * Creates a new pipeconf serving the given extensions from the store.
+     *
+     * @param pipeconf   wrapped pipeconf
+     * @param extensions extensions of the wrapped pipeconf
+     * @param store      pipeline binary store
+     */
+    SharedBinaryPiPipeconf(PiPipeconf pipeconf, Map<ExtensionType, URL> extensions,
+                           PipelineBinaryStore store) {
+        this.pipeconf = checkNotNull(pipeconf);
+        this.extensions = ImmutableMap.copyOf(extensions);
+        this.store = checkNotNull(store);
+    }
+
+    /**
+     * Returns a read-only view of the given extension, shared with all users
+     * of the same binary.
+     *
+     * @param type extension type
+     * @return read-only buffer, if the extension is present
+     * @throws IOException if the extension cannot be mapped
+     */
+    Optional<ByteBuffer> extensionBuffer(ExtensionType type) throws IOException {
+        final URL url = extensions.get(type);
+        if (url == null) {
+            return Optional.empty();
+        }
+        return Optional.of(store.buffer(url));
+    }
+
+    @Override
+    public PiPipeconfId id() {
+        return pipeconf.id();
+    }
+
+    @Override
+    public PiPipelineModel pipelineModel() {
+        return pipeconf.pipelineModel();
+    }
+
+    @Override
+    public long fingerprint() {
+        return pipeconf.fingerprint();
+    }
+
+    @Override
+    public Collection<Class<? extends Behaviour>> behaviours() {
+        return pipeconf.behaviours();
+    }
+
+    @Override
+    public Optional<Class<? extends Behaviour>> implementation(Class<? extends Behaviour> behaviour) {
+        return pipeconf.implementation(behaviour);
+    }
+
+    @Override
+    public boolean hasBehaviour(Class<? extends Behaviour> behaviourClass) {
+        return pipeconf.hasBehaviour(behaviourClass);
+    }
+
+    @Override
+    public Optional<InputStream> extension(ExtensionType type) {
+        try {
+            return extensionBuffer(type).map(PipelineBinaryStore::inputStream);
+        } catch (IOException e) {
+            log.warn("Unable to map {} of {}, reading it from the bundle: {}",
+                     type, pipeconf.id(), e.getMessage());
+            return pipeconf.extension(type);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", pipeconf.id())
+                .add("fingerprint", pipeconf.fingerprint())
+                .toString();
+    }
+}
@@ -3,8 +3,15 @@
 
 package org.stratumproject.basic.tna.behaviour;
 
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.pi.model.PiMeterModel;
+import org.onosproject.net.pi.model.PiPacketOperationType;
 import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiTableId;
+import org.onosproject.net.pi.model.PiTableModel;
 import org.slf4j.Logger;
+
+import java.util.Map;
 import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -25,6 +32,8 @@ public class BasicCapabilities {
     private final Logger log = getLogger(getClass());
 
     private final PiPipeconf pipeconf;
+    private volatile Boolean supportsFloodMulticast;
+    private volatile Map<PiTableId, Long> tableSizes;
 
     public BasicCapabilities(PiPipeconf pipeconf) {
         this.pipeconf = checkNotNull(pipeconf);
@@ -62,4 +71,81 @@ public class BasicCapabilities {
         return isArchTna() ? Optional.of(PORT_CPU) : Optional.of(PORT_CPU_BMV2);
     }
 
+    /**
+     * Returns true if the pipeline can replicate packet-outs to the ports of
+     * a multicast group, that is if the packet-out header carries a
+     * multicast group ID.
+     *
+     * @return true if flooding can be done by the data plane
+     */
+    public boolean supportsFloodMulticast() {
+        if (supportsFloodMulticast == null) {
+            supportsFloodMulticast = pipeconf.pipelineModel()
+                    .packetOperationModel(PiPacketOperationType.PACKET_OUT)
+                    .map(model -> model.metadatas().stream()
+                            .anyMatch(m -> m.id().equals(P4InfoConstants.MCAST_GRP)))
+                    .orElse(false);
+        }
+        return supportsFloodMulticast;
+    }
+
+    /**
+     * Returns the size of the tables of the pipeline, as declared in the
+     * P4Info. Tables without a declared size are omitted.
+     *
+     * @return table sizes
+     */
+    public Map<PiTableId, Long> tableSizes() {
+        if (tableSizes == null) {
+            tableSizes = pipeconf.pipelineModel().tables().stream()
+                    .filter(table -> table.maxSize() > 0)
+                    .collect(ImmutableMap.toImmutableMap(PiTableModel::id, PiTableModel::maxSize));
+        }
+        return tableSizes;
+    }
+
+    /**
+     * Returns the size of table0, the ternary table of the pipeline, or
+     * empty if no size is declared.
+     *
+     * @return table0 size
+     */
+    public Optional<Long> table0Size() {
+        return Optional.ofNullable(tableSizes().get(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0));
+    }
+
+    /**
+     * Returns the size of the exact table applied before table0, for the
+     * entries matching all its fields, or empty if the pipeline has no such
+     * table.
+     *
+     * @return exact table size
+     */
+    public Optional<Long> table0ExactSize() {
+        return Optional.ofNullable(tableSizes().get(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT));
+    }
+
+    /**
+     * Returns true if table0 can forward packets and clone a sample of them
+     * to the controller, through a clone session.
+     *
+     * @return true if sampled clone to CPU is supported
+     */
+    public boolean supportsCloneToCpu() {
+        return pipeconf.pipelineModel().table(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                .flatMap(table -> table.action(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_SAMPLED))
+                .isPresent();
+    }
+
+    /**
+     * Returns the number of cells of the meter rate-limiting the packets sent
+     * to the controller by table0, or empty if the pipeline has no such
+     * meter.
+     *
+     * @return number of CPU meter cells
+     */
+    public Optional<Long> cpuMeterSize() {
+        return pipeconf.pipelineModel().meter(P4InfoConstants.BASIC_INGRESS_TABLE0_CPU_METER)
+                .map(PiMeterModel::size);
+    }
 }
@@ -0,0 +1,46 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onosproject.drivers.p4runtime.AbstractP4RuntimeHandlerBehaviour;
+import org.onosproject.net.pi.model.PiCounterId;
+import org.onosproject.net.pi.runtime.PiCounterCell;
+import org.onosproject.net.pi.runtime.PiCounterCellHandle;
+import org.onosproject.net.pi.runtime.PiCounterCellId;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of CounterReader for P4Runtime devices, using wildcard reads
+ * of the counter entries, or the handles of the cells.
+ */
+public class BasicCounterReader extends AbstractP4RuntimeHandlerBehaviour
+        implements CounterReader {
+
+    @Override
+    public Collection<PiCounterCell> readCounters(Collection<PiCounterId> counterIds) {
+        if (!setupBehaviour("readCounters()")) {
+            return Collections.emptyList();
+        }
+        return client.read(p4DeviceId, pipeconf)
+                .counterCells(counterIds)
+                .submitSync()
+                .all(PiCounterCell.class);
+    }
+
+    @Override
+    public Collection<PiCounterCell> readCounterCells(Collection<PiCounterCellId> cellIds) {
+        if (!setupBehaviour("readCounterCells()")) {
+            return Collections.emptyList();
+        }
+        return client.read(p4DeviceId, pipeconf)
+                .handles(cellIds.stream()
+                                 .map(cellId -> PiCounterCellHandle.of(deviceId, cellId))
+                                 .collect(Collectors.toList()))
+                .submitSync()
+                .all(PiCounterCell.class);
+    }
+}
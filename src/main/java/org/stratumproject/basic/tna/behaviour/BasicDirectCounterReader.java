@@ -0,0 +1,31 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onosproject.drivers.p4runtime.AbstractP4RuntimeHandlerBehaviour;
+import org.onosproject.net.pi.model.PiTableId;
+import org.onosproject.net.pi.runtime.PiCounterCell;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Implementation of DirectCounterReader for P4Runtime devices, using a
+ * wildcard read of the direct counter entries of each table, all in the same
+ * request.
+ */
+public class BasicDirectCounterReader extends AbstractP4RuntimeHandlerBehaviour
+        implements DirectCounterReader {
+
+    @Override
+    public Collection<PiCounterCell> readDirectCounters(Collection<PiTableId> tableIds) {
+        if (!setupBehaviour("readDirectCounters()")) {
+            return Collections.emptyList();
+        }
+        return client.read(p4DeviceId, pipeconf)
+                .directCounterCells(tableIds)
+                .submitSync()
+                .all(PiCounterCell.class);
+    }
+}
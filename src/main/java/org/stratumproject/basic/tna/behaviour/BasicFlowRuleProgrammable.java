@@ -0,0 +1,57 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onosproject.drivers.p4runtime.P4RuntimeFlowRuleProgrammable;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
+import org.stratumproject.basic.tna.stats.FlowStats;
+import org.stratumproject.basic.tna.stats.FlowStatsService;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * FlowRuleProgrammable of the P4Runtime driver, reporting the counters of
+ * table0 entries from the last bulk sample of FlowStatsService when
+ * available. The driver then does not read the counters of each entry on
+ * every poll of the flow rules, as if its {@code supportTableCounters}
+ * property were false.
+ */
+public class BasicFlowRuleProgrammable extends P4RuntimeFlowRuleProgrammable {
+
+    // Driver property enabling the counter reads of the polled entries.
+    static final String SUPPORT_TABLE_COUNTERS = "supportTableCounters";
+
+    @Override
+    public Collection<FlowEntry> getFlowEntries() {
+        final Collection<FlowEntry> entries = super.getFlowEntries();
+        final Map<FlowId, FlowStats> stats = handler().get(FlowStatsService.class)
+                .flowStats(data().deviceId());
+        if (stats.isEmpty()) {
+            return entries;
+        }
+        return entries.stream()
+                .map(entry -> {
+                    final FlowStats flowStats = stats.get(entry.id());
+                    return flowStats == null ? entry : new DefaultFlowEntry(
+                            entry, entry.state(), entry.life(NANOSECONDS), NANOSECONDS,
+                            flowStats.packets(), flowStats.bytes());
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    protected boolean driverBoolProperty(String propName, boolean defaultVal) {
+        if (SUPPORT_TABLE_COUNTERS.equals(propName)
+                && handler().get(FlowStatsService.class).isPolled(data().deviceId())) {
+            return false;
+        }
+        return super.driverBoolProperty(propName, defaultVal);
+    }
+}
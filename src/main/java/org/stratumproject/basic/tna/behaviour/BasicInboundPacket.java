@@ -0,0 +1,97 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour;
+
+import com.google.common.base.MoreObjects;
+import org.onlab.packet.DeserializationException;
+import org.onlab.packet.Ethernet;
+import org.onlab.util.ImmutableByteSequence;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.packet.InboundPacket;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Inbound packet backed by the payload of a packet-in. The raw form is a
+ * read-only view of the payload, the Ethernet frame is parsed once, with a
+ * single copy of the payload.
+ */
+final class BasicInboundPacket implements InboundPacket {
+
+    private final ConnectPoint receivedFrom;
+    private final ImmutableByteSequence data;
+    private final Ethernet parsed;
+
+    private BasicInboundPacket(ConnectPoint receivedFrom, ImmutableByteSequence data, Ethernet parsed) {
+        this.receivedFrom = checkNotNull(receivedFrom);
+        this.data = checkNotNull(data);
+        this.parsed = checkNotNull(parsed);
+    }
+
+    /**
+     * Returns a new inbound packet received from the given connect point,
+     * with the Ethernet frame parsed from the given payload.
+     *
+     * @param receivedFrom connect point where the packet was received
+     * @param data         payload of the packet-in
+     * @return inbound packet
+     * @throws DeserializationException if the payload is not a valid
+     *                                  Ethernet frame
+     */
+    static BasicInboundPacket of(ConnectPoint receivedFrom, ImmutableByteSequence data)
+            throws DeserializationException {
+        return new BasicInboundPacket(receivedFrom, data,
+                                      Ethernet.deserializer().deserialize(data.asArray(), 0, data.size()));
+    }
+
+    @Override
+    public ConnectPoint receivedFrom() {
+        return receivedFrom;
+    }
+
+    @Override
+    public Ethernet parsed() {
+        return parsed;
+    }
+
+    @Override
+    public ByteBuffer unparsed() {
+        // Each caller gets its own position and limit over the same bytes.
+        return data.asReadOnlyBuffer();
+    }
+
+    @Override
+    public Optional<Long> cookie() {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BasicInboundPacket that = (BasicInboundPacket) o;
+        return receivedFrom.equals(that.receivedFrom) && data.equals(that.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(receivedFrom, data);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("receivedFrom", receivedFrom)
+                .add("size", data.size())
+                .toString();
+    }
+}
@@ -19,7 +19,6 @@ import org.onosproject.net.driver.DriverHandler;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.flow.criteria.Criterion;
 import org.onosproject.net.flow.instructions.Instructions;
-import org.onosproject.net.packet.DefaultInboundPacket;
 import org.onosproject.net.packet.InboundPacket;
 import org.onosproject.net.packet.OutboundPacket;
 import org.onosproject.net.pi.model.PiMatchFieldId;
@@ -28,8 +27,12 @@ import org.onosproject.net.pi.model.PiTableId;
 import org.onosproject.net.pi.runtime.PiAction;
 import org.onosproject.net.pi.runtime.PiPacketMetadata;
 import org.onosproject.net.pi.runtime.PiPacketOperation;
+import org.stratumproject.basic.tna.metrics.DeviceMetrics;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsService;
+import org.stratumproject.basic.tna.ports.FloodGroupService;
+import org.stratumproject.basic.tna.ports.PortInventoryService;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -44,6 +47,8 @@ import static org.onosproject.net.PortNumber.FLOOD;
 import static org.onosproject.net.PortNumber.TABLE;
 import static org.onosproject.net.flow.instructions.Instruction.Type.OUTPUT;
 import static org.onosproject.net.pi.model.PiPacketOperationType.PACKET_OUT;
+import static org.stratumproject.basic.tna.Constants.FLOOD_MCAST_GROUP_ID;
+import static org.stratumproject.basic.tna.behaviour.PacketOutMetadata.NO_MCAST_GROUP;
 import static org.stratumproject.basic.tna.behaviour.BasicTreatmentInterpreter.mapTable0Treatment;
 
 
@@ -53,7 +58,8 @@ import static org.stratumproject.basic.tna.behaviour.BasicTreatmentInterpreter.m
 public class BasicInterpreter extends AbstractBasicHandlerBehavior
         implements PiPipelineInterpreter {
     private static final Set<PiTableId> TABLE0_CTRL_TBLS = ImmutableSet.of(
-            P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0);
+            P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0,
+            P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT);
     private static final Map<Integer, PiTableId> TABLE_MAP =
             new ImmutableMap.Builder<Integer, PiTableId>()
                     .put(0, P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
@@ -71,9 +77,16 @@ public class BasicInterpreter extends AbstractBasicHandlerBehavior
                     .put(Criterion.Type.UDP_SRC, P4InfoConstants.HDR_L4_SPORT)
                     .put(Criterion.Type.TCP_DST, P4InfoConstants.HDR_L4_DPORT)
                     .put(Criterion.Type.TCP_SRC, P4InfoConstants.HDR_L4_SPORT)
+                    .put(Criterion.Type.UDP_DST_MASKED, P4InfoConstants.HDR_L4_DPORT)
+                    .put(Criterion.Type.UDP_SRC_MASKED, P4InfoConstants.HDR_L4_SPORT)
+                    .put(Criterion.Type.TCP_DST_MASKED, P4InfoConstants.HDR_L4_DPORT)
+                    .put(Criterion.Type.TCP_SRC_MASKED, P4InfoConstants.HDR_L4_SPORT)
                     .build();
 
     private BasicTreatmentInterpreter treatmentInterpreter;
+    // Metrics of the last device seen, interpreters are usually bound to a
+    // single device.
+    private volatile DeviceMetrics metrics;
 
     /**
      * Creates a new instance of this behavior with the given capabilities.
@@ -127,37 +140,31 @@ public class BasicInterpreter extends AbstractBasicHandlerBehavior
     }
 
     private PiPacketOperation createPiPacketOperation(
-            ByteBuffer data, long portNumber, boolean doForwarding)
+            ImmutableByteSequence data, long portNumber, boolean doForwarding)
             throws PiInterpreterException {
-        Collection<PiPacketMetadata> metadata = createPacketMetadata(portNumber, doForwarding);
+        return createPiPacketOperation(data, portNumber, doForwarding, NO_MCAST_GROUP);
+    }
+
+    private PiPacketOperation createPiPacketOperation(
+            ImmutableByteSequence data, long portNumber, boolean doForwarding, int mcastGroup)
+            throws PiInterpreterException {
+        Collection<PiPacketMetadata> metadata = createPacketMetadata(portNumber, doForwarding, mcastGroup);
         return PiPacketOperation.builder()
                 .withType(PACKET_OUT)
-                .withData(copyFrom(data))
+                .withData(data)
                 .withMetadatas(metadata)
                 .build();
     }
 
     private Collection<PiPacketMetadata> createPacketMetadata(
-            long portNumber, boolean doForwarding)
+            long portNumber, boolean doForwarding, int mcastGroup)
             throws PiInterpreterException {
-        try {
-            ImmutableList.Builder<PiPacketMetadata> builder = ImmutableList.builder();
-            builder.add(PiPacketMetadata.builder()
-                    .withId(P4InfoConstants.PAD0)
-                    .withValue(copyFrom(0)
-                            .fit(P4InfoConstants.PAD0_BITWIDTH))
-                    .build());
-            builder.add(PiPacketMetadata.builder()
-                    .withId(P4InfoConstants.EGRESS_PORT)
-                    .withValue(copyFrom(portNumber)
-                            .fit(P4InfoConstants.EGRESS_PORT_BITWIDTH))
-                    .build());
-
-            return builder.build();
-        } catch (ImmutableByteSequence.ByteSequenceTrimException e) {
-            throw new PiInterpreterException(format(
-                    "Port number '%d' too big, %s", portNumber, e.getMessage()));
+        final boolean withMcastGrp = capabilities.supportsFloodMulticast();
+        if (mcastGroup == NO_MCAST_GROUP) {
+            // Prebuilt, the same for every packet sent to this port.
+            return PacketOutMetadata.unicast(portNumber, withMcastGrp);
         }
+        return PacketOutMetadata.build(portNumber, withMcastGrp, mcastGroup);
     }
 
     @Override
@@ -178,48 +185,96 @@ public class BasicInterpreter extends AbstractBasicHandlerBehavior
             throw new PiInterpreterException("Treatment not supported: " + treatment);
         }
 
+        // The payload is immutable, all packet operations share the same copy.
+        final ImmutableByteSequence data = copyFrom(packet.data());
         ImmutableList.Builder<PiPacketOperation> builder = ImmutableList.builder();
+        boolean flood = false;
         for (Instructions.OutputInstruction outInst : outInstructions) {
+            flood |= outInst.port().equals(FLOOD);
             if (outInst.port().equals(TABLE)) {
                 // Logical port. Forward using the switch tables like a regular packet.
-                builder.add(createPiPacketOperation(packet.data(), 0, true));
+                builder.add(createPiPacketOperation(data, 0, true));
+            } else if (outInst.port().equals(FLOOD) && isFloodGroupReady(packet.sendThrough())) {
+                // Logical port. Replicated by the data plane to all switch ports.
+                builder.add(createPiPacketOperation(data, 0, false, FLOOD_MCAST_GROUP_ID));
             } else if (outInst.port().equals(FLOOD)) {
                 // Logical port. Create a packet operation for each switch port.
-                final DeviceService deviceService = handler().get(DeviceService.class);
-                for (Port port : deviceService.getPorts(packet.sendThrough())) {
-                    builder.add(createPiPacketOperation(packet.data(), port.number().toLong(), false));
+                for (PortNumber port : floodPorts(packet.sendThrough())) {
+                    builder.add(createPiPacketOperation(data, port.toLong(), false));
                 }
             } else if (outInst.port().isLogical()) {
                 throw new PiInterpreterException(format(
                         "Output on logical port '%s' not supported", outInst.port()));
             } else {
                 // Send as-is to given port bypassing all switch tables.
-                builder.add(createPiPacketOperation(packet.data(), outInst.port().toLong(), false));
+                builder.add(createPiPacketOperation(data, outInst.port().toLong(), false));
             }
         }
-        return builder.build();
+        final List<PiPacketOperation> operations = builder.build();
+        metrics(packet.sendThrough()).packetOutSent(operations.size(), flood);
+        return operations;
+    }
+
+    private DeviceMetrics metrics(DeviceId deviceId) {
+        DeviceMetrics deviceMetrics = metrics;
+        if (deviceMetrics == null || !deviceMetrics.deviceId().equals(deviceId)) {
+            final PipeconfMetricsService metricsService = handler().get(PipeconfMetricsService.class);
+            deviceMetrics = metricsService == null
+                    ? new DeviceMetrics(deviceId) : metricsService.deviceMetrics(deviceId);
+            metrics = deviceMetrics;
+        }
+        return deviceMetrics;
+    }
+
+    private boolean isFloodGroupReady(DeviceId deviceId) {
+        if (!capabilities.supportsFloodMulticast()) {
+            return false;
+        }
+        final FloodGroupService floodGroupService = handler().get(FloodGroupService.class);
+        return floodGroupService != null && floodGroupService.isFloodGroupReady(deviceId);
+    }
+
+    /* Enabled ports of the device but the CPU one, cached by the port
+       inventory when available */
+    private Collection<PortNumber> floodPorts(DeviceId deviceId) {
+        final PortNumber cpuPort = capabilities.cpuPort()
+                .map(PortNumber::portNumber).orElse(null);
+        final PortInventoryService portInventory = handler().get(PortInventoryService.class);
+        if (portInventory != null) {
+            return portInventory.floodPorts(deviceId, cpuPort);
+        }
+        final DeviceService deviceService = handler().get(DeviceService.class);
+        final List<PortNumber> ports = new ArrayList<>();
+        for (Port port : deviceService.getPorts(deviceId)) {
+            if (port.isEnabled() && !port.number().equals(cpuPort)) {
+                ports.add(port.number());
+            }
+        }
+        return ports;
     }
 
     @Override
     public InboundPacket mapInboundPacket(PiPacketOperation packetIn, DeviceId deviceId) throws PiInterpreterException {
         // Assuming that the packet is ethernet, which is fine since fabric.p4
-        // can deparse only ethernet packets.
-        Ethernet ethPkt;
-        try {
-            ethPkt = Ethernet.deserializer().deserialize(packetIn.data().asArray(), 0,
-                                                         packetIn.data().size());
-        } catch (DeserializationException dex) {
-            throw new PiInterpreterException(dex.getMessage());
+        // can deparse only ethernet packets. Frames too short to be ethernet
+        // are rejected before looking at the metadata.
+        if (packetIn.data().size() < Ethernet.ETHERNET_HEADER_LENGTH) {
+            throw new PiInterpreterException(format(
+                    "Truncated packet-in received from '%s': %s", deviceId, packetIn));
         }
 
         // Returns the ingress port packet metadata.
-        Optional<PiPacketMetadata> packetMetadata = packetIn.metadatas()
-                .stream().filter(m -> m.id().equals(P4InfoConstants.INGRESS_PORT))
-                .findFirst();
+        PiPacketMetadata packetMetadata = null;
+        for (PiPacketMetadata metadata : packetIn.metadatas()) {
+            if (metadata.id().equals(P4InfoConstants.INGRESS_PORT)) {
+                packetMetadata = metadata;
+                break;
+            }
+        }
 
-        if (packetMetadata.isPresent()) {
+        if (packetMetadata != null) {
             try {
-                ImmutableByteSequence portByteSequence = packetMetadata.get()
+                ImmutableByteSequence portByteSequence = packetMetadata
                         .value().fit(P4InfoConstants.INGRESS_PORT_BITWIDTH);
                 UnsignedInteger ui =
                     UnsignedInteger.fromIntBits(portByteSequence.asReadOnlyBuffer().getInt());
@@ -228,8 +283,12 @@ public class BasicInterpreter extends AbstractBasicHandlerBehavior
                 if (!receivedFrom.port().hasName()) {
                     receivedFrom = translateSwitchPort(receivedFrom);
                 }
-                ByteBuffer rawData = ByteBuffer.wrap(packetIn.data().asArray());
-                return new DefaultInboundPacket(receivedFrom, ethPkt, rawData);
+                final InboundPacket packet = BasicInboundPacket.of(receivedFrom, packetIn.data());
+                metrics(deviceId).packetInReceived();
+                return packet;
+            } catch (DeserializationException e) {
+                throw new PiInterpreterException(format(
+                        "Malformed frame in packet-in received from '%s': %s", deviceId, e.getMessage()));
             } catch (ImmutableByteSequence.ByteSequenceTrimException e) {
                 throw new PiInterpreterException(format(
                         "Malformed metadata '%s' in packet-in received from '%s': %s",
@@ -256,8 +315,12 @@ public class BasicInterpreter extends AbstractBasicHandlerBehavior
     }
 
     /* Connect point generated using sb metadata does not have port name
-       we use the device service as translation service */
+       we use the port inventory, or the device service, as translation service */
     private ConnectPoint translateSwitchPort(ConnectPoint connectPoint) {
+        final PortInventoryService portInventory = handler().get(PortInventoryService.class);
+        if (portInventory != null) {
+            return portInventory.namedConnectPoint(connectPoint);
+        }
         final DeviceService deviceService = handler().get(DeviceService.class);
         if (deviceService == null) {
             log.warn("Unable to translate switch port due to DeviceService not available");
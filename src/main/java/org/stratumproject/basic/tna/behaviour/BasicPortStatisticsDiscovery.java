@@ -0,0 +1,39 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onosproject.net.device.PortStatistics;
+import org.onosproject.net.device.PortStatisticsDiscovery;
+import org.onosproject.net.driver.AbstractHandlerBehaviour;
+import org.onosproject.net.driver.Driver;
+import org.stratumproject.basic.tna.stats.PortStatsService;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * PortStatisticsDiscovery reporting the port counters of the pipeline, from
+ * the last bulk sample of PortStatsService. Devices not sampled, e.g.,
+ * because polling is disabled, are served by the behaviour of the device
+ * driver the pipeconf was merged with, e.g., reading gNMI counters.
+ */
+public class BasicPortStatisticsDiscovery extends AbstractHandlerBehaviour
+        implements PortStatisticsDiscovery {
+
+    @Override
+    public Collection<PortStatistics> discoverPortStatistics() {
+        final Collection<PortStatistics> stats = handler().get(PortStatsService.class)
+                .portStatistics(data().deviceId());
+        if (!stats.isEmpty()) {
+            return stats;
+        }
+        for (Driver parent : handler().driver().parents()) {
+            if (parent.hasBehaviour(PortStatisticsDiscovery.class)) {
+                return parent.createBehaviour(handler(), PortStatisticsDiscovery.class)
+                        .discoverPortStatistics();
+            }
+        }
+        return Collections.emptyList();
+    }
+}
@@ -34,11 +34,15 @@ final class BasicTreatmentInterpreter {
             ImmutableMap.<PiTableId, PiActionId>builder()
                     .put(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0,
                             P4InfoConstants.BASIC_INGRESS_TABLE0_SET_OUTPUT)
+                    .put(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT,
+                            P4InfoConstants.BASIC_INGRESS_TABLE0_SET_OUTPUT_EXACT)
                     .build();
     private static final ImmutableMap<PiTableId, PiActionId> DROP_ACTIONS =
             ImmutableMap.<PiTableId, PiActionId>builder()
                     .put(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0,
                             P4InfoConstants.BASIC_INGRESS_TABLE0_DROP)
+                    .put(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT,
+                            P4InfoConstants.BASIC_INGRESS_TABLE0_DROP_EXACT)
                     .build();
 
     BasicTreatmentInterpreter(BasicCapabilities capabilities) {
@@ -84,6 +88,7 @@ final class BasicTreatmentInterpreter {
     }
 
     private static boolean isOutput(TrafficTreatment treatment) {
-        return treatment.allInstructions().get(0).type().equals(OUTPUT);
+        return treatment.allInstructions().size() == 1
+                && treatment.allInstructions().get(0).type().equals(OUTPUT);
     }
 }
@@ -0,0 +1,33 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onosproject.net.driver.HandlerBehaviour;
+import org.onosproject.net.pi.model.PiCounterId;
+import org.onosproject.net.pi.runtime.PiCounterCell;
+import org.onosproject.net.pi.runtime.PiCounterCellId;
+
+import java.util.Collection;
+
+/**
+ * Behaviour reading the cells of indirect counters in bulk.
+ */
+public interface CounterReader extends HandlerBehaviour {
+
+    /**
+     * Reads all the cells of the given counters, with a single read request.
+     *
+     * @param counterIds counter IDs
+     * @return counter cells, empty if the device cannot be read
+     */
+    Collection<PiCounterCell> readCounters(Collection<PiCounterId> counterIds);
+
+    /**
+     * Reads the given counter cells, with a single read request.
+     *
+     * @param cellIds counter cell IDs
+     * @return counter cells, empty if the device cannot be read
+     */
+    Collection<PiCounterCell> readCounterCells(Collection<PiCounterCellId> cellIds);
+}
@@ -0,0 +1,25 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour;
+
+import org.onosproject.net.driver.HandlerBehaviour;
+import org.onosproject.net.pi.model.PiTableId;
+import org.onosproject.net.pi.runtime.PiCounterCell;
+
+import java.util.Collection;
+
+/**
+ * Behaviour reading the direct counters of tables in bulk.
+ */
+public interface DirectCounterReader extends HandlerBehaviour {
+
+    /**
+     * Reads the direct counter cells of all the entries of the given tables,
+     * with a single read request.
+     *
+     * @param tableIds table IDs
+     * @return counter cells, empty if the device cannot be read
+     */
+    Collection<PiCounterCell> readDirectCounters(Collection<PiTableId> tableIds);
+}
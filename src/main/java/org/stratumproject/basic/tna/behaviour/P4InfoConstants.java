@@ -7,8 +7,10 @@ package org.stratumproject.basic.tna.behaviour;
 
 import org.onosproject.net.pi.model.PiActionId;
 import org.onosproject.net.pi.model.PiActionParamId;
+import org.onosproject.net.pi.model.PiCounterId;
 import org.onosproject.net.pi.model.PiPacketMetadataId;
 import org.onosproject.net.pi.model.PiMatchFieldId;
+import org.onosproject.net.pi.model.PiMeterId;
 import org.onosproject.net.pi.model.PiTableId;
 /**
  * P4Info constants.
@@ -40,30 +42,76 @@ public final class P4InfoConstants {
             PiMatchFieldId.of("l4_dport");
     public static final PiMatchFieldId HDR_L4_SPORT =
             PiMatchFieldId.of("l4_sport");
+    public static final PiMatchFieldId HDR_STATS_FLOW_ID =
+            PiMatchFieldId.of("stats_flow_id");
+    // Table IDs
     public static final PiTableId BASIC_EGRESS_STATS_FLOWS =
             PiTableId.of("BasicEgress.stats.flows");
     public static final PiTableId BASIC_INGRESS_TABLE0_TABLE0 =
             PiTableId.of("BasicIngress.table0.table0");
+    public static final PiTableId BASIC_INGRESS_TABLE0_TABLE0_EXACT =
+            PiTableId.of("BasicIngress.table0.table0_exact");
     // Indirect Counter IDs
+    public static final PiCounterId BASIC_INGRESS_PORT_COUNTERS_EGRESS_EGRESS_PORT_COUNTER =
+            PiCounterId.of("BasicIngress.port_counters_egress.egress_port_counter");
+    public static final PiCounterId BASIC_INGRESS_PORT_COUNTERS_INGRESS_INGRESS_PORT_COUNTER =
+            PiCounterId.of("BasicIngress.port_counters_ingress.ingress_port_counter");
+    public static final PiCounterId BASIC_INGRESS_TABLE0_CPU_METER_DROPS =
+            PiCounterId.of("BasicIngress.table0.cpu_meter_drops");
+    // Direct Counter IDs
+    public static final PiCounterId BASIC_EGRESS_STATS_FLOW_COUNTER =
+            PiCounterId.of("BasicEgress.stats.flow_counter");
+    public static final PiCounterId BASIC_INGRESS_TABLE0_TABLE0_COUNTER =
+            PiCounterId.of("BasicIngress.table0.table0_counter");
+    public static final PiCounterId BASIC_INGRESS_TABLE0_TABLE0_EXACT_COUNTER =
+            PiCounterId.of("BasicIngress.table0.table0_exact_counter");
+    // Action IDs
+    public static final PiActionId BASIC_EGRESS_STATS_COUNT =
+            PiActionId.of("BasicEgress.stats.count");
     public static final PiActionId BASIC_INGRESS_TABLE0_COPY_TO_CPU =
-            PiActionId.of("BasicIngress.table0.copy_to_cpu");;
+            PiActionId.of("BasicIngress.table0.copy_to_cpu");
+    public static final PiActionId BASIC_INGRESS_TABLE0_COPY_TO_CPU_EXACT =
+            PiActionId.of("BasicIngress.table0.copy_to_cpu_exact");
+    public static final PiActionId BASIC_INGRESS_TABLE0_COPY_TO_CPU_METERED =
+            PiActionId.of("BasicIngress.table0.copy_to_cpu_metered");
     public static final PiActionId BASIC_INGRESS_TABLE0_DROP =
             PiActionId.of("BasicIngress.table0.drop");
+    public static final PiActionId BASIC_INGRESS_TABLE0_DROP_EXACT =
+            PiActionId.of("BasicIngress.table0.drop_exact");
+    public static final PiActionId BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_COUNT =
+            PiActionId.of("BasicIngress.table0.set_egress_port_count");
+    public static final PiActionId BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_SAMPLED =
+            PiActionId.of("BasicIngress.table0.set_egress_port_sampled");
     public static final PiActionId BASIC_INGRESS_TABLE0_SET_OUTPUT =
             PiActionId.of("BasicIngress.table0.set_egress_port");
+    public static final PiActionId BASIC_INGRESS_TABLE0_SET_OUTPUT_EXACT =
+            PiActionId.of("BasicIngress.table0.set_egress_port_exact");
     public static final PiActionId NOP = PiActionId.of("nop");
     // Action Param IDs
     public static final PiActionParamId CPU_PORT =
             PiActionParamId.of("cpu_port");
+    public static final PiActionParamId METER_INDEX =
+            PiActionParamId.of("meter_index");
     public static final PiActionParamId PORT_NUM =
             PiActionParamId.of("port_num");
+    public static final PiActionParamId SAMPLE_THRESHOLD =
+            PiActionParamId.of("sample_threshold");
+    public static final PiActionParamId STATS_FLOW_ID =
+            PiActionParamId.of("stats_flow_id");
+    // Packet Metadata IDs
     public static final PiPacketMetadataId EGRESS_PORT =
             PiPacketMetadataId.of("egress_port");
     public static final int EGRESS_PORT_BITWIDTH = 32;
     public static final PiPacketMetadataId INGRESS_PORT =
             PiPacketMetadataId.of("ingress_port");
     public static final int INGRESS_PORT_BITWIDTH = 32;
+    public static final PiPacketMetadataId MCAST_GRP =
+            PiPacketMetadataId.of("mcast_grp");
+    public static final int MCAST_GRP_BITWIDTH = 16;
     public static final PiPacketMetadataId PAD0 = PiPacketMetadataId.of("pad0");
     public static final int PAD0_BITWIDTH = 7;
+    // Meter IDs
+    public static final PiMeterId BASIC_INGRESS_TABLE0_CPU_METER =
+            PiMeterId.of("BasicIngress.table0.cpu_meter");
 
 }
@@ -0,0 +1,102 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour;
+
+import com.google.common.collect.ImmutableList;
+import org.onlab.util.ImmutableByteSequence;
+import org.onosproject.net.pi.model.PiPipelineInterpreter.PiInterpreterException;
+import org.onosproject.net.pi.runtime.PiPacketMetadata;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.lang.String.format;
+import static org.onlab.util.ImmutableByteSequence.copyFrom;
+
+/**
+ * Metadata of the packet-out header. Metadata of packets sent to a single
+ * port depend only on the port number, they are built once per port and
+ * shared by all devices and packets.
+ */
+final class PacketOutMetadata {
+
+    // Multicast group of packet-outs sent to a single port.
+    static final int NO_MCAST_GROUP = 0;
+
+    // Ports with cached metadata, the port ID is 9 bits in both TNA and
+    // v1model. Metadata of other ports are built on demand.
+    private static final int CACHED_PORTS = 512;
+
+    private static final AtomicReferenceArray<Collection<PiPacketMetadata>> UNICAST =
+            new AtomicReferenceArray<>(CACHED_PORTS);
+    private static final AtomicReferenceArray<Collection<PiPacketMetadata>> UNICAST_WITH_MCAST_GRP =
+            new AtomicReferenceArray<>(CACHED_PORTS);
+
+    private PacketOutMetadata() {
+        // Hides constructor.
+    }
+
+    /**
+     * Returns the metadata of a packet-out sent to the given port.
+     *
+     * @param portNumber   egress port
+     * @param withMcastGrp true if the packet-out header has a multicast group
+     * @return packet-out metadata
+     * @throws PiInterpreterException if the port number does not fit the header
+     */
+    static Collection<PiPacketMetadata> unicast(long portNumber, boolean withMcastGrp)
+            throws PiInterpreterException {
+        if (portNumber < 0 || portNumber >= CACHED_PORTS) {
+            return build(portNumber, withMcastGrp, NO_MCAST_GROUP);
+        }
+        final AtomicReferenceArray<Collection<PiPacketMetadata>> cache =
+                withMcastGrp ? UNICAST_WITH_MCAST_GRP : UNICAST;
+        final int index = (int) portNumber;
+        Collection<PiPacketMetadata> metadata = cache.get(index);
+        if (metadata == null) {
+            // Concurrent misses build equal values, either one can be kept.
+            metadata = build(portNumber, withMcastGrp, NO_MCAST_GROUP);
+            cache.set(index, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Builds the metadata of a packet-out.
+     *
+     * @param portNumber   egress port
+     * @param withMcastGrp true if the packet-out header has a multicast group
+     * @param mcastGroup   multicast group, or {@link #NO_MCAST_GROUP}
+     * @return packet-out metadata
+     * @throws PiInterpreterException if the port number does not fit the header
+     */
+    static Collection<PiPacketMetadata> build(long portNumber, boolean withMcastGrp, int mcastGroup)
+            throws PiInterpreterException {
+        try {
+            ImmutableList.Builder<PiPacketMetadata> builder = ImmutableList.builder();
+            builder.add(PiPacketMetadata.builder()
+                    .withId(P4InfoConstants.PAD0)
+                    .withValue(copyFrom(0)
+                            .fit(P4InfoConstants.PAD0_BITWIDTH))
+                    .build());
+            builder.add(PiPacketMetadata.builder()
+                    .withId(P4InfoConstants.EGRESS_PORT)
+                    .withValue(copyFrom(portNumber)
+                            .fit(P4InfoConstants.EGRESS_PORT_BITWIDTH))
+                    .build());
+            if (withMcastGrp) {
+                builder.add(PiPacketMetadata.builder()
+                        .withId(P4InfoConstants.MCAST_GRP)
+                        .withValue(copyFrom(mcastGroup)
+                                .fit(P4InfoConstants.MCAST_GRP_BITWIDTH))
+                        .build());
+            }
+
+            return builder.build();
+        } catch (ImmutableByteSequence.ByteSequenceTrimException e) {
+            throw new PiInterpreterException(format(
+                    "Port number '%d' too big, %s", portNumber, e.getMessage()));
+        }
+    }
+}
@@ -18,6 +18,7 @@ import org.onosproject.net.pi.runtime.PiAction;
 import org.slf4j.Logger;
 import org.stratumproject.basic.tna.behaviour.BasicCapabilities;
 import org.stratumproject.basic.tna.behaviour.BasicInterpreter;
+import org.stratumproject.basic.tna.metrics.DeviceMetrics;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
@@ -34,14 +35,49 @@ abstract class AbstractObjectiveTranslator<T extends Objective> {
     protected final DeviceId deviceId;
 
     private final PiPipelineInterpreter interpreter;
+    private final DeviceMetrics metrics;
 
-    AbstractObjectiveTranslator(DeviceId deviceId, BasicCapabilities capabilities) {
+    AbstractObjectiveTranslator(DeviceId deviceId, BasicCapabilities capabilities,
+                                DeviceMetrics metrics) {
         this.deviceId = checkNotNull(deviceId);
         this.capabilities = checkNotNull(capabilities);
+        this.metrics = checkNotNull(metrics);
         this.interpreter = new BasicInterpreter(capabilities);
     }
 
+    /**
+     * Translates the given objective, recording the outcome and latency of
+     * the translation in the device metrics.
+     *
+     * @param obj objective
+     * @return translation result
+     */
     public ObjectiveTranslation translate(T obj) {
+        final long startNanos = System.nanoTime();
+        final ObjectiveTranslation result = lookupOrTranslate(obj);
+        metrics.objectiveTranslated(result.error().isEmpty(), System.nanoTime() - startNanos);
+        return result;
+    }
+
+    /**
+     * Returns the translation of the given objective. Sub-classes may
+     * override this method to serve previously computed translations.
+     *
+     * @param obj objective
+     * @return translation result
+     */
+    ObjectiveTranslation lookupOrTranslate(T obj) {
+        return translateUncached(obj);
+    }
+
+    /**
+     * Translates the given objective, turning translation exceptions into
+     * error results.
+     *
+     * @param obj objective
+     * @return translation result
+     */
+    final ObjectiveTranslation translateUncached(T obj) {
         try {
             return doTranslate(obj);
         } catch (BasicPipelinerException e) {
@@ -63,15 +99,21 @@ abstract class AbstractObjectiveTranslator<T extends Objective> {
     public FlowRule flowRule(T obj, PiTableId tableId, TrafficSelector selector,
                              TrafficTreatment treatment, Integer priority)
             throws BasicPipelinerException {
-        return DefaultFlowRule.builder()
+        final FlowRule.Builder rule = DefaultFlowRule.builder()
                 .withSelector(selector)
                 .withTreatment(mapTreatmentToPiIfNeeded(treatment, tableId))
                 .forTable(tableId)
-                .makePermanent()
                 .withPriority(priority)
                 .forDevice(deviceId)
-                .fromApp(obj.appId())
-                .build();
+                .fromApp(obj.appId());
+        // The idle timeout of temporary objectives is written as the TTL of
+        // the entry, for tables supporting aging.
+        if (obj.permanent()) {
+            rule.makePermanent();
+        } else {
+            rule.makeTemporary(obj.timeout());
+        }
+        return rule.build();
     }
 
     TrafficTreatment mapTreatmentToPiIfNeeded(TrafficTreatment treatment, PiTableId tableId)
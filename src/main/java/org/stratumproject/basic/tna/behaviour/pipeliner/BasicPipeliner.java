@@ -4,7 +4,7 @@
 package org.stratumproject.basic.tna.behaviour.pipeliner;
 
 import com.google.common.collect.ImmutableList;
-import org.onlab.util.SharedExecutors;
+import com.google.common.collect.ImmutableMap;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.net.DeviceId;
@@ -12,8 +12,15 @@ import org.onosproject.net.PortNumber;
 import org.onosproject.net.behaviour.NextGroup;
 import org.onosproject.net.behaviour.Pipeliner;
 import org.onosproject.net.behaviour.PipelinerContext;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
 import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRuleOperation;
 import org.onosproject.net.flow.FlowRuleOperations;
+import org.onosproject.net.flow.FlowRuleOperationsContext;
+import org.onosproject.net.flow.FlowRuleEvent;
+import org.onosproject.net.flow.FlowRuleListener;
 import org.onosproject.net.flow.FlowRuleService;
 import org.onosproject.net.flowobjective.FilteringObjective;
 import org.onosproject.net.flowobjective.FlowObjectiveStore;
@@ -23,22 +30,55 @@ import org.onosproject.net.flowobjective.NextObjective;
 import org.onosproject.net.flowobjective.NextTreatment;
 import org.onosproject.net.flowobjective.Objective;
 import org.onosproject.net.flowobjective.ObjectiveError;
+import org.onosproject.net.group.DefaultGroupBucket;
+import org.onosproject.net.group.DefaultGroupDescription;
+import org.onosproject.net.group.DefaultGroupKey;
+import org.onosproject.net.group.GroupBucket;
+import org.onosproject.net.group.GroupBuckets;
 import org.onosproject.net.group.GroupDescription;
+import org.onosproject.net.group.GroupKey;
 import org.onosproject.net.group.GroupService;
+import org.onosproject.net.meter.MeterService;
+import org.onosproject.net.pi.model.PiTableId;
 import org.slf4j.Logger;
 import org.stratumproject.basic.tna.Constants;
+import org.stratumproject.basic.tna.PipeconfSettings;
 import org.stratumproject.basic.tna.behaviour.AbstractBasicHandlerBehavior;
 import org.stratumproject.basic.tna.behaviour.BasicCapabilities;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+import org.stratumproject.basic.tna.metrics.DeviceMetrics;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsService;
+import org.stratumproject.basic.tna.metrics.TableOccupancy;
+import org.stratumproject.basic.tna.ports.FloodGroupService;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_IN_FLIGHT_WINDOW_DEFAULT;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.OBJECTIVE_LANE_QUEUE_SIZE_DEFAULT;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.stratumproject.basic.tna.behaviour.BasicUtils.KRYO;
 
@@ -54,6 +94,22 @@ public class BasicPipeliner extends AbstractBasicHandlerBehavior
 
     private static final Logger log = getLogger(BasicPipeliner.class);
     private static final int DEFAULT_FLOW_PRIORITY = 100;
+    // Time a write can be parked waiting for a slot in the in-flight window
+    // before its objectives are failed.
+    private static final long IN_FLIGHT_TIMEOUT_SECONDS = 10;
+    // Idle time after which the threads of a device lane are released.
+    private static final long LANE_KEEP_ALIVE_SECONDS = 60;
+    // Additions of an objective are written before its removals, so that
+    // aggregated entries are replaced without a gap.
+    private static final boolean[] WRITE_ORDER = {false, true};
+    // Largest stats flow ID, set by table0 in a 16-bit field.
+    private static final int MAX_STATS_FLOW_ID = 0xFFFF;
+    private static final GroupKey CLONE_TO_CPU_GROUP_KEY =
+            new DefaultGroupKey(KRYO.serialize(ForwardingObjectiveTranslator.CLONE_TO_CPU_ID));
+    // Expiry listener of each device. A new pipeliner is created every time
+    // a device is initialized, the listener of the previous one is removed.
+    private static final ConcurrentMap<DeviceId, ExpiryListenerRegistration> EXPIRY_LISTENERS =
+            new ConcurrentHashMap<>();
 
     protected DeviceId deviceId;
     protected ApplicationId appId;
@@ -61,8 +117,40 @@ public class BasicPipeliner extends AbstractBasicHandlerBehavior
     protected GroupService groupService;
     protected FlowObjectiveStore flowObjectiveStore;
     protected CoreService coreService;
+    protected PipeconfSettings settings;
     private ForwardingObjectiveTranslator forwardingTranslator;
-    private final ExecutorService callbackExecutor = SharedExecutors.getPoolThreadExecutor();
+    private ObjectiveBatcher batcher;
+    private InFlightWindow<InFlightWrite> inFlightWindow;
+    private DeviceMetrics metrics;
+    // Occupancy of the tables with a declared size, checked before writing.
+    private Map<PiTableId, TableOccupancy> tables;
+    // Entries of table0 merged by the ternary rule aggregation, rebuilt from
+    // the installed entries on init.
+    private TernaryAggregator aggregator;
+    // Entries of table0 installed on the device, to detect shadowed rules,
+    // or null if disabled. Skipped rules are lost on re-init, as the tables.
+    private ShadowIndex shadowIndex;
+    // Entries of table0 also counted at egress, or null if the pipeline does
+    // not have the egress flow stats table.
+    private EgressFlowStats egressStats;
+    // Entries of table0 and of the exact table before it, to keep out of the
+    // exact table the flow rules overlapping an entry of table0 with a higher
+    // priority, or null if the pipeline does not have the exact table.
+    private ExactTableRouter exactRouter;
+    // Serial lane translating and writing the objectives of this device, so
+    // that ordering is kept per device while devices proceed in parallel.
+    private ThreadPoolExecutor lane;
+    // Serial executor of the objective context callbacks of this device, kept
+    // apart from the lane so that slow callbacks do not delay writes.
+    private ThreadPoolExecutor callbackExecutor;
+    // Entries of table0 removed because their idle timeout expired, released
+    // in batches by the lane.
+    private final Queue<FlowRule> expired = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean releaseScheduled = new AtomicBoolean();
+    private final FlowRuleListener expiryListener = new InternalFlowRuleListener();
+    // Temporary entries of table0 removed by this pipeliner, whose removal
+    // is not an expiry.
+    private final Set<FlowId> removing = ConcurrentHashMap.newKeySet();
 
     /**
      * Creates a new instance of this behavior with the given capabilities.
@@ -84,12 +172,92 @@ public class BasicPipeliner extends AbstractBasicHandlerBehavior
     @Override
     public void init(DeviceId deviceId, PipelinerContext context) {
         this.deviceId = deviceId;
+        this.coreService = context.directory().get(CoreService.class);
+        this.settings = context.directory().get(PipeconfSettings.class);
         this.flowRuleService = context.directory().get(FlowRuleService.class);
         this.groupService = context.directory().get(GroupService.class);
         this.flowObjectiveStore = context.directory().get(FlowObjectiveStore.class);
-        this.forwardingTranslator = new ForwardingObjectiveTranslator(deviceId, capabilities);
-        this.coreService = context.directory().get(CoreService.class);
+        final PipeconfMetricsService metricsService =
+                context.directory().get(PipeconfMetricsService.class);
+        this.metrics = metricsService == null
+                ? new DeviceMetrics(deviceId) : metricsService.deviceMetrics(deviceId);
+        final ForwardingObjectiveTranslator.Builder translator = ForwardingObjectiveTranslator
+                .builder(deviceId, capabilities)
+                .metrics(metrics)
+                .meterService(context.directory().get(MeterService.class));
+        if (settings != null) {
+            translator.cloneSampleRate(settings::cloneToCpuSampleRate);
+        }
+        this.forwardingTranslator = translator.build();
+        this.tables = trackTables();
+        this.aggregator = indexAggregated();
+        this.shadowIndex = settings != null && settings.shadowedRuleDetection()
+                ? indexTable0() : null;
+        this.egressStats = indexEgressStats();
+        this.exactRouter = indexExact();
+        // As many parked writes as objectives queued on the lane.
+        final int laneQueueSize = settings == null
+                ? OBJECTIVE_LANE_QUEUE_SIZE_DEFAULT : settings.objectiveLaneQueueSize();
+        this.inFlightWindow = new InFlightWindow<>(
+                settings == null ? OBJECTIVE_IN_FLIGHT_WINDOW_DEFAULT : settings.objectiveInFlightWindow(),
+                laneQueueSize, SECONDS.toNanos(IN_FLIGHT_TIMEOUT_SECONDS), this::startWrite, this::expireWrite);
+        if (this.lane != null) {
+            // Let objectives already accepted by the previous lane drain.
+            this.lane.shutdown();
+            this.callbackExecutor.shutdown();
+        }
+        this.lane = serialExecutor(new ArrayBlockingQueue<>(laneQueueSize), "lane-%d");
+        this.callbackExecutor = serialExecutor(new LinkedBlockingQueue<>(), "callback-%d");
+        this.batcher = new ObjectiveBatcher(this::applyBatch, this::rejectBatch, lane);
         this.appId = coreService.getAppId(Constants.APP_NAME);
+        initFloodGroup(context);
+        initCloneSession();
+        // Only needed when there is state to release for expired entries.
+        listenForExpiry(!tables.isEmpty() || shadowIndex != null || egressStats != null
+                || exactRouter != null);
+    }
+
+    private void listenForExpiry(boolean enabled) {
+        final ExpiryListenerRegistration registration = new ExpiryListenerRegistration(
+                flowRuleService, expiryListener);
+        final ExpiryListenerRegistration previous = enabled
+                ? EXPIRY_LISTENERS.put(deviceId, registration) : EXPIRY_LISTENERS.remove(deviceId);
+        if (previous != null) {
+            previous.flowRuleService.removeListener(previous.listener);
+        }
+        if (enabled) {
+            flowRuleService.addListener(expiryListener);
+        }
+    }
+
+    // Clone session of the packets sampled to the controller by table0,
+    // programmed as a CLONE group with the CPU port as the only bucket.
+    private void initCloneSession() {
+        if (!capabilities.supportsCloneToCpu() || capabilities.cpuPort().isEmpty()
+                || groupService.getGroup(deviceId, CLONE_TO_CPU_GROUP_KEY) != null) {
+            return;
+        }
+        final GroupBucket bucket = DefaultGroupBucket.createCloneGroupBucket(
+                DefaultTrafficTreatment.builder()
+                        .setOutput(PortNumber.portNumber(capabilities.cpuPort().get()))
+                        .build());
+        groupService.addGroup(new DefaultGroupDescription(
+                deviceId, GroupDescription.Type.CLONE, new GroupBuckets(List.of(bucket)),
+                CLONE_TO_CPU_GROUP_KEY, ForwardingObjectiveTranslator.CLONE_TO_CPU_ID, appId));
+    }
+
+    private void initFloodGroup(PipelinerContext context) {
+        if (!capabilities.supportsFloodMulticast()) {
+            return;
+        }
+        final FloodGroupService floodGroupService = context.directory().get(FloodGroupService.class);
+        if (floodGroupService == null) {
+            log.warn("FloodGroupService not available, flooding on {} will use a packet-out per port",
+                     deviceId);
+            return;
+        }
+        capabilities.cpuPort().ifPresent(cpuPort -> floodGroupService.enableFloodGroup(
+                deviceId, appId, PortNumber.portNumber(cpuPort)));
     }
 
     @Override
@@ -98,8 +266,13 @@ public class BasicPipeliner extends AbstractBasicHandlerBehavior
 
     @Override
     public void forward(ForwardingObjective obj) {
-        final ObjectiveTranslation result = forwardingTranslator.translate(obj);
-        handleResult(obj, result);
+        try {
+            lane.execute(() -> handleResult(obj, forwardingTranslator.translate(obj)));
+        } catch (RejectedExecutionException e) {
+            log.warn("Objective queue of {} is full, rejecting objective {}",
+                     deviceId, obj.id());
+            fail(obj, ObjectiveError.INSTALLATIONTHRESHOLDEXCEEDED);
+        }
     }
 
     @Override
@@ -123,12 +296,31 @@ public class BasicPipeliner extends AbstractBasicHandlerBehavior
             fail(obj, result.error().get());
             return;
         }
-        processFlows(obj, result.flowRules());
-        success(obj);
+        processFlows(obj, route(obj, result.flowRules()));
+    }
+
+    /**
+     * Returns the given flow rules, with the ones of the exact table written
+     * to table0 instead if an entry of table0 with a higher priority overlaps
+     * them, as the exact table is applied first.
+     *
+     * @param objective objective the flow rules are translated from
+     * @param flowRules flow rules
+     * @return flow rules to write
+     */
+    private Collection<FlowRule> route(Objective objective, Collection<FlowRule> flowRules) {
+        if (exactRouter == null) {
+            return flowRules;
+        }
+        final boolean remove = PendingObjective.isRemove(objective);
+        return flowRules.stream()
+                .map(rule -> exactRouter.route(rule, objective.appId(), remove))
+                .collect(Collectors.toList());
     }
 
     private void processFlows(Objective objective, Collection<FlowRule> flowRules) {
         if (flowRules.isEmpty()) {
+            success(objective);
             return;
         }
 
@@ -136,25 +328,541 @@ public class BasicPipeliner extends AbstractBasicHandlerBehavior
             log.trace("Objective {} -> Flows {}", objective, flowRules);
         }
 
-        final FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
         switch (objective.op()) {
             case ADD:
             case ADD_TO_EXISTING:
             case MODIFY:
-                flowRules.forEach(ops::add);
-                break;
             case REMOVE:
             case REMOVE_FROM_EXISTING:
-                flowRules.forEach(ops::remove);
                 break;
             default:
                 log.warn("Unsupported Objective operation {}", objective.op());
+                success(objective);
                 return;
         }
-        flowRuleService.apply(ops.build());
+
+        final boolean remove = PendingObjective.isRemove(objective);
+        final Optional<TernaryAggregator.Update> aggregated = aggregate(objective, flowRules, remove);
+        List<FlowRule> additions;
+        List<FlowRule> removals;
+        if (aggregated.isPresent()) {
+            additions = aggregated.get().additions();
+            removals = aggregated.get().removals();
+        } else {
+            additions = remove ? List.of() : List.copyOf(flowRules);
+            removals = remove ? List.copyOf(flowRules) : List.of();
+        }
+        if (shadowIndex != null) {
+            if (remove && aggregated.isEmpty()) {
+                // Flow rules skipped because covered were never written.
+                removals = removals.stream()
+                        .filter(rule -> !shadowIndex.unskip(rule))
+                        .collect(Collectors.toList());
+            } else if (!remove && skipShadowed(objective, additions, aggregated.isPresent())) {
+                success(objective);
+                return;
+            }
+        }
+        final Optional<EgressFlowStats.Update> counted = aggregated.isEmpty()
+                ? countAtEgress(objective, flowRules, remove) : Optional.empty();
+        if (counted.isPresent()) {
+            additions = counted.get().additions();
+            removals = counted.get().removals();
+        }
+        final Map<FlowRule, FlowRule> displaced = exactRouter == null || remove
+                ? Map.of() : displaced(objective, additions);
+        if (!displaced.isEmpty()) {
+            // Moved to table0 before the removal from the exact table.
+            additions = ImmutableList.<FlowRule>builder().addAll(additions).addAll(displaced.values()).build();
+            removals = ImmutableList.<FlowRule>builder().addAll(removals).addAll(displaced.keySet()).build();
+        }
+        final Optional<Map<TableOccupancy, Set<FlowId>>> reserved = reserve(objective, additions);
+        if (reserved.isEmpty()) {
+            // Failed as if rejected by the device. INSTALLATIONTHRESHOLDEXCEEDED
+            // is kept for a full objective queue, which is transient.
+            fail(objective, ObjectiveError.FLOWINSTALLATIONFAILED);
+            return;
+        }
+        aggregated.ifPresent(TernaryAggregator.Update::commit);
+        counted.ifPresent(EgressFlowStats.Update::commit);
+        if (exactRouter != null) {
+            removals.forEach(exactRouter::remove);
+            additions.forEach(rule -> exactRouter.add(rule, objective.appId()));
+        }
+        final PendingObjective pendingObjective = new PendingObjective(
+                objective, additions, removals, reserved.get());
+        if (pendingObjective.isEmpty()) {
+            // E.g., a flow rule already covered by an aggregated entry.
+            success(objective);
+            return;
+        }
+        final int batchSize = settings == null ? 1 : settings.objectiveBatchSize();
+        if (batchSize > 1) {
+            batcher.add(pendingObjective, batchSize, settings.objectiveBatchLingerMs());
+        } else {
+            applyBatch(List.of(pendingObjective));
+        }
+    }
+
+    /**
+     * Returns the update of the aggregated entries of table0 for the given
+     * flow rules, or empty if they are not aggregated.
+     *
+     * @param objective objective the flow rules are translated from
+     * @param flowRules flow rules
+     * @param remove    true if the flow rules are removed
+     * @return update of the aggregated entries
+     */
+    private Optional<TernaryAggregator.Update> aggregate(
+            Objective objective, Collection<FlowRule> flowRules, boolean remove) {
+        if (flowRules.size() != 1) {
+            return Optional.empty();
+        }
+        final FlowRule flowRule = flowRules.iterator().next();
+        if (remove) {
+            // Also when aggregation was disabled since the rule was added.
+            return aggregator.remove(flowRule, objective.appId());
+        }
+        if (settings == null || !settings.ternaryRuleAggregation()) {
+            return Optional.empty();
+        }
+        return aggregator.add(flowRule, objective.appId());
+    }
+
+    /**
+     * Returns the entries of the exact table overlapped by the given flow
+     * rules of table0 with a higher priority, to move to table0.
+     *
+     * @param objective objective the flow rules are translated from
+     * @param additions flow rules to add
+     * @return entries of the exact table, to their equivalent table0 entry
+     */
+    private Map<FlowRule, FlowRule> displaced(Objective objective, List<FlowRule> additions) {
+        final Map<FlowRule, FlowRule> displaced = new LinkedHashMap<>();
+        additions.forEach(rule -> displaced.putAll(exactRouter.displaced(rule)));
+        if (!displaced.isEmpty()) {
+            log.info("Objective {} on {} overlaps {} entries of the exact table, moving them to table0",
+                     objective.id(), deviceId, displaced.size());
+        }
+        return displaced;
+    }
+
+    /**
+     * Returns the update of the entries counting the given flow rules at
+     * egress, or empty if they are not counted.
+     *
+     * @param objective objective the flow rules are translated from
+     * @param flowRules flow rules
+     * @param remove    true if the flow rules are removed
+     * @return update of table0 and of the egress flow stats table
+     */
+    private Optional<EgressFlowStats.Update> countAtEgress(
+            Objective objective, Collection<FlowRule> flowRules, boolean remove) {
+        if (egressStats == null || flowRules.size() != 1) {
+            return Optional.empty();
+        }
+        final FlowRule flowRule = flowRules.iterator().next();
+        if (remove) {
+            // Also when egress stats were disabled since the rule was added.
+            return egressStats.remove(flowRule);
+        }
+        if (settings == null || !settings.egressFlowStats()) {
+            return Optional.empty();
+        }
+        return egressStats.add(flowRule, objective.appId());
+    }
+
+    /**
+     * Checks the flow rules to add against the entries of table0 installed
+     * on the device, and warns about the ones fully covered by an entry of
+     * higher priority, or by one of the same priority and action. When
+     * enabled, the flow rule of a non-aggregated objective is not written if
+     * covered, and is written once the entry covering it is removed.
+     *
+     * @param objective  objective the flow rules are translated from
+     * @param additions  flow rules to add
+     * @param aggregated true if the flow rules are aggregated entries
+     * @return true if the flow rules must not be written
+     */
+    private boolean skipShadowed(Objective objective, List<FlowRule> additions, boolean aggregated) {
+        final boolean skip = !aggregated && additions.size() == 1 && settings.skipShadowedRules();
+        boolean covered = false;
+        for (FlowRule rule : additions) {
+            final Optional<ShadowIndex.Coverage> coverage = skip
+                    ? shadowIndex.skipIfCovered(rule) : shadowIndex.coverage(rule);
+            if (coverage.isEmpty()) {
+                continue;
+            }
+            covered = true;
+            metrics.ruleShadowed();
+            log.warn("Flow rule {} of objective {} on {} is {} entry {} with priority {}{}",
+                     rule.id(), objective.id(), deviceId,
+                     coverage.get().duplicate() ? "a duplicate of" : "shadowed by",
+                     coverage.get().rule().id(), coverage.get().rule().priority(),
+                     skip ? ", skipping it" : "");
+        }
+        return skip && covered;
+    }
+
+    /**
+     * Writes the flow rules that were skipped because covered by an entry
+     * that was just removed. They are written after the removal is
+     * acknowledged, so packets can miss both for the duration of the write.
+     *
+     * @param rules flow rules no longer covered
+     */
+    private void installUncovered(List<FlowRule> rules) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        log.info("Entry covering {} flow rules on {} was removed, writing them", rules.size(), deviceId);
+        flowIdsByTable(rules).forEach(TableOccupancy::add);
+        final FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
+        rules.forEach(ops::add);
+        flowRuleService.apply(ops.build(new FlowRuleOperationsContext() {
+            @Override
+            public void onSuccess(FlowRuleOperations ops) {
+                rules.forEach(shadowIndex::add);
+            }
+
+            @Override
+            public void onError(FlowRuleOperations ops) {
+                log.warn("Unable to write {} flow rules no longer covered on {}", rules.size(), deviceId);
+                flowIdsByTable(rules).forEach(TableOccupancy::remove);
+            }
+        }));
+    }
+
+    private void scheduleReleaseExpired() {
+        if (!releaseScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lane.execute(this::releaseExpired);
+        } catch (RejectedExecutionException e) {
+            // Retried on the next expiry.
+            releaseScheduled.set(false);
+        }
+    }
+
+    /**
+     * Releases the state kept for the entries of table0, or of the exact
+     * table, removed because their idle timeout expired: their slot in the
+     * table occupancy, their entry in the shadow index, writing the flow
+     * rules it covered, their entry in the router of the exact table, and
+     * their egress flow stats entry, removed with one write for the whole
+     * batch.
+     * Entries removed by objectives are not collected, their state being
+     * released once the removal is acknowledged.
+     */
+    private void releaseExpired() {
+        releaseScheduled.set(false);
+        final List<FlowRule> rules = new ArrayList<>();
+        for (FlowRule rule = expired.poll(); rule != null; rule = expired.poll()) {
+            rules.add(rule);
+        }
+        if (rules.isEmpty()) {
+            return;
+        }
+        flowIdsByTable(rules).forEach(TableOccupancy::remove);
+        final FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
+        int egressEntries = 0;
+        for (FlowRule rule : rules) {
+            if (exactRouter != null) {
+                exactRouter.remove(rule);
+            }
+            if (shadowIndex != null) {
+                installUncovered(shadowIndex.remove(rule));
+            }
+            final Optional<EgressFlowStats.Update> update = egressStats == null
+                    ? Optional.empty() : egressStats.remove(rule);
+            if (update.isPresent()) {
+                update.get().removals().stream()
+                        .filter(removal -> !removal.id().equals(rule.id()))
+                        .forEach(ops::remove);
+                update.get().commit();
+                egressEntries++;
+            }
+        }
+        log.debug("Released {} expired entries of table0 on {}", rules.size(), deviceId);
+        if (egressEntries > 0) {
+            flowRuleService.apply(ops.build());
+        }
+    }
+
+    /**
+     * Writes the flow rules of the given objectives to the device. The batch
+     * is split in stages every time it switches between additions and
+     * removals, and stages are written one after the other, so that
+     * operations on the same flow rule are applied in the order objectives
+     * were received. The additions of an objective are written in a stage
+     * before its removals. Objectives are completed only when the device
+     * acknowledges the stages they belong to.
+     * <p>
+     * Each batch occupies a slot of the in-flight window until its last stage
+     * is acknowledged. When the window is full, the batch is parked without
+     * blocking the caller, and written once an earlier batch is acknowledged.
+     *
+     * @param batch translated objectives
+     */
+    private void applyBatch(List<PendingObjective> batch) {
+        final List<Stage> stages = new ArrayList<>();
+        Stage stage = null;
+        for (PendingObjective pending : batch) {
+            for (boolean remove : WRITE_ORDER) {
+                if (pending.flowRules(remove).isEmpty()) {
+                    continue;
+                }
+                if (stage == null || stage.remove != remove) {
+                    stage = new Stage(remove);
+                    stages.add(stage);
+                }
+                stage.objectives.add(pending);
+            }
+        }
+
+        final InFlightWrite write = new InFlightWrite(batch, stages, inFlightWindow);
+        if (!inFlightWindow.submit(write)) {
+            log.warn("Too many writes waiting for the in-flight window of {}, failing {} objectives",
+                     deviceId, batch.size());
+            batch.forEach(pending -> failed(pending, ObjectiveError.INSTALLATIONTHRESHOLDEXCEEDED));
+        }
+    }
+
+    // Batch whose linger timeout expired when the lane could not accept its
+    // flush, e.g., full or shut down by a re-init.
+    private void rejectBatch(List<PendingObjective> batch) {
+        log.warn("Objective queue of {} is full, rejecting {} batched objectives",
+                 deviceId, batch.size());
+        batch.forEach(pending -> failed(pending, ObjectiveError.INSTALLATIONTHRESHOLDEXCEEDED));
+    }
+
+    // Started by the in-flight window, on the caller thread if a slot is
+    // free, or on the thread completing an earlier write.
+    private void startWrite(InFlightWrite write) {
+        metrics.writeSubmitted();
+        write.writeNextStage();
+    }
+
+    private void expireWrite(InFlightWrite write) {
+        log.warn("In-flight window of {} is full since more than {}s, failing {} objectives",
+                 deviceId, IN_FLIGHT_TIMEOUT_SECONDS, write.batch.size());
+        write.batch.forEach(pending -> failed(pending, ObjectiveError.INSTALLATIONTIMEOUT));
+    }
+
+    /**
+     * Starts tracking the occupancy of the tables of the pipeline, accounting
+     * for the entries already in the flow rule store, e.g., written before a
+     * restart or a re-init of this pipeliner.
+     *
+     * @return table occupancy, per table
+     */
+    private Map<PiTableId, TableOccupancy> trackTables() {
+        final Map<PiTableId, TableOccupancy> occupancy = new HashMap<>();
+        capabilities.tableSizes().forEach(
+                (tableId, size) -> occupancy.put(tableId, metrics.trackTable(tableId, size)));
+        if (occupancy.isEmpty()) {
+            return Map.of();
+        }
+        for (FlowEntry entry : installedEntries()) {
+            final TableOccupancy table = occupancy.get(entry.table());
+            if (table != null) {
+                table.add(List.of(entry.id()));
+            }
+        }
+        return ImmutableMap.copyOf(occupancy);
+    }
+
+    /**
+     * Indexes the entries of table0 already in the flow rule store, when the
+     * ternary rule aggregation is enabled, so that removing the flow rules
+     * of objectives aggregated before a restart or a re-init of this
+     * pipeliner updates the entries that replaced them.
+     *
+     * @return aggregator of table0
+     */
+    private TernaryAggregator indexAggregated() {
+        final TernaryAggregator ternaryAggregator = new TernaryAggregator();
+        // When disabled, flow rules may have been skipped as shadowed by an
+        // entry of their group, and removing them must not split it.
+        if (settings != null && settings.ternaryRuleAggregation()) {
+            ternaryAggregator.index(installedEntries(), coreService::getAppId);
+            log.info("Indexed {} entries of table0 on {} for the ternary rule aggregation",
+                     ternaryAggregator.tableEntries(), deviceId);
+        }
+        return ternaryAggregator;
+    }
+
+    /**
+     * Builds the index of the entries of table0 already in the flow rule
+     * store, used to detect shadowed rules.
+     *
+     * @return index of table0
+     */
+    private ShadowIndex indexTable0() {
+        final ShadowIndex index = new ShadowIndex();
+        installedEntries().forEach(index::add);
+        log.info("Indexed {} entries of table0 on {} to detect shadowed rules", index.size(), deviceId);
+        return index;
+    }
+
+    /**
+     * Recovers the stats flow IDs of the entries of table0 already counted at
+     * egress, if the pipeline has the egress flow stats table.
+     *
+     * @return entries counted at egress, or null
+     */
+    private EgressFlowStats indexEgressStats() {
+        final Long size = capabilities.tableSizes().get(P4InfoConstants.BASIC_EGRESS_STATS_FLOWS);
+        if (size == null) {
+            return null;
+        }
+        final EgressFlowStats stats = new EgressFlowStats((int) Math.min(size, MAX_STATS_FLOW_ID));
+        stats.index(installedEntries());
+        log.info("Found {} entries of table0 counted at egress on {}", stats.countedRules(), deviceId);
+        return stats;
+    }
+
+    /**
+     * Indexes the entries of table0 and of the exact table already in the
+     * flow rule store, if the pipeline has the exact table.
+     *
+     * @return router of the exact table, or null
+     */
+    private ExactTableRouter indexExact() {
+        if (capabilities.table0ExactSize().isEmpty()) {
+            return null;
+        }
+        final ExactTableRouter router = new ExactTableRouter();
+        router.index(installedEntries(), coreService::getAppId);
+        log.info("Indexed {} entries of the exact table on {}", router.exactEntries(), deviceId);
+        return router;
+    }
+
+    private List<FlowEntry> installedEntries() {
+        final List<FlowEntry> installed = new ArrayList<>();
+        for (FlowEntry entry : flowRuleService.getFlowEntries(deviceId)) {
+            if (entry.state() == FlowEntry.FlowEntryState.ADDED
+                    || entry.state() == FlowEntry.FlowEntryState.PENDING_ADD) {
+                installed.add(entry);
+            }
+        }
+        return installed;
+    }
+
+    /**
+     * Reserves the entries needed by the given flow rules in the tables they
+     * are written to, in all tables or none.
+     *
+     * @param objective objective the flow rules are translated from
+     * @param flowRules flow rules
+     * @return the reserved flow rule IDs, per table, or empty if a table is
+     * full
+     */
+    private Optional<Map<TableOccupancy, Set<FlowId>>> reserve(
+            Objective objective, Collection<FlowRule> flowRules) {
+        final Map<TableOccupancy, Set<FlowId>> reserved = new HashMap<>();
+        for (Map.Entry<TableOccupancy, List<FlowId>> entry : flowIdsByTable(flowRules).entrySet()) {
+            final TableOccupancy table = entry.getKey();
+            final Optional<Set<FlowId>> added = table.tryAdd(entry.getValue());
+            if (added.isEmpty()) {
+                log.warn("Table {} of {} is full ({}/{} entries), rejecting objective {}",
+                         table.tableId(), deviceId, table.entries(), table.capacity(), objective.id());
+                reserved.forEach(TableOccupancy::remove);
+                return Optional.empty();
+            }
+            reserved.put(table, added.get());
+        }
+        return Optional.of(reserved);
+    }
+
+    private Map<TableOccupancy, List<FlowId>> flowIdsByTable(Collection<FlowRule> flowRules) {
+        return flowRules.stream()
+                .filter(rule -> tables.containsKey(rule.table()))
+                .collect(Collectors.groupingBy(
+                        rule -> tables.get(rule.table()),
+                        Collectors.mapping(FlowRule::id, Collectors.toList())));
+    }
+
+    private ThreadPoolExecutor serialExecutor(BlockingQueue<Runnable> queue, String threadName) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, LANE_KEEP_ALIVE_SECONDS, SECONDS, queue,
+                groupedThreads("basic-tna/pipeliner/" + deviceId, threadName, log));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns the number of objectives queued on the lane of this device.
+     *
+     * @return queued objectives
+     */
+    public int queuedObjectives() {
+        return lane.getQueue().size();
+    }
+
+    /**
+     * Returns a future completed once the tasks queued so far on the lane of
+     * this device, objectives and expired entries, are processed.
+     *
+     * @return future completed when the lane is drained
+     */
+    CompletableFuture<Void> laneDrained() {
+        return CompletableFuture.runAsync(() -> { }, lane);
+    }
+
+    /**
+     * Returns the number of batches waiting for a slot in the in-flight
+     * window.
+     *
+     * @return parked writes
+     */
+    public int parkedWrites() {
+        return inFlightWindow.parked();
+    }
+
+    /**
+     * Returns the number of batches written to the device and not yet
+     * acknowledged.
+     *
+     * @return in-flight writes
+     */
+    public long inFlightWrites() {
+        return metrics.inFlightWrites();
+    }
+
+    private void writeCompleted(PendingObjective pending, boolean remove, boolean success) {
+        if (remove && success) {
+            flowIdsByTable(pending.removals()).forEach(TableOccupancy::remove);
+        } else if (remove) {
+            pending.removals().forEach(rule -> removing.remove(rule.id()));
+        } else if (!success && exactRouter != null) {
+            pending.additions().forEach(exactRouter::remove);
+        }
+        if (success && shadowIndex != null) {
+            if (remove) {
+                pending.removals().forEach(rule -> installUncovered(shadowIndex.remove(rule)));
+            } else {
+                pending.additions().forEach(shadowIndex::add);
+            }
+        }
+        if (!pending.writeCompleted(success)) {
+            return;
+        }
+        if (pending.failed()) {
+            failed(pending, ObjectiveError.FLOWINSTALLATIONFAILED);
+        } else {
+            success(pending.objective());
+        }
+    }
+
+    private void failed(PendingObjective pending, ObjectiveError error) {
+        pending.reserved().forEach(TableOccupancy::remove);
+        fail(pending.objective(), error);
     }
 
     private void fail(Objective objective, ObjectiveError error) {
+        metrics.objectiveFailed(error);
         CompletableFuture.runAsync(
                 () -> objective.context().ifPresent(
                         ctx -> ctx.onError(objective, error)), callbackExecutor);
@@ -162,8 +870,145 @@ public class BasicPipeliner extends AbstractBasicHandlerBehavior
     }
 
     private void success(Objective objective) {
+        metrics.objectiveSucceeded();
         CompletableFuture.runAsync(
                 () -> objective.context().ifPresent(
                         ctx -> ctx.onSuccess(objective)), callbackExecutor);
     }
+
+    /**
+     * Write of a batch of objectives, acting as the flow rule operations
+     * context of each of its stages.
+     */
+    private final class InFlightWrite implements FlowRuleOperationsContext {
+
+        private final List<PendingObjective> batch;
+        private final List<Stage> stages;
+        // The window of the pipeliner init the write was submitted to.
+        private final InFlightWindow<InFlightWrite> window;
+        private long startNanos;
+        private boolean allSucceeded = true;
+        private int current = 0;
+
+        private InFlightWrite(List<PendingObjective> batch, List<Stage> stages,
+                              InFlightWindow<InFlightWrite> window) {
+            this.batch = batch;
+            this.stages = stages;
+            this.window = window;
+        }
+
+        private void writeNextStage() {
+            if (current == 0) {
+                startNanos = System.nanoTime();
+            }
+            final Stage stage = stages.get(current);
+            final FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
+            for (PendingObjective pending : stage.objectives) {
+                if (stage.remove) {
+                    for (FlowRule rule : pending.removals()) {
+                        if (expires(rule)) {
+                            removing.add(rule.id());
+                        }
+                        ops.remove(rule);
+                    }
+                } else {
+                    pending.additions().forEach(ops::add);
+                }
+            }
+            flowRuleService.apply(ops.build(this));
+        }
+
+        @Override
+        public void onSuccess(FlowRuleOperations ops) {
+            final Stage stage = stages.get(current);
+            stage.objectives.forEach(pending -> writeCompleted(pending, stage.remove, true));
+            next();
+        }
+
+        @Override
+        public void onError(FlowRuleOperations ops) {
+            allSucceeded = false;
+            final Set<FlowId> failed = ops.stages().stream()
+                    .flatMap(Set::stream)
+                    .map(FlowRuleOperation::rule)
+                    .map(FlowRule::id)
+                    .collect(Collectors.toSet());
+            final Stage stage = stages.get(current);
+            for (PendingObjective pending : stage.objectives) {
+                // Without details, fail the whole stage.
+                final boolean success = !failed.isEmpty() && pending.flowRules(stage.remove).stream()
+                        .noneMatch(r -> failed.contains(r.id()));
+                writeCompleted(pending, stage.remove, success);
+            }
+            next();
+        }
+
+        private void next() {
+            current++;
+            if (current < stages.size()) {
+                writeNextStage();
+                return;
+            }
+            metrics.writeCompleted(allSucceeded, System.nanoTime() - startNanos);
+            window.release();
+        }
+    }
+
+    /**
+     * Flow rules of a batch written together, either all additions or all
+     * removals.
+     */
+    private static final class Stage {
+
+        private final boolean remove;
+        private final List<PendingObjective> objectives = new ArrayList<>();
+
+        private Stage(boolean remove) {
+            this.remove = remove;
+        }
+    }
+
+    /**
+     * Collects the temporary entries of table0, or of the exact table before
+     * it, of this device removed from the flow rule store other than by this
+     * pipeliner, e.g., by the flow rule manager once their idle timeout
+     * expired. Events do not carry the reason of the removal.
+     */
+    private class InternalFlowRuleListener implements FlowRuleListener {
+
+        @Override
+        public boolean isRelevant(FlowRuleEvent event) {
+            return event.type() == FlowRuleEvent.Type.RULE_REMOVED
+                    && event.subject().deviceId().equals(deviceId)
+                    && expires(event.subject());
+        }
+
+        @Override
+        public void event(FlowRuleEvent event) {
+            if (removing.remove(event.subject().id())) {
+                // Released once the removal was acknowledged.
+                return;
+            }
+            expired.add(event.subject());
+            scheduleReleaseExpired();
+        }
+    }
+
+    // Entries whose removal may be an expiry.
+    private static boolean expires(FlowRule rule) {
+        return !rule.isPermanent()
+                && (rule.table().equals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                || rule.table().equals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT));
+    }
+
+    private static final class ExpiryListenerRegistration {
+
+        private final FlowRuleService flowRuleService;
+        private final FlowRuleListener listener;
+
+        private ExpiryListenerRegistration(FlowRuleService flowRuleService, FlowRuleListener listener) {
+            this.flowRuleService = flowRuleService;
+            this.listener = listener;
+        }
+    }
 }
@@ -0,0 +1,321 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.onlab.util.ImmutableByteSequence;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.PiCriterion;
+import org.onosproject.net.flow.instructions.Instruction;
+import org.onosproject.net.flow.instructions.Instructions.OutputInstruction;
+import org.onosproject.net.flow.instructions.PiInstruction;
+import org.onosproject.net.pi.model.PiActionParamId;
+import org.onosproject.net.pi.model.PiMatchFieldId;
+import org.onosproject.net.pi.runtime.PiAction;
+import org.onosproject.net.pi.runtime.PiActionParam;
+import org.onosproject.net.pi.runtime.PiExactFieldMatch;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.onosproject.net.flow.instructions.Instruction.Type.OUTPUT;
+import static org.onosproject.net.flow.instructions.Instruction.Type.PROTOCOL_INDEPENDENT;
+
+/**
+ * Pairs the table0 entries forwarding to a port with entries of the egress
+ * flow stats table, so that their packets are counted at both ends of the
+ * switch. Each counted flow rule gets a stats flow ID, set by its table0
+ * action and matched at egress together with the output port.
+ * <p>
+ * IDs are allocated in memory and recovered from the entries already in the
+ * flow rule store on init. This class is not thread-safe, it is used by the
+ * lane of a device.
+ */
+final class EgressFlowStats {
+
+    // Never allocated, packets with this ID are not counted at egress.
+    private static final int STATS_FLOW_ID_NONE = 0;
+
+    private final int maxFlows;
+    private final BitSet used = new BitSet();
+    // Counted flow rules of objectives
+    private final Map<FlowId, Counted> counted = new HashMap<>();
+
+    /**
+     * Creates a new instance allocating up to the given number of stats flow
+     * IDs, one per entry of the egress flow stats table.
+     *
+     * @param maxFlows size of the egress flow stats table
+     */
+    EgressFlowStats(int maxFlows) {
+        this.maxFlows = maxFlows;
+    }
+
+    /**
+     * Recovers the stats flow IDs of the given entries already installed on
+     * the device. Entries of other tables, or not counted, are ignored.
+     *
+     * @param entries installed entries
+     */
+    void index(Iterable<? extends FlowRule> entries) {
+        final Map<Integer, FlowRule> egressEntries = new HashMap<>();
+        for (FlowRule entry : entries) {
+            if (P4InfoConstants.BASIC_EGRESS_STATS_FLOWS.equals(entry.table())) {
+                exactMatch(entry, P4InfoConstants.HDR_STATS_FLOW_ID)
+                        .ifPresent(id -> egressEntries.put(id, entry));
+            }
+        }
+        for (FlowRule entry : entries) {
+            final Optional<PiAction> action = countAction(entry);
+            if (action.isEmpty()) {
+                continue;
+            }
+            final int id = paramValue(action.get(), P4InfoConstants.STATS_FLOW_ID);
+            final FlowRule egressEntry = egressEntries.get(id);
+            if (egressEntry != null) {
+                used.set(id);
+                counted.put(entry.id(), new Counted(
+                        id, PortNumber.portNumber(paramValue(action.get(), P4InfoConstants.PORT_NUM)),
+                        egressEntry));
+            }
+        }
+    }
+
+    /**
+     * Computes the entries to write to add the given flow rule, counted at
+     * egress. The returned update must be committed once written.
+     *
+     * @param rule  flow rule of an objective
+     * @param appId application of the objective
+     * @return update of the tables, or empty if the flow rule is not counted,
+     * e.g., not forwarding to a port, or all IDs are allocated, and must be
+     * written as is
+     */
+    Optional<Update> add(FlowRule rule, ApplicationId appId) {
+        final Optional<PortNumber> port = outputPort(rule);
+        if (port.isEmpty()) {
+            return Optional.empty();
+        }
+        final Counted previous = counted.get(rule.id());
+        final int id = previous != null ? previous.statsFlowId : used.nextClearBit(STATS_FLOW_ID_NONE + 1);
+        if (id > maxFlows) {
+            return Optional.empty();
+        }
+        final FlowRule egressEntry = previous != null && previous.port.equals(port.get())
+                ? previous.egressEntry : buildEgressEntry(rule, appId, id, port.get());
+        final Update update = new Update(rule.id(), new Counted(id, port.get(), egressEntry));
+        update.additions.add(buildCountedRule(rule, appId, id, port.get()));
+        update.additions.add(egressEntry);
+        if (previous != null && previous.egressEntry != egressEntry) {
+            // Same match and priority, to another port.
+            update.removals.add(previous.egressEntry);
+        }
+        return Optional.of(update);
+    }
+
+    /**
+     * Computes the entries to write to remove the given flow rule. The
+     * returned update must be committed once written.
+     *
+     * @param rule flow rule of an objective
+     * @return update of the tables, or empty if the flow rule is not counted
+     * and must be removed as is
+     */
+    Optional<Update> remove(FlowRule rule) {
+        final Counted previous = counted.get(rule.id());
+        if (previous == null) {
+            return Optional.empty();
+        }
+        final Update update = new Update(rule.id(), null);
+        update.removals.add(rule);
+        update.removals.add(previous.egressEntry);
+        return Optional.of(update);
+    }
+
+    /**
+     * Returns the number of flow rules counted at egress.
+     *
+     * @return counted flow rules
+     */
+    int countedRules() {
+        return counted.size();
+    }
+
+    private static Optional<PortNumber> outputPort(FlowRule rule) {
+        if (!P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0.equals(rule.table())) {
+            return Optional.empty();
+        }
+        final List<Instruction> instructions = rule.treatment().allInstructions();
+        if (instructions.size() != 1 || !instructions.get(0).type().equals(OUTPUT)) {
+            return Optional.empty();
+        }
+        final PortNumber port = ((OutputInstruction) instructions.get(0)).port();
+        // E.g., CONTROLLER, whose packets do not go through the egress pipe.
+        return port.isLogical() ? Optional.empty() : Optional.of(port);
+    }
+
+    private static Optional<PiAction> countAction(FlowRule rule) {
+        if (!P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0.equals(rule.table())) {
+            return Optional.empty();
+        }
+        for (Instruction instruction : rule.treatment().allInstructions()) {
+            if (instruction.type().equals(PROTOCOL_INDEPENDENT)
+                    && ((PiInstruction) instruction).action() instanceof PiAction) {
+                final PiAction action = (PiAction) ((PiInstruction) instruction).action();
+                if (P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_COUNT.equals(action.id())) {
+                    return Optional.of(action);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<Integer> exactMatch(FlowRule rule, PiMatchFieldId fieldId) {
+        final Criterion criterion = rule.selector().getCriterion(Criterion.Type.PROTOCOL_INDEPENDENT);
+        if (criterion == null) {
+            return Optional.empty();
+        }
+        return ((PiCriterion) criterion).fieldMatch(fieldId)
+                .filter(PiExactFieldMatch.class::isInstance)
+                .map(match -> (int) toLong(((PiExactFieldMatch) match).value()));
+    }
+
+    private static int paramValue(PiAction action, PiActionParamId paramId) {
+        for (PiActionParam param : action.parameters()) {
+            if (param.id().equals(paramId)) {
+                return (int) toLong(param.value());
+            }
+        }
+        return STATS_FLOW_ID_NONE;
+    }
+
+    private static long toLong(ImmutableByteSequence value) {
+        long result = 0;
+        for (byte b : value.asArray()) {
+            result = (result << 8) | (b & 0xFF);
+        }
+        return result;
+    }
+
+    private static FlowRule buildCountedRule(FlowRule rule, ApplicationId appId, int id, PortNumber port) {
+        final PiAction action = PiAction.builder()
+                .withId(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_COUNT)
+                .withParameter(new PiActionParam(P4InfoConstants.PORT_NUM, port.toLong()))
+                .withParameter(new PiActionParam(P4InfoConstants.STATS_FLOW_ID, id))
+                .build();
+        return DefaultFlowRule.builder()
+                .forDevice(rule.deviceId())
+                .forTable(rule.table())
+                .withSelector(rule.selector())
+                .withTreatment(DefaultTrafficTreatment.builder().piTableAction(action).build())
+                .withPriority(rule.priority())
+                .fromApp(appId)
+                .makePermanent()
+                .build();
+    }
+
+    private static FlowRule buildEgressEntry(FlowRule rule, ApplicationId appId, int id, PortNumber port) {
+        final PiCriterion match = PiCriterion.builder()
+                .matchExact(P4InfoConstants.HDR_STATS_FLOW_ID, id)
+                .matchExact(P4InfoConstants.HDR_EG_PORT, port.toLong())
+                .build();
+        final PiAction action = PiAction.builder()
+                .withId(P4InfoConstants.BASIC_EGRESS_STATS_COUNT)
+                .build();
+        return DefaultFlowRule.builder()
+                .forDevice(rule.deviceId())
+                .forTable(P4InfoConstants.BASIC_EGRESS_STATS_FLOWS)
+                .withSelector(DefaultTrafficSelector.builder().matchPi(match).build())
+                .withTreatment(DefaultTrafficTreatment.builder().piTableAction(action).build())
+                .withPriority(rule.priority())
+                .fromApp(appId)
+                .makePermanent()
+                .build();
+    }
+
+    /**
+     * Entries to write for a flow rule counted at egress, and the state to
+     * keep once written.
+     */
+    final class Update {
+
+        private final FlowId flowId;
+        // Null if no longer counted
+        private final Counted next;
+        private final List<FlowRule> additions = new ArrayList<>();
+        private final List<FlowRule> removals = new ArrayList<>();
+
+        private Update(FlowId flowId, Counted next) {
+            this.flowId = flowId;
+            this.next = next;
+        }
+
+        /**
+         * Returns the entries to add, the table0 entry setting the stats flow
+         * ID first.
+         *
+         * @return entries to add
+         */
+        List<FlowRule> additions() {
+            return ImmutableList.copyOf(additions);
+        }
+
+        /**
+         * Returns the entries to remove.
+         *
+         * @return entries to remove
+         */
+        List<FlowRule> removals() {
+            return ImmutableList.copyOf(removals);
+        }
+
+        /**
+         * Applies the update to the state of the flow rules counted at
+         * egress.
+         */
+        void commit() {
+            final Counted previous = next == null ? counted.remove(flowId) : counted.put(flowId, next);
+            if (previous != null && (next == null || previous.statsFlowId != next.statsFlowId)) {
+                used.clear(previous.statsFlowId);
+            }
+            if (next != null) {
+                used.set(next.statsFlowId);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("additions", additions)
+                    .add("removals", removals)
+                    .toString();
+        }
+    }
+
+    private static final class Counted {
+
+        private final int statsFlowId;
+        private final PortNumber port;
+        private final FlowRule egressEntry;
+
+        private Counted(int statsFlowId, PortNumber port, FlowRule egressEntry) {
+            this.statsFlowId = statsFlowId;
+            this.port = port;
+            this.egressEntry = egressEntry;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Router of the flow rules of the exact table applied before table0. The
+ * entries of the exact table take precedence over those of table0,
+ * regardless of their priority, so a flow rule is written to the exact table
+ * only if no entry of table0 with a higher priority matches its packets, and
+ * to table0 otherwise. Entries of the exact table are moved to table0 when
+ * such an entry of table0 is added after them, and stay there.
+ * <p>
+ * Entries of both tables are indexed when their objective is processed,
+ * before the device acknowledges them, so that objectives written in the
+ * same batch see each other. Installed entries are indexed on init, and a
+ * flow rule is removed from the table it is found in. This class is
+ * thread-safe.
+ */
+final class ExactTableRouter {
+
+    // Entries of table0.
+    private final ShadowIndex table0 = new ShadowIndex();
+    // Entries of the exact table, indexed as their equivalent table0 entry.
+    private final ShadowIndex exact = new ShadowIndex();
+    // Entries of the exact table, to their equivalent table0 entry and back.
+    private final Map<FlowId, FlowRule> table0Of = new HashMap<>();
+    private final Map<FlowId, FlowRule> exactOf = new HashMap<>();
+
+    /**
+     * Indexes the given entries already installed on the device. Entries of
+     * other tables are ignored.
+     *
+     * @param entries installed entries
+     * @param appIds  application of an entry, by application ID
+     */
+    synchronized void index(Iterable<? extends FlowRule> entries, Function<Short, ApplicationId> appIds) {
+        for (FlowRule entry : entries) {
+            if (P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0.equals(entry.table())) {
+                table0.add(new DefaultFlowRule(entry));
+            } else if (isExact(entry) && appIds.apply(entry.appId()) != null) {
+                add(new DefaultFlowRule(entry), appIds.apply(entry.appId()));
+            }
+        }
+    }
+
+    /**
+     * Returns the flow rule to write for the given flow rule of an
+     * objective. A flow rule of the exact table is written to table0 if its
+     * equivalent entry is already there, or, when added, if an entry of
+     * table0 with a higher priority matches its packets.
+     *
+     * @param rule   flow rule of an objective
+     * @param appId  application of the objective
+     * @param remove true if the flow rule is removed
+     * @return flow rule to write
+     */
+    synchronized FlowRule route(FlowRule rule, ApplicationId appId, boolean remove) {
+        if (!isExact(rule) || table0Of.containsKey(rule.id())) {
+            return rule;
+        }
+        final FlowRule table0Rule = ForwardingObjectiveTranslator.inTable0(rule, appId);
+        if (table0.contains(table0Rule)) {
+            return table0Rule;
+        }
+        if (!remove && table0.coverage(table0Rule).filter(c -> !c.duplicate()).isPresent()) {
+            return table0Rule;
+        }
+        return rule;
+    }
+
+    /**
+     * Returns the entries of the exact table whose packets are matched by
+     * the given flow rule of table0 with a higher priority, and must be
+     * moved to table0.
+     *
+     * @param rule flow rule added to table0
+     * @return entries of the exact table, to their equivalent table0 entry
+     */
+    synchronized Map<FlowRule, FlowRule> displaced(FlowRule rule) {
+        if (!P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0.equals(rule.table())) {
+            return Map.of();
+        }
+        final Map<FlowRule, FlowRule> displaced = new LinkedHashMap<>();
+        for (FlowRule table0Rule : exact.covered(rule)) {
+            displaced.put(exactOf.get(table0Rule.id()), table0Rule);
+        }
+        return displaced;
+    }
+
+    /**
+     * Indexes a flow rule written to the device.
+     *
+     * @param rule  flow rule
+     * @param appId application of the flow rule
+     */
+    synchronized void add(FlowRule rule, ApplicationId appId) {
+        if (isExact(rule)) {
+            final FlowRule table0Rule = ForwardingObjectiveTranslator.inTable0(rule, appId);
+            table0Of.put(rule.id(), table0Rule);
+            exactOf.put(table0Rule.id(), rule);
+            exact.add(table0Rule);
+        } else {
+            table0.add(rule);
+        }
+    }
+
+    /**
+     * Removes a flow rule removed from the device, or that could not be
+     * written.
+     *
+     * @param rule flow rule
+     */
+    synchronized void remove(FlowRule rule) {
+        if (isExact(rule)) {
+            final FlowRule table0Rule = table0Of.remove(rule.id());
+            if (table0Rule != null) {
+                exactOf.remove(table0Rule.id());
+                exact.remove(table0Rule);
+            }
+        } else {
+            table0.remove(rule);
+        }
+    }
+
+    /**
+     * Returns the number of indexed entries of the exact table.
+     *
+     * @return entries of the exact table
+     */
+    synchronized int exactEntries() {
+        return table0Of.size();
+    }
+
+    private static boolean isExact(FlowRule rule) {
+        return P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT.equals(rule.table());
+    }
+}
@@ -3,22 +3,53 @@
 
 package org.stratumproject.basic.tna.behaviour.pipeliner;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.Ip4Address;
+import org.onosproject.core.ApplicationId;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.EthTypeCriterion;
+import org.onosproject.net.flow.criteria.IPCriterion;
+import org.onosproject.net.flow.criteria.IPProtocolCriterion;
+import org.onosproject.net.flow.instructions.Instruction;
+import org.onosproject.net.flow.instructions.Instructions;
+import org.onosproject.net.flow.instructions.PiInstruction;
 import org.onosproject.net.flowobjective.ForwardingObjective;
 import org.onosproject.net.flowobjective.ObjectiveError;
+import org.onosproject.net.meter.MeterService;
+import org.onosproject.net.pi.model.PiActionId;
+import org.onosproject.net.pi.model.PiTableId;
 import org.onosproject.net.pi.runtime.PiAction;
+import org.onosproject.net.pi.runtime.PiActionParam;
+import org.onosproject.net.pi.runtime.PiMeterCellId;
 import org.stratumproject.basic.tna.behaviour.BasicCapabilities;
 import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+import org.stratumproject.basic.tna.metrics.DeviceMetrics;
 
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
+import static org.stratumproject.basic.tna.OsgiPropertyConstants.CLONE_TO_CPU_SAMPLE_RATE_DEFAULT;
 import static org.stratumproject.basic.tna.behaviour.BasicUtils.outputPort;
 
 /**
@@ -30,6 +61,11 @@ class ForwardingObjectiveTranslator
     //FIXME: Max number supported by PI
     static final int CLONE_TO_CPU_ID = 511;
 
+    static final long DEFAULT_TRANSLATION_CACHE_SIZE = 4096;
+
+    // Range of the random number compared with the sample threshold.
+    private static final int SAMPLE_RANGE = 1 << 16;
+
     private static final Set<Criterion.Type> TABLE0_CRITERIA = ImmutableSet.of(
             Criterion.Type.IN_PORT,
             Criterion.Type.ETH_DST,
@@ -41,10 +77,106 @@ class ForwardingObjectiveTranslator
             Criterion.Type.TCP_SRC,
             Criterion.Type.TCP_DST,
             Criterion.Type.UDP_SRC,
+            Criterion.Type.UDP_DST,
+            Criterion.Type.TCP_SRC_MASKED,
+            Criterion.Type.TCP_DST_MASKED,
+            Criterion.Type.UDP_SRC_MASKED,
+            Criterion.Type.UDP_DST_MASKED);
+
+    // Criteria of the selectors matching all the fields of table0, for TCP
+    // and UDP flows respectively.
+    private static final Set<Criterion.Type> EXACT_TCP_CRITERIA = EnumSet.of(
+            Criterion.Type.IN_PORT,
+            Criterion.Type.ETH_DST,
+            Criterion.Type.ETH_SRC,
+            Criterion.Type.ETH_TYPE,
+            Criterion.Type.IP_PROTO,
+            Criterion.Type.IPV4_SRC,
+            Criterion.Type.IPV4_DST,
+            Criterion.Type.TCP_SRC,
+            Criterion.Type.TCP_DST);
+    private static final Set<Criterion.Type> EXACT_UDP_CRITERIA = EnumSet.of(
+            Criterion.Type.IN_PORT,
+            Criterion.Type.ETH_DST,
+            Criterion.Type.ETH_SRC,
+            Criterion.Type.ETH_TYPE,
+            Criterion.Type.IP_PROTO,
+            Criterion.Type.IPV4_SRC,
+            Criterion.Type.IPV4_DST,
+            Criterion.Type.UDP_SRC,
             Criterion.Type.UDP_DST);
+    // Actions of table0 equivalent to the actions of the exact table, with
+    // the same parameters.
+    private static final Map<PiActionId, PiActionId> TABLE0_ACTIONS = ImmutableMap.of(
+            P4InfoConstants.BASIC_INGRESS_TABLE0_SET_OUTPUT_EXACT, P4InfoConstants.BASIC_INGRESS_TABLE0_SET_OUTPUT,
+            P4InfoConstants.BASIC_INGRESS_TABLE0_COPY_TO_CPU_EXACT, P4InfoConstants.BASIC_INGRESS_TABLE0_COPY_TO_CPU,
+            P4InfoConstants.BASIC_INGRESS_TABLE0_DROP_EXACT, P4InfoConstants.BASIC_INGRESS_TABLE0_DROP);
+
+    // Translations of previously seen objectives, keyed by the objective
+    // fields the translation depends on. Errors are never cached.
+    private final Cache<TranslationKey, ObjectiveTranslation> translationCache;
+    private final MeterService meterService;
+    private final IntSupplier cloneSampleRate;
+
+    private ForwardingObjectiveTranslator(Builder builder) {
+        super(builder.deviceId, builder.capabilities,
+              builder.metrics == null ? new DeviceMetrics(builder.deviceId) : builder.metrics);
+        this.meterService = builder.meterService;
+        this.cloneSampleRate = builder.cloneSampleRate;
+        this.translationCache = CacheBuilder.newBuilder()
+                .maximumSize(builder.cacheSize)
+                .recordStats()
+                .build();
+    }
 
-    ForwardingObjectiveTranslator(DeviceId deviceId, BasicCapabilities capabilities) {
-        super(deviceId, capabilities);
+    /**
+     * Creates a new builder of a translator for the given device.
+     *
+     * @param deviceId     device ID
+     * @param capabilities capabilities
+     * @return the builder
+     */
+    static Builder builder(DeviceId deviceId, BasicCapabilities capabilities) {
+        return new Builder(deviceId, capabilities);
+    }
+
+    @Override
+    ObjectiveTranslation lookupOrTranslate(ForwardingObjective obj) {
+        final int sampleRate = sampleRate();
+        final TranslationKey key = new TranslationKey(obj, sampleRate);
+        final ObjectiveTranslation cached = translationCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        final ObjectiveTranslation result = translateUncached(obj);
+        // Not cached if the rate changed meanwhile, as it may have been
+        // translated with the new one.
+        if (result.error().isEmpty() && sampleRate == sampleRate()) {
+            translationCache.put(key, result);
+        }
+        return result;
+    }
+
+    private int sampleRate() {
+        return Math.min(Math.max(cloneSampleRate.getAsInt(), 1), SAMPLE_RANGE);
+    }
+
+    /**
+     * Returns hit/miss statistics of the translation cache.
+     *
+     * @return cache statistics
+     */
+    CacheStats cacheStats() {
+        return translationCache.stats();
+    }
+
+    /**
+     * Returns the number of translations currently cached.
+     *
+     * @return cache size
+     */
+    long cacheSize() {
+        return translationCache.size();
     }
 
     @Override
@@ -88,24 +220,332 @@ class ForwardingObjectiveTranslator
             throws BasicPipelinerException {
         if (obj.nextId() == null && obj.treatment() != null) {
             final TrafficTreatment treatment = obj.treatment();
+            final PiActionParam samplePort = samplePort(treatment);
+            if (samplePort != null) {
+                if (!capabilities.supportsCloneToCpu()) {
+                    throw new BasicPipelinerException(
+                            "clone to CPU is not supported by the pipeline", ObjectiveError.UNSUPPORTED);
+                }
+                // Threshold of a random number in [0, SAMPLE_RANGE), such
+                // that one in sampleRate packets is cloned.
+                final PiAction sampledAction = PiAction.builder()
+                        .withId(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_SAMPLED)
+                        .withParameter(samplePort)
+                        .withParameter(new PiActionParam(
+                                P4InfoConstants.SAMPLE_THRESHOLD, (long) (SAMPLE_RANGE / sampleRate() - 1)))
+                        .build();
+                resultBuilder.addFlowRule(flowRule(
+                        obj, P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0, obj.selector(),
+                        DefaultTrafficTreatment.builder().piTableAction(sampledAction).build()));
+                return;
+            }
             final PortNumber outPort = outputPort(treatment);
             if (outPort != null
                     && outPort.equals(PortNumber.CONTROLLER)
                     && treatment.allInstructions().size() == 1) {
+                final PiTableId tableId;
                 final PiAction aclAction;
+                if (treatment.metered() != null) {
+                    // The exact table has no metered action.
+                    tableId = P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0;
+                    aclAction = PiAction.builder()
+                            .withId(P4InfoConstants.BASIC_INGRESS_TABLE0_COPY_TO_CPU_METERED)
+                            .withParameter(new PiActionParam(
+                                    P4InfoConstants.METER_INDEX, cpuMeterIndex(treatment.metered())))
+                            .build();
+                } else {
                     // Action is COPY_TO_CPU
+                    tableId = table0Of(obj.selector());
                     aclAction = PiAction.builder()
-                            .withId(P4InfoConstants.BASIC_INGRESS_TABLE0_COPY_TO_CPU)
+                            .withId(tableId.equals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT)
+                                            ? P4InfoConstants.BASIC_INGRESS_TABLE0_COPY_TO_CPU_EXACT
+                                            : P4InfoConstants.BASIC_INGRESS_TABLE0_COPY_TO_CPU)
                             .build();
+                }
                 final TrafficTreatment piTreatment = DefaultTrafficTreatment.builder()
                         .piTableAction(aclAction)
                         .build();
-                resultBuilder.addFlowRule(flowRule(
-                        obj, P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0, obj.selector(), piTreatment));
+                resultBuilder.addFlowRule(flowRule(obj, tableId, obj.selector(), piTreatment));
                 return;
             }
+            // Drop or set output, mapped to the table action by the interpreter.
+            resultBuilder.addFlowRule(flowRule(
+                    obj, table0Of(obj.selector()), obj.selector(), treatment));
         }
     }
 
+    /**
+     * Returns the table of the entry of the given selector: the exact table
+     * applied before table0, if the pipeline has one and the selector matches
+     * all the fields of table0 without wildcards, i.e., the IPv4 TCP or UDP
+     * flow of a pair of hosts, or table0 otherwise. Entries of the exact
+     * table take precedence over those of table0, regardless of their
+     * priority, the pipeliner writes them to table0 instead if they overlap
+     * an entry of table0 with a higher priority.
+     *
+     * @param selector selector
+     * @return table ID
+     */
+    private PiTableId table0Of(TrafficSelector selector) {
+        if (capabilities.table0ExactSize().isEmpty()
+                || selector.criteria().size() != EXACT_TCP_CRITERIA.size()) {
+            return P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0;
+        }
+        final Set<Criterion.Type> types = EnumSet.noneOf(Criterion.Type.class);
+        for (Criterion criterion : selector.criteria()) {
+            types.add(criterion.type());
+        }
+        final byte ipProto;
+        if (types.equals(EXACT_TCP_CRITERIA)) {
+            ipProto = IPv4.PROTOCOL_TCP;
+        } else if (types.equals(EXACT_UDP_CRITERIA)) {
+            ipProto = IPv4.PROTOCOL_UDP;
+        } else {
+            return P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0;
+        }
+        // Other protocols have no L4 ports, the pipeline matches them as 0.
+        final EthTypeCriterion ethType = (EthTypeCriterion) selector.getCriterion(Criterion.Type.ETH_TYPE);
+        final IPProtocolCriterion ipProtocol =
+                (IPProtocolCriterion) selector.getCriterion(Criterion.Type.IP_PROTO);
+        if (ethType.ethType().toShort() != Ethernet.TYPE_IPV4 || ipProtocol.protocol() != ipProto) {
+            return P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0;
+        }
+        for (Criterion.Type type : List.of(Criterion.Type.IPV4_SRC, Criterion.Type.IPV4_DST)) {
+            final IPCriterion ip = (IPCriterion) selector.getCriterion(type);
+            if (ip.ip().prefixLength() != Ip4Address.BIT_LENGTH) {
+                return P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0;
+            }
+        }
+        return P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT;
+    }
+
+    /**
+     * Returns the entry of table0 equivalent to the given entry of the
+     * exact table, with the same match and the table0 version of its
+     * action.
+     *
+     * @param rule  flow rule of the exact table
+     * @param appId application of the flow rule
+     * @return flow rule of table0
+     */
+    static FlowRule inTable0(FlowRule rule, ApplicationId appId) {
+        final PiAction exactAction = (PiAction) ((PiInstruction) rule.treatment().allInstructions().get(0)).action();
+        final PiAction action = PiAction.builder()
+                .withId(TABLE0_ACTIONS.get(exactAction.id()))
+                .withParameters(exactAction.parameters())
+                .build();
+        final FlowRule.Builder table0Rule = DefaultFlowRule.builder()
+                .withSelector(rule.selector())
+                .withTreatment(DefaultTrafficTreatment.builder().piTableAction(action).build())
+                .forTable(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                .withPriority(rule.priority())
+                .forDevice(rule.deviceId())
+                .fromApp(appId);
+        if (rule.isPermanent()) {
+            table0Rule.makePermanent();
+        } else {
+            table0Rule.makeTemporary(rule.timeout());
+        }
+        return table0Rule.build();
+    }
+
+    /**
+     * Returns the port parameter of a sampled treatment, that is a treatment
+     * with the sampled table action only. Sampling is requested explicitly
+     * with this action, its threshold is set from the sampling rate.
+     *
+     * @param treatment treatment
+     * @return port parameter, or null if the treatment is not a sampled one
+     * @throws BasicPipelinerException if the port parameter is missing
+     */
+    private static PiActionParam samplePort(TrafficTreatment treatment)
+            throws BasicPipelinerException {
+        final List<Instruction> instructions = treatment.allInstructions();
+        if (instructions.size() != 1
+                || instructions.get(0).type() != Instruction.Type.PROTOCOL_INDEPENDENT
+                || !(((PiInstruction) instructions.get(0)).action() instanceof PiAction)) {
+            return null;
+        }
+        final PiAction action = (PiAction) ((PiInstruction) instructions.get(0)).action();
+        if (!P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_SAMPLED.equals(action.id())) {
+            return null;
+        }
+        return action.parameters().stream()
+                .filter(param -> P4InfoConstants.PORT_NUM.equals(param.id()))
+                .findFirst()
+                .orElseThrow(() -> new BasicPipelinerException(
+                        "sampled action without port", ObjectiveError.BADPARAMS));
+    }
+
+    /**
+     * Returns the index of the CPU meter cell of the given meter instruction.
+     * The meter ID is the index of the cell, as meters are created with a
+     * user-defined index in the scope of the CPU meter. Checked once per
+     * distinct objective, as translations are cached.
+     *
+     * @param instruction meter instruction
+     * @return CPU meter cell index
+     * @throws BasicPipelinerException if the pipeline has no CPU meter, or
+     *                                 if the meter does not exist
+     */
+    private long cpuMeterIndex(Instructions.MeterInstruction instruction)
+            throws BasicPipelinerException {
+        final long index = instruction.meterId().id();
+        final Optional<Long> size = capabilities.cpuMeterSize();
+        if (size.isEmpty() || index >= size.get()) {
+            throw new BasicPipelinerException(format(
+                    "meter %s is not a cell of the CPU meter of the pipeline", instruction.meterId()));
+        }
+        if (meterService != null && meterService.getMeter(deviceId, PiMeterCellId.ofIndirect(
+                P4InfoConstants.BASIC_INGRESS_TABLE0_CPU_METER, index)) == null) {
+            throw new BasicPipelinerException(format(
+                    "meter %s not found on %s", instruction.meterId(), deviceId),
+                    ObjectiveError.BADPARAMS);
+        }
+        return index;
+    }
+
+    /**
+     * Key of the translation cache. Includes all objective fields used to
+     * build the flow rules, but not the operation, as ADD and REMOVE of the
+     * same objective translate to the same rules. Meters are compared
+     * explicitly, as treatments equal regardless of their meters. The
+     * sampling rate is included, as it sets the threshold of sampled
+     * objectives.
+     */
+    private static final class TranslationKey {
+
+        private final TrafficSelector selector;
+        private final TrafficTreatment treatment;
+        private final Set<Instructions.MeterInstruction> meters;
+        private final Integer nextId;
+        private final int priority;
+        private final ApplicationId appId;
+        private final ForwardingObjective.Flag flag;
+        private final boolean permanent;
+        private final int timeout;
+        private final int sampleRate;
+        private final int hash;
+
+        private TranslationKey(ForwardingObjective obj, int sampleRate) {
+            this.selector = obj.selector();
+            this.treatment = obj.treatment();
+            this.meters = treatment == null ? null : treatment.meters();
+            this.nextId = obj.nextId();
+            this.priority = obj.priority();
+            this.appId = obj.appId();
+            this.flag = obj.flag();
+            this.permanent = obj.permanent();
+            this.timeout = obj.timeout();
+            this.sampleRate = sampleRate;
+            this.hash = Objects.hash(selector, treatment, meters, nextId, priority,
+                                     appId, flag, permanent, timeout, sampleRate);
+        }
 
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final TranslationKey other = (TranslationKey) obj;
+            return this.hash == other.hash
+                    && this.priority == other.priority
+                    && this.permanent == other.permanent
+                    && this.timeout == other.timeout
+                    && this.sampleRate == other.sampleRate
+                    && this.flag == other.flag
+                    && Objects.equals(this.nextId, other.nextId)
+                    && Objects.equals(this.appId, other.appId)
+                    && Objects.equals(this.selector, other.selector)
+                    && Objects.equals(this.treatment, other.treatment)
+                    && Objects.equals(this.meters, other.meters);
+        }
+    }
+
+    /**
+     * Builder of ForwardingObjectiveTranslator. By default, the translator
+     * memoizes up to {@link #DEFAULT_TRANSLATION_CACHE_SIZE} translations,
+     * records metrics not exported by any service, does not check the meters
+     * of the objectives, and clones to the controller one in
+     * CLONE_TO_CPU_SAMPLE_RATE_DEFAULT packets of sampled objectives.
+     */
+    static final class Builder {
+
+        private final DeviceId deviceId;
+        private final BasicCapabilities capabilities;
+        private long cacheSize = DEFAULT_TRANSLATION_CACHE_SIZE;
+        private DeviceMetrics metrics;
+        private MeterService meterService;
+        private IntSupplier cloneSampleRate = () -> CLONE_TO_CPU_SAMPLE_RATE_DEFAULT;
+
+        private Builder(DeviceId deviceId, BasicCapabilities capabilities) {
+            this.deviceId = deviceId;
+            this.capabilities = capabilities;
+        }
+
+        /**
+         * Sets the maximum number of cached translations. A size of 0
+         * disables the cache.
+         *
+         * @param cacheSize maximum number of cached translations
+         * @return this
+         */
+        Builder cacheSize(long cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the metrics of the device.
+         *
+         * @param metrics metrics of the device
+         * @return this
+         */
+        Builder metrics(DeviceMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Sets the meter service the meters of the objectives are checked
+         * against, if not null.
+         *
+         * @param meterService meter service
+         * @return this
+         */
+        Builder meterService(MeterService meterService) {
+            this.meterService = meterService;
+            return this;
+        }
+
+        /**
+         * Sets the sampling rate of sampled objectives: one in the given
+         * number of packets is cloned to the controller. The rate is read
+         * for each translation.
+         *
+         * @param cloneSampleRate sampling rate of sampled objectives
+         * @return this
+         */
+        Builder cloneSampleRate(IntSupplier cloneSampleRate) {
+            this.cloneSampleRate = checkNotNull(cloneSampleRate);
+            return this;
+        }
+
+        /**
+         * Creates the translator.
+         *
+         * @return translator
+         */
+        ForwardingObjectiveTranslator build() {
+            return new ForwardingObjectiveTranslator(this);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Window of the writes in flight to a device, that is written and not yet
+ * acknowledged. Writes submitted when the window is full are parked, without
+ * blocking the caller, and started in order by the completion of earlier
+ * writes. Parked writes waiting longer than the timeout are expired instead
+ * of started.
+ *
+ * @param <T> type of the writes
+ */
+final class InFlightWindow<T> {
+
+    private final int size;
+    private final int maxParked;
+    private final long timeoutNanos;
+    private final Consumer<T> writer;
+    private final Consumer<T> expirer;
+
+    private final Deque<Parked<T>> parked = new ArrayDeque<>();
+    private int inFlight;
+
+    /**
+     * Creates a new window.
+     *
+     * @param size         maximum number of writes in flight
+     * @param maxParked    maximum number of parked writes
+     * @param timeoutNanos maximum time in ns a write can be parked
+     * @param writer       starts a write, which must call {@link #release()}
+     *                     once completed
+     * @param expirer      fails a write parked for too long
+     */
+    InFlightWindow(int size, int maxParked, long timeoutNanos,
+                   Consumer<T> writer, Consumer<T> expirer) {
+        checkArgument(size > 0, "size must be positive");
+        this.size = size;
+        this.maxParked = maxParked;
+        this.timeoutNanos = timeoutNanos;
+        this.writer = checkNotNull(writer);
+        this.expirer = checkNotNull(expirer);
+    }
+
+    /**
+     * Starts the given write if the window has a free slot, or parks it.
+     * Writes are started in the order they are submitted.
+     *
+     * @param write write
+     * @return false if the write was neither started nor parked, because
+     *         too many writes are parked
+     */
+    boolean submit(T write) {
+        List<T> timedOut = List.of();
+        final boolean start;
+        boolean accepted = true;
+        synchronized (this) {
+            start = inFlight < size;
+            if (start) {
+                inFlight++;
+            } else {
+                timedOut = pollTimedOut(System.nanoTime());
+                accepted = parked.size() < maxParked;
+                if (accepted) {
+                    parked.add(new Parked<>(write));
+                }
+            }
+        }
+        timedOut.forEach(expirer);
+        if (start) {
+            writer.accept(write);
+        }
+        return accepted;
+    }
+
+    /**
+     * Signals the completion of a write, handing its slot over to the first
+     * parked write, if any.
+     */
+    void release() {
+        final List<T> timedOut;
+        final Parked<T> next;
+        synchronized (this) {
+            timedOut = pollTimedOut(System.nanoTime());
+            next = parked.poll();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        timedOut.forEach(expirer);
+        if (next != null) {
+            writer.accept(next.write);
+        }
+    }
+
+    /**
+     * Returns the number of parked writes.
+     *
+     * @return parked writes
+     */
+    synchronized int parked() {
+        return parked.size();
+    }
+
+    // Parked writes are in submission order, hence the ones timed out are
+    // at the head.
+    private List<T> pollTimedOut(long nowNanos) {
+        List<T> timedOut = null;
+        while (!parked.isEmpty() && nowNanos - parked.peek().parkedAtNanos > timeoutNanos) {
+            if (timedOut == null) {
+                timedOut = new ArrayList<>();
+            }
+            timedOut.add(parked.poll().write);
+        }
+        return timedOut == null ? List.of() : timedOut;
+    }
+
+    private static final class Parked<T> {
+
+        private final T write;
+        private final long parkedAtNanos = System.nanoTime();
+
+        private Parked(T write) {
+            this.write = write;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import com.google.common.collect.ImmutableList;
+import org.onlab.util.SharedScheduledExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Accumulates translated objectives and hands them over in batches, either
+ * when the batch reaches the maximum size or when the linger time started by
+ * the first objective of the batch expires. Batches are handed over in the
+ * same order objectives were added.
+ */
+final class ObjectiveBatcher {
+
+    private final Consumer<List<PendingObjective>> flusher;
+    private final Consumer<List<PendingObjective>> rejecter;
+    private final Executor lingerExecutor;
+
+    private List<PendingObjective> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerTimeout;
+
+    /**
+     * Creates a new batcher that hands over batches to the given consumer.
+     * Batches flushed because of the linger timeout are handed over by the
+     * given executor. If the executor rejects the flush, the batch is handed
+     * over to the rejecter instead, by the timer thread, so that the flusher
+     * only ever runs on the executor.
+     *
+     * @param flusher        batch consumer
+     * @param rejecter       consumer of the batches the executor rejected
+     * @param lingerExecutor executor of linger timeout flushes
+     */
+    ObjectiveBatcher(Consumer<List<PendingObjective>> flusher,
+                     Consumer<List<PendingObjective>> rejecter, Executor lingerExecutor) {
+        this.flusher = checkNotNull(flusher);
+        this.rejecter = checkNotNull(rejecter);
+        this.lingerExecutor = checkNotNull(lingerExecutor);
+    }
+
+    /**
+     * Adds the given objective to the current batch.
+     *
+     * @param pendingObjective translated objective
+     * @param maxBatchSize     maximum number of objectives per batch
+     * @param lingerMs         maximum time in ms to wait for the batch to fill
+     */
+    void add(PendingObjective pendingObjective, int maxBatchSize, int lingerMs) {
+        final boolean full;
+        synchronized (this) {
+            pending.add(pendingObjective);
+            full = pending.size() >= maxBatchSize || lingerMs <= 0;
+            if (!full && pending.size() == 1) {
+                lingerTimeout = SharedScheduledExecutors.newTimeout(
+                        this::lingerExpired, lingerMs, MILLISECONDS);
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands over the current batch, if not empty. The flusher is called
+     * without holding the lock of this batcher.
+     */
+    void flush() {
+        final List<PendingObjective> batch = takeBatch();
+        if (!batch.isEmpty()) {
+            flusher.accept(batch);
+        }
+    }
+
+    private synchronized List<PendingObjective> takeBatch() {
+        if (lingerTimeout != null) {
+            lingerTimeout.cancel(false);
+            lingerTimeout = null;
+        }
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        final List<PendingObjective> batch = ImmutableList.copyOf(pending);
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void lingerExpired() {
+        try {
+            lingerExecutor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Never flushed on the timer thread, e.g., the lane is shut down.
+            final List<PendingObjective> batch = takeBatch();
+            if (!batch.isEmpty()) {
+                rejecter.accept(batch);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of objectives waiting in the current batch.
+     *
+     * @return number of pending objectives
+     */
+    synchronized int size() {
+        return pending.size();
+    }
+}
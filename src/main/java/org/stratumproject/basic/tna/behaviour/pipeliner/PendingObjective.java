@@ -0,0 +1,145 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flowobjective.Objective;
+import org.stratumproject.basic.tna.metrics.TableOccupancy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A translated objective waiting to be written to the device. The flow
+ * rules to add are written before the ones to remove, the objective is
+ * completed once both are acknowledged.
+ */
+final class PendingObjective {
+
+    private final Objective objective;
+    private final ImmutableList<FlowRule> additions;
+    private final ImmutableList<FlowRule> removals;
+    private final ImmutableMap<TableOccupancy, Set<FlowId>> reserved;
+    // Updated by the write of this objective, one stage at a time.
+    private int incompleteWrites;
+    private boolean failed;
+
+    PendingObjective(Objective objective, Collection<FlowRule> additions,
+                     Collection<FlowRule> removals,
+                     Map<TableOccupancy, Set<FlowId>> reserved) {
+        this.objective = checkNotNull(objective);
+        this.additions = ImmutableList.copyOf(additions);
+        this.removals = ImmutableList.copyOf(removals);
+        this.reserved = ImmutableMap.copyOf(reserved);
+        this.incompleteWrites = (additions.isEmpty() ? 0 : 1) + (removals.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Returns the objective.
+     *
+     * @return objective
+     */
+    Objective objective() {
+        return objective;
+    }
+
+    /**
+     * Returns the flow rules to add to the device.
+     *
+     * @return flow rules to add
+     */
+    List<FlowRule> additions() {
+        return additions;
+    }
+
+    /**
+     * Returns the flow rules to remove from the device.
+     *
+     * @return flow rules to remove
+     */
+    List<FlowRule> removals() {
+        return removals;
+    }
+
+    /**
+     * Returns the flow rules to add, or to remove, from the device.
+     *
+     * @param remove true for the flow rules to remove
+     * @return flow rules
+     */
+    List<FlowRule> flowRules(boolean remove) {
+        return remove ? removals : additions;
+    }
+
+    /**
+     * Returns true if there are no flow rules to write.
+     *
+     * @return true if nothing must be written
+     */
+    boolean isEmpty() {
+        return additions.isEmpty() && removals.isEmpty();
+    }
+
+    /**
+     * Returns the table entries reserved for the flow rules of this
+     * objective, to be released if the write fails.
+     *
+     * @return reserved flow rule IDs, per table
+     */
+    Map<TableOccupancy, Set<FlowId>> reserved() {
+        return reserved;
+    }
+
+    /**
+     * Signals that the additions or the removals were acknowledged by the
+     * device.
+     *
+     * @param success true if the write succeeded
+     * @return true if all writes of this objective are now acknowledged
+     */
+    boolean writeCompleted(boolean success) {
+        failed |= !success;
+        incompleteWrites--;
+        return incompleteWrites == 0;
+    }
+
+    /**
+     * Returns true if any write of this objective failed.
+     *
+     * @return true if failed
+     */
+    boolean failed() {
+        return failed;
+    }
+
+    /**
+     * Returns true if the given objective removes its flow rules from the
+     * device.
+     *
+     * @param objective objective
+     * @return true if this is a removal
+     */
+    static boolean isRemove(Objective objective) {
+        return objective.op() == Objective.Operation.REMOVE
+                || objective.op() == Objective.Operation.REMOVE_FROM_EXISTING;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("objective", objective.id())
+                .add("op", objective.op())
+                .add("additions", additions.size())
+                .add("removals", removals.size())
+                .toString();
+    }
+}
@@ -0,0 +1,472 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import com.google.common.base.MoreObjects;
+import org.onlab.packet.IpPrefix;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.EthCriterion;
+import org.onosproject.net.flow.criteria.EthTypeCriterion;
+import org.onosproject.net.flow.criteria.IPCriterion;
+import org.onosproject.net.flow.criteria.IPProtocolCriterion;
+import org.onosproject.net.flow.criteria.PortCriterion;
+import org.onosproject.net.flow.criteria.TcpPortCriterion;
+import org.onosproject.net.flow.criteria.UdpPortCriterion;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Index of the entries of table0 installed on a device, answering whether a
+ * new flow rule is covered by an installed entry, i.e., every packet it
+ * matches is also matched by the entry. A flow rule covered by an entry of
+ * higher priority is shadowed and never matched; one covered by an entry of
+ * the same priority and action is a duplicate.
+ * <p>
+ * Entries are converted to ternary value/mask pairs over the match fields of
+ * table0, and are indexed by two bit vectors per bit of the match key, with
+ * the entries matching that bit as 0 and as 1. An entry covers a flow rule if
+ * it does not match any bit the flow rule does not match, and matches the
+ * others with the same value, so the candidates of a query are found with one
+ * bit vector intersection per bit of the key, in time linear in the number of
+ * entries divided by the word size. Coverage by a union of several entries is
+ * not detected.
+ * <p>
+ * The index also keeps the flow rules that were not installed because
+ * covered, to install them once the entry covering them is removed. This
+ * class is thread-safe.
+ */
+final class ShadowIndex {
+
+    // Match fields of table0, with IN_PORT as the logical port number. TCP
+    // and UDP ports map to the same L4 port fields of the pipeline.
+    private static final int IN_PORT = 0;
+    private static final int ETH_DST = 1;
+    private static final int ETH_SRC = 2;
+    private static final int ETH_TYPE = 3;
+    private static final int IP_PROTO = 4;
+    private static final int IPV4_SRC = 5;
+    private static final int IPV4_DST = 6;
+    private static final int L4_SPORT = 7;
+    private static final int L4_DPORT = 8;
+    private static final int FIELDS = 9;
+    private static final int[] WIDTHS = {32, 48, 48, 16, 8, 32, 32, 16, 16};
+    private static final int[] OFFSETS = new int[FIELDS];
+    private static final int KEY_BITS;
+
+    static {
+        int offset = 0;
+        for (int field = 0; field < FIELDS; field++) {
+            OFFSETS[field] = offset;
+            offset += WIDTHS[field];
+        }
+        KEY_BITS = offset;
+    }
+
+    // Per bit of the key, the entries matching it as 0 and as 1.
+    private final BitSet[] matchZero = new BitSet[KEY_BITS];
+    private final BitSet[] matchOne = new BitSet[KEY_BITS];
+    // Per field, the entries matching at least one of its bits.
+    private final BitSet[] matchField = new BitSet[FIELDS];
+    private final BitSet used = new BitSet();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<FlowId, Integer> slotOf = new HashMap<>();
+    // Flow rules not installed, to the ID of the entry covering them.
+    private final Map<FlowId, FlowId> skipped = new HashMap<>();
+    private final Map<FlowId, Map<FlowId, FlowRule>> skippedBy = new HashMap<>();
+
+    ShadowIndex() {
+        for (int bit = 0; bit < KEY_BITS; bit++) {
+            matchZero[bit] = new BitSet();
+            matchOne[bit] = new BitSet();
+        }
+        for (int field = 0; field < FIELDS; field++) {
+            matchField[field] = new BitSet();
+        }
+    }
+
+    /**
+     * Adds a flow rule installed on the device. Flow rules of other tables,
+     * or with match fields not in table0, are ignored.
+     *
+     * @param rule flow rule
+     */
+    synchronized void add(FlowRule rule) {
+        final Optional<Entry> parsed = parse(rule);
+        if (parsed.isEmpty()) {
+            return;
+        }
+        final Entry entry = parsed.get();
+        final Integer previous = slotOf.get(rule.id());
+        if (previous != null) {
+            // Same match and priority, e.g., a modified action.
+            clear(previous);
+        }
+        final int slot = used.nextClearBit(0);
+        used.set(slot);
+        if (slot == entries.size()) {
+            entries.add(entry);
+        } else {
+            entries.set(slot, entry);
+        }
+        slotOf.put(rule.id(), slot);
+        for (int field = 0; field < FIELDS; field++) {
+            final long mask = entry.masks[field];
+            if (mask == 0) {
+                continue;
+            }
+            matchField[field].set(slot);
+            for (int b = 0; b < WIDTHS[field]; b++) {
+                if ((mask >>> b & 1) != 0) {
+                    final BitSet[] match = (entry.values[field] >>> b & 1) != 0 ? matchOne : matchZero;
+                    match[OFFSETS[field] + b].set(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a flow rule from the device. Returns the flow rules skipped
+     * because covered by it that are not covered by any other entry, and
+     * must now be installed.
+     *
+     * @param rule flow rule
+     * @return flow rules to install
+     */
+    synchronized List<FlowRule> remove(FlowRule rule) {
+        final Integer slot = slotOf.remove(rule.id());
+        if (slot == null) {
+            return List.of();
+        }
+        clear(slot);
+        final Map<FlowId, FlowRule> uncovered = skippedBy.remove(rule.id());
+        if (uncovered == null) {
+            return List.of();
+        }
+        final List<FlowRule> toInstall = new ArrayList<>();
+        for (FlowRule skippedRule : uncovered.values()) {
+            skipped.remove(skippedRule.id());
+            final Optional<Coverage> coverage = coverage(skippedRule);
+            if (coverage.isPresent()) {
+                skip(skippedRule, coverage.get().rule());
+            } else {
+                toInstall.add(skippedRule);
+            }
+        }
+        return toInstall;
+    }
+
+    /**
+     * Returns the installed entry covering the given flow rule, if any.
+     * Entries of higher priority are preferred to duplicates.
+     *
+     * @param rule flow rule
+     * @return covering entry
+     */
+    synchronized Optional<Coverage> coverage(FlowRule rule) {
+        final Optional<Entry> parsed = parse(rule);
+        if (parsed.isEmpty() || used.isEmpty()) {
+            return Optional.empty();
+        }
+        final Entry query = parsed.get();
+        final BitSet candidates = (BitSet) used.clone();
+        for (int field = 0; field < FIELDS && !candidates.isEmpty(); field++) {
+            final long mask = query.masks[field];
+            if (mask == 0) {
+                // Wildcard, only entries not matching the field can cover it.
+                candidates.andNot(matchField[field]);
+                continue;
+            }
+            final long value = query.values[field];
+            for (int b = 0; b < WIDTHS[field]; b++) {
+                final int bit = OFFSETS[field] + b;
+                if ((mask >>> b & 1) == 0) {
+                    candidates.andNot(matchZero[bit]);
+                    candidates.andNot(matchOne[bit]);
+                } else if ((value >>> b & 1) != 0) {
+                    candidates.andNot(matchZero[bit]);
+                } else {
+                    candidates.andNot(matchOne[bit]);
+                }
+            }
+        }
+        Coverage duplicate = null;
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+            final FlowRule entry = entries.get(slot).rule;
+            if (entry.id().equals(rule.id())) {
+                continue;
+            }
+            if (entry.priority() > rule.priority()) {
+                return Optional.of(new Coverage(entry, false));
+            }
+            if (duplicate == null && entry.priority() == rule.priority()
+                    && Objects.equals(entry.treatment(), rule.treatment())) {
+                duplicate = new Coverage(entry, true);
+            }
+        }
+        return Optional.ofNullable(duplicate);
+    }
+
+    /**
+     * Returns the indexed entries covered by the given flow rule, i.e., whose
+     * packets are all matched by the flow rule, with a lower priority.
+     *
+     * @param rule flow rule
+     * @return covered entries
+     */
+    synchronized List<FlowRule> covered(FlowRule rule) {
+        final Optional<Entry> parsed = parse(rule);
+        if (parsed.isEmpty() || used.isEmpty()) {
+            return List.of();
+        }
+        final Entry query = parsed.get();
+        final BitSet candidates = (BitSet) used.clone();
+        for (int field = 0; field < FIELDS && !candidates.isEmpty(); field++) {
+            final long mask = query.masks[field];
+            for (int b = 0; b < WIDTHS[field]; b++) {
+                // Entries must match the bits the flow rule matches, with
+                // the same value.
+                if ((mask >>> b & 1) != 0) {
+                    final BitSet[] match = (query.values[field] >>> b & 1) != 0 ? matchOne : matchZero;
+                    candidates.and(match[OFFSETS[field] + b]);
+                }
+            }
+        }
+        final List<FlowRule> covered = new ArrayList<>();
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+            final FlowRule entry = entries.get(slot).rule;
+            if (entry.priority() < rule.priority()) {
+                covered.add(entry);
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Returns true if the given flow rule is indexed.
+     *
+     * @param rule flow rule
+     * @return true if indexed
+     */
+    synchronized boolean contains(FlowRule rule) {
+        return slotOf.containsKey(rule.id());
+    }
+
+    /**
+     * Returns the installed entry covering the given flow rule, if any, and
+     * records the flow rule as skipped, to be installed once the entry is
+     * removed.
+     *
+     * @param rule flow rule not to install if covered
+     * @return covering entry
+     */
+    synchronized Optional<Coverage> skipIfCovered(FlowRule rule) {
+        unskip(rule);
+        final Optional<Coverage> coverage = coverage(rule);
+        coverage.ifPresent(c -> skip(rule, c.rule()));
+        return coverage;
+    }
+
+    /**
+     * Forgets a flow rule skipped because covered, e.g., when its objective
+     * is removed.
+     *
+     * @param rule flow rule
+     * @return true if the flow rule was skipped, and is not installed
+     */
+    synchronized boolean unskip(FlowRule rule) {
+        final FlowId coveringId = skipped.remove(rule.id());
+        if (coveringId == null) {
+            return false;
+        }
+        final Map<FlowId, FlowRule> rules = skippedBy.get(coveringId);
+        rules.remove(rule.id());
+        if (rules.isEmpty()) {
+            skippedBy.remove(coveringId);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of indexed entries.
+     *
+     * @return indexed entries
+     */
+    synchronized int size() {
+        return slotOf.size();
+    }
+
+    /**
+     * Returns the number of flow rules skipped because covered.
+     *
+     * @return skipped flow rules
+     */
+    synchronized int skipped() {
+        return skipped.size();
+    }
+
+    private void skip(FlowRule rule, FlowRule covering) {
+        skipped.put(rule.id(), covering.id());
+        skippedBy.computeIfAbsent(covering.id(), id -> new LinkedHashMap<>())
+                .put(rule.id(), rule);
+    }
+
+    private void clear(int slot) {
+        used.clear(slot);
+        entries.set(slot, null);
+        for (int field = 0; field < FIELDS; field++) {
+            matchField[field].clear(slot);
+        }
+        for (int bit = 0; bit < KEY_BITS; bit++) {
+            matchZero[bit].clear(slot);
+            matchOne[bit].clear(slot);
+        }
+    }
+
+    private static Optional<Entry> parse(FlowRule rule) {
+        if (!P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0.equals(rule.table())) {
+            return Optional.empty();
+        }
+        final long[] values = new long[FIELDS];
+        final long[] masks = new long[FIELDS];
+        for (Criterion criterion : rule.selector().criteria()) {
+            switch (criterion.type()) {
+                case IN_PORT:
+                    exact(values, masks, IN_PORT, ((PortCriterion) criterion).port().toLong());
+                    break;
+                case ETH_DST:
+                case ETH_DST_MASKED:
+                case ETH_SRC:
+                case ETH_SRC_MASKED:
+                    final EthCriterion eth = (EthCriterion) criterion;
+                    final int ethField = criterion.type() == Criterion.Type.ETH_DST
+                            || criterion.type() == Criterion.Type.ETH_DST_MASKED ? ETH_DST : ETH_SRC;
+                    exact(values, masks, ethField, eth.mac().toLong());
+                    if (eth.mask() != null) {
+                        masks[ethField] = eth.mask().toLong();
+                    }
+                    break;
+                case ETH_TYPE:
+                    exact(values, masks, ETH_TYPE, ((EthTypeCriterion) criterion).ethType().toShort());
+                    break;
+                case IP_PROTO:
+                    exact(values, masks, IP_PROTO, ((IPProtocolCriterion) criterion).protocol());
+                    break;
+                case IPV4_SRC:
+                case IPV4_DST:
+                    final IpPrefix prefix = ((IPCriterion) criterion).ip();
+                    final int ipField = criterion.type() == Criterion.Type.IPV4_SRC ? IPV4_SRC : IPV4_DST;
+                    values[ipField] = Integer.toUnsignedLong(prefix.address().getIp4Address().toInt());
+                    masks[ipField] = prefix.prefixLength() == 0
+                            ? 0 : fieldMask(ipField) << (Integer.SIZE - prefix.prefixLength()) & fieldMask(ipField);
+                    break;
+                case TCP_SRC:
+                case TCP_SRC_MASKED:
+                case TCP_DST:
+                case TCP_DST_MASKED:
+                    final TcpPortCriterion tcp = (TcpPortCriterion) criterion;
+                    final int tcpField = criterion.type() == Criterion.Type.TCP_SRC
+                            || criterion.type() == Criterion.Type.TCP_SRC_MASKED ? L4_SPORT : L4_DPORT;
+                    exact(values, masks, tcpField, tcp.tcpPort().toInt());
+                    if (tcp.mask() != null) {
+                        masks[tcpField] = tcp.mask().toInt();
+                    }
+                    break;
+                case UDP_SRC:
+                case UDP_SRC_MASKED:
+                case UDP_DST:
+                case UDP_DST_MASKED:
+                    final UdpPortCriterion udp = (UdpPortCriterion) criterion;
+                    final int udpField = criterion.type() == Criterion.Type.UDP_SRC
+                            || criterion.type() == Criterion.Type.UDP_SRC_MASKED ? L4_SPORT : L4_DPORT;
+                    exact(values, masks, udpField, udp.udpPort().toInt());
+                    if (udp.mask() != null) {
+                        masks[udpField] = udp.mask().toInt();
+                    }
+                    break;
+                default:
+                    // Not a match field of table0.
+                    return Optional.empty();
+            }
+        }
+        for (int field = 0; field < FIELDS; field++) {
+            values[field] &= masks[field];
+        }
+        return Optional.of(new Entry(rule, values, masks));
+    }
+
+    private static void exact(long[] values, long[] masks, int field, long value) {
+        values[field] = value & fieldMask(field);
+        masks[field] = fieldMask(field);
+    }
+
+    private static long fieldMask(int field) {
+        return (1L << WIDTHS[field]) - 1;
+    }
+
+    /**
+     * Installed entry covering a flow rule.
+     */
+    static final class Coverage {
+
+        private final FlowRule rule;
+        private final boolean duplicate;
+
+        private Coverage(FlowRule rule, boolean duplicate) {
+            this.rule = rule;
+            this.duplicate = duplicate;
+        }
+
+        /**
+         * Returns the covering entry.
+         *
+         * @return flow rule
+         */
+        FlowRule rule() {
+            return rule;
+        }
+
+        /**
+         * Returns true if the covering entry has the same priority and
+         * action, false if it has a higher priority.
+         *
+         * @return true if the covered flow rule is a duplicate
+         */
+        boolean duplicate() {
+            return duplicate;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("rule", rule.id())
+                    .add("priority", rule.priority())
+                    .add("duplicate", duplicate)
+                    .toString();
+        }
+    }
+
+    // Flow rule with its ternary match key.
+    private static final class Entry {
+
+        private final FlowRule rule;
+        private final long[] values;
+        private final long[] masks;
+
+        private Entry(FlowRule rule, long[] values, long[] masks) {
+            this.rule = rule;
+            this.values = values;
+            this.masks = masks;
+        }
+    }
+}
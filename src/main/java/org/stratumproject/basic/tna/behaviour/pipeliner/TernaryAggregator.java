@@ -0,0 +1,622 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.TpPort;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.criteria.Criteria;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.IPCriterion;
+import org.onosproject.net.flow.criteria.TcpPortCriterion;
+import org.onosproject.net.flow.criteria.UdpPortCriterion;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Aggregator of the ternary entries of table0. Permanent flow rules with the
+ * same action, priority and other match fields, whose IPv4 prefixes or L4
+ * ports differ by a single bit, are merged in one entry matching both,
+ * repeatedly, e.g., the 256 /32 prefixes of a /24 take a single entry. Merges
+ * are exact: entries match the same packets as the flow rules they replace.
+ * Temporary flow rules are not merged, since the device removes them on its
+ * own once expired.
+ * <p>
+ * For each group of compatible flow rules, the aggregator keeps the flow
+ * rules of the objectives and the entries written in their place. Adding or
+ * removing a flow rule recomputes the entries of its group and returns the
+ * difference with the ones written before.
+ * <p>
+ * The flow rules of objectives are kept in memory only. Entries already
+ * installed on the device, e.g., before a restart or a re-init, are indexed
+ * by the packets they match: removing a flow rule unknown to the aggregator
+ * removes its packets from the indexed entries of its group, splitting them
+ * if needed. This class is not thread-safe, it is used by the lane of a
+ * device.
+ */
+final class TernaryAggregator {
+
+    // Aggregated match fields.
+    private static final int IPV4_SRC = 0;
+    private static final int IPV4_DST = 1;
+    private static final int L4_SPORT = 2;
+    private static final int L4_DPORT = 3;
+    private static final int FIELDS = 4;
+
+    private static final long IPV4_MASK = 0xFFFFFFFFL;
+    private static final long L4_PORT_MASK = 0xFFFFL;
+
+    private final Map<GroupKey, Group> groups = new HashMap<>();
+    // Flow rules of objectives, to their group
+    private final Map<FlowId, Group> groupOf = new HashMap<>();
+
+    /**
+     * Indexes the given entries already installed on the device, in place
+     * of the flow rules they were written for. Entries of other tables, or
+     * without aggregated fields, are ignored.
+     *
+     * @param entries installed entries
+     * @param appIds  application of an entry, by application ID
+     */
+    void index(Iterable<? extends FlowRule> entries, Function<Short, ApplicationId> appIds) {
+        for (FlowRule entry : entries) {
+            final ApplicationId appId = appIds.apply(entry.appId());
+            final Optional<ParsedRule> parsed = appId == null ? Optional.empty() : parse(entry, appId);
+            if (parsed.isEmpty()) {
+                continue;
+            }
+            final Group group = groups.computeIfAbsent(parsed.get().groupKey, Group::new);
+            group.installed.add(parsed.get().ternaryKey);
+            group.entries.put(parsed.get().ternaryKey, new DefaultFlowRule(entry));
+        }
+    }
+
+    /**
+     * Computes the entries to write to add the given flow rule. The returned
+     * update must be committed once written.
+     *
+     * @param rule  flow rule of an objective
+     * @param appId application of the objective
+     * @return update of the table, or empty if the flow rule cannot be
+     * aggregated and must be written as is
+     */
+    Optional<Update> add(FlowRule rule, ApplicationId appId) {
+        final Optional<ParsedRule> parsed = parse(rule, appId);
+        if (parsed.isEmpty()) {
+            return Optional.empty();
+        }
+        final GroupKey groupKey = parsed.get().groupKey;
+        final Update update = new Update();
+        final Group previous = groupOf.get(rule.id());
+        if (previous != null && !previous.key.equals(groupKey)) {
+            // Same match and priority with a different action, the rule is
+            // moved to the group of the new action.
+            update.change(previous, previous.without(rule.id()));
+        }
+        final Group group = groups.getOrDefault(groupKey, new Group(groupKey));
+        final Map<FlowId, TernaryKey> constituents = new HashMap<>(group.constituents);
+        constituents.put(rule.id(), parsed.get().ternaryKey);
+        // Packets of an indexed entry taken over by the flow rule, so that
+        // removing it later removes them.
+        update.change(group, constituents, group.installedWithout(parsed.get().ternaryKey));
+        return Optional.of(update);
+    }
+
+    /**
+     * Computes the entries to write to remove the given flow rule. The
+     * returned update must be committed once written.
+     *
+     * @param rule  flow rule of an objective
+     * @param appId application of the objective
+     * @return update of the table, or empty if the flow rule was not
+     * aggregated and must be removed as is
+     */
+    Optional<Update> remove(FlowRule rule, ApplicationId appId) {
+        final Group group = groupOf.get(rule.id());
+        final Update update = new Update();
+        if (group != null) {
+            update.change(group, group.without(rule.id()), group.installed);
+            return Optional.of(update);
+        }
+        // Not added since the entries were indexed, its packets may be
+        // matched by an indexed entry.
+        final Optional<ParsedRule> parsed = parse(rule, appId);
+        final Group indexed = parsed.isEmpty() ? null : groups.get(parsed.get().groupKey);
+        if (indexed == null) {
+            return Optional.empty();
+        }
+        final Set<TernaryKey> installed = indexed.installedWithout(parsed.get().ternaryKey);
+        if (installed.equals(indexed.installed)) {
+            return Optional.empty();
+        }
+        update.change(indexed, indexed.constituents, installed);
+        return Optional.of(update);
+    }
+
+    /**
+     * Returns the number of flow rules of objectives held by the aggregator.
+     *
+     * @return aggregated flow rules
+     */
+    int aggregatedRules() {
+        return groupOf.size();
+    }
+
+    /**
+     * Returns the number of entries written in place of the aggregated flow
+     * rules.
+     *
+     * @return table entries
+     */
+    int tableEntries() {
+        return groups.values().stream().mapToInt(g -> g.entries.size()).sum();
+    }
+
+    // Returns entries matching exactly the same packets as the given ones,
+    // built by repeatedly merging pairs of entries differing by one bit.
+    private static Set<TernaryKey> cover(Collection<TernaryKey> keys, Set<TernaryKey> installed) {
+        final Set<TernaryKey> cover = new HashSet<>(keys);
+        cover.addAll(installed);
+        final Deque<TernaryKey> work = new ArrayDeque<>(cover);
+        while (!work.isEmpty()) {
+            final TernaryKey key = work.pop();
+            if (!cover.contains(key)) {
+                continue;
+            }
+            final TernaryKey merged = mergeWithSibling(key, cover);
+            if (merged != null) {
+                cover.add(merged);
+                work.push(merged);
+            }
+        }
+        return cover;
+    }
+
+    // Looks for an entry of the cover differing from the given one by a
+    // single bit, and if any, removes both from the cover and returns their
+    // merge.
+    private static TernaryKey mergeWithSibling(TernaryKey key, Set<TernaryKey> cover) {
+        for (int field = 0; field < FIELDS; field++) {
+            long candidates = key.masks[field];
+            if (isPrefix(field)) {
+                // Only the last bit of a prefix can be wildcarded.
+                candidates = Long.lowestOneBit(candidates);
+            }
+            while (candidates != 0) {
+                final long bit = Long.lowestOneBit(candidates);
+                candidates &= ~bit;
+                final TernaryKey sibling = key.flip(field, bit);
+                if (cover.remove(sibling)) {
+                    cover.remove(key);
+                    return key.wildcard(field, bit);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPrefix(int field) {
+        return field == IPV4_SRC || field == IPV4_DST;
+    }
+
+    private static Optional<ParsedRule> parse(FlowRule rule, ApplicationId appId) {
+        // Temporary entries are removed by the device on their own, which
+        // would leave a merged entry known here but no longer installed.
+        if (!P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0.equals(rule.table()) || !rule.isPermanent()) {
+            return Optional.empty();
+        }
+        final long[] values = new long[FIELDS];
+        final long[] masks = new long[FIELDS];
+        final Set<Criterion.Type> types = EnumSet.noneOf(Criterion.Type.class);
+        final TrafficSelector.Builder base = DefaultTrafficSelector.builder();
+        for (Criterion criterion : rule.selector().criteria()) {
+            switch (criterion.type()) {
+                case IPV4_SRC:
+                case IPV4_DST:
+                    final IpPrefix prefix = ((IPCriterion) criterion).ip();
+                    final int ipField = criterion.type() == Criterion.Type.IPV4_SRC ? IPV4_SRC : IPV4_DST;
+                    masks[ipField] = prefixMask(prefix.prefixLength());
+                    values[ipField] = Integer.toUnsignedLong(prefix.address().getIp4Address().toInt());
+                    types.add(criterion.type());
+                    break;
+                case TCP_SRC:
+                case TCP_SRC_MASKED:
+                case TCP_DST:
+                case TCP_DST_MASKED:
+                    final TcpPortCriterion tcp = (TcpPortCriterion) criterion;
+                    final boolean tcpSrc = criterion.type() == Criterion.Type.TCP_SRC
+                            || criterion.type() == Criterion.Type.TCP_SRC_MASKED;
+                    final int tcpField = tcpSrc ? L4_SPORT : L4_DPORT;
+                    values[tcpField] = tcp.tcpPort().toInt();
+                    masks[tcpField] = tcp.mask() == null ? L4_PORT_MASK : tcp.mask().toInt();
+                    types.add(tcpSrc ? Criterion.Type.TCP_SRC : Criterion.Type.TCP_DST);
+                    break;
+                case UDP_SRC:
+                case UDP_SRC_MASKED:
+                case UDP_DST:
+                case UDP_DST_MASKED:
+                    final UdpPortCriterion udp = (UdpPortCriterion) criterion;
+                    final boolean udpSrc = criterion.type() == Criterion.Type.UDP_SRC
+                            || criterion.type() == Criterion.Type.UDP_SRC_MASKED;
+                    final int udpField = udpSrc ? L4_SPORT : L4_DPORT;
+                    values[udpField] = udp.udpPort().toInt();
+                    masks[udpField] = udp.mask() == null ? L4_PORT_MASK : udp.mask().toInt();
+                    types.add(udpSrc ? Criterion.Type.UDP_SRC : Criterion.Type.UDP_DST);
+                    break;
+                default:
+                    base.add(criterion);
+            }
+        }
+        if (types.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new ParsedRule(
+                new GroupKey(rule, appId, base.build(), types),
+                new TernaryKey(values, masks)));
+    }
+
+    private static long prefixMask(int prefixLength) {
+        return prefixLength == 0 ? 0 : (IPV4_MASK << (Integer.SIZE - prefixLength)) & IPV4_MASK;
+    }
+
+    private static FlowRule buildRule(GroupKey group, TernaryKey key) {
+        final TrafficSelector.Builder selector = DefaultTrafficSelector.builder(group.base);
+        // Fields fully wildcarded by merges are omitted.
+        if (key.masks[IPV4_SRC] != 0) {
+            selector.matchIPSrc(prefix(key, IPV4_SRC));
+        }
+        if (key.masks[IPV4_DST] != 0) {
+            selector.matchIPDst(prefix(key, IPV4_DST));
+        }
+        portCriterion(group, key, L4_SPORT).ifPresent(selector::add);
+        portCriterion(group, key, L4_DPORT).ifPresent(selector::add);
+
+        final FlowRule template = group.template;
+        final FlowRule.Builder rule = DefaultFlowRule.builder()
+                .forDevice(template.deviceId())
+                .forTable(template.table())
+                .withSelector(selector.build())
+                .withTreatment(template.treatment())
+                .withPriority(template.priority())
+                .fromApp(group.appId)
+                .makePermanent();
+        return rule.build();
+    }
+
+    private static IpPrefix prefix(TernaryKey key, int field) {
+        return IpPrefix.valueOf(Ip4Address.valueOf((int) key.values[field]),
+                                Long.bitCount(key.masks[field]));
+    }
+
+    private static Optional<Criterion> portCriterion(GroupKey group, TernaryKey key, int field) {
+        final long mask = key.masks[field];
+        if (mask == 0) {
+            return Optional.empty();
+        }
+        final TpPort port = TpPort.tpPort((int) key.values[field]);
+        final boolean exact = mask == L4_PORT_MASK;
+        final boolean src = field == L4_SPORT;
+        if (group.types.contains(src ? Criterion.Type.TCP_SRC : Criterion.Type.TCP_DST)) {
+            if (exact) {
+                return Optional.of(src ? Criteria.matchTcpSrc(port) : Criteria.matchTcpDst(port));
+            }
+            final TpPort tpMask = TpPort.tpPort((int) mask);
+            return Optional.of(src ? Criteria.matchTcpSrcMasked(port, tpMask)
+                                       : Criteria.matchTcpDstMasked(port, tpMask));
+        }
+        if (exact) {
+            return Optional.of(src ? Criteria.matchUdpSrc(port) : Criteria.matchUdpDst(port));
+        }
+        final TpPort tpMask = TpPort.tpPort((int) mask);
+        return Optional.of(src ? Criteria.matchUdpSrcMasked(port, tpMask)
+                                   : Criteria.matchUdpDstMasked(port, tpMask));
+    }
+
+    /**
+     * Changes to the entries of the table, resulting from adding or removing
+     * a flow rule.
+     */
+    final class Update {
+
+        private final List<GroupChange> changes = new ArrayList<>();
+        private final List<FlowRule> additions = new ArrayList<>();
+        private final List<FlowRule> removals = new ArrayList<>();
+
+        private Update() {
+        }
+
+        private void change(Group group, Map<FlowId, TernaryKey> constituents) {
+            change(group, constituents, group.installed);
+        }
+
+        private void change(Group group, Map<FlowId, TernaryKey> constituents,
+                            Set<TernaryKey> installed) {
+            final Set<TernaryKey> cover = cover(constituents.values(), installed);
+            final Map<TernaryKey, FlowRule> entries = new HashMap<>();
+            for (TernaryKey key : cover) {
+                FlowRule entry = group.entries.get(key);
+                if (entry == null) {
+                    entry = buildRule(group.key, key);
+                    additions.add(entry);
+                }
+                entries.put(key, entry);
+            }
+            group.entries.forEach((key, entry) -> {
+                if (!cover.contains(key)) {
+                    removals.add(entry);
+                }
+            });
+            changes.add(new GroupChange(group, constituents, installed, entries));
+        }
+
+        /**
+         * Returns the entries to add to the table. They must be written
+         * before the removals, so that no packet misses in between.
+         *
+         * @return entries to add
+         */
+        List<FlowRule> additions() {
+            return ImmutableList.copyOf(additions);
+        }
+
+        /**
+         * Returns the entries to remove from the table.
+         *
+         * @return entries to remove
+         */
+        List<FlowRule> removals() {
+            return ImmutableList.copyOf(removals);
+        }
+
+        /**
+         * Applies this update to the state of the aggregator, once it is
+         * accepted for writing.
+         */
+        void commit() {
+            for (GroupChange change : changes) {
+                final Group group = change.group;
+                group.constituents.keySet().forEach(groupOf::remove);
+                group.constituents.clear();
+                group.constituents.putAll(change.constituents);
+                group.constituents.keySet().forEach(id -> groupOf.put(id, group));
+                if (change.installed != group.installed) {
+                    group.installed.clear();
+                    group.installed.addAll(change.installed);
+                }
+                group.entries.clear();
+                group.entries.putAll(change.entries);
+                if (group.constituents.isEmpty() && group.installed.isEmpty()) {
+                    groups.remove(group.key);
+                } else {
+                    groups.put(group.key, group);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("additions", additions.size())
+                    .add("removals", removals.size())
+                    .toString();
+        }
+    }
+
+    private static final class GroupChange {
+        private final Group group;
+        private final Map<FlowId, TernaryKey> constituents;
+        private final Set<TernaryKey> installed;
+        private final Map<TernaryKey, FlowRule> entries;
+
+        private GroupChange(Group group, Map<FlowId, TernaryKey> constituents,
+                            Set<TernaryKey> installed, Map<TernaryKey, FlowRule> entries) {
+            this.group = group;
+            this.constituents = constituents;
+            this.installed = installed;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * Flow rules that can be merged with each other, and the entries written
+     * in their place.
+     */
+    private static final class Group {
+        private final GroupKey key;
+        private final Map<FlowId, TernaryKey> constituents = new HashMap<>();
+        // Packets of the indexed entries not yet removed, whose flow rules
+        // are unknown.
+        private final Set<TernaryKey> installed = new HashSet<>();
+        private final Map<TernaryKey, FlowRule> entries = new HashMap<>();
+
+        private Group(GroupKey key) {
+            this.key = key;
+        }
+
+        private Map<FlowId, TernaryKey> without(FlowId flowId) {
+            final Map<FlowId, TernaryKey> remaining = new HashMap<>(constituents);
+            remaining.remove(flowId);
+            return remaining;
+        }
+
+        // Indexed packets, without those of the given key.
+        private Set<TernaryKey> installedWithout(TernaryKey removed) {
+            if (installed.stream().noneMatch(key -> key.covers(removed))) {
+                return installed;
+            }
+            final Set<TernaryKey> remaining = new HashSet<>();
+            for (TernaryKey key : installed) {
+                if (key.covers(removed)) {
+                    remaining.addAll(key.minus(removed));
+                } else {
+                    remaining.add(key);
+                }
+            }
+            return remaining;
+        }
+    }
+
+    /**
+     * Everything but the aggregated fields of a flow rule. Flow rules with
+     * equal keys can be merged.
+     */
+    private static final class GroupKey {
+        private final FlowRule template;
+        private final ApplicationId appId;
+        private final TrafficSelector base;
+        private final Set<Criterion.Type> types;
+        private final int hash;
+
+        private GroupKey(FlowRule template, ApplicationId appId, TrafficSelector base,
+                         Set<Criterion.Type> types) {
+            this.template = template;
+            this.appId = appId;
+            this.base = base;
+            this.types = ImmutableSet.copyOf(types);
+            this.hash = Objects.hash(appId, base, this.types, template.deviceId(), template.table(),
+                                     template.treatment(), template.priority());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final GroupKey other = (GroupKey) obj;
+            return this.hash == other.hash
+                    && Objects.equals(this.appId, other.appId)
+                    && Objects.equals(this.base, other.base)
+                    && Objects.equals(this.types, other.types)
+                    && Objects.equals(this.template.deviceId(), other.template.deviceId())
+                    && Objects.equals(this.template.table(), other.template.table())
+                    && Objects.equals(this.template.treatment(), other.template.treatment())
+                    && this.template.priority() == other.template.priority();
+        }
+    }
+
+    /**
+     * Value and mask of the aggregated fields, wildcarded fields have a mask
+     * of 0.
+     */
+    private static final class TernaryKey {
+        private final long[] values;
+        private final long[] masks;
+        private final int hash;
+
+        private TernaryKey(long[] values, long[] masks) {
+            this.masks = masks;
+            this.values = new long[FIELDS];
+            for (int field = 0; field < FIELDS; field++) {
+                this.values[field] = values[field] & masks[field];
+            }
+            this.hash = 31 * Arrays.hashCode(this.values) + Arrays.hashCode(masks);
+        }
+
+        private TernaryKey flip(int field, long bit) {
+            final long[] flipped = values.clone();
+            flipped[field] ^= bit;
+            return new TernaryKey(flipped, masks);
+        }
+
+        private TernaryKey wildcard(int field, long bit) {
+            final long[] wildcarded = masks.clone();
+            wildcarded[field] &= ~bit;
+            return new TernaryKey(values, wildcarded);
+        }
+
+        private boolean covers(TernaryKey other) {
+            for (int field = 0; field < FIELDS; field++) {
+                if ((other.masks[field] & masks[field]) != masks[field]
+                        || (other.values[field] & masks[field]) != values[field]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Keys matching the packets of this key but not those of the given
+        // one, which it covers. Bits are fixed from the most significant, so
+        // that prefixes stay prefixes.
+        private List<TernaryKey> minus(TernaryKey covered) {
+            final List<TernaryKey> keys = new ArrayList<>();
+            final long[] fixedValues = values.clone();
+            final long[] fixedMasks = masks.clone();
+            for (int field = 0; field < FIELDS; field++) {
+                long bits = covered.masks[field] & ~masks[field];
+                while (bits != 0) {
+                    final long bit = Long.highestOneBit(bits);
+                    bits &= ~bit;
+                    final long[] keyValues = fixedValues.clone();
+                    final long[] keyMasks = fixedMasks.clone();
+                    keyValues[field] = (keyValues[field] & ~bit) | (~covered.values[field] & bit);
+                    keyMasks[field] |= bit;
+                    keys.add(new TernaryKey(keyValues, keyMasks));
+                    fixedValues[field] = (fixedValues[field] & ~bit) | (covered.values[field] & bit);
+                    fixedMasks[field] |= bit;
+                }
+            }
+            return keys;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final TernaryKey other = (TernaryKey) obj;
+            return this.hash == other.hash
+                    && Arrays.equals(this.values, other.values)
+                    && Arrays.equals(this.masks, other.masks);
+        }
+    }
+
+    private static final class ParsedRule {
+        private final GroupKey groupKey;
+        private final TernaryKey ternaryKey;
+
+        private ParsedRule(GroupKey groupKey, TernaryKey ternaryKey) {
+            this.groupKey = groupKey;
+            this.ternaryKey = ternaryKey;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.cli;
+
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.onosproject.cli.AbstractShellCommand;
+import org.onosproject.cli.net.DeviceIdCompleter;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.pi.runtime.PiCounterCell;
+import org.stratumproject.basic.tna.behaviour.CounterReader;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lists the packets to the controller dropped by the CPU meter of a basic-tna
+ * device, by meter cell, i.e., by meter ID.
+ */
+@Service
+@Command(scope = "onos", name = "basic-tna-cpu-meter-drops",
+        description = "Lists the packets to the controller dropped by the CPU meter of a basic-tna device")
+public class CpuMeterDropsCommand extends AbstractShellCommand {
+
+    @Argument(index = 0, name = "uri", description = "Device ID",
+            required = true, multiValued = false)
+    @Completion(DeviceIdCompleter.class)
+    String uri = null;
+
+    @Override
+    protected void doExecute() {
+        final Device device = get(DeviceService.class).getDevice(DeviceId.deviceId(uri));
+        if (device == null || !device.is(CounterReader.class)) {
+            error("Device %s not found or not a basic-tna device", uri);
+            return;
+        }
+        // One wildcard read of all the cells, only those with drops listed.
+        device.as(CounterReader.class)
+                .readCounters(List.of(P4InfoConstants.BASIC_INGRESS_TABLE0_CPU_METER_DROPS))
+                .stream()
+                .filter(c -> c.data().packets() > 0)
+                .sorted(Comparator.comparingLong(c -> c.cellId().index()))
+                .forEach(this::printCell);
+    }
+
+    private void printCell(PiCounterCell cell) {
+        print("meterId=%d, droppedPackets=%d", cell.cellId().index(), cell.data().packets());
+    }
+}
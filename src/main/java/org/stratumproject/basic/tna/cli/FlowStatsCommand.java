@@ -0,0 +1,68 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.cli;
+
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.onosproject.cli.AbstractShellCommand;
+import org.onosproject.cli.net.DeviceIdCompleter;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowId;
+import org.stratumproject.basic.tna.stats.FlowStats;
+import org.stratumproject.basic.tna.stats.FlowStatsService;
+
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Lists the per-flow statistics of a basic-tna device, sampled by the bulk
+ * reads of the direct counters.
+ */
+@Service
+@Command(scope = "onos", name = "basic-tna-flow-stats",
+        description = "Lists the per-flow ingress and egress counters of a basic-tna device")
+public class FlowStatsCommand extends AbstractShellCommand {
+
+    @Argument(index = 0, name = "uri", description = "Device ID",
+            required = true, multiValued = false)
+    @Completion(DeviceIdCompleter.class)
+    String uri = null;
+
+    @Option(name = "-e", aliases = "--egress",
+            description = "Only list the flows counted at egress",
+            required = false, multiValued = false)
+    boolean egressOnly = false;
+
+    @Override
+    protected void doExecute() {
+        final FlowStatsService statsService = get(FlowStatsService.class);
+        final Map<FlowId, FlowStats> stats = statsService.flowStats(DeviceId.deviceId(uri));
+        if (stats.isEmpty()) {
+            error("No flow stats for device %s, is flowStatsPollIntervalSec set?", uri);
+            return;
+        }
+        stats.entrySet().stream()
+                .filter(e -> !egressOnly || e.getValue().egress().isPresent())
+                .sorted(Comparator.comparing(e -> e.getKey().value()))
+                .forEach(e -> printStats(e.getKey(), e.getValue()));
+    }
+
+    private void printStats(FlowId flowId, FlowStats s) {
+        if (s.egress().isEmpty()) {
+            print("id=%s, packets=%d, bytes=%d, packetRate=%.1f, byteRate=%.1f",
+                  flowId, s.packets(), s.bytes(), s.packetRate(), s.byteRate());
+            return;
+        }
+        final FlowStats egress = s.egress().get();
+        // Includes the packets still queued when the counters were read.
+        print("id=%s, packets=%d, bytes=%d, packetRate=%.1f, byteRate=%.1f, "
+                      + "egressPackets=%d, egressBytes=%d, egressPacketRate=%.1f, droppedPackets=%d",
+              flowId, s.packets(), s.bytes(), s.packetRate(), s.byteRate(),
+              egress.packets(), egress.bytes(), egress.packetRate(),
+              Math.max(0, s.packets() - egress.packets()));
+    }
+}
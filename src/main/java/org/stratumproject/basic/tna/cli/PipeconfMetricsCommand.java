@@ -0,0 +1,83 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.cli;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.onosproject.cli.AbstractShellCommand;
+import org.onosproject.cli.net.DeviceIdCompleter;
+import org.onosproject.net.DeviceId;
+import org.stratumproject.basic.tna.metrics.DeviceMetrics;
+import org.stratumproject.basic.tna.metrics.LatencyHistogram;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsService;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Lists the runtime metrics of the basic-tna pipeconf behaviours.
+ */
+@Service
+@Command(scope = "onos", name = "basic-tna-metrics",
+        description = "Lists the pipeliner and packet I/O metrics of basic-tna devices")
+public class PipeconfMetricsCommand extends AbstractShellCommand {
+
+    @Argument(index = 0, name = "uri", description = "Device ID",
+            required = false, multiValued = false)
+    @Completion(DeviceIdCompleter.class)
+    String uri = null;
+
+    @Override
+    protected void doExecute() {
+        final PipeconfMetricsService metricsService = get(PipeconfMetricsService.class);
+        final DeviceId deviceId = uri == null ? null : DeviceId.deviceId(uri);
+        final List<DeviceMetrics> sorted = metricsService.allDeviceMetrics().stream()
+                .filter(m -> deviceId == null || m.deviceId().equals(deviceId))
+                .sorted(Comparator.comparing(m -> m.deviceId().toString()))
+                .collect(toList());
+        if (deviceId != null && sorted.isEmpty()) {
+            error("No metrics for device %s", deviceId);
+            return;
+        }
+
+        if (outputJson()) {
+            final ArrayNode result = mapper().createArrayNode();
+            sorted.forEach(m -> result.add(jsonForEntity(m, DeviceMetrics.class)));
+            print("%s", result);
+            return;
+        }
+        sorted.forEach(this::printMetrics);
+    }
+
+    private void printMetrics(DeviceMetrics m) {
+        print("deviceId=%s", m.deviceId());
+        print("    objectives: translated=%d, succeeded=%d, failed=%s, shadowedRules=%d",
+              m.objectivesTranslated(), m.objectivesSucceeded(), m.objectivesFailed(),
+              m.shadowedRules());
+        print("    translation: %s", latency(m.translationLatency()));
+        print("    writes: inFlight=%d, succeeded=%d, failed=%d",
+              m.inFlightWrites(), m.writesSucceeded(), m.writesFailed());
+        print("    write completion: %s", latency(m.writeLatency()));
+        print("    packets: packetIns=%d, packetOuts=%d, floods=%d, floodFanOut=%d",
+              m.packetIns(), m.packetOuts(), m.floods(), m.floodFanOut());
+        m.tableOccupancy().forEach(t -> print(
+                "    table %s: entries=%d/%d (%.1f%%), rejected=%d",
+                t.tableId(), t.entries(), t.capacity(), t.utilization(), t.rejected()));
+    }
+
+    private static String latency(LatencyHistogram histogram) {
+        return String.format("count=%d, meanUs=%d, p50Us=%d, p99Us=%d, maxUs=%d",
+                             histogram.count(),
+                             TimeUnit.NANOSECONDS.toMicros(histogram.meanNanos()),
+                             TimeUnit.NANOSECONDS.toMicros(histogram.percentileNanos(50)),
+                             TimeUnit.NANOSECONDS.toMicros(histogram.percentileNanos(99)),
+                             TimeUnit.NANOSECONDS.toMicros(histogram.maxNanos()));
+    }
+}
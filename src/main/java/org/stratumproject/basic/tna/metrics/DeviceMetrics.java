@@ -0,0 +1,341 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.metrics;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Maps;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flowobjective.ObjectiveError;
+import org.onosproject.net.pi.model.PiTableId;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runtime metrics of the basic-tna behaviours for a single device. All
+ * counters are striped adders, so updating them from the hot paths of
+ * different threads does not contend.
+ */
+public final class DeviceMetrics {
+
+    private final DeviceId deviceId;
+
+    private final LongAdder inFlightWrites = new LongAdder();
+    private final LongAdder writesSucceeded = new LongAdder();
+    private final LongAdder writesFailed = new LongAdder();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    private final LongAdder objectivesTranslated = new LongAdder();
+    private final LongAdder objectivesSucceeded = new LongAdder();
+    // One adder per error, filled at construction and never modified after,
+    // so that lookups do not need synchronization.
+    private final Map<ObjectiveError, LongAdder> objectivesFailed =
+            new EnumMap<>(ObjectiveError.class);
+    private final LatencyHistogram translationLatency = new LatencyHistogram();
+    private final LongAdder shadowedRules = new LongAdder();
+
+    private final LongAdder packetIns = new LongAdder();
+    private final LongAdder packetOuts = new LongAdder();
+    private final LongAdder floods = new LongAdder();
+    private final LongAdder floodFanOut = new LongAdder();
+
+    private final Map<PiTableId, TableOccupancy> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Creates new metrics for the given device.
+     *
+     * @param deviceId device ID
+     */
+    public DeviceMetrics(DeviceId deviceId) {
+        this.deviceId = checkNotNull(deviceId);
+        for (ObjectiveError error : ObjectiveError.values()) {
+            objectivesFailed.put(error, new LongAdder());
+        }
+    }
+
+    /**
+     * Returns the device these metrics refer to.
+     *
+     * @return device ID
+     */
+    public DeviceId deviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Signals that a flow rule write was sent to the device.
+     */
+    public void writeSubmitted() {
+        inFlightWrites.increment();
+    }
+
+    /**
+     * Signals that the device acknowledged a flow rule write.
+     *
+     * @param success      true if the write succeeded
+     * @param latencyNanos time between submission and acknowledgement
+     */
+    public void writeCompleted(boolean success, long latencyNanos) {
+        inFlightWrites.decrement();
+        if (success) {
+            writesSucceeded.increment();
+        } else {
+            writesFailed.increment();
+        }
+        writeLatency.record(latencyNanos);
+    }
+
+    /**
+     * Returns the number of flow rule writes waiting for an acknowledgement
+     * from the device.
+     *
+     * @return in-flight writes
+     */
+    public long inFlightWrites() {
+        return inFlightWrites.sum();
+    }
+
+    /**
+     * Returns the number of writes acknowledged as successful.
+     *
+     * @return successful writes
+     */
+    public long writesSucceeded() {
+        return writesSucceeded.sum();
+    }
+
+    /**
+     * Returns the number of writes acknowledged as failed.
+     *
+     * @return failed writes
+     */
+    public long writesFailed() {
+        return writesFailed.sum();
+    }
+
+    /**
+     * Returns the histogram of write completion latencies.
+     *
+     * @return completion latency histogram
+     */
+    public LatencyHistogram writeLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * Signals that an objective was translated to flow rules.
+     *
+     * @param success      true if the translation succeeded
+     * @param latencyNanos time spent translating the objective
+     */
+    public void objectiveTranslated(boolean success, long latencyNanos) {
+        if (success) {
+            objectivesTranslated.increment();
+        }
+        translationLatency.record(latencyNanos);
+    }
+
+    /**
+     * Signals that an objective was completed successfully.
+     */
+    public void objectiveSucceeded() {
+        objectivesSucceeded.increment();
+    }
+
+    /**
+     * Signals that an objective failed with the given error.
+     *
+     * @param error objective error
+     */
+    public void objectiveFailed(ObjectiveError error) {
+        objectivesFailed.get(checkNotNull(error)).increment();
+    }
+
+    /**
+     * Signals that a flow rule was found fully covered by an entry installed
+     * on the device, of higher priority or duplicate.
+     */
+    public void ruleShadowed() {
+        shadowedRules.increment();
+    }
+
+    /**
+     * Signals that a packet-in was received from the device.
+     */
+    public void packetInReceived() {
+        packetIns.increment();
+    }
+
+    /**
+     * Signals that an outbound packet was mapped to the given number of
+     * packet-outs.
+     *
+     * @param packetOperations number of packet-outs
+     * @param flood            true if the packet was flooded
+     */
+    public void packetOutSent(int packetOperations, boolean flood) {
+        packetOuts.add(packetOperations);
+        if (flood) {
+            floods.increment();
+            floodFanOut.add(packetOperations);
+        }
+    }
+
+    /**
+     * Returns the number of objectives successfully translated to flow
+     * rules.
+     *
+     * @return translated objectives
+     */
+    public long objectivesTranslated() {
+        return objectivesTranslated.sum();
+    }
+
+    /**
+     * Returns the number of objectives completed successfully.
+     *
+     * @return successful objectives
+     */
+    public long objectivesSucceeded() {
+        return objectivesSucceeded.sum();
+    }
+
+    /**
+     * Returns the number of objectives failed with the given error.
+     *
+     * @param error objective error
+     * @return failed objectives
+     */
+    public long objectivesFailed(ObjectiveError error) {
+        return objectivesFailed.get(checkNotNull(error)).sum();
+    }
+
+    /**
+     * Returns the number of failed objectives per error, errors that never
+     * occurred are omitted.
+     *
+     * @return failed objectives per error
+     */
+    public Map<ObjectiveError, Long> objectivesFailed() {
+        final Map<ObjectiveError, Long> failed = Maps.newEnumMap(ObjectiveError.class);
+        objectivesFailed.forEach((error, adder) -> {
+            final long sum = adder.sum();
+            if (sum > 0) {
+                failed.put(error, sum);
+            }
+        });
+        return failed;
+    }
+
+    /**
+     * Returns the histogram of objective translation latencies.
+     *
+     * @return translation latency histogram
+     */
+    public LatencyHistogram translationLatency() {
+        return translationLatency;
+    }
+
+    /**
+     * Returns the number of flow rules found fully covered by an entry
+     * installed on the device.
+     *
+     * @return shadowed flow rules
+     */
+    public long shadowedRules() {
+        return shadowedRules.sum();
+    }
+
+    /**
+     * Returns the number of packet-ins received from the device.
+     *
+     * @return packet-ins
+     */
+    public long packetIns() {
+        return packetIns.sum();
+    }
+
+    /**
+     * Returns the number of packet-outs sent to the device, including the
+     * ones of flooded packets.
+     *
+     * @return packet-outs
+     */
+    public long packetOuts() {
+        return packetOuts.sum();
+    }
+
+    /**
+     * Returns the number of flooded outbound packets.
+     *
+     * @return flooded packets
+     */
+    public long floods() {
+        return floods.sum();
+    }
+
+    /**
+     * Returns the number of packet-outs generated by flooded packets. The
+     * ratio with {@link #floods()} is the mean flood fan-out, 1 when the
+     * device replicates flooded packets in the data plane.
+     *
+     * @return packet-outs of flooded packets
+     */
+    public long floodFanOut() {
+        return floodFanOut.sum();
+    }
+
+    /**
+     * Starts tracking the occupancy of the given table, replacing any
+     * previous tracking, e.g., after a pipeline change.
+     *
+     * @param tableId  table ID
+     * @param capacity table size
+     * @return new, empty, table occupancy
+     */
+    public TableOccupancy trackTable(PiTableId tableId, long capacity) {
+        final TableOccupancy occupancy = new TableOccupancy(tableId, capacity);
+        tables.put(tableId, occupancy);
+        return occupancy;
+    }
+
+    /**
+     * Returns the occupancy of the tracked tables, sorted by table ID.
+     *
+     * @return table occupancy
+     */
+    public List<TableOccupancy> tableOccupancy() {
+        return tables.values().stream()
+                .sorted(Comparator.comparing(t -> t.tableId().id()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("deviceId", deviceId)
+                .add("inFlightWrites", inFlightWrites())
+                .add("writesSucceeded", writesSucceeded())
+                .add("writesFailed", writesFailed())
+                .add("writeLatency", writeLatency)
+                .add("objectivesTranslated", objectivesTranslated())
+                .add("objectivesSucceeded", objectivesSucceeded())
+                .add("objectivesFailed", objectivesFailed())
+                .add("translationLatency", translationLatency)
+                .add("shadowedRules", shadowedRules())
+                .add("packetIns", packetIns())
+                .add("packetOuts", packetOuts())
+                .add("floods", floods())
+                .add("floodFanOut", floodFanOut())
+                .add("tables", tableOccupancy())
+                .toString();
+    }
+}
@@ -0,0 +1,91 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.metrics;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.onosproject.codec.CodecContext;
+import org.onosproject.codec.JsonCodec;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * JSON codec of the per-device metrics, used by the CLI and REST API.
+ */
+public final class DeviceMetricsCodec extends JsonCodec<DeviceMetrics> {
+
+    static final String DEVICE_ID = "deviceId";
+    static final String OBJECTIVES = "objectives";
+    static final String TRANSLATED = "translated";
+    static final String SUCCEEDED = "succeeded";
+    static final String FAILED = "failed";
+    static final String TRANSLATION_LATENCY = "translationLatency";
+    static final String SHADOWED_RULES = "shadowedRules";
+    static final String WRITES = "writes";
+    static final String IN_FLIGHT = "inFlight";
+    static final String LATENCY = "latency";
+    static final String PACKETS = "packets";
+    static final String PACKET_INS = "packetIns";
+    static final String PACKET_OUTS = "packetOuts";
+    static final String FLOODS = "floods";
+    static final String FLOOD_FAN_OUT = "floodFanOut";
+    static final String TABLES = "tables";
+    static final String TABLE_ID = "tableId";
+    static final String CAPACITY = "capacity";
+    static final String ENTRIES = "entries";
+    static final String UTILIZATION = "utilization";
+    static final String REJECTED = "rejected";
+    static final String COUNT = "count";
+    static final String MEAN_NANOS = "meanNanos";
+    static final String P50_NANOS = "p50Nanos";
+    static final String P99_NANOS = "p99Nanos";
+    static final String MAX_NANOS = "maxNanos";
+
+    @Override
+    public ObjectNode encode(DeviceMetrics metrics, CodecContext context) {
+        checkNotNull(metrics, "Device metrics cannot be null");
+
+        final ObjectNode result = context.mapper().createObjectNode()
+                .put(DEVICE_ID, metrics.deviceId().toString());
+
+        final ObjectNode objectives = result.putObject(OBJECTIVES)
+                .put(TRANSLATED, metrics.objectivesTranslated())
+                .put(SUCCEEDED, metrics.objectivesSucceeded());
+        final ObjectNode failed = objectives.putObject(FAILED);
+        metrics.objectivesFailed().forEach((error, count) -> failed.put(error.name(), count));
+        objectives.set(TRANSLATION_LATENCY, encodeLatency(metrics.translationLatency(), context));
+        objectives.put(SHADOWED_RULES, metrics.shadowedRules());
+
+        result.putObject(WRITES)
+                .put(IN_FLIGHT, metrics.inFlightWrites())
+                .put(SUCCEEDED, metrics.writesSucceeded())
+                .put(FAILED, metrics.writesFailed())
+                .set(LATENCY, encodeLatency(metrics.writeLatency(), context));
+
+        result.putObject(PACKETS)
+                .put(PACKET_INS, metrics.packetIns())
+                .put(PACKET_OUTS, metrics.packetOuts())
+                .put(FLOODS, metrics.floods())
+                .put(FLOOD_FAN_OUT, metrics.floodFanOut());
+
+        final ArrayNode tables = result.putArray(TABLES);
+        metrics.tableOccupancy().forEach(table -> tables.addObject()
+                .put(TABLE_ID, table.tableId().id())
+                .put(CAPACITY, table.capacity())
+                .put(ENTRIES, table.entries())
+                .put(UTILIZATION, table.utilization())
+                .put(REJECTED, table.rejected()));
+
+        return result;
+    }
+
+    private static ObjectNode encodeLatency(LatencyHistogram histogram, CodecContext context) {
+        return context.mapper().createObjectNode()
+                .put(COUNT, histogram.count())
+                .put(MEAN_NANOS, histogram.meanNanos())
+                .put(P50_NANOS, histogram.percentileNanos(50))
+                .put(P99_NANOS, histogram.percentileNanos(99))
+                .put(MAX_NANOS, histogram.maxNanos());
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.metrics;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets. Bucket
+ * {@code i} counts samples in {@code [2^(i-1), 2^i)} microseconds, bucket 0
+ * samples below 1 microsecond. Recording a sample only touches striped
+ * adders, so concurrent writers do not contend.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency sample.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        final long micros = TimeUnit.NANOSECONDS.toMicros(value);
+        final int bucket = Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        sumNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Returns the number of recorded samples.
+     *
+     * @return sample count
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean of the recorded samples in nanoseconds.
+     *
+     * @return mean latency, 0 if no samples were recorded
+     */
+    public long meanNanos() {
+        final long n = count.sum();
+        return n == 0 ? 0 : sumNanos.sum() / n;
+    }
+
+    /**
+     * Returns the highest recorded sample in nanoseconds.
+     *
+     * @return max latency
+     */
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile in nanoseconds, i.e.,
+     * the upper edge of the bucket containing the percentile.
+     *
+     * @param percentile percentile in (0, 100]
+     * @return percentile upper bound, 0 if no samples were recorded
+     */
+    public long percentileNanos(double percentile) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(total * Math.min(100, percentile) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(TimeUnit.MICROSECONDS.toNanos(1L << i), maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("count", count())
+                .add("meanNanos", meanNanos())
+                .add("p99Nanos", percentileNanos(99))
+                .add("maxNanos", maxNanos())
+                .toString();
+    }
+}
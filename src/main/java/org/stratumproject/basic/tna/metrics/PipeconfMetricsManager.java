@@ -0,0 +1,62 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.metrics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.onosproject.codec.CodecService;
+import org.onosproject.net.DeviceId;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.slf4j.Logger;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Component holding the per-device metrics of the basic-tna pipeconf.
+ */
+@Component(immediate = true, service = PipeconfMetricsService.class)
+public class PipeconfMetricsManager implements PipeconfMetricsService {
+
+    private static Logger log = getLogger(PipeconfMetricsManager.class);
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected CodecService codecService;
+
+    private final ConcurrentMap<DeviceId, DeviceMetrics> metrics = Maps.newConcurrentMap();
+
+    @Activate
+    protected void activate() {
+        codecService.registerCodec(DeviceMetrics.class, new DeviceMetricsCodec());
+        log.info("Started");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        codecService.unregisterCodec(DeviceMetrics.class);
+        metrics.clear();
+        log.info("Stopped");
+    }
+
+    @Override
+    public DeviceMetrics deviceMetrics(DeviceId deviceId) {
+        return metrics.computeIfAbsent(deviceId, DeviceMetrics::new);
+    }
+
+    @Override
+    public Collection<DeviceMetrics> allDeviceMetrics() {
+        return ImmutableList.copyOf(metrics.values());
+    }
+
+    @Override
+    public void clear(DeviceId deviceId) {
+        metrics.remove(deviceId);
+    }
+}
@@ -0,0 +1,36 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.metrics;
+
+import org.onosproject.net.DeviceId;
+
+import java.util.Collection;
+
+/**
+ * Service giving access to the per-device metrics of the basic-tna pipeconf.
+ */
+public interface PipeconfMetricsService {
+
+    /**
+     * Returns the metrics of the given device, creating them if needed.
+     *
+     * @param deviceId device ID
+     * @return device metrics
+     */
+    DeviceMetrics deviceMetrics(DeviceId deviceId);
+
+    /**
+     * Returns the metrics of all devices seen so far.
+     *
+     * @return device metrics
+     */
+    Collection<DeviceMetrics> allDeviceMetrics();
+
+    /**
+     * Discards the metrics of the given device.
+     *
+     * @param deviceId device ID
+     */
+    void clear(DeviceId deviceId);
+}
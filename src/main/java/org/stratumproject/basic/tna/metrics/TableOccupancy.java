@@ -0,0 +1,137 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.metrics;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.pi.model.PiTableId;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Occupancy of a table of a device, i.e., the distinct flow rules written to
+ * it, against the table size declared in the P4Info. Flow rules are tracked
+ * by ID, so that writing the same flow rule again does not count twice.
+ */
+public final class TableOccupancy {
+
+    private final PiTableId tableId;
+    private final long capacity;
+    // Guarded by this
+    private final Set<FlowId> entries = new HashSet<>();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a new, empty, occupancy of the given table.
+     *
+     * @param tableId  table ID
+     * @param capacity table size
+     */
+    public TableOccupancy(PiTableId tableId, long capacity) {
+        checkArgument(capacity > 0, "Table capacity must be positive");
+        this.tableId = checkNotNull(tableId);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the table this occupancy refers to.
+     *
+     * @return table ID
+     */
+    public PiTableId tableId() {
+        return tableId;
+    }
+
+    /**
+     * Returns the number of entries the table can hold.
+     *
+     * @return table size
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds the given flow rules if the table has room for the ones it does
+     * not hold yet; otherwise, adds none of them and counts a rejection.
+     *
+     * @param flowIds flow rule IDs
+     * @return the flow rules added, i.e., not already in the table, or empty
+     * if the table has no room for them
+     */
+    public synchronized Optional<Set<FlowId>> tryAdd(Collection<FlowId> flowIds) {
+        final Set<FlowId> added = new HashSet<>(flowIds);
+        added.removeAll(entries);
+        if (entries.size() + added.size() > capacity) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        entries.addAll(added);
+        return Optional.of(ImmutableSet.copyOf(added));
+    }
+
+    /**
+     * Adds the given flow rules regardless of the table size, e.g., when
+     * accounting for entries already on the device.
+     *
+     * @param flowIds flow rule IDs
+     */
+    public synchronized void add(Collection<FlowId> flowIds) {
+        entries.addAll(flowIds);
+    }
+
+    /**
+     * Removes the given flow rules.
+     *
+     * @param flowIds flow rule IDs
+     */
+    public synchronized void remove(Collection<FlowId> flowIds) {
+        entries.removeAll(flowIds);
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     *
+     * @return table entries
+     */
+    public synchronized long entries() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the percentage of the table capacity in use.
+     *
+     * @return utilization, between 0 and 100
+     */
+    public double utilization() {
+        return 100.0 * entries() / capacity;
+    }
+
+    /**
+     * Returns the number of writes rejected because the table was full.
+     *
+     * @return rejected writes
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("tableId", tableId)
+                .add("entries", entries())
+                .add("capacity", capacity)
+                .add("rejected", rejected())
+                .toString();
+    }
+}
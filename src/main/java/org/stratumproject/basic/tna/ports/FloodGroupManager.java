@@ -0,0 +1,197 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.ports;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.GroupId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.group.DefaultGroupBucket;
+import org.onosproject.net.group.DefaultGroupDescription;
+import org.onosproject.net.group.DefaultGroupKey;
+import org.onosproject.net.group.Group;
+import org.onosproject.net.group.GroupBucket;
+import org.onosproject.net.group.GroupBuckets;
+import org.onosproject.net.group.GroupDescription;
+import org.onosproject.net.group.GroupEvent;
+import org.onosproject.net.group.GroupKey;
+import org.onosproject.net.group.GroupListener;
+import org.onosproject.net.group.GroupService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.stratumproject.basic.tna.Constants.FLOOD_MCAST_GROUP_ID;
+import static org.stratumproject.basic.tna.behaviour.BasicUtils.KRYO;
+
+/**
+ * Component maintaining the flood group of the devices whose pipeline
+ * supports replicating packet-outs. The group is an ALL group, programmed
+ * as a multicast group of the packet replication engine, with one bucket
+ * for each enabled port but the CPU one.
+ */
+@Component(immediate = true, service = FloodGroupService.class)
+public class FloodGroupManager implements FloodGroupService {
+
+    private static Logger log = getLogger(FloodGroupManager.class);
+
+    static final GroupKey FLOOD_GROUP_KEY =
+            new DefaultGroupKey(KRYO.serialize(FLOOD_MCAST_GROUP_ID));
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected DeviceService deviceService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected GroupService groupService;
+
+    // Devices with flood group enabled, and the parameters to update it.
+    private final ConcurrentMap<DeviceId, FloodGroup> floodGroups = Maps.newConcurrentMap();
+    private final Set<DeviceId> readyDevices = Sets.newConcurrentHashSet();
+    private final DeviceListener deviceListener = new InternalDeviceListener();
+    private final GroupListener groupListener = new InternalGroupListener();
+
+    @Activate
+    protected void activate() {
+        deviceService.addListener(deviceListener);
+        groupService.addListener(groupListener);
+        log.info("Started");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        groupService.removeListener(groupListener);
+        deviceService.removeListener(deviceListener);
+        floodGroups.clear();
+        readyDevices.clear();
+        log.info("Stopped");
+    }
+
+    @Override
+    public void enableFloodGroup(DeviceId deviceId, ApplicationId appId, PortNumber cpuPort) {
+        floodGroups.put(deviceId, new FloodGroup(appId, cpuPort));
+        updateFloodGroup(deviceId);
+    }
+
+    @Override
+    public boolean isFloodGroupReady(DeviceId deviceId) {
+        return readyDevices.contains(deviceId);
+    }
+
+    private void updateFloodGroup(DeviceId deviceId) {
+        final FloodGroup floodGroup = floodGroups.get(deviceId);
+        if (floodGroup == null) {
+            return;
+        }
+        final List<GroupBucket> buckets = PortInventoryManager
+                .loadFloodPorts(deviceService, deviceId, floodGroup.cpuPort)
+                .stream()
+                .map(port -> DefaultGroupBucket.createAllGroupBucket(
+                        DefaultTrafficTreatment.builder().setOutput(port).build()))
+                .collect(Collectors.toList());
+        if (buckets.isEmpty()) {
+            // Nothing to replicate to yet, wait for ports to be added.
+            return;
+        }
+        final Group group = groupService.getGroup(deviceId, FLOOD_GROUP_KEY);
+        if (group == null) {
+            log.info("Adding flood group on {} with {} ports", deviceId, buckets.size());
+            groupService.addGroup(new DefaultGroupDescription(
+                    deviceId, GroupDescription.Type.ALL, new GroupBuckets(buckets),
+                    FLOOD_GROUP_KEY, FLOOD_MCAST_GROUP_ID, floodGroup.appId));
+        } else {
+            if (group.state() == Group.GroupState.ADDED) {
+                readyDevices.add(deviceId);
+            }
+            if (!Set.copyOf(group.buckets().buckets()).equals(Set.copyOf(buckets))) {
+                log.info("Updating flood group on {} with {} ports", deviceId, buckets.size());
+                groupService.setBucketsForGroup(deviceId, FLOOD_GROUP_KEY, new GroupBuckets(buckets),
+                                                FLOOD_GROUP_KEY, floodGroup.appId);
+            }
+        }
+    }
+
+    private static final class FloodGroup {
+        private final ApplicationId appId;
+        private final PortNumber cpuPort;
+
+        private FloodGroup(ApplicationId appId, PortNumber cpuPort) {
+            this.appId = appId;
+            this.cpuPort = cpuPort;
+        }
+    }
+
+    private class InternalDeviceListener implements DeviceListener {
+
+        @Override
+        public boolean isRelevant(DeviceEvent event) {
+            return floodGroups.containsKey(event.subject().id());
+        }
+
+        @Override
+        public void event(DeviceEvent event) {
+            final DeviceId deviceId = event.subject().id();
+            switch (event.type()) {
+                case DEVICE_REMOVED:
+                    floodGroups.remove(deviceId);
+                    readyDevices.remove(deviceId);
+                    break;
+                case DEVICE_AVAILABILITY_CHANGED:
+                    if (deviceService.isAvailable(deviceId)) {
+                        // Ready again once the group is found on the device.
+                        updateFloodGroup(deviceId);
+                    } else {
+                        readyDevices.remove(deviceId);
+                    }
+                    break;
+                case PORT_ADDED:
+                case PORT_UPDATED:
+                case PORT_REMOVED:
+                    updateFloodGroup(deviceId);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private class InternalGroupListener implements GroupListener {
+
+        @Override
+        public boolean isRelevant(GroupEvent event) {
+            return event.subject().id().equals(GroupId.valueOf(FLOOD_MCAST_GROUP_ID));
+        }
+
+        @Override
+        public void event(GroupEvent event) {
+            final DeviceId deviceId = event.subject().deviceId();
+            switch (event.type()) {
+                case GROUP_ADDED:
+                case GROUP_UPDATED:
+                    readyDevices.add(deviceId);
+                    break;
+                case GROUP_REMOVED:
+                case GROUP_ADD_FAILED:
+                    readyDevices.remove(deviceId);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.ports;
+
+import org.onosproject.core.ApplicationId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+/**
+ * Service maintaining, for each device, a multicast group replicating
+ * packets to all the ports a packet-out should be flooded to.
+ */
+public interface FloodGroupService {
+
+    /**
+     * Programs the flood group of the given device and keeps its replicas in
+     * sync with the device ports from now on.
+     *
+     * @param deviceId device ID
+     * @param appId    application ID owning the group
+     * @param cpuPort  CPU port of the device, never part of the group
+     */
+    void enableFloodGroup(DeviceId deviceId, ApplicationId appId, PortNumber cpuPort);
+
+    /**
+     * Returns true if the flood group of the given device has been
+     * programmed on the device, and can be used by packet-outs.
+     *
+     * @param deviceId device ID
+     * @return true if the flood group is available
+     */
+    boolean isFloodGroupReady(DeviceId deviceId);
+}
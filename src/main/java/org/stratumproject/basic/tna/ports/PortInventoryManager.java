@@ -0,0 +1,117 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.ports;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.slf4j.Logger;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Component caching the ports of each device. Entries are computed on first
+ * use and discarded on device and port events, so that lookups on the
+ * packet I/O path do not hit the device store once warm.
+ */
+@Component(immediate = true, service = PortInventoryService.class)
+public class PortInventoryManager implements PortInventoryService {
+
+    private static Logger log = getLogger(PortInventoryManager.class);
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected DeviceService deviceService;
+
+    private final ConcurrentMap<DeviceId, Set<PortNumber>> floodPorts = Maps.newConcurrentMap();
+    // Named connect points by device and raw port number.
+    private final ConcurrentMap<DeviceId, ConcurrentMap<Long, ConnectPoint>> namedConnectPoints =
+            Maps.newConcurrentMap();
+    private final DeviceListener deviceListener = new InternalDeviceListener();
+
+    @Activate
+    protected void activate() {
+        deviceService.addListener(deviceListener);
+        log.info("Started");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        deviceService.removeListener(deviceListener);
+        floodPorts.clear();
+        namedConnectPoints.clear();
+        log.info("Stopped");
+    }
+
+    @Override
+    public Set<PortNumber> floodPorts(DeviceId deviceId, PortNumber cpuPort) {
+        return floodPorts.computeIfAbsent(deviceId, d -> loadFloodPorts(deviceService, d, cpuPort));
+    }
+
+    @Override
+    public ConnectPoint namedConnectPoint(ConnectPoint connectPoint) {
+        final ConcurrentMap<Long, ConnectPoint> devicePorts = namedConnectPoints.computeIfAbsent(
+                connectPoint.deviceId(), d -> Maps.newConcurrentMap());
+        final ConnectPoint named = devicePorts.computeIfAbsent(connectPoint.port().toLong(), p -> {
+            final Port port = deviceService.getPort(connectPoint);
+            return port == null ? null : new ConnectPoint(connectPoint.deviceId(), port.number());
+        });
+        // Not known yet, not cached so that it is looked up again.
+        return named == null ? connectPoint : named;
+    }
+
+    static Set<PortNumber> loadFloodPorts(
+            DeviceService deviceService, DeviceId deviceId, PortNumber cpuPort) {
+        final ImmutableSet.Builder<PortNumber> builder = ImmutableSet.builder();
+        for (Port port : deviceService.getPorts(deviceId)) {
+            if (port.isEnabled() && !port.number().equals(cpuPort)) {
+                builder.add(port.number());
+            }
+        }
+        return builder.build();
+    }
+
+    private class InternalDeviceListener implements DeviceListener {
+
+        @Override
+        public void event(DeviceEvent event) {
+            final DeviceId deviceId = event.subject().id();
+            switch (event.type()) {
+                case DEVICE_REMOVED:
+                    namedConnectPoints.remove(deviceId);
+                    floodPorts.remove(deviceId);
+                    break;
+                case DEVICE_ADDED:
+                case DEVICE_UPDATED:
+                case DEVICE_AVAILABILITY_CHANGED:
+                    floodPorts.remove(deviceId);
+                    break;
+                case PORT_ADDED:
+                case PORT_UPDATED:
+                case PORT_REMOVED:
+                    final ConcurrentMap<Long, ConnectPoint> devicePorts = namedConnectPoints.get(deviceId);
+                    if (devicePorts != null && event.port() != null) {
+                        devicePorts.remove(event.port().number().toLong());
+                    }
+                    floodPorts.remove(deviceId);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.ports;
+
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+
+import java.util.Set;
+
+/**
+ * Service caching the ports of the devices programmed with the basic-tna
+ * pipeconf, kept up to date with device events.
+ */
+public interface PortInventoryService {
+
+    /**
+     * Returns the ports of the given device a packet should be flooded to,
+     * that is all enabled ports but the CPU one. The CPU port is expected to
+     * be the same for all invocations with the same device.
+     *
+     * @param deviceId device ID
+     * @param cpuPort  CPU port of the device
+     * @return immutable set of ports
+     */
+    Set<PortNumber> floodPorts(DeviceId deviceId, PortNumber cpuPort);
+
+    /**
+     * Returns the given connect point with the port number as known by the
+     * device service, that is including the port name. Returns the given
+     * connect point if the port is unknown.
+     *
+     * @param connectPoint connect point with port number only
+     * @return connect point with named port
+     */
+    ConnectPoint namedConnectPoint(ConnectPoint connectPoint);
+}
@@ -0,0 +1,7 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+/**
+ * Per-device port inventory used by the basic-tna pipeconf behaviours.
+ */
+package org.stratumproject.basic.tna.ports;
@@ -0,0 +1,61 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.rest;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.onlab.util.ItemNotFoundException;
+import org.onosproject.net.DeviceId;
+import org.onosproject.rest.AbstractWebResource;
+import org.stratumproject.basic.tna.metrics.DeviceMetrics;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsService;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Query the runtime metrics of the basic-tna pipeconf behaviours.
+ */
+@Path("metrics")
+public class PipeconfMetricsWebResource extends AbstractWebResource {
+
+    private static final String DEVICES = "devices";
+
+    /**
+     * Gets the metrics of all devices.
+     *
+     * @return 200 OK with the pipeliner and packet I/O metrics of all devices
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMetrics() {
+        final PipeconfMetricsService metricsService = get(PipeconfMetricsService.class);
+        final ObjectNode root = encodeArray(
+                DeviceMetrics.class, DEVICES, metricsService.allDeviceMetrics());
+        return ok(root).build();
+    }
+
+    /**
+     * Gets the metrics of a device.
+     *
+     * @param deviceId device identifier
+     * @return 200 OK with the pipeliner and packet I/O metrics of the device,
+     * 404 if the device has no metrics
+     */
+    @GET
+    @Path("{deviceId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getDeviceMetrics(@PathParam("deviceId") String deviceId) {
+        final PipeconfMetricsService metricsService = get(PipeconfMetricsService.class);
+        final DeviceId id = DeviceId.deviceId(deviceId);
+        final DeviceMetrics metrics = metricsService.allDeviceMetrics().stream()
+                .filter(m -> m.deviceId().equals(id))
+                .findFirst()
+                .orElseThrow(() -> new ItemNotFoundException("No metrics for device " + deviceId));
+        return ok(codec(DeviceMetrics.class).encode(metrics, this)).build();
+    }
+}
@@ -0,0 +1,7 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+/**
+ * REST API of the basic-tna pipeconf.
+ */
+package org.stratumproject.basic.tna.rest;
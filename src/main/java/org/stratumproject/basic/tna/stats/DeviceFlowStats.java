@@ -0,0 +1,75 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.stats;
+
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.pi.runtime.PiCounterCellData;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Statistics of the flow rules of a device, updated one sample at a time.
+ * Rates are computed against the previous sample of each flow rule; flow
+ * rules missing from a sample are dropped. The statistics of the entries of
+ * the egress flow stats table are also attached to the table0 entries they
+ * pair with. Samples are taken by a single thread, readers get an immutable
+ * snapshot.
+ */
+final class DeviceFlowStats {
+
+    private volatile Map<FlowId, FlowStats> stats = Map.of();
+    private long lastSampleNanos;
+
+    /**
+     * Updates the statistics with a new sample of the counters.
+     *
+     * @param counters  counters, by flow rule ID
+     * @param egressOf  egress entry of the table0 entries counted at egress
+     * @param nowNanos  time of the sample, in nanoseconds
+     */
+    void update(Map<FlowId, PiCounterCellData> counters, Map<FlowId, FlowId> egressOf, long nowNanos) {
+        final Map<FlowId, FlowStats> previous = stats;
+        final double seconds = lastSampleNanos == 0 ? 0 : (nowNanos - lastSampleNanos) / 1e9;
+        final Map<FlowId, FlowStats> updated = new HashMap<>(counters.size() * 4 / 3 + 1);
+        counters.forEach((flowId, data) -> {
+            final FlowStats last = previous.get(flowId);
+            if (last == null || seconds <= 0) {
+                updated.put(flowId, new FlowStats(data.packets(), data.bytes(), 0, 0));
+            } else if (last.packets() == data.packets() && last.bytes() == data.bytes()
+                    && last.packetRate() == 0 && last.byteRate() == 0) {
+                // Idle entry, the common case, nothing to allocate.
+                updated.put(flowId, last);
+            } else if (data.packets() < last.packets() || data.bytes() < last.bytes()) {
+                // Counters were reset, e.g., the entry was written again.
+                updated.put(flowId, new FlowStats(data.packets(), data.bytes(), 0, 0));
+            } else {
+                updated.put(flowId, new FlowStats(
+                        data.packets(), data.bytes(),
+                        (data.packets() - last.packets()) / seconds,
+                        (data.bytes() - last.bytes()) / seconds));
+            }
+        });
+        egressOf.forEach((flowId, egressId) -> {
+            final FlowStats ingress = updated.get(flowId);
+            final FlowStats egress = updated.get(egressId);
+            // Nothing to allocate if both entries are idle.
+            if (ingress != null && egress != null && ingress.egress().orElse(null) != egress) {
+                updated.put(flowId, ingress.withEgress(egress));
+            }
+        });
+        stats = Collections.unmodifiableMap(updated);
+        lastSampleNanos = nowNanos;
+    }
+
+    /**
+     * Returns the statistics of the last sample.
+     *
+     * @return flow statistics, by flow rule ID
+     */
+    Map<FlowId, FlowStats> stats() {
+        return stats;
+    }
+}
@@ -0,0 +1,111 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.stats;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DefaultPortStatistics;
+import org.onosproject.net.device.PortStatistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of the ports of a device, updated one sample of the port
+ * counters at a time. Totals are accumulated from the deltas between
+ * samples, so that they keep growing when the counters are reset, e.g., by a
+ * pipeline push. Ports missing from a sample are dropped. Samples are taken
+ * by a single thread, readers get an immutable snapshot.
+ */
+final class DevicePortStats {
+
+    // Counters of a port, in sample arrays.
+    static final int RX_PACKETS = 0;
+    static final int RX_BYTES = 1;
+    static final int TX_PACKETS = 2;
+    static final int TX_BYTES = 3;
+    static final int COUNTERS = 4;
+
+    private final DeviceId deviceId;
+    private Map<PortNumber, long[]> lastSample = Map.of();
+    private Map<PortNumber, long[]> totals = Map.of();
+    private long firstSampleNanos;
+    private long lastSampleNanos;
+    private volatile List<PortStatistics> statistics = List.of();
+    private volatile List<PortStatistics> deltas = List.of();
+
+    DevicePortStats(DeviceId deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    /**
+     * Updates the statistics with a new sample of the port counters.
+     *
+     * @param sample   counters, by port, indexed by {@link #RX_PACKETS} etc.
+     * @param nowNanos time of the sample, in nanoseconds
+     */
+    void update(Map<PortNumber, long[]> sample, long nowNanos) {
+        if (firstSampleNanos == 0) {
+            firstSampleNanos = nowNanos;
+        }
+        final boolean first = lastSampleNanos == 0;
+        final Map<PortNumber, long[]> updatedTotals = new HashMap<>(sample.size() * 4 / 3 + 1);
+        final List<PortStatistics> updatedStatistics = new ArrayList<>(sample.size());
+        final List<PortStatistics> updatedDeltas = new ArrayList<>(first ? 0 : sample.size());
+        sample.forEach((port, counters) -> {
+            final long[] last = lastSample.get(port);
+            final long[] total = totals.getOrDefault(port, new long[COUNTERS]).clone();
+            final long[] delta = new long[COUNTERS];
+            for (int i = 0; i < COUNTERS; i++) {
+                // Counters going back were reset, they counted from 0 since.
+                delta[i] = last == null || counters[i] < last[i] ? counters[i] : counters[i] - last[i];
+                total[i] += delta[i];
+            }
+            updatedTotals.put(port, total);
+            updatedStatistics.add(portStatistics(port, total, nowNanos - firstSampleNanos));
+            if (!first) {
+                updatedDeltas.add(portStatistics(port, delta, nowNanos - lastSampleNanos));
+            }
+        });
+        lastSample = Map.copyOf(sample);
+        totals = updatedTotals;
+        lastSampleNanos = nowNanos;
+        statistics = Collections.unmodifiableList(updatedStatistics);
+        deltas = Collections.unmodifiableList(updatedDeltas);
+    }
+
+    /**
+     * Returns the statistics of the ports since the first sample.
+     *
+     * @return port statistics
+     */
+    List<PortStatistics> statistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the statistics of the ports between the last two samples.
+     *
+     * @return port statistics deltas
+     */
+    List<PortStatistics> deltas() {
+        return deltas;
+    }
+
+    private PortStatistics portStatistics(PortNumber port, long[] counters, long durationNanos) {
+        return DefaultPortStatistics.builder()
+                .setDeviceId(deviceId)
+                .setPort(port)
+                .setPacketsReceived(counters[RX_PACKETS])
+                .setBytesReceived(counters[RX_BYTES])
+                .setPacketsSent(counters[TX_PACKETS])
+                .setBytesSent(counters[TX_BYTES])
+                .setDurationSec(durationNanos / 1_000_000_000L)
+                .setDurationNano(durationNanos % 1_000_000_000L)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.stats;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Optional;
+
+/**
+ * Counters of a flow rule from the last sample of the direct counters of its
+ * table, with the rates since the previous sample. Flow rules of table0
+ * counted again at egress also carry the statistics of their egress entry.
+ */
+public final class FlowStats {
+
+    private final long packets;
+    private final long bytes;
+    private final double packetRate;
+    private final double byteRate;
+    private final FlowStats egress;
+
+    /**
+     * Creates new flow statistics.
+     *
+     * @param packets    packet count
+     * @param bytes      byte count
+     * @param packetRate packets per second
+     * @param byteRate   bytes per second
+     */
+    public FlowStats(long packets, long bytes, double packetRate, double byteRate) {
+        this(packets, bytes, packetRate, byteRate, null);
+    }
+
+    private FlowStats(long packets, long bytes, double packetRate, double byteRate, FlowStats egress) {
+        this.packets = packets;
+        this.bytes = bytes;
+        this.packetRate = packetRate;
+        this.byteRate = byteRate;
+        this.egress = egress;
+    }
+
+    /**
+     * Returns a copy of these statistics with the given statistics of the
+     * egress entry of the flow rule.
+     *
+     * @param egress statistics of the egress entry
+     * @return flow statistics
+     */
+    public FlowStats withEgress(FlowStats egress) {
+        return new FlowStats(packets, bytes, packetRate, byteRate, egress);
+    }
+
+    /**
+     * Returns the number of packets matched by the flow rule.
+     *
+     * @return packet count
+     */
+    public long packets() {
+        return packets;
+    }
+
+    /**
+     * Returns the number of bytes matched by the flow rule.
+     *
+     * @return byte count
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the packets per second matched since the previous sample, 0
+     * for the first sample of the flow rule.
+     *
+     * @return packet rate
+     */
+    public double packetRate() {
+        return packetRate;
+    }
+
+    /**
+     * Returns the bytes per second matched since the previous sample, 0 for
+     * the first sample of the flow rule.
+     *
+     * @return byte rate
+     */
+    public double byteRate() {
+        return byteRate;
+    }
+
+    /**
+     * Returns the statistics of the egress entry of the flow rule, sampled
+     * in the same read, if the flow rule is counted at egress. Packets
+     * counted at ingress but not at egress were dropped inside the switch,
+     * or are still in its queues.
+     *
+     * @return statistics of the egress entry
+     */
+    public Optional<FlowStats> egress() {
+        return Optional.ofNullable(egress);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("packets", packets)
+                .add("bytes", bytes)
+                .add("packetRate", packetRate)
+                .add("byteRate", byteRate)
+                .add("egress", egress)
+                .omitNullValues()
+                .toString();
+    }
+}
@@ -0,0 +1,203 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.stats;
+
+import com.google.common.collect.Maps;
+import org.onlab.util.ImmutableByteSequence;
+import org.onosproject.mastership.MastershipService;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.net.pi.model.PiTableId;
+import org.onosproject.net.pi.runtime.PiAction;
+import org.onosproject.net.pi.runtime.PiActionParam;
+import org.onosproject.net.pi.runtime.PiCounterCell;
+import org.onosproject.net.pi.runtime.PiCounterCellData;
+import org.onosproject.net.pi.runtime.PiExactFieldMatch;
+import org.onosproject.net.pi.runtime.PiTableEntryHandle;
+import org.onosproject.net.pi.runtime.PiTableEntry;
+import org.onosproject.net.pi.service.PiPipeconfService;
+import org.onosproject.net.pi.service.PiTranslatedEntity;
+import org.onosproject.net.pi.service.PiTranslationService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.slf4j.Logger;
+import org.stratumproject.basic.tna.PipeconfSettings;
+import org.stratumproject.basic.tna.behaviour.DirectCounterReader;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Component polling the table0 direct counters of the basic-tna devices
+ * this instance is master of. Each poll reads all the counters of a device
+ * with a single wildcard read, instead of one counter cell per entry, and
+ * maps them to flow rules through the translation store. The counters of the
+ * exact table before table0 and of the egress flow stats table are read in
+ * the same request, the latter paired with the table0 entries setting the
+ * same stats flow ID.
+ */
+@Component(immediate = true, service = FlowStatsService.class)
+public class FlowStatsManager implements FlowStatsService {
+
+    private static Logger log = getLogger(FlowStatsManager.class);
+
+    // Tables whose direct counters are read, if the pipeline has them.
+    private static final List<PiTableId> TABLES = List.of(
+            P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT, P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0,
+            P4InfoConstants.BASIC_EGRESS_STATS_FLOWS);
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected DeviceService deviceService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected MastershipService mastershipService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected PiTranslationService translationService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected PipeconfSettings settings;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected PiPipeconfService pipeconfService;
+
+    private final ConcurrentMap<DeviceId, DeviceFlowStats> devices = Maps.newConcurrentMap();
+    private final PeriodicPoller poller = new PeriodicPoller(
+            "flow-stats", () -> settings.flowStatsPollIntervalSec(), this::pollDevices, devices::clear, log);
+
+    @Activate
+    protected void activate() {
+        poller.start();
+        log.info("Started");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        poller.stop();
+        devices.clear();
+        log.info("Stopped");
+    }
+
+    @Override
+    public Map<FlowId, FlowStats> flowStats(DeviceId deviceId) {
+        final DeviceFlowStats stats = devices.get(deviceId);
+        return stats == null ? Map.of() : stats.stats();
+    }
+
+    @Override
+    public boolean isPolled(DeviceId deviceId) {
+        return devices.containsKey(deviceId);
+    }
+
+    private void pollDevices() {
+        final Set<DeviceId> polled = new HashSet<>();
+        for (Device device : deviceService.getAvailableDevices()) {
+            if (!mastershipService.isLocalMaster(device.id()) || !device.is(DirectCounterReader.class)) {
+                continue;
+            }
+            polled.add(device.id());
+            final long startNanos = System.nanoTime();
+            final Collection<PiCounterCell> cells = device.as(DirectCounterReader.class)
+                    .readDirectCounters(tablesOf(device));
+            final Map<FlowId, PiCounterCellData> counters = new HashMap<>(cells.size() * 4 / 3 + 1);
+            final Map<FlowId, FlowId> egressOf = new HashMap<>();
+            flowCounters(device.id(), cells, counters, egressOf);
+            devices.computeIfAbsent(device.id(), d -> new DeviceFlowStats())
+                    .update(counters, egressOf, startNanos);
+            if (log.isTraceEnabled()) {
+                log.trace("Read {} counters of {} in {} us", cells.size(), device.id(),
+                          (System.nanoTime() - startNanos) / 1000);
+            }
+        }
+        // E.g., devices removed or whose mastership moved to another instance.
+        devices.keySet().retainAll(polled);
+    }
+
+    // Reads the exact and egress flow stats tables only if the pipeline has
+    // them.
+    private List<PiTableId> tablesOf(Device device) {
+        final Optional<PiPipelineModel> model = pipeconfService.getPipeconf(device.id())
+                .map(PiPipeconf::pipelineModel);
+        if (model.isEmpty()) {
+            return List.of(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0);
+        }
+        final List<PiTableId> tables = new ArrayList<>(TABLES.size());
+        for (PiTableId tableId : TABLES) {
+            if (tableId.equals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                    || model.get().table(tableId).isPresent()) {
+                tables.add(tableId);
+            }
+        }
+        return tables;
+    }
+
+    // Maps counter cells to flow rules, and table0 entries counted at egress
+    // to their egress entry, matching the stats flow ID they set.
+    private void flowCounters(DeviceId deviceId, Collection<PiCounterCell> cells,
+                              Map<FlowId, PiCounterCellData> counters, Map<FlowId, FlowId> egressOf) {
+        final Map<ImmutableByteSequence, FlowId> countedAtIngress = new HashMap<>();
+        final Map<ImmutableByteSequence, FlowId> countedAtEgress = new HashMap<>();
+        for (PiCounterCell cell : cells) {
+            final PiTableEntry entry = cell.cellId().tableEntry();
+            if (entry == null) {
+                continue;
+            }
+            final Optional<PiTranslatedEntity<FlowRule, PiTableEntry>> translated =
+                    translationService.flowRuleTranslator().lookup(PiTableEntryHandle.of(deviceId, entry));
+            // Entries not written by ONOS, e.g., the default entry, are ignored.
+            if (translated.isEmpty()) {
+                continue;
+            }
+            final FlowId flowId = translated.get().original().id();
+            counters.put(flowId, cell.data());
+            statsFlowId(translated.get().translated()).ifPresent(id -> (
+                    entry.table().equals(P4InfoConstants.BASIC_EGRESS_STATS_FLOWS)
+                            ? countedAtEgress : countedAtIngress).put(id, flowId));
+        }
+        countedAtIngress.forEach((id, flowId) -> {
+            final FlowId egressId = countedAtEgress.get(id);
+            if (egressId != null) {
+                egressOf.put(flowId, egressId);
+            }
+        });
+    }
+
+    // Stats flow ID set by the action of a table0 entry, or matched by an
+    // entry of the egress flow stats table.
+    private static Optional<ImmutableByteSequence> statsFlowId(PiTableEntry entry) {
+        if (entry.table().equals(P4InfoConstants.BASIC_EGRESS_STATS_FLOWS)) {
+            return entry.matchKey().fieldMatches().stream()
+                    .filter(m -> m.fieldId().equals(P4InfoConstants.HDR_STATS_FLOW_ID))
+                    .filter(PiExactFieldMatch.class::isInstance)
+                    .map(m -> ((PiExactFieldMatch) m).value())
+                    .findFirst();
+        }
+        if (!(entry.action() instanceof PiAction) || !((PiAction) entry.action()).id()
+                .equals(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_COUNT)) {
+            return Optional.empty();
+        }
+        return ((PiAction) entry.action()).parameters().stream()
+                .filter(p -> p.id().equals(P4InfoConstants.STATS_FLOW_ID))
+                .map(PiActionParam::value)
+                .findFirst();
+    }
+}
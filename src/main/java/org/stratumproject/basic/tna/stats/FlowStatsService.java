@@ -0,0 +1,35 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.stats;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowId;
+
+import java.util.Map;
+
+/**
+ * Service collecting the table0 direct counters of basic-tna devices with
+ * one read per device and polling interval.
+ */
+public interface FlowStatsService {
+
+    /**
+     * Returns the statistics of the flow rules of table0 of the given
+     * device, from the last sample. Empty if the device is not polled by
+     * this instance, or if collection is disabled.
+     *
+     * @param deviceId device ID
+     * @return flow statistics, by flow rule ID
+     */
+    Map<FlowId, FlowStats> flowStats(DeviceId deviceId);
+
+    /**
+     * Returns true if the table0 direct counters of the given device are
+     * read in bulk by this instance, and a sample has been read.
+     *
+     * @param deviceId device ID
+     * @return true if the device is polled
+     */
+    boolean isPolled(DeviceId deviceId);
+}
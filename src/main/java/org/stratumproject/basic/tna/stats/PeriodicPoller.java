@@ -0,0 +1,84 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.stats;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.IntSupplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Poller of the devices of a statistics collector, on a single thread. Each
+ * poll is followed by the next one after the interval configured at that
+ * time. While the interval is 0, polling is disabled, the collected state
+ * is discarded, and the interval is checked again every few seconds.
+ */
+final class PeriodicPoller {
+
+    // Delay before checking again whether polling was enabled.
+    private static final long DISABLED_CHECK_SECONDS = 5;
+
+    private final String name;
+    private final IntSupplier intervalSec;
+    private final Runnable poll;
+    private final Runnable disabled;
+    private final Logger log;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Creates a new poller.
+     *
+     * @param name        name of the polled statistics, e.g., port-stats
+     * @param intervalSec current polling interval, in seconds
+     * @param poll        polls all devices
+     * @param disabled    discards the collected state, polling is disabled
+     * @param log         logger of the collector
+     */
+    PeriodicPoller(String name, IntSupplier intervalSec, Runnable poll, Runnable disabled, Logger log) {
+        this.name = name;
+        this.intervalSec = intervalSec;
+        this.poll = poll;
+        this.disabled = disabled;
+        this.log = log;
+    }
+
+    /**
+     * Starts polling.
+     */
+    void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("basic-tna/" + name, "poller-%d", log));
+        executor.execute(this::poll);
+    }
+
+    /**
+     * Stops polling, interrupting the current poll if any.
+     */
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    private void poll() {
+        final int interval = intervalSec.getAsInt();
+        if (interval > 0) {
+            try {
+                poll.run();
+            } catch (RuntimeException e) {
+                log.warn("Unable to poll {}", name, e);
+            }
+        } else {
+            disabled.run();
+        }
+        try {
+            executor.schedule(this::poll, interval > 0 ? interval : DISABLED_CHECK_SECONDS, SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Stopped.
+        }
+    }
+}
@@ -0,0 +1,240 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.stats;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.onosproject.mastership.MastershipService;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.device.PortStatistics;
+import org.onosproject.net.pi.model.PiCounterId;
+import org.onosproject.net.pi.model.PiCounterModel;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.net.pi.runtime.PiCounterCell;
+import org.onosproject.net.pi.runtime.PiCounterCellId;
+import org.onosproject.net.pi.service.PiPipeconfService;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.slf4j.Logger;
+import org.stratumproject.basic.tna.Constants;
+import org.stratumproject.basic.tna.PipeconfSettings;
+import org.stratumproject.basic.tna.behaviour.BasicCapabilities;
+import org.stratumproject.basic.tna.behaviour.CounterReader;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Component polling the port counters of the basic-tna devices this instance
+ * is master of, the ingress and egress port counters of the v1model program,
+ * or their equivalent in the TNA one. Counter cells are indexed by data
+ * plane port, mapped to the ONOS ports of the device. All cells are read
+ * with a single wildcard request, or the cells of the ports of the device in
+ * requests of bounded size.
+ */
+@Component(immediate = true, service = PortStatsService.class)
+public class PortStatsManager implements PortStatsService {
+
+    private static Logger log = getLogger(PortStatsManager.class);
+
+    // Port counters, received and sent. The v1model program has them in its
+    // ingress and egress controls instead of BasicIngress.
+    private static final List<PiCounterId> PORT_COUNTERS = List.of(
+            P4InfoConstants.BASIC_INGRESS_PORT_COUNTERS_INGRESS_INGRESS_PORT_COUNTER,
+            P4InfoConstants.BASIC_INGRESS_PORT_COUNTERS_EGRESS_EGRESS_PORT_COUNTER);
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected DeviceService deviceService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected MastershipService mastershipService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected PiPipeconfService pipeconfService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    protected PipeconfSettings settings;
+
+    private final ConcurrentMap<DeviceId, DevicePortStats> devices = Maps.newConcurrentMap();
+    private final PeriodicPoller poller = new PeriodicPoller(
+            "port-stats", () -> settings.portStatsPollIntervalSec(), this::pollDevices, devices::clear, log);
+
+    @Activate
+    protected void activate() {
+        poller.start();
+        log.info("Started");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        poller.stop();
+        devices.clear();
+        log.info("Stopped");
+    }
+
+    @Override
+    public Collection<PortStatistics> portStatistics(DeviceId deviceId) {
+        final DevicePortStats stats = devices.get(deviceId);
+        return stats == null ? List.of() : stats.statistics();
+    }
+
+    @Override
+    public Collection<PortStatistics> portDeltaStatistics(DeviceId deviceId) {
+        final DevicePortStats stats = devices.get(deviceId);
+        return stats == null ? List.of() : stats.deltas();
+    }
+
+    private void pollDevices() {
+        final Set<DeviceId> polled = new HashSet<>();
+        for (Device device : deviceService.getAvailableDevices()) {
+            if (!mastershipService.isLocalMaster(device.id()) || !device.is(CounterReader.class)) {
+                continue;
+            }
+            final Optional<PiPipeconf> pipeconf = pipeconfService.getPipeconf(device.id());
+            if (pipeconf.isEmpty()) {
+                continue;
+            }
+            final List<PiCounterModel> counters = portCounters(pipeconf.get().pipelineModel());
+            final Map<Long, PortNumber> ports = cellIndexes(
+                    new BasicCapabilities(pipeconf.get()), deviceService.getPorts(device.id()));
+            if (counters.isEmpty() || ports.isEmpty()) {
+                continue;
+            }
+            polled.add(device.id());
+            final long startNanos = System.nanoTime();
+            final Collection<PiCounterCell> cells = readCells(device, counters, ports.keySet());
+            devices.computeIfAbsent(device.id(), DevicePortStats::new)
+                    .update(sample(counters.get(0).id(), cells, ports), startNanos);
+            if (log.isTraceEnabled()) {
+                log.trace("Read {} port counter cells of {} in {} us", cells.size(), device.id(),
+                          (System.nanoTime() - startNanos) / 1000);
+            }
+        }
+        // E.g., devices removed or whose mastership moved to another instance.
+        devices.keySet().retainAll(polled);
+    }
+
+    /**
+     * Returns the received and sent port counters of the given pipeline, or
+     * an empty list if it does not have both, counting packets and bytes.
+     *
+     * @param model pipeline model
+     * @return port counters, received first
+     */
+    static List<PiCounterModel> portCounters(PiPipelineModel model) {
+        final List<PiCounterModel> counters = new ArrayList<>(PORT_COUNTERS.size());
+        for (PiCounterId counterId : PORT_COUNTERS) {
+            final Optional<PiCounterModel> counter = model.counters().stream()
+                    .filter(c -> localName(c.id()).equals(localName(counterId)))
+                    .filter(c -> c.unit() == PiCounterModel.Unit.PACKETS_AND_BYTES)
+                    .findFirst();
+            if (counter.isEmpty()) {
+                return List.of();
+            }
+            counters.add(counter.get());
+        }
+        return counters;
+    }
+
+    // Name of a counter within its top-level control.
+    private static String localName(PiCounterId counterId) {
+        return counterId.id().substring(counterId.id().indexOf('.') + 1);
+    }
+
+    /**
+     * Returns the index of the port counter cells of the given ports. On
+     * v1model, the counters are indexed by the ONOS port number, which is
+     * the data plane port. On TNA, they are indexed by the data plane port
+     * (PortId_t), which differs from the SDN port number of the ONOS port
+     * and is read from its {@value Constants#DATA_PLANE_PORT} annotation.
+     * Logical ports, and TNA ports without the annotation, are omitted.
+     *
+     * @param capabilities capabilities of the pipeline
+     * @param ports        ports of the device
+     * @return ports, by counter cell index
+     */
+    static Map<Long, PortNumber> cellIndexes(BasicCapabilities capabilities, Iterable<Port> ports) {
+        final Map<Long, PortNumber> indexes = new HashMap<>();
+        for (Port port : ports) {
+            if (port.number().isLogical()) {
+                continue;
+            }
+            if (capabilities.isArchV1model()) {
+                indexes.put(port.number().toLong(), port.number());
+                continue;
+            }
+            final String dataPlanePort = port.annotations().value(Constants.DATA_PLANE_PORT);
+            if (dataPlanePort == null) {
+                continue;
+            }
+            try {
+                indexes.put(Long.parseLong(dataPlanePort), port.number());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid {} annotation of {}/{}: {}", Constants.DATA_PLANE_PORT,
+                         port.element().id(), port.number(), dataPlanePort);
+            }
+        }
+        return indexes;
+    }
+
+    private Collection<PiCounterCell> readCells(Device device, List<PiCounterModel> counters,
+                                                Set<Long> indexes) {
+        final CounterReader reader = device.as(CounterReader.class);
+        final int cellsPerRequest = settings.portStatsCellsPerRequest();
+        if (cellsPerRequest == 0) {
+            final List<PiCounterId> counterIds = new ArrayList<>(counters.size());
+            counters.forEach(c -> counterIds.add(c.id()));
+            return reader.readCounters(counterIds);
+        }
+        final List<PiCounterCellId> cellIds = new ArrayList<>();
+        for (long index : indexes) {
+            counters.stream()
+                    .filter(c -> index < c.size())
+                    .forEach(c -> cellIds.add(PiCounterCellId.ofIndirect(c.id(), index)));
+        }
+        final List<PiCounterCell> cells = new ArrayList<>(cellIds.size());
+        Lists.partition(cellIds, cellsPerRequest).forEach(ids -> cells.addAll(reader.readCounterCells(ids)));
+        return cells;
+    }
+
+    // Counters of the ports of the device, ignoring the cells of other
+    // indexes, e.g., returned by a wildcard read.
+    private static Map<PortNumber, long[]> sample(PiCounterId rxCounter, Collection<PiCounterCell> cells,
+                                                  Map<Long, PortNumber> ports) {
+        final Map<PortNumber, long[]> sample = new HashMap<>(ports.size() * 4 / 3 + 1);
+        for (PiCounterCell cell : cells) {
+            final PortNumber port = ports.get(cell.cellId().index());
+            if (port == null) {
+                continue;
+            }
+            final long[] portCounters = sample.computeIfAbsent(port, p -> new long[DevicePortStats.COUNTERS]);
+            if (cell.cellId().counterId().equals(rxCounter)) {
+                portCounters[DevicePortStats.RX_PACKETS] = cell.data().packets();
+                portCounters[DevicePortStats.RX_BYTES] = cell.data().bytes();
+            } else {
+                portCounters[DevicePortStats.TX_PACKETS] = cell.data().packets();
+                portCounters[DevicePortStats.TX_BYTES] = cell.data().bytes();
+            }
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,36 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+package org.stratumproject.basic.tna.stats;
+
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.PortStatistics;
+
+import java.util.Collection;
+
+/**
+ * Service collecting the port counters of basic-tna devices with bulk reads
+ * of the counter cells, once per polling interval.
+ */
+public interface PortStatsService {
+
+    /**
+     * Returns the statistics of the ports of the given device, cumulative
+     * since the first sample, from the last sample. Empty if the device is
+     * not polled by this instance, if its pipeline has no port counters, or
+     * if collection is disabled.
+     *
+     * @param deviceId device ID
+     * @return port statistics
+     */
+    Collection<PortStatistics> portStatistics(DeviceId deviceId);
+
+    /**
+     * Returns the statistics of the ports of the given device between the
+     * last two samples. Empty until the device was sampled twice.
+     *
+     * @param deviceId device ID
+     * @return port statistics deltas
+     */
+    Collection<PortStatistics> portDeltaStatistics(DeviceId deviceId);
+}
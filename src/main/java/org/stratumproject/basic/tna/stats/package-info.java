@@ -0,0 +1,7 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+
+/**
+ * Bulk collection of the flow and port counters of basic-tna devices.
+ */
+package org.stratumproject.basic.tna.stats;
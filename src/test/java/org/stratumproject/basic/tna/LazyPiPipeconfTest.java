@@ -0,0 +1,67 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna;
+
+import org.junit.Test;
+import org.onosproject.net.behaviour.Pipeliner;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipeconf.ExtensionType;
+import org.onosproject.net.pi.model.PiPipeconfId;
+import org.onosproject.net.pi.model.PiPipelineInterpreter;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.p4runtime.model.P4InfoParser;
+import org.stratumproject.basic.tna.behaviour.BasicInterpreter;
+import org.stratumproject.basic.tna.behaviour.pipeliner.BasicPipeliner;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for LazyPiPipeconf.
+ */
+public class LazyPiPipeconfTest {
+
+    private static final PiPipeconfId PIPECONF_ID = new PiPipeconfId("org.stratumproject.basic.bmv2");
+    private static final URL P4INFO = LazyPiPipeconfTest.class.getResource("/p4c-out/basic/bmv2/p4info.txt");
+    private static final URL BMV2_JSON = LazyPiPipeconfTest.class.getResource("/p4c-out/basic/bmv2/bmv2.json");
+
+    /**
+     * Test that the pipeline model is parsed only once, when first
+     * requested, and that the fingerprint does not depend on it.
+     */
+    @Test
+    public void testLazyPipelineModel() throws Exception {
+        final PiPipelineModel model = P4InfoParser.parse(P4INFO);
+        final AtomicInteger loads = new AtomicInteger();
+        final PiPipeconf lazy = lazyPipeconf(() -> {
+            loads.incrementAndGet();
+            return model;
+        });
+
+        assertEquals(lazyPipeconf(() -> model).fingerprint(), lazy.fingerprint());
+        assertTrue(lazy.hasBehaviour(Pipeliner.class));
+        assertEquals(BasicInterpreter.class, lazy.implementation(PiPipelineInterpreter.class).get());
+        assertTrue(lazy.extension(ExtensionType.BMV2_JSON).isPresent());
+        assertEquals(0, loads.get());
+
+        assertSame(model, lazy.pipelineModel());
+        assertSame(model, lazy.pipelineModel());
+        assertEquals(1, loads.get());
+    }
+
+    private static PiPipeconf lazyPipeconf(Supplier<PiPipelineModel> modelLoader) {
+        return new LazyPiPipeconf(
+                PIPECONF_ID,
+                Map.of(PiPipelineInterpreter.class, BasicInterpreter.class,
+                       Pipeliner.class, BasicPipeliner.class),
+                Map.of(ExtensionType.BMV2_JSON, BMV2_JSON,
+                       ExtensionType.P4_INFO_TEXT, P4INFO),
+                modelLoader);
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipeconf.ExtensionType;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for PipelineBinaryStore and SharedBinaryPiPipeconf.
+ */
+public class PipelineBinaryStoreTest {
+
+    private static final URL BMV2_JSON = PipelineBinaryStoreTest.class.getResource("/p4c-out/basic/bmv2/bmv2.json");
+    private static final URL P4INFO = PipelineBinaryStoreTest.class.getResource("/p4c-out/basic/bmv2/p4info.txt");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Test that identical binaries of different pipeconfs are stored and
+     * mapped once.
+     */
+    @Test
+    public void testDeduplication() throws Exception {
+        final Path storeDir = folder.newFolder("store").toPath();
+        final PipelineBinaryStore store = new PipelineBinaryStore(storeDir);
+        final URL copy = copyOf(BMV2_JSON);
+        final byte[] expected = Resources.toByteArray(BMV2_JSON);
+
+        final ByteBuffer first = store.buffer(BMV2_JSON);
+        final ByteBuffer second = store.buffer(copy);
+        store.buffer(P4INFO);
+
+        assertEquals(2, store.size());
+        assertEquals(2, storeDir.toFile().list().length);
+        assertTrue(first.isReadOnly());
+        assertArrayEquals(expected, bytes(first));
+        // Views are independent.
+        assertEquals(expected.length, second.remaining());
+        assertArrayEquals(expected, bytes(second));
+    }
+
+    /**
+     * Test that a binary stored before a restart is reused.
+     */
+    @Test
+    public void testRestart() throws Exception {
+        final Path storeDir = folder.newFolder("store").toPath();
+        new PipelineBinaryStore(storeDir).buffer(BMV2_JSON);
+        final File[] entries = storeDir.toFile().listFiles();
+        assertEquals(1, entries.length);
+        final long modified = entries[0].lastModified();
+
+        final ByteBuffer buffer = new PipelineBinaryStore(storeDir).buffer(BMV2_JSON);
+
+        assertEquals(1, storeDir.toFile().list().length);
+        assertEquals(modified, entries[0].lastModified());
+        assertArrayEquals(Resources.toByteArray(BMV2_JSON), bytes(buffer));
+    }
+
+    /**
+     * Test that the pipeconf streams its extensions from the store, and
+     * delegates everything else.
+     */
+    @Test
+    public void testSharedBinaryPipeconf() throws Exception {
+        final PiPipeconf pipeconf = createMock(PiPipeconf.class);
+        expect(pipeconf.fingerprint()).andReturn(42L).anyTimes();
+        replay(pipeconf);
+        final PipelineBinaryStore store = new PipelineBinaryStore(folder.getRoot().toPath());
+        final SharedBinaryPiPipeconf shared = new SharedBinaryPiPipeconf(
+                pipeconf, Map.of(ExtensionType.BMV2_JSON, BMV2_JSON), store);
+
+        for (int i = 0; i < 3; i++) {
+            try (InputStream in = shared.extension(ExtensionType.BMV2_JSON).orElseThrow()) {
+                assertArrayEquals(Resources.toByteArray(BMV2_JSON), ByteStreams.toByteArray(in));
+            }
+        }
+        assertFalse(shared.extension(ExtensionType.RAW_DEVICE_CONFIG).isPresent());
+        assertEquals(1, store.size());
+        assertEquals(42L, shared.fingerprint());
+    }
+
+    private URL copyOf(URL url) throws Exception {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), Resources.toByteArray(url));
+        return file.toURI().toURL();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,93 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.p4runtime.model.P4InfoParser;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests for PipelineModelCache.
+ */
+public class PipelineModelCacheTest {
+
+    private static final URL P4INFO = PipelineModelCacheTest.class.getResource("/p4c-out/basic/bmv2/p4info.txt");
+    private static final URL BMV2_JSON = PipelineModelCacheTest.class.getResource("/p4c-out/basic/bmv2/bmv2.json");
+    private static final String VERSION = "3.0.0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PiPipelineModel model;
+    private final AtomicInteger parses = new AtomicInteger();
+    private final Supplier<PiPipelineModel> parser = () -> {
+        parses.incrementAndGet();
+        return model;
+    };
+
+    @Before
+    public void setup() throws Exception {
+        model = P4InfoParser.parse(P4INFO);
+    }
+
+    /**
+     * Test that a model stored by a first instance is loaded by a new one,
+     * as after a restart, without parsing the P4Info.
+     */
+    @Test
+    public void testCacheHit() throws Exception {
+        new PipelineModelCache(folder.getRoot().toPath(), VERSION)
+                .load(List.of(BMV2_JSON, P4INFO), parser);
+        assertEquals(1, parses.get());
+
+        PiPipelineModel loaded = new PipelineModelCache(folder.getRoot().toPath(), VERSION)
+                .load(List.of(BMV2_JSON, P4INFO), parser);
+
+        assertEquals(1, parses.get());
+        assertNotSame(model, loaded);
+        assertEquals(model, loaded);
+    }
+
+    /**
+     * Test that entries are not shared across controller versions.
+     */
+    @Test
+    public void testVersionMismatch() throws Exception {
+        new PipelineModelCache(folder.getRoot().toPath(), VERSION)
+                .load(List.of(BMV2_JSON, P4INFO), parser);
+        new PipelineModelCache(folder.getRoot().toPath(), "3.1.0")
+                .load(List.of(BMV2_JSON, P4INFO), parser);
+
+        assertEquals(2, parses.get());
+    }
+
+    /**
+     * Test that unreadable entries are replaced by a freshly parsed model.
+     */
+    @Test
+    public void testCorruptedEntry() throws Exception {
+        PipelineModelCache cache = new PipelineModelCache(folder.getRoot().toPath(), VERSION);
+        cache.load(List.of(BMV2_JSON, P4INFO), parser);
+        File[] entries = folder.getRoot().listFiles();
+        assertEquals(1, entries.length);
+        Files.write(entries[0].toPath(), new byte[]{1, 2, 3});
+
+        assertEquals(model, cache.load(List.of(BMV2_JSON, P4INFO), parser));
+        assertEquals(2, parses.get());
+        assertEquals(model, cache.load(List.of(BMV2_JSON, P4INFO), parser));
+        assertEquals(2, parses.get());
+    }
+}
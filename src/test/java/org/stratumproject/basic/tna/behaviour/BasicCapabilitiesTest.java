@@ -0,0 +1,44 @@
+// Copyright 2021-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.p4runtime.model.P4InfoParser;
+
+import java.util.Optional;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests for BasicCapabilities.
+ */
+public class BasicCapabilitiesTest {
+
+    private BasicCapabilities bmv2;
+
+    @Before
+    public void setup() throws Exception {
+        PiPipeconf pipeconf = createNiceMock(PiPipeconf.class);
+        expect(pipeconf.pipelineModel()).andReturn(P4InfoParser.parse(
+                BasicCapabilitiesTest.class.getResource("/p4c-out/basic/bmv2/p4info.txt"))).anyTimes();
+        replay(pipeconf);
+        bmv2 = new BasicCapabilities(pipeconf);
+    }
+
+    /**
+     * Test that the features only implemented by the TNA program are off
+     * for the bundled bmv2 pipeline.
+     */
+    @Test
+    public void testBmv2Capabilities() {
+        assertFalse(bmv2.supportsFloodMulticast());
+        assertEquals(Optional.empty(), bmv2.table0ExactSize());
+        assertEquals(Optional.empty(), bmv2.cpuMeterSize());
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.driver.Driver;
+import org.onosproject.net.driver.DriverData;
+import org.onosproject.net.driver.DriverHandler;
+import org.stratumproject.basic.tna.stats.FlowStatsService;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.stratumproject.basic.tna.behaviour.BasicFlowRuleProgrammable.SUPPORT_TABLE_COUNTERS;
+
+/**
+ * Tests for BasicFlowRuleProgrammable.
+ */
+public class BasicFlowRuleProgrammableTest {
+
+    private static final DeviceId DEVICE_ID = DeviceId.deviceId("device:bmv2:11");
+    private static final String OTHER_PROPERTY = "tableReadFromMirror";
+
+    private FlowStatsService statsService;
+    private BasicFlowRuleProgrammable programmable;
+
+    @Before
+    public void setup() {
+        statsService = createMock(FlowStatsService.class);
+        Driver driver = createNiceMock(Driver.class);
+        expect(driver.getProperty(SUPPORT_TABLE_COUNTERS)).andReturn("true").anyTimes();
+        expect(driver.getProperty(OTHER_PROPERTY)).andReturn("true").anyTimes();
+        DriverData data = createNiceMock(DriverData.class);
+        expect(data.deviceId()).andReturn(DEVICE_ID).anyTimes();
+        DriverHandler handler = createNiceMock(DriverHandler.class);
+        expect(handler.data()).andReturn(data).anyTimes();
+        expect(handler.driver()).andReturn(driver).anyTimes();
+        expect(handler.get(FlowStatsService.class)).andReturn(statsService).anyTimes();
+        replay(driver, data, handler);
+        programmable = new BasicFlowRuleProgrammable();
+        programmable.setData(data);
+        programmable.setHandler(handler);
+    }
+
+    /**
+     * Test that the driver does not read the counters of each entry once
+     * the device is polled in bulk, and that other properties are left
+     * as set.
+     */
+    @Test
+    public void testNoEntryCounterReadsWhenPolled() {
+        expect(statsService.isPolled(DEVICE_ID)).andReturn(true).anyTimes();
+        replay(statsService);
+
+        assertFalse(programmable.driverBoolProperty(SUPPORT_TABLE_COUNTERS, true));
+        assertTrue(programmable.driverBoolProperty(OTHER_PROPERTY, false));
+    }
+
+    /**
+     * Test that the driver reads the counters of each entry as configured
+     * while the device is not polled in bulk.
+     */
+    @Test
+    public void testEntryCounterReadsWhenNotPolled() {
+        expect(statsService.isPolled(DEVICE_ID)).andReturn(false).anyTimes();
+        replay(statsService);
+
+        assertTrue(programmable.driverBoolProperty(SUPPORT_TABLE_COUNTERS, true));
+    }
+}
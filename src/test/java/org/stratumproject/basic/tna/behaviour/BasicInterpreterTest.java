@@ -2,14 +2,309 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.stratumproject.basic.tna.behaviour;
 
+import com.google.common.collect.Sets;
 import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.Data;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.MacAddress;
+import org.onlab.util.ImmutableByteSequence;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.driver.DriverData;
+import org.onosproject.net.driver.DriverHandler;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.packet.DefaultOutboundPacket;
+import org.onosproject.net.packet.InboundPacket;
+import org.onosproject.net.packet.OutboundPacket;
+import org.onosproject.net.pi.model.PiPacketMetadataId;
+import org.onosproject.net.pi.model.PiPacketMetadataModel;
+import org.onosproject.net.pi.model.PiPacketOperationModel;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.net.pi.model.PiPipelineInterpreter.PiInterpreterException;
+import org.onosproject.net.pi.runtime.PiPacketMetadata;
+import org.onosproject.net.pi.runtime.PiPacketOperation;
+import org.onosproject.net.pi.service.PiPipeconfService;
+import org.stratumproject.basic.tna.Constants;
+import org.stratumproject.basic.tna.metrics.DeviceMetrics;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsManager;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsService;
+import org.stratumproject.basic.tna.ports.FloodGroupService;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.onlab.util.ImmutableByteSequence.copyFrom;
+import static org.onosproject.net.pi.model.PiPacketOperationType.PACKET_IN;
+import static org.onosproject.net.pi.model.PiPacketOperationType.PACKET_OUT;
 
 /**
  * Test for fabric interpreter.
  */
 public class BasicInterpreterTest {
 
+    private static final DeviceId DEVICE_ID = DeviceId.deviceId("device:bmv2:11");
+    private static final PortNumber PORT_1 = PortNumber.portNumber(1, "1/0");
+    private static final MacAddress SRC_MAC = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final PortNumber PORT_2 = PortNumber.portNumber(2);
+    private static final PortNumber PORT_DISABLED = PortNumber.portNumber(3);
+    private static final PortNumber PORT_CPU = PortNumber.portNumber(Constants.PORT_CPU_BMV2);
+    private static final short ETH_TYPE_EXPERIMENTAL = (short) 0x88b5;
+    private static final MacAddress DST_MAC = MacAddress.valueOf("00:00:00:00:00:02");
+
+    private final PipeconfMetricsService metricsService = new PipeconfMetricsManager();
+    private BasicInterpreter interpreter;
+
     @Before
     public void setup() {
+        interpreter = interpreter(false, false);
+    }
+
+    private BasicInterpreter interpreter(boolean floodMulticast, boolean floodGroupReady) {
+        List<PiPacketMetadataModel> packetOutMetadata = List.of();
+        if (floodMulticast) {
+            PiPacketMetadataModel mcastGrp = createNiceMock(PiPacketMetadataModel.class);
+            expect(mcastGrp.id()).andReturn(P4InfoConstants.MCAST_GRP).anyTimes();
+            replay(mcastGrp);
+            packetOutMetadata = List.of(mcastGrp);
+        }
+        PiPacketOperationModel packetOutModel = createNiceMock(PiPacketOperationModel.class);
+        expect(packetOutModel.metadatas()).andReturn(packetOutMetadata).anyTimes();
+        PiPipelineModel model = createNiceMock(PiPipelineModel.class);
+        expect(model.architecture()).andReturn(Optional.empty()).anyTimes();
+        expect(model.packetOperationModel(PACKET_OUT)).andReturn(Optional.of(packetOutModel)).anyTimes();
+        FloodGroupService floodGroupService = createNiceMock(FloodGroupService.class);
+        expect(floodGroupService.isFloodGroupReady(DEVICE_ID)).andReturn(floodGroupReady).anyTimes();
+        PiPipeconf pipeconf = createNiceMock(PiPipeconf.class);
+        expect(pipeconf.pipelineModel()).andReturn(model).anyTimes();
+        PiPipeconfService pipeconfService = createNiceMock(PiPipeconfService.class);
+        expect(pipeconfService.getPipeconf(DEVICE_ID)).andReturn(Optional.of(pipeconf)).anyTimes();
+        Port port = createNiceMock(Port.class);
+        expect(port.number()).andReturn(PORT_1).anyTimes();
+        expect(port.isEnabled()).andReturn(true).anyTimes();
+        DeviceService deviceService = createNiceMock(DeviceService.class);
+        expect(deviceService.getPort(anyObject(ConnectPoint.class))).andReturn(port).anyTimes();
+        expect(deviceService.getPorts(DEVICE_ID)).andReturn(List.of(
+                port, port(PORT_2, true), port(PORT_DISABLED, false), port(PORT_CPU, true)))
+                .anyTimes();
+        DriverData data = createNiceMock(DriverData.class);
+        expect(data.deviceId()).andReturn(DEVICE_ID).anyTimes();
+        DriverHandler handler = createNiceMock(DriverHandler.class);
+        expect(handler.data()).andReturn(data).anyTimes();
+        expect(handler.get(PiPipeconfService.class)).andReturn(pipeconfService).anyTimes();
+        expect(handler.get(DeviceService.class)).andReturn(deviceService).anyTimes();
+        expect(handler.get(FloodGroupService.class)).andReturn(floodGroupService).anyTimes();
+        expect(handler.get(PipeconfMetricsService.class)).andReturn(metricsService).anyTimes();
+        replay(packetOutModel, model, floodGroupService, pipeconf, pipeconfService, port,
+               deviceService, data, handler);
+
+        BasicInterpreter interpreter = new BasicInterpreter();
+        interpreter.setHandler(handler);
+        return interpreter;
+    }
+
+    /**
+     * Test that a packet-in is mapped to an inbound packet received from the
+     * named ingress port, exposing the same bytes in raw and parsed form.
+     */
+    @Test
+    public void testMapInboundPacket() throws Exception {
+        Ethernet frame = ethernet();
+        byte[] bytes = frame.serialize();
+
+        InboundPacket packet = interpreter.mapInboundPacket(packetIn(bytes, true), DEVICE_ID);
+
+        assertEquals(new ConnectPoint(DEVICE_ID, PORT_1), packet.receivedFrom());
+        ByteBuffer unparsed = packet.unparsed();
+        assertTrue(unparsed.isReadOnly());
+        byte[] raw = new byte[unparsed.remaining()];
+        unparsed.get(raw);
+        assertArrayEquals(bytes, raw);
+        // Consuming a view does not affect the following ones.
+        assertEquals(bytes.length, packet.unparsed().remaining());
+        assertArrayEquals(bytes, packet.parsed().serialize());
+        assertTrue(packet.parsed() == packet.parsed());
+    }
+
+    /**
+     * Test that packet-ins without ingress port are rejected.
+     */
+    @Test(expected = PiInterpreterException.class)
+    public void testMapInboundPacketMissingIngressPort() throws Exception {
+        interpreter.mapInboundPacket(packetIn(ethernet().serialize(), false), DEVICE_ID);
+    }
+
+    /**
+     * Test that packet-ins shorter than an ethernet header are rejected.
+     */
+    @Test(expected = PiInterpreterException.class)
+    public void testMapInboundPacketTruncated() throws Exception {
+        interpreter.mapInboundPacket(packetIn(new byte[Ethernet.ETHERNET_HEADER_LENGTH - 1], true),
+                                     DEVICE_ID);
+    }
+
+    /**
+     * Test that packet-ins whose frame cannot be parsed, e.g., a truncated
+     * IPv4 header, are rejected.
+     */
+    @Test(expected = PiInterpreterException.class)
+    public void testMapInboundPacketMalformed() throws Exception {
+        byte[] bytes = new byte[Ethernet.ETHERNET_HEADER_LENGTH + 4];
+        ByteBuffer.wrap(bytes).putShort(Ethernet.ETHERNET_HEADER_LENGTH - 2, Ethernet.TYPE_IPV4);
+        interpreter.mapInboundPacket(packetIn(bytes, true), DEVICE_ID);
+    }
+
+    /**
+     * Test that flooding emits a packet-out for each enabled port but the
+     * CPU one, all sharing the same payload.
+     */
+    @Test
+    public void testMapOutboundPacketFlood() throws Exception {
+        byte[] bytes = ethernet().serialize();
+        OutboundPacket packet = new DefaultOutboundPacket(
+                DEVICE_ID, DefaultTrafficTreatment.builder().setOutput(PortNumber.FLOOD).build(),
+                ByteBuffer.wrap(bytes));
+
+        Collection<PiPacketOperation> operations = interpreter.mapOutboundPacket(packet);
+
+        assertEquals(2, operations.size());
+        Set<ImmutableByteSequence> egressPorts = Sets.newHashSet();
+        ImmutableByteSequence data = null;
+        for (PiPacketOperation operation : operations) {
+            if (data == null) {
+                data = operation.data();
+                assertArrayEquals(bytes, data.asArray());
+            }
+            assertSame(data, operation.data());
+            operation.metadatas().stream()
+                    .filter(m -> m.id().equals(P4InfoConstants.EGRESS_PORT))
+                    .forEach(m -> egressPorts.add(m.value()));
+        }
+        assertEquals(Set.of(egressPort(PORT_1), egressPort(PORT_2)), egressPorts);
+    }
+
+    /**
+     * Test that, when the pipeline supports it and the flood group is
+     * programmed, flooding emits a single packet-out replicated by the data
+     * plane.
+     */
+    @Test
+    public void testMapOutboundPacketFloodMulticast() throws Exception {
+        OutboundPacket packet = new DefaultOutboundPacket(
+                DEVICE_ID, DefaultTrafficTreatment.builder().setOutput(PortNumber.FLOOD).build(),
+                ByteBuffer.wrap(ethernet().serialize()));
+
+        Collection<PiPacketOperation> operations = interpreter(true, true).mapOutboundPacket(packet);
+
+        assertEquals(1, operations.size());
+        assertEquals(copyFrom(Constants.FLOOD_MCAST_GROUP_ID).fit(P4InfoConstants.MCAST_GRP_BITWIDTH),
+                     metadata(operations.iterator().next(), P4InfoConstants.MCAST_GRP));
+
+        // Per-port packet-outs until the group is programmed, not replicated.
+        operations = interpreter(true, false).mapOutboundPacket(packet);
+        assertEquals(2, operations.size());
+        for (PiPacketOperation operation : operations) {
+            assertEquals(copyFrom(0).fit(P4InfoConstants.MCAST_GRP_BITWIDTH),
+                         metadata(operation, P4InfoConstants.MCAST_GRP));
+        }
+    }
+
+    /**
+     * Test that packet-outs to the same port share prebuilt metadata.
+     */
+    @Test
+    public void testPacketOutMetadataReused() throws Exception {
+        OutboundPacket packet = new DefaultOutboundPacket(
+                DEVICE_ID, DefaultTrafficTreatment.builder().setOutput(PORT_2).build(),
+                ByteBuffer.wrap(ethernet().serialize()));
+
+        PiPacketOperation first = interpreter.mapOutboundPacket(packet).iterator().next();
+        PiPacketOperation second = interpreter.mapOutboundPacket(packet).iterator().next();
+
+        assertEquals(egressPort(PORT_2), metadata(first, P4InfoConstants.EGRESS_PORT));
+        assertSame(metadata(first, P4InfoConstants.EGRESS_PORT),
+                   metadata(second, P4InfoConstants.EGRESS_PORT));
+    }
+
+    /**
+     * Test that packet-ins, packet-outs and the fan-out of flooded packets
+     * are counted in the metrics of the device.
+     */
+    @Test
+    public void testPacketMetrics() throws Exception {
+        byte[] bytes = ethernet().serialize();
+        interpreter.mapInboundPacket(packetIn(bytes, true), DEVICE_ID);
+        interpreter.mapOutboundPacket(new DefaultOutboundPacket(
+                DEVICE_ID, DefaultTrafficTreatment.builder().setOutput(PortNumber.FLOOD).build(),
+                ByteBuffer.wrap(bytes)));
+        interpreter.mapOutboundPacket(new DefaultOutboundPacket(
+                DEVICE_ID, DefaultTrafficTreatment.builder().setOutput(PORT_2).build(),
+                ByteBuffer.wrap(bytes)));
+
+        DeviceMetrics metrics = metricsService.deviceMetrics(DEVICE_ID);
+        assertEquals(1, metrics.packetIns());
+        assertEquals(3, metrics.packetOuts());
+        assertEquals(1, metrics.floods());
+        assertEquals(2, metrics.floodFanOut());
+    }
+
+    private static ImmutableByteSequence metadata(PiPacketOperation operation, PiPacketMetadataId id) {
+        return operation.metadatas().stream()
+                .filter(m -> m.id().equals(id))
+                .findFirst()
+                .map(PiPacketMetadata::value)
+                .orElse(null);
+    }
+
+    private static Port port(PortNumber number, boolean enabled) {
+        Port port = createNiceMock(Port.class);
+        expect(port.number()).andReturn(number).anyTimes();
+        expect(port.isEnabled()).andReturn(enabled).anyTimes();
+        replay(port);
+        return port;
+    }
+
+    private static ImmutableByteSequence egressPort(PortNumber port)
+            throws ImmutableByteSequence.ByteSequenceTrimException {
+        return copyFrom(port.toLong()).fit(P4InfoConstants.EGRESS_PORT_BITWIDTH);
+    }
+
+    private static Ethernet ethernet() {
+        Ethernet frame = new Ethernet();
+        frame.setSourceMACAddress(SRC_MAC)
+                .setDestinationMACAddress(DST_MAC)
+                .setEtherType(ETH_TYPE_EXPERIMENTAL)
+                .setPad(true)
+                .setPayload(new Data(new byte[]{1, 2, 3, 4}));
+        return frame;
+    }
+
+    private static PiPacketOperation packetIn(byte[] bytes, boolean withIngressPort)
+            throws ImmutableByteSequence.ByteSequenceTrimException {
+        PiPacketOperation.Builder builder = PiPacketOperation.builder()
+                .withType(PACKET_IN)
+                .withData(copyFrom(bytes));
+        if (withIngressPort) {
+            builder.withMetadata(PiPacketMetadata.builder()
+                    .withId(P4InfoConstants.INGRESS_PORT)
+                    .withValue(copyFrom(PORT_1.toLong()).fit(P4InfoConstants.INGRESS_PORT_BITWIDTH))
+                    .build());
+        }
+        return builder.build();
     }
 }
@@ -2,5 +2,61 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.stratumproject.basic.tna.behaviour.pipeliner;
 
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.pi.model.PiActionModel;
+import org.onosproject.net.pi.model.PiMeterModel;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.net.pi.model.PiTableModel;
+import org.stratumproject.basic.tna.behaviour.BasicCapabilities;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
 public class AbstractObjectiveTranslatorTest {
+    static final ApplicationId APP_ID = new DefaultApplicationId(1, "BasicPipelinerTest");
+    static final DeviceId DEVICE_ID = DeviceId.deviceId("device:bmv2:11");
+    static final int PRIORITY = 100;
+    static final long CPU_METER_SIZE = 256;
+
+    static BasicCapabilities capabilities() {
+        return capabilities(0);
+    }
+
+    static BasicCapabilities capabilities(long table0Size) {
+        return capabilities(table0Size, 0);
+    }
+
+    static BasicCapabilities capabilities(long table0Size, long table0ExactSize) {
+        PiTableModel table0Exact = createNiceMock(PiTableModel.class);
+        expect(table0Exact.id()).andReturn(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT).anyTimes();
+        expect(table0Exact.maxSize()).andReturn(table0ExactSize).anyTimes();
+        PiTableModel table0 = createNiceMock(PiTableModel.class);
+        expect(table0.id()).andReturn(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0).anyTimes();
+        expect(table0.maxSize()).andReturn(table0Size).anyTimes();
+        expect(table0.action(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_SAMPLED))
+                .andReturn(Optional.of(createNiceMock(PiActionModel.class))).anyTimes();
+        PiMeterModel cpuMeter = createNiceMock(PiMeterModel.class);
+        expect(cpuMeter.size()).andReturn(CPU_METER_SIZE).anyTimes();
+        PiPipelineModel model = createNiceMock(PiPipelineModel.class);
+        expect(model.architecture()).andReturn(Optional.empty()).anyTimes();
+        expect(model.packetOperationModel(anyObject())).andReturn(Optional.empty()).anyTimes();
+        expect(model.tables()).andReturn(List.of(table0Exact, table0)).anyTimes();
+        expect(model.table(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0))
+                .andReturn(Optional.of(table0)).anyTimes();
+        expect(model.meter(P4InfoConstants.BASIC_INGRESS_TABLE0_CPU_METER))
+                .andReturn(Optional.of(cpuMeter)).anyTimes();
+        PiPipeconf pipeconf = createNiceMock(PiPipeconf.class);
+        expect(pipeconf.pipelineModel()).andReturn(model).anyTimes();
+        replay(table0Exact, table0, cpuMeter, model, pipeconf);
+        return new BasicCapabilities(pipeconf);
+    }
 }
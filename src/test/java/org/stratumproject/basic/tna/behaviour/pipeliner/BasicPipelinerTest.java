@@ -2,12 +2,859 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.stratumproject.basic.tna.behaviour.pipeliner;
 
+import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.junit.Before;
+import org.junit.Test;
+import org.onlab.osgi.ServiceDirectory;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.TpPort;
+import org.onosproject.core.CoreService;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.behaviour.PipelinerContext;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleEvent;
+import org.onosproject.net.flow.FlowRuleListener;
+import org.onosproject.net.flow.FlowRuleOperation;
+import org.onosproject.net.flow.FlowRuleOperations;
+import org.onosproject.net.flow.FlowRuleService;
+import org.onosproject.net.flow.criteria.Criteria;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.IPCriterion;
+import org.onosproject.net.flowobjective.DefaultForwardingObjective;
+import org.onosproject.net.flowobjective.FlowObjectiveStore;
+import org.onosproject.net.flowobjective.ForwardingObjective;
+import org.onosproject.net.flowobjective.Objective;
+import org.onosproject.net.flowobjective.ObjectiveContext;
+import org.onosproject.net.flowobjective.ObjectiveError;
+import org.onosproject.net.group.GroupService;
+import org.stratumproject.basic.tna.PipeconfSettings;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+import org.stratumproject.basic.tna.metrics.DeviceMetrics;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsManager;
+import org.stratumproject.basic.tna.metrics.PipeconfMetricsService;
+import org.stratumproject.basic.tna.metrics.TableOccupancy;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.reset;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.APP_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.DEVICE_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.PRIORITY;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.capabilities;
 
 public class BasicPipelinerTest {
 
+    private static final int BATCH_SIZE = 3;
+    // Long enough to never expire during a test.
+    private static final int LINGER_MS = 60_000;
+    private static final long AWAIT_TIMEOUT_MS = 5_000;
+
+    private BasicPipeliner pipeliner;
+    private PipelinerContext context;
+    private int batchSize = BATCH_SIZE;
+    private int inFlightWindow = 64;
+    private boolean aggregation = false;
+    private boolean skipShadowed = false;
+    private FlowRuleService flowRuleService;
+    private final PipeconfMetricsService metricsService = new PipeconfMetricsManager();
+    private final Capture<FlowRuleOperations> appliedOps = newCapture(CaptureType.ALL);
+
     @Before
     public void setup() {
+        flowRuleService = createMock(FlowRuleService.class);
+        CoreService coreService = createNiceMock(CoreService.class);
+        expect(coreService.getAppId(anyObject(String.class))).andReturn(APP_ID).anyTimes();
+        expect(coreService.getAppId(anyObject(Short.class))).andReturn(APP_ID).anyTimes();
+        replay(coreService);
+
+        PipeconfSettings settings = new PipeconfSettings() {
+            @Override
+            public int objectiveBatchSize() {
+                return batchSize;
+            }
+
+            @Override
+            public int objectiveBatchLingerMs() {
+                return LINGER_MS;
+            }
+
+            @Override
+            public int objectiveInFlightWindow() {
+                return inFlightWindow;
+            }
+
+            @Override
+            public boolean ternaryRuleAggregation() {
+                return aggregation;
+            }
+
+            @Override
+            public boolean shadowedRuleDetection() {
+                return skipShadowed;
+            }
+
+            @Override
+            public boolean skipShadowedRules() {
+                return skipShadowed;
+            }
+        };
+        GroupService groupService = createNiceMock(GroupService.class);
+        replay(groupService);
+        ServiceDirectory directory = new ServiceDirectory() {
+            @Override
+            public <T> T get(Class<T> serviceClass) {
+                Object service = null;
+                if (serviceClass == FlowRuleService.class) {
+                    service = flowRuleService;
+                } else if (serviceClass == CoreService.class) {
+                    service = coreService;
+                } else if (serviceClass == PipeconfSettings.class) {
+                    service = settings;
+                } else if (serviceClass == GroupService.class) {
+                    service = groupService;
+                } else if (serviceClass == FlowObjectiveStore.class) {
+                    service = createNiceMock(FlowObjectiveStore.class);
+                } else if (serviceClass == PipeconfMetricsService.class) {
+                    service = metricsService;
+                }
+                return serviceClass.cast(service);
+            }
+        };
+        context = createNiceMock(PipelinerContext.class);
+        expect(context.directory()).andReturn(directory).anyTimes();
+        replay(context);
+
+        pipeliner = new BasicPipeliner(capabilities());
+        pipeliner.init(DEVICE_ID, context);
+    }
+
+    /**
+     * Test that objectives are merged in a single flow rule operation once
+     * the batch is full, that the removal stage is written only after the
+     * device acknowledged the additions, and that objectives complete only
+     * on acknowledgement.
+     */
+    @Test
+    public void testBatchedForward() throws Exception {
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(2);
+        replay(flowRuleService);
+
+        CompletableFuture<Objective> arp = new CompletableFuture<>();
+        CompletableFuture<Objective> lldp = new CompletableFuture<>();
+        CompletableFuture<Objective> bsn = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_ARP).add(context(arp)));
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_LLDP).add(context(lldp)));
+        assertEquals(0, appliedOps.getValues().size());
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_BSN).remove(context(bsn)));
+
+        // Additions are written first, on their own.
+        awaitAppliedOps(1);
+        assertEquals(1, appliedOps.getValues().size());
+        FlowRuleOperations addOps = appliedOps.getValues().get(0);
+        assertEquals(1, addOps.stages().size());
+        assertEquals(2, addOps.stages().get(0).size());
+        assertEquals(1, pipeliner.inFlightWrites());
+        assertFalse(arp.isDone());
+
+        addOps.callback().onSuccess(addOps);
+        assertNotNull(arp.get(1, TimeUnit.SECONDS));
+        assertNotNull(lldp.get(1, TimeUnit.SECONDS));
+
+        // Then the removal, and the batch stays in-flight until acknowledged.
+        awaitAppliedOps(2);
+        assertEquals(2, appliedOps.getValues().size());
+        FlowRuleOperations removeOps = appliedOps.getValues().get(1);
+        assertEquals(1, removeOps.stages().get(0).size());
+        assertEquals(1, pipeliner.inFlightWrites());
+        removeOps.callback().onSuccess(removeOps);
+        assertNotNull(bsn.get(1, TimeUnit.SECONDS));
+        assertEquals(0, pipeliner.inFlightWrites());
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that writes beyond the in-flight window are parked without
+     * blocking the lane, and written once an earlier write is acknowledged.
+     */
+    @Test
+    public void testParkedWrite() throws Exception {
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(2);
+        replay(flowRuleService);
+        batchSize = 1;
+        inFlightWindow = 1;
+        pipeliner = new BasicPipeliner(capabilities());
+        pipeliner.init(DEVICE_ID, context);
+
+        CompletableFuture<Objective> arp = new CompletableFuture<>();
+        CompletableFuture<Objective> lldp = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_ARP).add(context(arp)));
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_LLDP).add(context(lldp)));
+        awaitAppliedOps(1);
+        await(() -> pipeliner.parkedWrites() > 0, "a parked write");
+        // The second write waits for the first, without holding the lane.
+        assertEquals(1, pipeliner.parkedWrites());
+        assertEquals(0, pipeliner.queuedObjectives());
+        assertEquals(1, appliedOps.getValues().size());
+
+        FlowRuleOperations ops = appliedOps.getValues().get(0);
+        ops.callback().onSuccess(ops);
+        assertNotNull(arp.get(1, TimeUnit.SECONDS));
+        awaitAppliedOps(2);
+        ops = appliedOps.getValues().get(1);
+        ops.callback().onSuccess(ops);
+        assertNotNull(lldp.get(1, TimeUnit.SECONDS));
+        assertEquals(0, pipeliner.inFlightWrites());
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that only objectives whose flow rules were rejected by the device
+     * are failed.
+     */
+    @Test
+    public void testPartialFailure() throws Exception {
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().once();
+        replay(flowRuleService);
+
+        CompletableFuture<Objective> arp = new CompletableFuture<>();
+        CompletableFuture<Objective> lldp = new CompletableFuture<>();
+        CompletableFuture<Objective> bsn = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_ARP).add(context(arp)));
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_LLDP).add(context(lldp)));
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_BSN).add(context(bsn)));
+
+        awaitAppliedOps(1);
+        FlowRuleOperations ops = appliedOps.getValue();
+        FlowRule rejected = ops.stages().get(0).stream()
+                .map(FlowRuleOperation::rule)
+                .filter(r -> r.selector().getCriterion(Criterion.Type.ETH_TYPE)
+                        .equals(Criteria.matchEthType(Ethernet.TYPE_LLDP)))
+                .findFirst().orElseThrow();
+        ops.callback().onError(FlowRuleOperations.builder().add(rejected).build());
+
+        assertNotNull(arp.get(1, TimeUnit.SECONDS));
+        assertNotNull(bsn.get(1, TimeUnit.SECONDS));
+        try {
+            lldp.get(1, TimeUnit.SECONDS);
+            fail("objective with rejected flow rule should fail");
+        } catch (ExecutionException e) {
+            assertEquals(ObjectiveError.FLOWINSTALLATIONFAILED.name(), e.getCause().getMessage());
+        }
+        assertEquals(0, pipeliner.inFlightWrites());
+
+        DeviceMetrics metrics = metricsService.deviceMetrics(DEVICE_ID);
+        assertEquals(3, metrics.objectivesTranslated());
+        assertEquals(3, metrics.translationLatency().count());
+        assertEquals(2, metrics.objectivesSucceeded());
+        assertEquals(1, metrics.objectivesFailed(ObjectiveError.FLOWINSTALLATIONFAILED));
+        assertEquals(1, metrics.writesFailed());
+    }
+
+    /**
+     * Test that objectives are rejected once the table is full, accounting
+     * for the entries already on the device, and that failed writes and
+     * removals free their entries.
+     */
+    @Test
+    public void testTableFull() throws Exception {
+        FlowRule existing = DefaultFlowRule.builder()
+                .forDevice(DEVICE_ID)
+                .forTable(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                .withSelector(DefaultTrafficSelector.builder().matchEthType(Ethernet.TYPE_IPV4).build())
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent()
+                .build();
+        expect(flowRuleService.getFlowEntries(DEVICE_ID))
+                .andReturn(List.of(new DefaultFlowEntry(existing, FlowEntry.FlowEntryState.ADDED)));
+        flowRuleService.addListener(anyObject(FlowRuleListener.class));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(3);
+        replay(flowRuleService);
+        batchSize = 1;
+        pipeliner = new BasicPipeliner(capabilities(2));
+        pipeliner.init(DEVICE_ID, context);
+        TableOccupancy table0 = metricsService.deviceMetrics(DEVICE_ID).tableOccupancy().get(0);
+        assertEquals(1, table0.entries());
+
+        // A failed write frees its entry.
+        CompletableFuture<Objective> arp = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_ARP).add(context(arp)));
+        awaitAppliedOps(1);
+        assertEquals(2, table0.entries());
+        FlowRuleOperations ops = appliedOps.getValues().get(0);
+        ops.callback().onError(ops);
+        assertFailed(arp, ObjectiveError.FLOWINSTALLATIONFAILED);
+        assertEquals(1, table0.entries());
+
+        CompletableFuture<Objective> lldp = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_LLDP).add(context(lldp)));
+        awaitAppliedOps(2);
+        ops = appliedOps.getValues().get(1);
+        ops.callback().onSuccess(ops);
+        assertNotNull(lldp.get(1, TimeUnit.SECONDS));
+        assertEquals(100.0, table0.utilization(), 0.0);
+
+        // Rejected before reaching the device.
+        CompletableFuture<Objective> bsn = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_BSN).add(context(bsn)));
+        assertFailed(bsn, ObjectiveError.FLOWINSTALLATIONFAILED);
+        assertEquals(1, table0.rejected());
+        assertEquals(2, appliedOps.getValues().size());
+
+        CompletableFuture<Objective> lldpRemove = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_LLDP).remove(context(lldpRemove)));
+        awaitAppliedOps(3);
+        ops = appliedOps.getValues().get(2);
+        ops.callback().onSuccess(ops);
+        assertNotNull(lldpRemove.get(1, TimeUnit.SECONDS));
+        assertEquals(1, table0.entries());
+        assertEquals(50.0, table0.utilization(), 0.0);
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that temporary objectives are written with their timeout, and
+     * that the table entry of an expired flow rule is freed.
+     */
+    @Test
+    public void testExpiredRule() throws Exception {
+        Capture<FlowRuleListener> listener = newCapture();
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andReturn(List.of());
+        flowRuleService.addListener(capture(listener));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().once();
+        replay(flowRuleService);
+        batchSize = 1;
+        pipeliner = new BasicPipeliner(capabilities(2));
+        pipeliner.init(DEVICE_ID, context);
+        TableOccupancy table0 = metricsService.deviceMetrics(DEVICE_ID).tableOccupancy().get(0);
+
+        CompletableFuture<Objective> arp = new CompletableFuture<>();
+        ForwardingObjective.Builder temporary = copyToCpuObjective(Ethernet.TYPE_ARP);
+        temporary.makeTemporary(10);
+        pipeliner.forward(temporary.add(context(arp)));
+        awaitAppliedOps(1);
+        FlowRuleOperations ops = appliedOps.getValue();
+        FlowRule rule = singleOp(ops).rule();
+        assertFalse(rule.isPermanent());
+        assertEquals(10, rule.timeout());
+        ops.callback().onSuccess(ops);
+        assertNotNull(arp.get(1, TimeUnit.SECONDS));
+        assertEquals(1, table0.entries());
+
+        FlowRuleEvent expired = new FlowRuleEvent(FlowRuleEvent.Type.RULE_REMOVED, rule);
+        assertTrue(listener.getValue().isRelevant(expired));
+        listener.getValue().event(expired);
+        awaitLane();
+        assertEquals(0, table0.entries());
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that the removal of an entry by an objective is not taken as an
+     * expiry, even when notified after the entry is added again.
+     */
+    @Test
+    public void testRemovedRule() throws Exception {
+        Capture<FlowRuleListener> listener = newCapture();
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andReturn(List.of());
+        flowRuleService.addListener(capture(listener));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(3);
+        replay(flowRuleService);
+        batchSize = 1;
+        pipeliner = new BasicPipeliner(capabilities(2));
+        pipeliner.init(DEVICE_ID, context);
+        TableOccupancy table0 = metricsService.deviceMetrics(DEVICE_ID).tableOccupancy().get(0);
+
+        ForwardingObjective.Builder temporary = copyToCpuObjective(Ethernet.TYPE_ARP);
+        temporary.makeTemporary(10);
+        for (ForwardingObjective objective : List.of(
+                temporary.add(), temporary.remove(), temporary.add())) {
+            final int applied = appliedOps.getValues().size();
+            pipeliner.forward(objective);
+            awaitAppliedOps(applied + 1);
+            FlowRuleOperations ops = appliedOps.getValues().get(applied);
+            ops.callback().onSuccess(ops);
+        }
+        assertEquals(1, table0.entries());
+
+        FlowRule rule = singleOp(appliedOps.getValues().get(1)).rule();
+        FlowRuleEvent removed = new FlowRuleEvent(FlowRuleEvent.Type.RULE_REMOVED, rule);
+        assertTrue(listener.getValue().isRelevant(removed));
+        listener.getValue().event(removed);
+        awaitLane();
+        assertEquals(1, table0.entries());
+
+        // Then expired.
+        listener.getValue().event(removed);
+        awaitLane();
+        assertEquals(0, table0.entries());
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that the expiry listener of the previous pipeliner of a device is
+     * removed on init.
+     */
+    @Test
+    public void testListenerReplaced() {
+        Capture<FlowRuleListener> listener = newCapture();
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andReturn(List.of());
+        flowRuleService.addListener(capture(listener));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        replay(flowRuleService);
+        new BasicPipeliner(capabilities(2)).init(DEVICE_ID, context);
+        verify(flowRuleService);
+
+        reset(flowRuleService);
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andReturn(List.of());
+        flowRuleService.removeListener(listener.getValue());
+        flowRuleService.addListener(anyObject(FlowRuleListener.class));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        replay(flowRuleService);
+        new BasicPipeliner(capabilities(2)).init(DEVICE_ID, context);
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that an entry of the exact table is moved to table0 once an entry
+     * of table0 with a higher priority overlaps it, and that flow rules of
+     * the exact table overlapped by such an entry are written to table0.
+     */
+    @Test
+    public void testExactTableOverlap() throws Exception {
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andReturn(List.of()).anyTimes();
+        flowRuleService.addListener(anyObject(FlowRuleListener.class));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(5);
+        replay(flowRuleService);
+        batchSize = 1;
+        pipeliner = new BasicPipeliner(capabilities(16, 16));
+        pipeliner.init(DEVICE_ID, context);
+        DeviceMetrics deviceMetrics = metricsService.deviceMetrics(DEVICE_ID);
+
+        ForwardingObjective.Builder flow = exactObjective();
+        ForwardingObjective acl = aclObjective().add();
+
+        pipeliner.forward(flow.add());
+        awaitAppliedOps(1);
+        FlowRuleOperations ops = appliedOps.getValues().get(0);
+        FlowRule exact = singleOp(ops).rule();
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT, exact.table());
+        ops.callback().onSuccess(ops);
+
+        // Added to table0 with the ACL, then removed from the exact table.
+        pipeliner.forward(acl);
+        awaitAppliedOps(2);
+        ops = appliedOps.getValues().get(1);
+        assertEquals(Set.of(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0), ops.stages().get(0).stream()
+                .map(op -> op.rule().table()).collect(Collectors.toSet()));
+        assertEquals(2, ops.stages().get(0).size());
+        ops.callback().onSuccess(ops);
+        ops = appliedOps.getValues().get(2);
+        assertEquals(FlowRuleOperation.Type.REMOVE, singleOp(ops).type());
+        assertEquals(exact, singleOp(ops).rule());
+        ops.callback().onSuccess(ops);
+        assertEquals(2, deviceMetrics.tableOccupancy().get(0).entries());
+        assertEquals(0, deviceMetrics.tableOccupancy().get(1).entries());
+
+        // Removed from table0, and added back to it while the ACL is there.
+        for (ForwardingObjective objective : List.of(flow.remove(), flow.add())) {
+            final int applied = appliedOps.getValues().size();
+            pipeliner.forward(objective);
+            awaitAppliedOps(applied + 1);
+            ops = appliedOps.getValues().get(applied);
+            assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0, singleOp(ops).rule().table());
+            ops.callback().onSuccess(ops);
+        }
+        assertEquals(2, deviceMetrics.tableOccupancy().get(0).entries());
+        assertEquals(0, deviceMetrics.tableOccupancy().get(1).entries());
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that aggregated entries are added before the entries they replace
+     * are removed, and that the objective completes after both.
+     */
+    @Test
+    public void testAggregatedForward() throws Exception {
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(3);
+        replay(flowRuleService);
+        batchSize = 1;
+        aggregation = true;
+
+        CompletableFuture<Objective> first = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective("10.0.0.0/32").add(context(first)));
+        awaitAppliedOps(1);
+        FlowRuleOperations ops = appliedOps.getValues().get(0);
+        ops.callback().onSuccess(ops);
+        assertNotNull(first.get(1, TimeUnit.SECONDS));
+
+        CompletableFuture<Objective> second = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective("10.0.0.1/32").add(context(second)));
+        awaitAppliedOps(2);
+        ops = appliedOps.getValues().get(1);
+        assertEquals(FlowRuleOperation.Type.ADD, singleOp(ops).type());
+        assertEquals(IpPrefix.valueOf("10.0.0.0/31"), ((IPCriterion) singleOp(ops).rule().selector()
+                .getCriterion(Criterion.Type.IPV4_DST)).ip());
+        ops.callback().onSuccess(ops);
+        awaitAppliedOps(3);
+        assertFalse(second.isDone());
+        ops = appliedOps.getValues().get(2);
+        assertEquals(FlowRuleOperation.Type.REMOVE, singleOp(ops).type());
+        ops.callback().onSuccess(ops);
+        assertNotNull(second.get(1, TimeUnit.SECONDS));
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that removing a flow rule aggregated before a re-init replaces the
+     * aggregated entry by the ones matching the remaining flow rules.
+     */
+    @Test
+    public void testAggregatedAfterInit() throws Exception {
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(5);
+        // The aggregated entry, once the entry it replaces is removed.
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andAnswer(() -> List.of(new DefaultFlowEntry(
+                singleOp(appliedOps.getValues().get(1)).rule(), FlowEntry.FlowEntryState.ADDED)));
+        replay(flowRuleService);
+        batchSize = 1;
+        aggregation = true;
+
+        CompletableFuture<Objective> first = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective("10.0.0.0/32").add(context(first)));
+        awaitAppliedOps(1);
+        FlowRuleOperations ops = appliedOps.getValues().get(0);
+        ops.callback().onSuccess(ops);
+        CompletableFuture<Objective> second = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective("10.0.0.1/32").add(context(second)));
+        awaitAppliedOps(2);
+        ops = appliedOps.getValues().get(1);
+        FlowRule aggregated = singleOp(ops).rule();
+        ops.callback().onSuccess(ops);
+        awaitAppliedOps(3);
+        ops = appliedOps.getValues().get(2);
+        ops.callback().onSuccess(ops);
+        assertNotNull(second.get(1, TimeUnit.SECONDS));
+
+        pipeliner = new BasicPipeliner(capabilities());
+        pipeliner.init(DEVICE_ID, context);
+        CompletableFuture<Objective> remove = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective("10.0.0.1/32").remove(context(remove)));
+        awaitAppliedOps(4);
+        ops = appliedOps.getValues().get(3);
+        assertEquals(FlowRuleOperation.Type.ADD, singleOp(ops).type());
+        assertEquals(IpPrefix.valueOf("10.0.0.0/32"), ((IPCriterion) singleOp(ops).rule().selector()
+                .getCriterion(Criterion.Type.IPV4_DST)).ip());
+        ops.callback().onSuccess(ops);
+        awaitAppliedOps(5);
+        ops = appliedOps.getValues().get(4);
+        assertEquals(FlowRuleOperation.Type.REMOVE, singleOp(ops).type());
+        assertEquals(aggregated.id(), singleOp(ops).rule().id());
+        ops.callback().onSuccess(ops);
+        assertNotNull(remove.get(1, TimeUnit.SECONDS));
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that a flow rule shadowed by an installed entry is not written,
+     * and is written once the entry is removed.
+     */
+    @Test
+    public void testShadowedRule() throws Exception {
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andReturn(List.of());
+        flowRuleService.addListener(anyObject(FlowRuleListener.class));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(3);
+        replay(flowRuleService);
+        batchSize = 1;
+        skipShadowed = true;
+        pipeliner = new BasicPipeliner(capabilities());
+        pipeliner.init(DEVICE_ID, context);
+
+        CompletableFuture<Objective> ipv4 = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_IPV4).withPriority(PRIORITY + 1).add(context(ipv4)));
+        awaitAppliedOps(1);
+        FlowRuleOperations ops = appliedOps.getValues().get(0);
+        ops.callback().onSuccess(ops);
+        assertNotNull(ipv4.get(1, TimeUnit.SECONDS));
+
+        // Completed without being written.
+        CompletableFuture<Objective> host = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective("10.0.0.1/32").add(context(host)));
+        assertNotNull(host.get(1, TimeUnit.SECONDS));
+        assertEquals(1, appliedOps.getValues().size());
+        assertEquals(1, metricsService.deviceMetrics(DEVICE_ID).shadowedRules());
+
+        CompletableFuture<Objective> ipv4Remove = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective(Ethernet.TYPE_IPV4).withPriority(PRIORITY + 1)
+                                  .remove(context(ipv4Remove)));
+        awaitAppliedOps(2);
+        ops = appliedOps.getValues().get(1);
+        assertEquals(FlowRuleOperation.Type.REMOVE, singleOp(ops).type());
+        ops.callback().onSuccess(ops);
+        assertNotNull(ipv4Remove.get(1, TimeUnit.SECONDS));
+        awaitAppliedOps(3);
+        ops = appliedOps.getValues().get(2);
+        assertEquals(FlowRuleOperation.Type.ADD, singleOp(ops).type());
+        assertEquals(IpPrefix.valueOf("10.0.0.1/32"), ((IPCriterion) singleOp(ops).rule().selector()
+                .getCriterion(Criterion.Type.IPV4_DST)).ip());
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that an entry of table0 removed because its timeout expired no
+     * longer shadows flow rules: those it covered are written, and new ones
+     * are not skipped.
+     */
+    @Test
+    public void testExpiredShadowingRule() throws Exception {
+        Capture<FlowRuleListener> listener = newCapture();
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andReturn(List.of());
+        flowRuleService.addListener(capture(listener));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(3);
+        replay(flowRuleService);
+        batchSize = 1;
+        skipShadowed = true;
+        pipeliner = new BasicPipeliner(capabilities());
+        pipeliner.init(DEVICE_ID, context);
+
+        ForwardingObjective.Builder temporary = copyToCpuObjective(Ethernet.TYPE_IPV4).withPriority(PRIORITY + 1);
+        temporary.makeTemporary(10);
+        pipeliner.forward(temporary.add());
+        awaitAppliedOps(1);
+        FlowRuleOperations ops = appliedOps.getValues().get(0);
+        FlowRule rule = singleOp(ops).rule();
+        ops.callback().onSuccess(ops);
+        CompletableFuture<Objective> host = new CompletableFuture<>();
+        pipeliner.forward(copyToCpuObjective("10.0.0.1/32").add(context(host)));
+        assertNotNull(host.get(1, TimeUnit.SECONDS));
+        assertEquals(1, appliedOps.getValues().size());
+
+        listener.getValue().event(new FlowRuleEvent(FlowRuleEvent.Type.RULE_REMOVED, rule));
+        awaitAppliedOps(2);
+        ops = appliedOps.getValues().get(1);
+        assertEquals(FlowRuleOperation.Type.ADD, singleOp(ops).type());
+        assertEquals(IpPrefix.valueOf("10.0.0.1/32"), ((IPCriterion) singleOp(ops).rule().selector()
+                .getCriterion(Criterion.Type.IPV4_DST)).ip());
+        ops.callback().onSuccess(ops);
+
+        pipeliner.forward(copyToCpuObjective("10.0.0.2/32").add());
+        awaitAppliedOps(3);
+        ops = appliedOps.getValues().get(2);
+        assertEquals(IpPrefix.valueOf("10.0.0.2/32"), ((IPCriterion) singleOp(ops).rule().selector()
+                .getCriterion(Criterion.Type.IPV4_DST)).ip());
+        assertEquals(1, metricsService.deviceMetrics(DEVICE_ID).shadowedRules());
+        verify(flowRuleService);
+    }
+
+    /**
+     * Test that an entry of the exact table removed because its timeout
+     * expired is not moved to table0 by an overlapping entry added after.
+     */
+    @Test
+    public void testExpiredExactRule() throws Exception {
+        Capture<FlowRuleListener> listener = newCapture();
+        expect(flowRuleService.getFlowEntries(DEVICE_ID)).andReturn(List.of()).anyTimes();
+        flowRuleService.addListener(capture(listener));
+        flowRuleService.removeListener(anyObject(FlowRuleListener.class));
+        expectLastCall().anyTimes();
+        flowRuleService.apply(capture(appliedOps));
+        expectLastCall().times(2);
+        replay(flowRuleService);
+        batchSize = 1;
+        pipeliner = new BasicPipeliner(capabilities(16, 16));
+        pipeliner.init(DEVICE_ID, context);
+        DeviceMetrics deviceMetrics = metricsService.deviceMetrics(DEVICE_ID);
+
+        ForwardingObjective.Builder temporary = exactObjective();
+        temporary.makeTemporary(10);
+        pipeliner.forward(temporary.add());
+        awaitAppliedOps(1);
+        FlowRuleOperations ops = appliedOps.getValues().get(0);
+        FlowRule exact = singleOp(ops).rule();
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT, exact.table());
+        ops.callback().onSuccess(ops);
+        assertEquals(1, deviceMetrics.tableOccupancy().get(1).entries());
+
+        listener.getValue().event(new FlowRuleEvent(FlowRuleEvent.Type.RULE_REMOVED, exact));
+        awaitLane();
+        assertEquals(0, deviceMetrics.tableOccupancy().get(1).entries());
+
+        // Only the ACL is written, nothing is moved.
+        pipeliner.forward(aclObjective().add());
+        awaitAppliedOps(2);
+        ops = appliedOps.getValues().get(1);
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0, singleOp(ops).rule().table());
+        ops.callback().onSuccess(ops);
+        awaitLane();
+        assertEquals(2, appliedOps.getValues().size());
+        assertEquals(1, deviceMetrics.tableOccupancy().get(0).entries());
+        verify(flowRuleService);
+    }
+
+    // Flow of the exact table: TCP from 10.0.0.1 to 10.0.1.1, forwarded to
+    // port 2.
+    private static ForwardingObjective.Builder exactObjective() {
+        return DefaultForwardingObjective.builder()
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchInPort(PortNumber.portNumber(1))
+                                      .matchEthSrc(MacAddress.valueOf("00:00:00:00:00:01"))
+                                      .matchEthDst(MacAddress.valueOf("00:00:00:00:00:02"))
+                                      .matchEthType(Ethernet.TYPE_IPV4)
+                                      .matchIPSrc(IpPrefix.valueOf("10.0.0.1/32"))
+                                      .matchIPDst(IpPrefix.valueOf("10.0.1.1/32"))
+                                      .matchIPProtocol(IPv4.PROTOCOL_TCP)
+                                      .matchTcpSrc(TpPort.tpPort(40000))
+                                      .matchTcpDst(TpPort.tpPort(80))
+                                      .build())
+                .withTreatment(DefaultTrafficTreatment.builder().setOutput(PortNumber.portNumber(2)).build())
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent();
+    }
+
+    // ACL of table0 dropping the packets from 10.0.0.0/24, overlapping the
+    // flow of the exact table with a higher priority.
+    private static ForwardingObjective.Builder aclObjective() {
+        return DefaultForwardingObjective.builder()
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchEthType(Ethernet.TYPE_IPV4)
+                                      .matchIPSrc(IpPrefix.valueOf("10.0.0.0/24"))
+                                      .build())
+                .withTreatment(DefaultTrafficTreatment.builder().wipeDeferred().build())
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .withPriority(PRIORITY + 1)
+                .fromApp(APP_ID)
+                .makePermanent();
+    }
+
+    private static FlowRuleOperation singleOp(FlowRuleOperations ops) {
+        assertEquals(1, ops.stages().size());
+        assertEquals(1, ops.stages().get(0).size());
+        return ops.stages().get(0).iterator().next();
+    }
+
+    private static ForwardingObjective.Builder copyToCpuObjective(String ipv4Dst) {
+        return DefaultForwardingObjective.builder()
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchEthType(Ethernet.TYPE_IPV4)
+                                      .matchIPDst(IpPrefix.valueOf(ipv4Dst))
+                                      .build())
+                .withTreatment(DefaultTrafficTreatment.builder().punt().build())
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent();
+    }
+
+    private static void assertFailed(CompletableFuture<Objective> future, ObjectiveError error)
+            throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("objective should fail");
+        } catch (ExecutionException e) {
+            assertEquals(error.name(), e.getCause().getMessage());
+        }
+    }
+
+    // Expired entries are released by the lane of the device, wait for the
+    // tasks queued on it so far.
+    private void awaitLane() throws Exception {
+        pipeliner.laneDrained().get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Objectives are translated and written on the lane of the device, wait
+    // for it to reach the flow rule service.
+    private void awaitAppliedOps(int expected) throws InterruptedException {
+        await(() -> appliedOps.getValues().size() >= expected, expected + " flow rule operations");
+    }
+
+    // Writes may also be started by the acknowledgement of earlier ones,
+    // outside the lane.
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + description);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static ObjectiveContext context(CompletableFuture<Objective> future) {
+        return new ObjectiveContext() {
+            @Override
+            public void onSuccess(Objective objective) {
+                future.complete(objective);
+            }
+
+            @Override
+            public void onError(Objective objective, ObjectiveError error) {
+                future.completeExceptionally(new IllegalStateException(error.name()));
+            }
+        };
+    }
 
+    private static ForwardingObjective.Builder copyToCpuObjective(short ethType) {
+        return DefaultForwardingObjective.builder()
+                .withSelector(DefaultTrafficSelector.builder().matchEthType(ethType).build())
+                .withTreatment(DefaultTrafficTreatment.builder().punt().build())
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent();
     }
 }
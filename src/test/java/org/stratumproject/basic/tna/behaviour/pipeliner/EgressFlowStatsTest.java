@@ -0,0 +1,120 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.flow.instructions.PiInstruction;
+import org.onosproject.net.pi.runtime.PiAction;
+import org.onosproject.net.pi.runtime.PiActionParam;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.APP_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.DEVICE_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.PRIORITY;
+
+/**
+ * Tests for EgressFlowStats.
+ */
+public class EgressFlowStatsTest {
+
+    private static final PortNumber PORT_1 = PortNumber.portNumber(1);
+    private static final PortNumber PORT_2 = PortNumber.portNumber(2);
+
+    /**
+     * Test that a flow rule forwarding to a port is written with the action
+     * setting its stats flow ID, together with its egress entry, and that
+     * both are removed with the flow rule, freeing the ID.
+     */
+    @Test
+    public void testAddRemove() {
+        EgressFlowStats stats = new EgressFlowStats(1);
+        FlowRule rule = table0Rule(Ethernet.TYPE_IPV4, DefaultTrafficTreatment.builder().setOutput(PORT_1).build());
+        EgressFlowStats.Update add = stats.add(rule, APP_ID).get();
+        add.commit();
+        assertEquals(2, add.additions().size());
+        FlowRule counted = add.additions().get(0);
+        assertEquals(rule.id(), counted.id());
+        PiAction action = piAction(counted);
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_COUNT, action.id());
+        assertTrue(action.parameters().contains(new PiActionParam(P4InfoConstants.STATS_FLOW_ID, 1)));
+        assertEquals(P4InfoConstants.BASIC_EGRESS_STATS_FLOWS, add.additions().get(1).table());
+        assertTrue(add.removals().isEmpty());
+
+        // All IDs allocated, written as is.
+        FlowRule arp = table0Rule(Ethernet.TYPE_ARP, DefaultTrafficTreatment.builder().setOutput(PORT_1).build());
+        assertFalse(stats.add(arp, APP_ID).isPresent());
+        // Not forwarding to a port.
+        FlowRule toCpu = table0Rule(Ethernet.TYPE_ARP, DefaultTrafficTreatment.builder().punt().build());
+        assertFalse(stats.add(toCpu, APP_ID).isPresent());
+
+        EgressFlowStats.Update remove = stats.remove(rule).get();
+        remove.commit();
+        assertEquals(List.of(rule.id(), add.additions().get(1).id()),
+                     remove.removals().stream().map(FlowRule::id).collect(Collectors.toList()));
+        assertEquals(0, stats.countedRules());
+        assertTrue(stats.add(arp, APP_ID).isPresent());
+    }
+
+    /**
+     * Test that a flow rule moved to another port keeps its ID, and that its
+     * previous egress entry is removed; and that IDs are recovered from the
+     * entries already installed.
+     */
+    @Test
+    public void testModifyAndIndex() {
+        EgressFlowStats stats = new EgressFlowStats(2);
+        FlowRule rule = table0Rule(Ethernet.TYPE_IPV4, DefaultTrafficTreatment.builder().setOutput(PORT_1).build());
+        EgressFlowStats.Update add = stats.add(rule, APP_ID).get();
+        add.commit();
+
+        FlowRule moved = table0Rule(Ethernet.TYPE_IPV4, DefaultTrafficTreatment.builder().setOutput(PORT_2).build());
+        EgressFlowStats.Update modify = stats.add(moved, APP_ID).get();
+        modify.commit();
+        assertTrue(piAction(modify.additions().get(0)).parameters()
+                           .contains(new PiActionParam(P4InfoConstants.STATS_FLOW_ID, 1)));
+        assertEquals(List.of(add.additions().get(1)), modify.removals());
+        assertEquals(1, stats.countedRules());
+
+        EgressFlowStats recovered = new EgressFlowStats(2);
+        recovered.index(modify.additions().stream()
+                                .map(r -> new DefaultFlowEntry(r, FlowEntry.FlowEntryState.ADDED))
+                                .collect(Collectors.toList()));
+        assertEquals(1, recovered.countedRules());
+        assertEquals(modify.additions().get(1), recovered.remove(moved).get().removals().get(1));
+        // ID 1 is taken.
+        FlowRule arp = table0Rule(Ethernet.TYPE_ARP, DefaultTrafficTreatment.builder().setOutput(PORT_1).build());
+        assertTrue(piAction(recovered.add(arp, APP_ID).get().additions().get(0)).parameters()
+                           .contains(new PiActionParam(P4InfoConstants.STATS_FLOW_ID, 2)));
+    }
+
+    private static PiAction piAction(FlowRule rule) {
+        return (PiAction) ((PiInstruction) rule.treatment().allInstructions().get(0)).action();
+    }
+
+    private static FlowRule table0Rule(short ethType, TrafficTreatment treatment) {
+        return DefaultFlowRule.builder()
+                .forDevice(DEVICE_ID)
+                .forTable(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                .withSelector(DefaultTrafficSelector.builder().matchEthType(ethType).build())
+                .withTreatment(treatment)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent()
+                .build();
+    }
+}
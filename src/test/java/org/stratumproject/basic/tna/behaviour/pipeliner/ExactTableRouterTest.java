@@ -0,0 +1,148 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.TpPort;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.instructions.PiInstruction;
+import org.onosproject.net.pi.model.PiActionId;
+import org.onosproject.net.pi.model.PiTableId;
+import org.onosproject.net.pi.runtime.PiAction;
+import org.onosproject.net.pi.runtime.PiActionParam;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.APP_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.DEVICE_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.PRIORITY;
+
+/**
+ * Tests for ExactTableRouter.
+ */
+public class ExactTableRouterTest {
+
+    private final ExactTableRouter router = new ExactTableRouter();
+
+    /**
+     * Test that a flow rule of the exact table is written to table0 if an
+     * entry of table0 with a higher priority overlaps it, and to the exact
+     * table otherwise.
+     */
+    @Test
+    public void testRoute() {
+        FlowRule exact = exactRule(PRIORITY);
+        FlowRule inTable0 = ForwardingObjectiveTranslator.inTable0(exact, APP_ID);
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0, inTable0.table());
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_OUTPUT, action(inTable0).id());
+        assertEquals(action(exact).parameters(), action(inTable0).parameters());
+
+        router.add(table0Rule("10.0.0.0/8", PRIORITY), APP_ID);
+        router.add(table0Rule("10.1.0.0/16", PRIORITY + 1), APP_ID);
+        assertEquals(exact, router.route(exact, APP_ID, false));
+
+        router.add(table0Rule("10.0.0.0/24", PRIORITY + 1), APP_ID);
+        assertEquals(inTable0, router.route(exact, APP_ID, false));
+        // Removed from the table it was written to.
+        assertEquals(exact, router.route(exact, APP_ID, true));
+        router.add(inTable0, APP_ID);
+        assertEquals(inTable0, router.route(exact, APP_ID, true));
+        assertEquals(0, router.exactEntries());
+    }
+
+    /**
+     * Test that the entries of the exact table overlapped by a new entry of
+     * table0 with a higher priority are moved to table0.
+     */
+    @Test
+    public void testDisplaced() {
+        FlowRule exact = exactRule(PRIORITY);
+        router.add(exact, APP_ID);
+        assertEquals(1, router.exactEntries());
+        assertEquals(exact, router.route(exact, APP_ID, false));
+
+        assertEquals(Map.of(), router.displaced(table0Rule("10.0.0.0/24", PRIORITY)));
+        assertEquals(Map.of(), router.displaced(table0Rule("10.0.1.0/24", PRIORITY + 1)));
+        FlowRule inTable0 = ForwardingObjectiveTranslator.inTable0(exact, APP_ID);
+        assertEquals(Map.of(exact, inTable0), router.displaced(table0Rule("10.0.0.0/24", PRIORITY + 1)));
+
+        router.remove(exact);
+        router.add(inTable0, APP_ID);
+        assertEquals(0, router.exactEntries());
+        assertEquals(inTable0, router.route(exact, APP_ID, false));
+        assertEquals(inTable0, router.route(exact, APP_ID, true));
+    }
+
+    /**
+     * Test that installed entries are indexed in the table they are found
+     * in.
+     */
+    @Test
+    public void testIndexed() {
+        FlowRule exact = exactRule(PRIORITY);
+        FlowRule other = exactRule(PRIORITY + 1);
+        router.index(List.of(exact, ForwardingObjectiveTranslator.inTable0(other, APP_ID)), appId -> APP_ID);
+        assertEquals(1, router.exactEntries());
+        assertEquals(exact, router.route(exact, APP_ID, true));
+        assertEquals(ForwardingObjectiveTranslator.inTable0(other, APP_ID), router.route(other, APP_ID, true));
+    }
+
+    // Entry of the exact table of a TCP flow from 10.0.0.1 to 10.0.1.1,
+    // forwarded to port 1.
+    private static FlowRule exactRule(int priority) {
+        TrafficSelector selector = DefaultTrafficSelector.builder()
+                .matchInPort(PortNumber.portNumber(1))
+                .matchEthSrc(MacAddress.valueOf("00:00:00:00:00:01"))
+                .matchEthDst(MacAddress.valueOf("00:00:00:00:00:02"))
+                .matchEthType(Ethernet.TYPE_IPV4)
+                .matchIPSrc(IpPrefix.valueOf("10.0.0.1/32"))
+                .matchIPDst(IpPrefix.valueOf("10.0.1.1/32"))
+                .matchIPProtocol(IPv4.PROTOCOL_TCP)
+                .matchTcpSrc(TpPort.tpPort(40000))
+                .matchTcpDst(TpPort.tpPort(80))
+                .build();
+        return rule(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT, selector,
+                    P4InfoConstants.BASIC_INGRESS_TABLE0_SET_OUTPUT_EXACT, priority);
+    }
+
+    private static FlowRule table0Rule(String srcPrefix, int priority) {
+        TrafficSelector selector = DefaultTrafficSelector.builder()
+                .matchEthType(Ethernet.TYPE_IPV4)
+                .matchIPSrc(IpPrefix.valueOf(srcPrefix))
+                .build();
+        return rule(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0, selector,
+                    P4InfoConstants.BASIC_INGRESS_TABLE0_DROP, priority);
+    }
+
+    private static FlowRule rule(PiTableId tableId, TrafficSelector selector, PiActionId actionId, int priority) {
+        PiAction.Builder action = PiAction.builder().withId(actionId);
+        if (!actionId.equals(P4InfoConstants.BASIC_INGRESS_TABLE0_DROP)) {
+            action.withParameter(new PiActionParam(P4InfoConstants.PORT_NUM, 1L));
+        }
+        return DefaultFlowRule.builder()
+                .forDevice(DEVICE_ID)
+                .forTable(tableId)
+                .withSelector(selector)
+                .withTreatment(DefaultTrafficTreatment.builder().piTableAction(action.build()).build())
+                .withPriority(priority)
+                .fromApp(APP_ID)
+                .makePermanent()
+                .build();
+    }
+
+    private static PiAction action(FlowRule rule) {
+        return (PiAction) ((PiInstruction) rule.treatment().allInstructions().get(0)).action();
+    }
+}
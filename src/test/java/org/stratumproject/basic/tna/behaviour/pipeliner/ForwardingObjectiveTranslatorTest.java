@@ -3,13 +3,270 @@
 package org.stratumproject.basic.tna.behaviour.pipeliner;
 
 import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.TpPort;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.flow.instructions.PiInstruction;
+import org.onosproject.net.flowobjective.DefaultForwardingObjective;
+import org.onosproject.net.flowobjective.ForwardingObjective;
+import org.onosproject.net.flowobjective.ObjectiveError;
+import org.onosproject.net.meter.Meter;
+import org.onosproject.net.meter.MeterCellId;
+import org.onosproject.net.meter.MeterId;
+import org.onosproject.net.meter.MeterService;
+import org.onosproject.net.pi.model.PiTableId;
+import org.onosproject.net.pi.runtime.PiAction;
+import org.onosproject.net.pi.runtime.PiActionParam;
+import org.onosproject.net.pi.runtime.PiMeterCellId;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test cases for ForwardingObjectiveTranslator.
  */
 public class ForwardingObjectiveTranslatorTest extends AbstractObjectiveTranslatorTest {
 
+    private ForwardingObjectiveTranslator translator;
+
     @Before
     public void setup() {
+        translator = ForwardingObjectiveTranslator.builder(DEVICE_ID, capabilities()).build();
+    }
+
+    /**
+     * Test that re-submitting an equivalent objective is served from the
+     * translation cache.
+     */
+    @Test
+    public void testTranslationCacheHit() {
+        ObjectiveTranslation first = translator.translate(copyToCpuObjective(Ethernet.TYPE_ARP).add());
+        ObjectiveTranslation second = translator.translate(copyToCpuObjective(Ethernet.TYPE_ARP).remove());
+
+        assertTrue(first.error().isEmpty());
+        assertEquals(1, first.flowRules().size());
+        assertSame(first, second);
+        assertEquals(1, translator.cacheStats().hitCount());
+        assertEquals(1, translator.cacheStats().missCount());
+    }
+
+    /**
+     * Test that objectives with a different selector are translated again.
+     */
+    @Test
+    public void testTranslationCacheMiss() {
+        translator.translate(copyToCpuObjective(Ethernet.TYPE_ARP).add());
+        translator.translate(copyToCpuObjective(Ethernet.TYPE_LLDP).add());
+
+        assertEquals(0, translator.cacheStats().hitCount());
+        assertEquals(2, translator.cacheSize());
+    }
+
+    /**
+     * Test that a zero-sized cache never stores translations.
+     */
+    @Test
+    public void testTranslationCacheDisabled() {
+        translator = ForwardingObjectiveTranslator.builder(DEVICE_ID, capabilities()).cacheSize(0).build();
+        translator.translate(copyToCpuObjective(Ethernet.TYPE_ARP).add());
+        translator.translate(copyToCpuObjective(Ethernet.TYPE_ARP).add());
+
+        assertEquals(0, translator.cacheSize());
+        assertEquals(0, translator.cacheStats().hitCount());
+    }
+
+    /**
+     * Test that drop and set output treatments are mapped to the actions of
+     * table0, and that other treatments are rejected.
+     */
+    @Test
+    public void testTable0Treatments() {
+        ObjectiveTranslation drop = translator.translate(objective(
+                DefaultTrafficTreatment.builder().wipeDeferred().build()).add());
+        ObjectiveTranslation output = translator.translate(objective(
+                DefaultTrafficTreatment.builder().setOutput(PortNumber.portNumber(1)).build()).add());
+        ObjectiveTranslation unsupported = translator.translate(objective(
+                DefaultTrafficTreatment.builder().setEthDst(MacAddress.BROADCAST).build()).add());
+
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_DROP, action(drop).id());
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_OUTPUT, action(output).id());
+        assertEquals(ObjectiveError.UNSUPPORTED, unsupported.error().orElse(null));
+    }
+
+    /**
+     * Test that a metered punt is mapped to the CPU meter cell of the meter,
+     * and that meters not installed or out of the CPU meter are rejected.
+     */
+    @Test
+    public void testCopyToCpuMetered() {
+        MeterService meterService = createMock(MeterService.class);
+        expect(meterService.getMeter(DEVICE_ID, PiMeterCellId.ofIndirect(
+                P4InfoConstants.BASIC_INGRESS_TABLE0_CPU_METER, 7)))
+                .andReturn(createMock(Meter.class)).anyTimes();
+        expect(meterService.getMeter(anyObject(DeviceId.class), anyObject(MeterCellId.class)))
+                .andReturn(null).anyTimes();
+        replay(meterService);
+        translator = ForwardingObjectiveTranslator.builder(DEVICE_ID, capabilities())
+                .cacheSize(0)
+                .meterService(meterService)
+                .build();
+
+        PiAction metered = action(translator.translate(objective(
+                DefaultTrafficTreatment.builder().punt().meter(MeterId.meterId(7)).build()).add()));
+        ObjectiveTranslation missing = translator.translate(objective(
+                DefaultTrafficTreatment.builder().punt().meter(MeterId.meterId(8)).build()).add());
+        ObjectiveTranslation outOfRange = translator.translate(objective(
+                DefaultTrafficTreatment.builder().punt().meter(MeterId.meterId(CPU_METER_SIZE)).build()).add());
+
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_COPY_TO_CPU_METERED, metered.id());
+        assertEquals(new PiActionParam(P4InfoConstants.METER_INDEX, 7L),
+                     metered.parameters().iterator().next());
+        assertEquals(ObjectiveError.BADPARAMS, missing.error().orElse(null));
+        assertTrue(outOfRange.error().isPresent());
+    }
+
+    /**
+     * Test that the sampled action is completed with the threshold of the
+     * sampling rate read at translation, that translations cached with a
+     * previous rate are not served, and that a treatment forwarding to a
+     * port and to the controller is not taken as a sampled one.
+     */
+    @Test
+    public void testCloneToCpuSampled() {
+        AtomicInteger sampleRate = new AtomicInteger(4);
+        translator = ForwardingObjectiveTranslator.builder(DEVICE_ID, capabilities())
+                .cloneSampleRate(sampleRate::get)
+                .build();
+        ForwardingObjective sample = objective(DefaultTrafficTreatment.builder()
+                .piTableAction(PiAction.builder()
+                                       .withId(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_SAMPLED)
+                                       .withParameter(new PiActionParam(P4InfoConstants.PORT_NUM, 1L))
+                                       .build())
+                .build()).add();
+
+        PiAction sampled = action(translator.translate(sample));
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_EGRESS_PORT_SAMPLED, sampled.id());
+        assertEquals(List.of(new PiActionParam(P4InfoConstants.PORT_NUM, 1L),
+                             new PiActionParam(P4InfoConstants.SAMPLE_THRESHOLD, 16383L)),
+                     List.copyOf(sampled.parameters()));
+
+        sampleRate.set(256);
+        assertEquals(List.of(new PiActionParam(P4InfoConstants.PORT_NUM, 1L),
+                             new PiActionParam(P4InfoConstants.SAMPLE_THRESHOLD, 255L)),
+                     List.copyOf(action(translator.translate(sample)).parameters()));
+
+        ObjectiveTranslation forwardAndPunt = translator.translate(objective(
+                DefaultTrafficTreatment.builder()
+                        .setOutput(PortNumber.portNumber(1))
+                        .setOutput(PortNumber.CONTROLLER)
+                        .build()).add());
+        assertEquals(ObjectiveError.UNSUPPORTED, forwardAndPunt.error().orElse(null));
+    }
+
+    /**
+     * Test that objectives matching all the fields of table0 without
+     * wildcards, for an IPv4 TCP or UDP flow, are written to the exact
+     * table, and the others to table0.
+     */
+    @Test
+    public void testExactTable() {
+        translator = ForwardingObjectiveTranslator.builder(DEVICE_ID, capabilities(1024, 32768)).build();
+        TrafficSelector exact = fiveTuple(32).matchTcpSrc(TpPort.tpPort(40000)).build();
+        TrafficSelector prefix = fiveTuple(24).matchTcpSrc(TpPort.tpPort(40000)).build();
+        TrafficSelector portRange = fiveTuple(32).matchTcpSrcMasked(TpPort.tpPort(1024), TpPort.tpPort(0xfc00)).build();
+        TrafficSelector notIpv4 = fiveTuple(32).matchTcpSrc(TpPort.tpPort(40000))
+                .matchEthType(Ethernet.TYPE_ARP).build();
+        TrafficSelector notTcp = fiveTuple(32).matchTcpSrc(TpPort.tpPort(40000))
+                .matchIPProtocol(IPv4.PROTOCOL_UDP).build();
+        TrafficTreatment drop = DefaultTrafficTreatment.builder().wipeDeferred().build();
+
+        PiAction exactOutput = action(translator.translate(objective(
+                exact, DefaultTrafficTreatment.builder().setOutput(PortNumber.portNumber(1)).build()).add()),
+                P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT);
+        PiAction exactPunt = action(translator.translate(objective(
+                exact, DefaultTrafficTreatment.builder().punt().build()).add()),
+                P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0_EXACT);
+        PiAction prefixDrop = action(translator.translate(objective(prefix, drop).add()));
+        PiAction portRangeDrop = action(translator.translate(objective(portRange, drop).add()));
+        PiAction notIpv4Drop = action(translator.translate(objective(notIpv4, drop).add()));
+        PiAction notTcpDrop = action(translator.translate(objective(notTcp, drop).add()));
+
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_SET_OUTPUT_EXACT, exactOutput.id());
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_COPY_TO_CPU_EXACT, exactPunt.id());
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_DROP, prefixDrop.id());
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_DROP, portRangeDrop.id());
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_DROP, notIpv4Drop.id());
+        assertEquals(P4InfoConstants.BASIC_INGRESS_TABLE0_DROP, notTcpDrop.id());
+    }
+
+    private static PiAction action(ObjectiveTranslation translation) {
+        return action(translation, P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0);
+    }
+
+    private static PiAction action(ObjectiveTranslation translation, PiTableId tableId) {
+        assertTrue(translation.error().isEmpty());
+        FlowRule rule = translation.flowRules().iterator().next();
+        assertEquals(tableId, rule.table());
+        return (PiAction) ((PiInstruction) rule.treatment().allInstructions().get(0)).action();
+    }
+
+    // Selector of TCP flows to port 80, without the source port.
+    private static TrafficSelector.Builder fiveTuple(int prefixLength) {
+        return DefaultTrafficSelector.builder()
+                .matchInPort(PortNumber.portNumber(1))
+                .matchEthSrc(MacAddress.valueOf("00:00:00:00:00:01"))
+                .matchEthDst(MacAddress.valueOf("00:00:00:00:00:02"))
+                .matchEthType(Ethernet.TYPE_IPV4)
+                .matchIPSrc(IpPrefix.valueOf(Ip4Address.valueOf("10.0.0.1"), prefixLength))
+                .matchIPDst(IpPrefix.valueOf(Ip4Address.valueOf("10.0.1.1"), prefixLength))
+                .matchIPProtocol(IPv4.PROTOCOL_TCP)
+                .matchTcpDst(TpPort.tpPort(80));
+    }
+
+    private static ForwardingObjective.Builder objective(TrafficTreatment treatment) {
+        return objective(DefaultTrafficSelector.builder().matchEthType(Ethernet.TYPE_IPV4).build(), treatment);
+    }
+
+    private static ForwardingObjective.Builder objective(TrafficSelector selector, TrafficTreatment treatment) {
+        return DefaultForwardingObjective.builder()
+                .withSelector(selector)
+                .withTreatment(treatment)
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent();
+    }
+
+    private static ForwardingObjective.Builder copyToCpuObjective(short ethType) {
+        TrafficSelector selector = DefaultTrafficSelector.builder()
+                .matchEthType(ethType)
+                .build();
+        return DefaultForwardingObjective.builder()
+                .withSelector(selector)
+                .withTreatment(DefaultTrafficTreatment.builder().punt().build())
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent();
     }
 }
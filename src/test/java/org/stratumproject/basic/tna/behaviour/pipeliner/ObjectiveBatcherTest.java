@@ -0,0 +1,55 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flowobjective.DefaultForwardingObjective;
+import org.onosproject.net.flowobjective.ForwardingObjective;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.APP_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.PRIORITY;
+
+/**
+ * Test cases for ObjectiveBatcher.
+ */
+public class ObjectiveBatcherTest {
+
+    /**
+     * Test that a batch whose linger timeout expires while the executor
+     * rejects its flush is handed over to the rejecter, not to the flusher.
+     */
+    @Test
+    public void testLingerRejected() throws Exception {
+        CompletableFuture<List<PendingObjective>> rejected = new CompletableFuture<>();
+        ObjectiveBatcher batcher = new ObjectiveBatcher(
+                batch -> fail("batch flushed off the executor"), rejected::complete,
+                task -> {
+                    throw new RejectedExecutionException();
+                });
+        ForwardingObjective objective = DefaultForwardingObjective.builder()
+                .withSelector(DefaultTrafficSelector.builder().matchEthType(Ethernet.TYPE_ARP).build())
+                .withTreatment(DefaultTrafficTreatment.builder().punt().build())
+                .withFlag(ForwardingObjective.Flag.VERSATILE)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makePermanent()
+                .add();
+        PendingObjective pending = new PendingObjective(objective, List.of(), List.of(), Map.of());
+
+        batcher.add(pending, 2, 10);
+
+        assertEquals(List.of(pending), rejected.get(1, TimeUnit.SECONDS));
+        assertEquals(0, batcher.size());
+    }
+}
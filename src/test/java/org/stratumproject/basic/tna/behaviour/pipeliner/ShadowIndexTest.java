@@ -0,0 +1,144 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.TpPort;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.APP_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.DEVICE_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.PRIORITY;
+
+/**
+ * Tests for ShadowIndex.
+ */
+public class ShadowIndexTest {
+
+    private static final TrafficTreatment DROP = DefaultTrafficTreatment.builder().drop().build();
+    private static final TrafficTreatment PUNT = DefaultTrafficTreatment.builder().punt().build();
+
+    private final ShadowIndex index = new ShadowIndex();
+
+    /**
+     * Test that a flow rule is shadowed by a wider entry of higher priority
+     * only, and not by narrower or non-overlapping ones.
+     */
+    @Test
+    public void testShadowed() {
+        FlowRule subnet = ipv4DstRule("10.0.0.0/24", DROP, PRIORITY + 1);
+        index.add(subnet);
+        index.add(ipv4DstRule("10.0.1.0/24", DROP, PRIORITY + 2));
+        index.add(rule(selector().matchIPDst(IpPrefix.valueOf("10.0.0.1/32"))
+                               .matchIPProtocol(IPv4.PROTOCOL_TCP), DROP, PRIORITY + 2));
+
+        ShadowIndex.Coverage coverage = index.coverage(ipv4DstRule("10.0.0.1/32", PUNT, PRIORITY))
+                .orElseThrow();
+        assertEquals(subnet, coverage.rule());
+        assertFalse(coverage.duplicate());
+
+        // Same match, lower priority entry.
+        assertFalse(index.coverage(ipv4DstRule("10.0.0.0/24", PUNT, PRIORITY + 2)).isPresent());
+        // Not fully covered.
+        assertFalse(index.coverage(ipv4DstRule("10.0.0.0/23", PUNT, PRIORITY)).isPresent());
+        assertFalse(index.coverage(rule(DefaultTrafficSelector.builder(), PUNT, PRIORITY)).isPresent());
+    }
+
+    /**
+     * Test that a flow rule covered by an entry with the same priority is a
+     * duplicate only with the same action.
+     */
+    @Test
+    public void testDuplicate() {
+        index.add(rule(selector().matchTcpDst(TpPort.tpPort(80)), DROP, PRIORITY));
+
+        FlowRule sameAction = rule(selector().matchTcpDst(TpPort.tpPort(80))
+                                           .matchInPort(PortNumber.portNumber(1)), DROP, PRIORITY);
+        assertTrue(index.coverage(sameAction).orElseThrow().duplicate());
+        FlowRule otherAction = rule(selector().matchTcpDst(TpPort.tpPort(80))
+                                            .matchInPort(PortNumber.portNumber(1)), PUNT, PRIORITY);
+        assertFalse(index.coverage(otherAction).isPresent());
+    }
+
+    /**
+     * Test that skipped flow rules are returned once the entries covering
+     * them are removed, unless covered by another entry.
+     */
+    @Test
+    public void testSkipped() {
+        FlowRule ipv4 = rule(selector(), DROP, PRIORITY + 2);
+        FlowRule subnet = ipv4DstRule("10.0.0.0/24", DROP, PRIORITY + 1);
+        FlowRule host = ipv4DstRule("10.0.0.1/32", PUNT, PRIORITY);
+        index.add(ipv4);
+        assertTrue(index.skipIfCovered(subnet).isPresent());
+        assertTrue(index.skipIfCovered(host).isPresent());
+        assertEquals(2, index.skipped());
+
+        // Skipped flow rules are not installed, so do not cover each other.
+        assertEquals(List.of(subnet, host), index.remove(ipv4));
+        assertEquals(0, index.skipped());
+
+        index.add(subnet);
+        assertTrue(index.skipIfCovered(host).isPresent());
+        assertTrue(index.unskip(host));
+        assertEquals(List.of(), index.remove(subnet));
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Test that the entries covered by a flow rule of higher priority are
+     * found, and not the ones it only overlaps.
+     */
+    @Test
+    public void testCovered() {
+        FlowRule host = ipv4DstRule("10.0.0.1/32", PUNT, PRIORITY);
+        FlowRule hostTcp = rule(selector().matchIPDst(IpPrefix.valueOf("10.0.0.2/32"))
+                                        .matchIPProtocol(IPv4.PROTOCOL_TCP), PUNT, PRIORITY);
+        index.add(host);
+        index.add(hostTcp);
+        index.add(ipv4DstRule("10.0.0.0/24", PUNT, PRIORITY));
+        index.add(ipv4DstRule("10.0.1.1/32", PUNT, PRIORITY));
+
+        assertEquals(List.of(host, hostTcp), index.covered(ipv4DstRule("10.0.0.0/30", DROP, PRIORITY + 1)));
+        assertEquals(List.of(hostTcp), index.covered(rule(selector().matchIPProtocol(IPv4.PROTOCOL_TCP),
+                                                          DROP, PRIORITY + 1)));
+        assertEquals(List.of(), index.covered(ipv4DstRule("10.0.0.0/30", DROP, PRIORITY)));
+        assertTrue(index.contains(host));
+        assertFalse(index.contains(ipv4DstRule("10.0.0.3/32", PUNT, PRIORITY)));
+    }
+
+    private static TrafficSelector.Builder selector() {
+        return DefaultTrafficSelector.builder().matchEthType(Ethernet.TYPE_IPV4);
+    }
+
+    private static FlowRule ipv4DstRule(String prefix, TrafficTreatment treatment, int priority) {
+        return rule(selector().matchIPDst(IpPrefix.valueOf(prefix)), treatment, priority);
+    }
+
+    private static FlowRule rule(TrafficSelector.Builder selector, TrafficTreatment treatment, int priority) {
+        return DefaultFlowRule.builder()
+                .forDevice(DEVICE_ID)
+                .forTable(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                .withSelector(selector.build())
+                .withTreatment(treatment)
+                .withPriority(priority)
+                .fromApp(APP_ID)
+                .makePermanent()
+                .build();
+    }
+}
@@ -0,0 +1,194 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.behaviour.pipeliner;
+
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.TpPort;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.flow.criteria.Criteria;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.IPCriterion;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.APP_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.DEVICE_ID;
+import static org.stratumproject.basic.tna.behaviour.pipeliner.AbstractObjectiveTranslatorTest.PRIORITY;
+
+/**
+ * Tests for TernaryAggregator.
+ */
+public class TernaryAggregatorTest {
+
+    private static final TrafficTreatment DROP = DefaultTrafficTreatment.builder().drop().build();
+    private static final TrafficTreatment PUNT = DefaultTrafficTreatment.builder().punt().build();
+
+    private final TernaryAggregator aggregator = new TernaryAggregator();
+
+    /**
+     * Test that adjacent prefixes are merged, and expanded back when one of
+     * them is removed.
+     */
+    @Test
+    public void testPrefixes() {
+        for (int i = 0; i < 4; i++) {
+            add(ipv4DstRule("10.0.0." + i + "/32", DROP, PRIORITY));
+        }
+        assertEquals(4, aggregator.aggregatedRules());
+        assertEquals(1, aggregator.tableEntries());
+
+        TernaryAggregator.Update update = aggregator.remove(ipv4DstRule("10.0.0.1/32", DROP, PRIORITY), APP_ID)
+                .orElseThrow();
+        assertEquals(1, update.removals().size());
+        assertEquals(IpPrefix.valueOf("10.0.0.0/30"), ipv4Dst(update.removals().get(0)));
+        assertEquals(Set.of(IpPrefix.valueOf("10.0.0.0/32"), IpPrefix.valueOf("10.0.0.2/31")),
+                     update.additions().stream().map(TernaryAggregatorTest::ipv4Dst).collect(Collectors.toSet()));
+        update.commit();
+        assertEquals(3, aggregator.aggregatedRules());
+        assertEquals(2, aggregator.tableEntries());
+    }
+
+    /**
+     * Test that consecutive L4 ports are merged in a masked entry.
+     */
+    @Test
+    public void testPorts() {
+        add(rule(selector().matchTcpDst(TpPort.tpPort(80)), DROP, PRIORITY));
+        TernaryAggregator.Update update = aggregator.add(
+                rule(selector().matchTcpDst(TpPort.tpPort(81)), DROP, PRIORITY), APP_ID).orElseThrow();
+        update.commit();
+
+        assertEquals(1, update.additions().size());
+        assertEquals(1, update.removals().size());
+        assertEquals(Criteria.matchTcpDstMasked(TpPort.tpPort(80), TpPort.tpPort(0xFFFE)),
+                     update.additions().get(0).selector().getCriterion(Criterion.Type.TCP_DST_MASKED));
+        assertEquals(1, aggregator.tableEntries());
+    }
+
+    /**
+     * Test that flow rules with a different action or priority are not
+     * merged, and that temporary flow rules and flow rules without
+     * aggregated fields are left as is.
+     */
+    @Test
+    public void testNotMerged() {
+        add(ipv4DstRule("10.0.0.0/32", DROP, PRIORITY));
+        add(ipv4DstRule("10.0.0.1/32", PUNT, PRIORITY));
+        add(ipv4DstRule("10.0.0.2/32", DROP, PRIORITY + 1));
+        add(ipv4DstRule("10.0.0.3/32", DROP, PRIORITY + 1));
+        assertEquals(3, aggregator.tableEntries());
+
+        assertFalse(aggregator.add(rule(selector(), DROP, PRIORITY), APP_ID).isPresent());
+        assertFalse(aggregator.remove(rule(selector(), DROP, PRIORITY), APP_ID).isPresent());
+
+        FlowRule temporary = DefaultFlowRule.builder()
+                .forDevice(DEVICE_ID)
+                .forTable(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                .withSelector(selector().matchIPDst(IpPrefix.valueOf("10.0.0.4/32")).build())
+                .withTreatment(DROP)
+                .withPriority(PRIORITY)
+                .fromApp(APP_ID)
+                .makeTemporary(10)
+                .build();
+        assertFalse(aggregator.add(temporary, APP_ID).isPresent());
+        assertFalse(aggregator.remove(temporary, APP_ID).isPresent());
+        assertEquals(3, aggregator.tableEntries());
+    }
+
+    /**
+     * Test that adding a flow rule already covered does not change the table.
+     */
+    @Test
+    public void testDuplicate() {
+        add(ipv4DstRule("10.0.0.0/32", DROP, PRIORITY));
+        add(ipv4DstRule("10.0.0.1/32", DROP, PRIORITY));
+
+        TernaryAggregator.Update update = aggregator.add(
+                ipv4DstRule("10.0.0.1/32", DROP, PRIORITY), APP_ID).orElseThrow();
+        assertTrue(update.additions().isEmpty());
+        assertTrue(update.removals().isEmpty());
+    }
+
+    /**
+     * Test that removing a flow rule aggregated before the entries were
+     * indexed splits the entry matching it, and that flow rules added again
+     * take over the packets of the indexed entries.
+     */
+    @Test
+    public void testIndexed() {
+        aggregator.index(List.of(ipv4DstRule("10.0.0.0/30", DROP, PRIORITY),
+                                 ipv4DstRule("10.0.1.0/32", DROP, PRIORITY)), appId -> APP_ID);
+        assertEquals(0, aggregator.aggregatedRules());
+        assertEquals(2, aggregator.tableEntries());
+
+        // Not matched by an indexed entry.
+        assertFalse(aggregator.remove(ipv4DstRule("10.0.2.0/32", DROP, PRIORITY), APP_ID).isPresent());
+        assertFalse(aggregator.remove(ipv4DstRule("10.0.0.1/32", PUNT, PRIORITY), APP_ID).isPresent());
+
+        TernaryAggregator.Update update = aggregator.remove(ipv4DstRule("10.0.0.1/32", DROP, PRIORITY), APP_ID)
+                .orElseThrow();
+        assertEquals(List.of(ipv4DstRule("10.0.0.0/30", DROP, PRIORITY)), update.removals());
+        assertEquals(Set.of(IpPrefix.valueOf("10.0.0.0/32"), IpPrefix.valueOf("10.0.0.2/31")),
+                     update.additions().stream().map(TernaryAggregatorTest::ipv4Dst).collect(Collectors.toSet()));
+        update.commit();
+        assertEquals(3, aggregator.tableEntries());
+
+        // Written as is before the entries were indexed.
+        update = aggregator.remove(ipv4DstRule("10.0.1.0/32", DROP, PRIORITY), APP_ID).orElseThrow();
+        assertTrue(update.additions().isEmpty());
+        assertEquals(List.of(ipv4DstRule("10.0.1.0/32", DROP, PRIORITY)), update.removals());
+        update.commit();
+
+        add(ipv4DstRule("10.0.0.2/32", DROP, PRIORITY));
+        assertEquals(2, aggregator.tableEntries());
+        update = aggregator.remove(ipv4DstRule("10.0.0.2/32", DROP, PRIORITY), APP_ID).orElseThrow();
+        assertEquals(List.of(IpPrefix.valueOf("10.0.0.3/32")),
+                     update.additions().stream().map(TernaryAggregatorTest::ipv4Dst).collect(Collectors.toList()));
+        assertEquals(List.of(IpPrefix.valueOf("10.0.0.2/31")),
+                     update.removals().stream().map(TernaryAggregatorTest::ipv4Dst).collect(Collectors.toList()));
+        update.commit();
+        assertEquals(0, aggregator.aggregatedRules());
+        assertEquals(2, aggregator.tableEntries());
+    }
+
+    private void add(FlowRule rule) {
+        aggregator.add(rule, APP_ID).orElseThrow().commit();
+    }
+
+    private static TrafficSelector.Builder selector() {
+        return DefaultTrafficSelector.builder().matchEthType(Ethernet.TYPE_IPV4);
+    }
+
+    private static FlowRule ipv4DstRule(String prefix, TrafficTreatment treatment, int priority) {
+        return rule(selector().matchIPDst(IpPrefix.valueOf(prefix)), treatment, priority);
+    }
+
+    private static FlowRule rule(TrafficSelector.Builder selector, TrafficTreatment treatment, int priority) {
+        return DefaultFlowRule.builder()
+                .forDevice(DEVICE_ID)
+                .forTable(P4InfoConstants.BASIC_INGRESS_TABLE0_TABLE0)
+                .withSelector(selector.build())
+                .withTreatment(treatment)
+                .withPriority(priority)
+                .fromApp(APP_ID)
+                .makePermanent()
+                .build();
+    }
+
+    private static IpPrefix ipv4Dst(FlowRule rule) {
+        return ((IPCriterion) rule.selector().getCriterion(Criterion.Type.IPV4_DST)).ip();
+    }
+}
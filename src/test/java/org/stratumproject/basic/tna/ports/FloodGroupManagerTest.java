@@ -0,0 +1,111 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.ports;
+
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.core.GroupId;
+import org.onosproject.net.DefaultDevice;
+import org.onosproject.net.DefaultPort;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.group.DefaultGroup;
+import org.onosproject.net.group.DefaultGroupBucket;
+import org.onosproject.net.group.DefaultGroupDescription;
+import org.onosproject.net.group.Group;
+import org.onosproject.net.group.GroupBuckets;
+import org.onosproject.net.group.GroupDescription;
+import org.onosproject.net.group.GroupListener;
+import org.onosproject.net.group.GroupService;
+import org.onosproject.net.provider.ProviderId;
+
+import java.util.List;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.stratumproject.basic.tna.Constants.FLOOD_MCAST_GROUP_ID;
+import static org.stratumproject.basic.tna.ports.FloodGroupManager.FLOOD_GROUP_KEY;
+
+/**
+ * Tests for the flood group manager.
+ */
+public class FloodGroupManagerTest {
+
+    private static final DeviceId DEVICE_ID = DeviceId.deviceId("device:bmv2:11");
+    private static final PortNumber CPU_PORT = PortNumber.portNumber(255);
+    private static final ApplicationId APP_ID = new DefaultApplicationId(1, "FloodGroupManagerTest");
+    private static final Device DEVICE = new DefaultDevice(
+            ProviderId.NONE, DEVICE_ID, Device.Type.SWITCH, "", "", "", "", null);
+
+    private final Capture<DeviceListener> listener = newCapture();
+    private DeviceService deviceService;
+    private GroupService groupService;
+    private FloodGroupManager manager;
+
+    @Before
+    public void setup() {
+        deviceService = createMock(DeviceService.class);
+        groupService = createMock(GroupService.class);
+        deviceService.addListener(capture(listener));
+        expectLastCall().once();
+        groupService.addListener(anyObject(GroupListener.class));
+        expectLastCall().once();
+        manager = new FloodGroupManager();
+        manager.deviceService = deviceService;
+        manager.groupService = groupService;
+    }
+
+    /**
+     * Test that a device is not ready while unavailable or once removed, and
+     * is ready again when it becomes available with the group installed.
+     */
+    @Test
+    public void testReadyDevices() {
+        expect(deviceService.getPorts(DEVICE_ID))
+                .andReturn(List.of(new DefaultPort(DEVICE, PortNumber.portNumber(1), true))).times(2);
+        expect(groupService.getGroup(DEVICE_ID, FLOOD_GROUP_KEY)).andReturn(floodGroup()).times(2);
+        expect(deviceService.isAvailable(DEVICE_ID)).andReturn(false).once();
+        expect(deviceService.isAvailable(DEVICE_ID)).andReturn(true).once();
+        replay(deviceService, groupService);
+        manager.activate();
+
+        manager.enableFloodGroup(DEVICE_ID, APP_ID, CPU_PORT);
+        assertTrue(manager.isFloodGroupReady(DEVICE_ID));
+
+        listener.getValue().event(new DeviceEvent(DeviceEvent.Type.DEVICE_AVAILABILITY_CHANGED, DEVICE));
+        assertFalse(manager.isFloodGroupReady(DEVICE_ID));
+        listener.getValue().event(new DeviceEvent(DeviceEvent.Type.DEVICE_AVAILABILITY_CHANGED, DEVICE));
+        assertTrue(manager.isFloodGroupReady(DEVICE_ID));
+
+        listener.getValue().event(new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, DEVICE));
+        assertFalse(manager.isFloodGroupReady(DEVICE_ID));
+        verify(deviceService, groupService);
+    }
+
+    // Flood group installed on the device, with port 1 as the only bucket.
+    private static Group floodGroup() {
+        DefaultGroup group = new DefaultGroup(GroupId.valueOf(FLOOD_MCAST_GROUP_ID), new DefaultGroupDescription(
+                DEVICE_ID, GroupDescription.Type.ALL,
+                new GroupBuckets(List.of(DefaultGroupBucket.createAllGroupBucket(
+                        DefaultTrafficTreatment.builder().setOutput(PortNumber.portNumber(1)).build()))),
+                FLOOD_GROUP_KEY, FLOOD_MCAST_GROUP_ID, APP_ID));
+        group.setState(Group.GroupState.ADDED);
+        return group;
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.ports;
+
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultDevice;
+import org.onosproject.net.DefaultPort;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.provider.ProviderId;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the port inventory.
+ */
+public class PortInventoryManagerTest {
+
+    private static final DeviceId DEVICE_ID = DeviceId.deviceId("device:bmv2:11");
+    private static final PortNumber CPU_PORT = PortNumber.portNumber(255);
+    private static final Device DEVICE = new DefaultDevice(
+            ProviderId.NONE, DEVICE_ID, Device.Type.SWITCH, "", "", "", "", null);
+
+    private final Capture<DeviceListener> listener = newCapture();
+    private DeviceService deviceService;
+    private PortInventoryManager manager;
+
+    @Before
+    public void setup() {
+        deviceService = createMock(DeviceService.class);
+        deviceService.addListener(capture(listener));
+        expectLastCall().once();
+        manager = new PortInventoryManager();
+        manager.deviceService = deviceService;
+    }
+
+    /**
+     * Test that flood ports exclude disabled and CPU ports, and are read from
+     * the device service again only after a port event.
+     */
+    @Test
+    public void testFloodPorts() {
+        expect(deviceService.getPorts(DEVICE_ID)).andReturn(List.of(
+                port(1, true), port(2, false), port(CPU_PORT.toLong(), true))).once();
+        expect(deviceService.getPorts(DEVICE_ID)).andReturn(List.of(
+                port(1, true), port(2, true))).once();
+        replay(deviceService);
+        manager.activate();
+
+        assertEquals(Set.of(PortNumber.portNumber(1)), manager.floodPorts(DEVICE_ID, CPU_PORT));
+        assertEquals(Set.of(PortNumber.portNumber(1)), manager.floodPorts(DEVICE_ID, CPU_PORT));
+
+        listener.getValue().event(new DeviceEvent(
+                DeviceEvent.Type.PORT_UPDATED, DEVICE, port(2, true)));
+        assertEquals(Set.of(PortNumber.portNumber(1), PortNumber.portNumber(2)),
+                     manager.floodPorts(DEVICE_ID, CPU_PORT));
+        verify(deviceService);
+    }
+
+    /**
+     * Test that port names are looked up only on first use, and again after
+     * the port has been updated.
+     */
+    @Test
+    public void testNamedConnectPoint() {
+        ConnectPoint unnamed = new ConnectPoint(DEVICE_ID, PortNumber.portNumber(1));
+        Port named = new DefaultPort(DEVICE, PortNumber.portNumber(1, "1/0"), true);
+        Port renamed = new DefaultPort(DEVICE, PortNumber.portNumber(1, "1/1"), true);
+        expect(deviceService.getPort(unnamed)).andReturn(named).once();
+        expect(deviceService.getPort(unnamed)).andReturn(renamed).once();
+        replay(deviceService);
+        manager.activate();
+
+        assertEquals("1/0", manager.namedConnectPoint(unnamed).port().name());
+        assertEquals("1/0", manager.namedConnectPoint(unnamed).port().name());
+
+        listener.getValue().event(new DeviceEvent(DeviceEvent.Type.PORT_UPDATED, DEVICE, renamed));
+        assertEquals("1/1", manager.namedConnectPoint(unnamed).port().name());
+        verify(deviceService);
+    }
+
+    private static Port port(long number, boolean enabled) {
+        return new DefaultPort(DEVICE, PortNumber.portNumber(number), enabled);
+    }
+}
@@ -0,0 +1,81 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.stats;
+
+import org.junit.Test;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.pi.runtime.PiCounterCellData;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for DeviceFlowStats.
+ */
+public class DeviceFlowStatsTest {
+
+    private static final FlowId FLOW_1 = FlowId.valueOf(1);
+    private static final FlowId FLOW_2 = FlowId.valueOf(2);
+    private static final FlowId EGRESS_1 = FlowId.valueOf(3);
+    private static final long SECOND = 1_000_000_000L;
+
+    private final DeviceFlowStats stats = new DeviceFlowStats();
+
+    /**
+     * Test that rates are computed against the previous sample, and that
+     * idle entries keep their statistics.
+     */
+    @Test
+    public void testRates() {
+        stats.update(Map.of(FLOW_1, new PiCounterCellData(10, 1000),
+                            FLOW_2, new PiCounterCellData(5, 500)), Map.of(), SECOND);
+        assertEquals(0, stats.stats().get(FLOW_1).packetRate(), 0);
+
+        FlowStats idle = stats.stats().get(FLOW_2);
+        stats.update(Map.of(FLOW_1, new PiCounterCellData(30, 3000),
+                            FLOW_2, new PiCounterCellData(5, 500)), Map.of(), 3 * SECOND);
+        FlowStats flow1 = stats.stats().get(FLOW_1);
+        assertEquals(30, flow1.packets());
+        assertEquals(10, flow1.packetRate(), 0);
+        assertEquals(1000, flow1.byteRate(), 0);
+        assertSame(idle, stats.stats().get(FLOW_2));
+    }
+
+    /**
+     * Test that counters going back reset the rates, and that entries
+     * missing from a sample are dropped.
+     */
+    @Test
+    public void testResetAndRemoved() {
+        stats.update(Map.of(FLOW_1, new PiCounterCellData(10, 1000),
+                            FLOW_2, new PiCounterCellData(5, 500)), Map.of(), SECOND);
+        stats.update(Map.of(FLOW_1, new PiCounterCellData(2, 200)), Map.of(), 2 * SECOND);
+
+        assertEquals(2, stats.stats().get(FLOW_1).packets());
+        assertEquals(0, stats.stats().get(FLOW_1).packetRate(), 0);
+        assertFalse(stats.stats().containsKey(FLOW_2));
+    }
+
+    /**
+     * Test that the statistics of an egress entry are attached to the table0
+     * entry it pairs with, and kept as is while both entries are idle.
+     */
+    @Test
+    public void testEgress() {
+        stats.update(Map.of(FLOW_1, new PiCounterCellData(10, 1000),
+                            EGRESS_1, new PiCounterCellData(8, 800)),
+                     Map.of(FLOW_1, EGRESS_1), SECOND);
+        FlowStats flow1 = stats.stats().get(FLOW_1);
+        assertEquals(10, flow1.packets());
+        assertEquals(8, flow1.egress().get().packets());
+        assertSame(stats.stats().get(EGRESS_1), flow1.egress().get());
+
+        stats.update(Map.of(FLOW_1, new PiCounterCellData(10, 1000),
+                            EGRESS_1, new PiCounterCellData(8, 800)),
+                     Map.of(FLOW_1, EGRESS_1), 2 * SECOND);
+        assertSame(flow1, stats.stats().get(FLOW_1));
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.stats;
+
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.device.PortStatistics;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for DevicePortStats.
+ */
+public class DevicePortStatsTest {
+
+    private static final DeviceId DEVICE_ID = DeviceId.deviceId("device:bmv2:11");
+    private static final PortNumber PORT_1 = PortNumber.portNumber(1);
+    private static final long SECOND = 1_000_000_000L;
+
+    private final DevicePortStats stats = new DevicePortStats(DEVICE_ID);
+
+    /**
+     * Test that deltas are computed against the previous sample, and that
+     * totals keep growing when the counters are reset.
+     */
+    @Test
+    public void testDeltasAndReset() {
+        stats.update(Map.of(PORT_1, new long[]{10, 1000, 5, 500}), SECOND);
+        assertEquals(10, stats.statistics().get(0).packetsReceived());
+        assertTrue(stats.deltas().isEmpty());
+
+        stats.update(Map.of(PORT_1, new long[]{30, 3000, 5, 500}), 3 * SECOND);
+        PortStatistics delta = stats.deltas().get(0);
+        assertEquals(PORT_1, delta.portNumber());
+        assertEquals(20, delta.packetsReceived());
+        assertEquals(2000, delta.bytesReceived());
+        assertEquals(0, delta.packetsSent());
+        assertEquals(2, delta.durationSec());
+
+        // Reset, e.g., by a pipeline push.
+        stats.update(Map.of(PORT_1, new long[]{4, 400, 1, 100}), 4 * SECOND);
+        PortStatistics total = stats.statistics().get(0);
+        assertEquals(34, total.packetsReceived());
+        assertEquals(6, total.packetsSent());
+        assertEquals(600, total.bytesSent());
+        assertEquals(3, total.durationSec());
+        assertEquals(4, stats.deltas().get(0).packetsReceived());
+    }
+}
@@ -0,0 +1,132 @@
+// Copyright 2020-present Open Networking Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.stratumproject.basic.tna.stats;
+
+import org.junit.Test;
+import org.onosproject.net.DefaultAnnotations;
+import org.onosproject.net.DefaultDevice;
+import org.onosproject.net.DefaultPort;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Port;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.pi.model.PiCounterId;
+import org.onosproject.net.pi.model.PiCounterModel;
+import org.onosproject.net.pi.model.PiPipeconf;
+import org.onosproject.net.pi.model.PiPipelineModel;
+import org.onosproject.net.provider.ProviderId;
+import org.onosproject.p4runtime.model.P4InfoParser;
+import org.stratumproject.basic.tna.Constants;
+import org.stratumproject.basic.tna.behaviour.BasicCapabilities;
+import org.stratumproject.basic.tna.behaviour.P4InfoConstants;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for PortStatsManager.
+ */
+public class PortStatsManagerTest {
+
+    private static final DeviceId DEVICE_ID = DeviceId.deviceId("device:stratum:11");
+    private static final Device DEVICE = new DefaultDevice(
+            ProviderId.NONE, DEVICE_ID, Device.Type.SWITCH, "", "", "", "", null);
+    private static final PortNumber PORT_1 = PortNumber.portNumber(1);
+    private static final PortNumber PORT_2 = PortNumber.portNumber(2);
+    private static final PortNumber PORT_3 = PortNumber.portNumber(3);
+
+    /**
+     * Test that the counter cells of v1model devices are indexed by the ONOS
+     * port number, and those of TNA devices by the data plane port of the
+     * annotation, omitting the ports without a valid one.
+     */
+    @Test
+    public void testCellIndexes() {
+        List<Port> ports = List.of(port(PORT_1, "260"), port(PORT_2, null), port(PORT_3, "n/a"),
+                                   port(PortNumber.CONTROLLER, null));
+
+        assertEquals(Map.of(1L, PORT_1, 2L, PORT_2, 3L, PORT_3),
+                     PortStatsManager.cellIndexes(capabilities(model(Constants.V1MODEL)), ports));
+        assertEquals(Map.of(260L, PORT_1),
+                     PortStatsManager.cellIndexes(capabilities(model(Constants.TNA)), ports));
+    }
+
+    /**
+     * Test that the port counters are found in the TNA and v1model programs,
+     * received first, and only if they count packets and bytes.
+     */
+    @Test
+    public void testPortCounters() {
+        PiCounterModel tnaRx = counter(P4InfoConstants.BASIC_INGRESS_PORT_COUNTERS_INGRESS_INGRESS_PORT_COUNTER,
+                                       PiCounterModel.Unit.PACKETS_AND_BYTES);
+        PiCounterModel tnaTx = counter(P4InfoConstants.BASIC_INGRESS_PORT_COUNTERS_EGRESS_EGRESS_PORT_COUNTER,
+                                       PiCounterModel.Unit.PACKETS_AND_BYTES);
+        assertEquals(List.of(tnaRx, tnaTx),
+                     PortStatsManager.portCounters(model(Constants.TNA, tnaTx, tnaRx)));
+
+        PiCounterModel v1modelRx = counter(PiCounterId.of("ingress.port_counters_ingress.ingress_port_counter"),
+                                           PiCounterModel.Unit.PACKETS_AND_BYTES);
+        PiCounterModel v1modelTx = counter(PiCounterId.of("egress.port_counters_egress.egress_port_counter"),
+                                           PiCounterModel.Unit.PACKETS_AND_BYTES);
+        assertEquals(List.of(v1modelRx, v1modelTx),
+                     PortStatsManager.portCounters(model(Constants.V1MODEL, v1modelRx, v1modelTx)));
+
+        PiCounterModel packetsOnly = counter(PiCounterId.of("egress.port_counters_egress.egress_port_counter"),
+                                             PiCounterModel.Unit.PACKETS);
+        assertTrue(PortStatsManager.portCounters(model(Constants.V1MODEL, v1modelRx, packetsOnly)).isEmpty());
+        assertTrue(PortStatsManager.portCounters(model(Constants.V1MODEL, v1modelRx)).isEmpty());
+    }
+
+    /**
+     * Test that the port counters of the bundled bmv2 pipeline are used,
+     * counting packets and bytes.
+     */
+    @Test
+    public void testBmv2PortCounters() throws Exception {
+        List<PiCounterModel> counters = PortStatsManager.portCounters(P4InfoParser.parse(
+                PortStatsManagerTest.class.getResource("/p4c-out/basic/bmv2/p4info.txt")));
+
+        assertEquals(List.of(PiCounterId.of("ingress.port_counters_ingress.ingress_port_counter"),
+                             PiCounterId.of("egress.port_counters_egress.egress_port_counter")),
+                     counters.stream().map(PiCounterModel::id).collect(Collectors.toList()));
+    }
+
+    private static Port port(PortNumber number, String dataPlanePort) {
+        DefaultAnnotations.Builder annotations = DefaultAnnotations.builder();
+        if (dataPlanePort != null) {
+            annotations.set(Constants.DATA_PLANE_PORT, dataPlanePort);
+        }
+        return new DefaultPort(DEVICE, number, true, annotations.build());
+    }
+
+    private static PiCounterModel counter(PiCounterId counterId, PiCounterModel.Unit unit) {
+        PiCounterModel counter = createNiceMock(PiCounterModel.class);
+        expect(counter.id()).andReturn(counterId).anyTimes();
+        expect(counter.unit()).andReturn(unit).anyTimes();
+        replay(counter);
+        return counter;
+    }
+
+    private static PiPipelineModel model(String architecture, PiCounterModel... counters) {
+        PiPipelineModel model = createNiceMock(PiPipelineModel.class);
+        expect(model.architecture()).andReturn(Optional.of(architecture)).anyTimes();
+        expect(model.counters()).andReturn(List.of(counters)).anyTimes();
+        replay(model);
+        return model;
+    }
+
+    private static BasicCapabilities capabilities(PiPipelineModel model) {
+        PiPipeconf pipeconf = createNiceMock(PiPipeconf.class);
+        expect(pipeconf.pipelineModel()).andReturn(model).anyTimes();
+        replay(pipeconf);
+        return new BasicCapabilities(pipeconf);
+    }
+}